@@ -31,7 +31,7 @@ import java.util.ArrayList;
  */
 
 public class Order {
-    private int orderId;
+    private long orderId;
     private OrderState state;
     private String orderedDateTime="";
     private String progressingDateTime="";
@@ -41,7 +41,7 @@ public class Order {
 
     // Constructor used by OrderHub to create a new order for a customer.
     // Initializes the order with an ID, state, order date/time, and a list of ordered products.
-    public Order(int orderId,OrderState state, String orderedDateTime,ArrayList<Product> productList) {
+    public Order(long orderId,OrderState state, String orderedDateTime,ArrayList<Product> productList) {
         this.orderId = orderId;
         this.state = state;
         this.orderedDateTime =orderedDateTime;
@@ -49,7 +49,7 @@ public class Order {
     }
 
     //a set of getter methods
-    public int getOrderId() { return orderId;}
+    public long getOrderId() { return orderId;}
     public OrderState getState() { return state; }
     public String getOrderedDateTime(){ return orderedDateTime; }
     public ArrayList<Product> getProductList() {
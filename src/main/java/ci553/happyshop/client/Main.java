@@ -82,6 +82,8 @@ public class Main extends Application {
         cusController.cusModel = cusModel;
         cusModel.setCusView(cusView);
         cusModel.setDatabaseRW(databaseRW);
+        cusModel.setSuggestionIndex(DatabaseRWFactory.getProductSuggestionIndex());
+        cusModel.setReservationLedger(DatabaseRWFactory.getReservationLedger());
         cusView.start(new Stage());
 
         //RemoveProductNotifier removeProductNotifier = new RemoveProductNotifier();
@@ -104,8 +106,8 @@ public class Main extends Application {
         pickerView.pickerController = pickerController;
         pickerController.pickerModel = pickerModel;
         pickerModel.setPickerView(pickerView);
-        pickerModel.registerWithOrderHub();
         pickerView.start(new Stage());
+        pickerModel.registerWithOrderHub(); // after start(), the snapshot is shown straight away
     }
 
     //The OrderTracker GUI - for customer to track their order's state(Ordered, Progressing, Collected)
@@ -142,6 +144,7 @@ public class Main extends Application {
         controller.model = model;
         model.setView(view);
         model.setDatabaseRW(databaseRW);
+        model.watchCatalogue(DatabaseRWFactory.getCatalogueFeed()); // keeps the search results current
         view.start(new Stage());
 
         //create dependent views that need window info
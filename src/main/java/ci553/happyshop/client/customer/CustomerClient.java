@@ -35,6 +35,8 @@ public class CustomerClient extends Application {
         cusController.cusModel = cusModel;
         cusModel.setCusView(cusView);
         cusModel.setDatabaseRW(databaseRW);
+        cusModel.setSuggestionIndex(DatabaseRWFactory.getProductSuggestionIndex());
+        cusModel.setReservationLedger(DatabaseRWFactory.getReservationLedger());
         cusView.start(window);
 
         //RemoveProductNotifier removeProductNotifier = new RemoveProductNotifier();
@@ -26,4 +26,9 @@ public class CustomerController {
         }
     }
 
+    // called on every keystroke in the search box
+    public void doSuggest(String typed) {
+        cusModel.suggest(typed);
+    }
+
 }
@@ -2,7 +2,10 @@ package ci553.happyshop.client.customer;
 
 import ci553.happyshop.catalogue.Order;
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRW;
+import ci553.happyshop.storageAccess.ProductSuggestionIndex;
+import ci553.happyshop.storageAccess.ReservationLedger;
 import ci553.happyshop.orderManagement.OrderHub;
 import ci553.happyshop.utility.StorageLocation;
 import ci553.happyshop.utility.ProductListFormatter;
@@ -14,7 +17,10 @@ import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * TODO
@@ -25,6 +31,12 @@ public class CustomerModel {
     private CustomerView cusView;
     private DatabaseRW databaseRW; //Interface type, not specific implementation
                                   //Benefits: Flexibility: Easily change the database implementation.
+    private AsyncDatabaseRW asyncDatabaseRW; // runs the database calls off the JavaFX thread
+    private ProductSuggestionIndex suggestionIndex; // type-ahead suggestions, shared by all customer clients
+    private ReservationLedger reservationLedger; // stock held by the trolleys, shared by all customer clients
+    private final String trolleyId = UUID.randomUUID().toString(); // identifies this trolley's holds in the ledger
+
+    static final int SUGGESTION_LIMIT = 5; // suggestions shown under the search box
 
     /**
      * Sets the CustomerView for this model.
@@ -48,6 +60,16 @@ public class CustomerModel {
      */
     public void setDatabaseRW(DatabaseRW databaseRW) {
         this.databaseRW = databaseRW;
+        this.asyncDatabaseRW = new AsyncDatabaseRW(databaseRW);
+    }
+
+    /**
+     * Sets the AsyncDatabaseRW for this model, e.g. one delivering results on the calling thread in tests.
+     * @param asyncDatabaseRW the AsyncDatabaseRW instance
+     */
+    public void setAsyncDatabaseRW(AsyncDatabaseRW asyncDatabaseRW) {
+        this.asyncDatabaseRW = asyncDatabaseRW;
+        this.databaseRW = asyncDatabaseRW.getDatabaseRW();
     }
 
     /**
@@ -58,9 +80,27 @@ public class CustomerModel {
         return databaseRW;
     }
 
+    /**
+     * Sets the ProductSuggestionIndex used for type-ahead suggestions.
+     * @param suggestionIndex the suggestion index, or null for no suggestions
+     */
+    public void setSuggestionIndex(ProductSuggestionIndex suggestionIndex) {
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    /**
+     * Sets the ReservationLedger used to hold stock for the products in the trolley.
+     * @param reservationLedger the ledger, or null to check stock only at checkout
+     */
+    public void setReservationLedger(ReservationLedger reservationLedger) {
+        this.reservationLedger = reservationLedger;
+    }
+
     private Product theProduct =null; // product found from search
     private ArrayList<Product> trolley =  new ArrayList<>(); // a list of products in trolley
     private RemoveProductNotifier removeProductNotifier; // Notifier for insufficient stock products
+    private CompletableFuture<ArrayList<Product>> pendingSearch; // cancelled when a newer search starts
+    private boolean checkoutInProgress = false; // the trolley must not change while it is being purchased
 
     // Four UI elements to be passed to CustomerView for display updates.
     private String imageName = "imageHolder.jpg";                // Image to show in product preview (Search Page)
@@ -70,60 +110,110 @@ public class CustomerModel {
 
     //SELECT productID, description, image, unitPrice,inStock quantity
     // Enhanced search: supports both product ID and name (like Warehouse client)
-    void search() throws SQLException {
+    // The database is searched on a background thread; the view is updated when the result arrives.
+    CompletableFuture<Void> search() {
         // Get search keyword from either ID or Name field (prioritize ID if both are filled)
         String searchKeyword = getCusView().tfId.getText().trim();
         if(searchKeyword.isEmpty()) {
             searchKeyword = getCusView().tfName.getText().trim();
         }
-        
+        if(pendingSearch != null) {
+            pendingSearch.cancel(true); // only the latest search is shown
+        }
+
         if(!searchKeyword.isEmpty()){
+            String keyword = searchKeyword;
+            theProduct = null;
+            displayLaSearchResult = "Searching for: " + keyword + " ...";
+            updateView();
+
             // Use searchProduct() which searches by ID first, then by name if ID not found
-            ArrayList<Product> searchResults = databaseRW.searchProduct(searchKeyword);
-            
-            if(!searchResults.isEmpty() && searchResults.get(0).getStockQuantity() > 0){
-                // For customer search, we'll use the first result (exact ID match takes priority)
-                // If multiple results from name search, show the first one
-                theProduct = searchResults.get(0);
-                
-                double unitPrice = theProduct.getUnitPrice();
-                String description = theProduct.getProductDescription();
-                int stock = theProduct.getStockQuantity();
-                String productId = theProduct.getProductId();
-
-                String baseInfo = String.format("Product_Id: %s\n%s,\nPrice: £%.2f", productId, description, unitPrice);
-                String quantityInfo = stock < 100 ? String.format("\n%d units left.", stock) : "";
-                
-                // If multiple results found (name search), inform the user
-                if(searchResults.size() > 1) {
-                    baseInfo += String.format("\n(%d more products found with similar name)", searchResults.size() - 1);
+            CompletableFuture<ArrayList<Product>> searching = asyncDatabaseRW.searchProduct(keyword);
+            pendingSearch = searching;
+            return searching.handle((searchResults, error) -> {
+                if(searching.isCancelled()) {
+                    return null; // a newer search has taken over the view
                 }
-                
-                displayLaSearchResult = baseInfo + quantityInfo;
-                System.out.println(displayLaSearchResult);
-            }
-            else if(!searchResults.isEmpty() && searchResults.get(0).getStockQuantity() <= 0){
-                // Product found but out of stock
-                theProduct = null;
-                displayLaSearchResult = "Product found but currently out of stock: " + searchKeyword;
-                System.out.println("Product found but out of stock: " + searchKeyword);
-            }
-            else{
-                // No products found
-                theProduct = null;
-                displayLaSearchResult = "No Product was found with ID/Name: " + searchKeyword;
-                System.out.println("No Product was found with ID/Name: " + searchKeyword);
-            }
+                pendingSearch = null;
+                if(error != null) {
+                    theProduct = null;
+                    displayLaSearchResult = "Search failed: " + AsyncDatabaseRW.causeOf(error).getMessage();
+                    System.out.println(displayLaSearchResult);
+                }
+                else {
+                    showSearchResults(keyword, searchResults);
+                }
+                updateView();
+                return null;
+            });
         }else{
             theProduct = null;
             displayLaSearchResult = "Please type Product ID or Name to search";
             System.out.println("Please type Product ID or Name to search.");
         }
         updateView();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void showSearchResults(String searchKeyword, ArrayList<Product> searchResults) {
+        if(!searchResults.isEmpty() && availableStock(searchResults.get(0)) > 0){
+            // For customer search, we'll use the first result (exact ID match takes priority)
+            // If multiple results from name search, show the first one
+            theProduct = searchResults.get(0);
+
+            double unitPrice = theProduct.getUnitPrice();
+            String description = theProduct.getProductDescription();
+            int stock = availableStock(theProduct); // not counting the units held in trolleys
+            String productId = theProduct.getProductId();
+
+            String baseInfo = String.format("Product_Id: %s\n%s,\nPrice: £%.2f", productId, description, unitPrice);
+            String quantityInfo = stock < 100 ? String.format("\n%d units left.", stock) : "";
+
+            // If multiple results found (name search), inform the user
+            if(searchResults.size() > 1) {
+                baseInfo += String.format("\n(%d more products found with similar name)", searchResults.size() - 1);
+            }
+
+            displayLaSearchResult = baseInfo + quantityInfo;
+            System.out.println(displayLaSearchResult);
+        }
+        else if(!searchResults.isEmpty() && searchResults.get(0).getStockQuantity() <= 0){
+            // Product found but out of stock
+            theProduct = null;
+            displayLaSearchResult = "Product found but currently out of stock: " + searchKeyword;
+            System.out.println("Product found but out of stock: " + searchKeyword);
+        }
+        else if(!searchResults.isEmpty()){
+            // In stock, but every unit is held in the trolleys of other customers
+            theProduct = null;
+            displayLaSearchResult = "Product found but all units are reserved in other trolleys: " + searchKeyword;
+            System.out.println("Product found but fully reserved: " + searchKeyword);
+        }
+        else{
+            // No products found
+            theProduct = null;
+            displayLaSearchResult = "No Product was found with ID/Name: " + searchKeyword;
+            System.out.println("No Product was found with ID/Name: " + searchKeyword);
+        }
+    }
+
+    // Type-ahead: shows the top suggestions for the text typed so far, without touching the database
+    void suggest(String typed) {
+        List<String> suggestions = suggestionIndex == null ? List.of() : suggestionIndex.suggest(typed, SUGGESTION_LIMIT);
+        if (getCusView() != null) {
+            getCusView().updateSuggestions(suggestions);
+        }
     }
 
     void addToTrolley(){
-        if(theProduct!= null){
+        if(checkoutInProgress){
+            displayLaSearchResult = "Please wait, your trolley is being checked out";
+        }
+        else if(theProduct!= null && !reserve(theProduct)){
+            displayLaSearchResult = "Sorry, no more units of " + theProduct.getProductId() + " are available right now";
+            System.out.println(displayLaSearchResult);
+        }
+        else if(theProduct!= null){
             // Add the product to the trolley
             trolley.add(theProduct);
             
@@ -141,8 +231,12 @@ public class CustomerModel {
         updateView();
     }
 
-    void checkOut() throws IOException, SQLException {
+    // The purchase runs on a background thread; the trolley is locked until it has finished.
+    CompletableFuture<Void> checkOut() {
         System.out.println("checkOut() called. Trolley size: " + trolley.size()); // Debug output
+        if(checkoutInProgress){
+            return CompletableFuture.completedFuture(null); // the first click is still being processed
+        }
         if(!trolley.isEmpty()){
             // Group the products in the trolley by productId to optimize stock checking
             // Check the database for sufficient stock for all products in the trolley.
@@ -151,57 +245,36 @@ public class CustomerModel {
             // Note: If the trolley is already organized (merged and sorted), grouping is unnecessary.
             ArrayList<Product> groupedTrolley= groupProductsById(trolley);
             System.out.println("Grouped trolley size: " + groupedTrolley.size()); // Debug output
-            ArrayList<Product> insufficientProducts= databaseRW.purchaseStocks(groupedTrolley);
-            System.out.println("Insufficient products count: " + insufficientProducts.size()); // Debug output
-
-            if(insufficientProducts.isEmpty()){ // If stock is sufficient for all products
-                System.out.println("Stock is sufficient, creating order..."); // Debug output
-                // Close notifier window if it's showing from a previous insufficient stock situation
-                if(removeProductNotifier != null) {
-                    removeProductNotifier.closeNotifierWindow();
+
+            // Lines whose hold expired and cannot be held again would fail in the database, so stop here
+            if(reservationLedger != null) {
+                ArrayList<Product> unavailableProducts = reservationLedger.confirm(trolleyId, groupedTrolley);
+                if(!unavailableProducts.isEmpty()) {
+                    removeInsufficientProducts(unavailableProducts);
+                    updateView();
+                    return CompletableFuture.completedFuture(null);
                 }
-                
-                //get OrderHub and tell it to make a new Order
-                OrderHub orderHub =OrderHub.getOrderHub();
-                Order theOrder = orderHub.newOrder(trolley);
-                System.out.println("Order created with ID: " + theOrder.getOrderId()); // Debug output
-                trolley.clear();
-                displayTaTrolley ="";
-                displayTaReceipt = String.format(
-                        "Order_ID: %s\nOrdered_Date_Time: %s\n%s",
-                        theOrder.getOrderId(),
-                        theOrder.getOrderedDateTime(),
-                        ProductListFormatter.buildString(theOrder.getProductList())
-                );
-                System.out.println("Receipt generated:\n" + displayTaReceipt); // Debug output
             }
-            else{ // Some products have insufficient stock — remove them and notify the customer
-                System.out.println("Insufficient stock detected"); // Debug output
-                // Step 1: Remove products with insufficient stock from the trolley
-                removeInsufficientProductsFromTrolley(insufficientProducts);
-                
-                // Step 2: Build error message for the notification
-                StringBuilder errorMsg = new StringBuilder();
-                errorMsg.append("The following products were removed from your trolley due to insufficient stock:\n\n");
-                for(Product p : insufficientProducts){
-                    errorMsg.append("\u2022 "+ p.getProductId()).append(", ")
-                            .append(p.getProductDescription()).append(" (Only ")
-                            .append(p.getStockQuantity()).append(" available, ")
-                            .append(p.getOrderedQuantity()).append(" requested)\n");
+            checkoutInProgress = true;
+            displayLaSearchResult = "Checking out, please wait ...";
+            updateView();
+            return asyncDatabaseRW.purchaseStocks(groupedTrolley).handle((insufficientProducts, error) -> {
+                checkoutInProgress = false;
+                if(error != null){
+                    displayLaSearchResult = "Check out failed: " + AsyncDatabaseRW.causeOf(error).getMessage();
+                    System.out.println(displayLaSearchResult);
                 }
-                
-                // Step 3: Update trolley display after removal
-                trolley = TrolleyService.mergeAndSort(trolley); // Re-organize trolley after removal
-                displayTaTrolley = ProductListFormatter.buildString(trolley);
-                
-                // Step 4: Show notification window using RemoveProductNotifier
-                initializeRemoveProductNotifierIfNeeded();
-                removeProductNotifier.showRemovalMsg(errorMsg.toString());
-                
-                theProduct=null;
-                displayLaSearchResult = "Some products were removed from your trolley. Please check the notification window.";
-                System.out.println("stock is not enough - products removed from trolley");
-            }
+                else{
+                    try {
+                        completeCheckOut(insufficientProducts);
+                    } catch (IOException | SQLException e) {
+                        displayLaSearchResult = "Stock was reserved but the order could not be saved: " + e.getMessage();
+                        System.out.println(displayLaSearchResult);
+                    }
+                }
+                updateView();
+                return null;
+            });
         }
         else{
             displayTaTrolley = "Your trolley is empty";
@@ -210,6 +283,68 @@ public class CustomerModel {
         System.out.println("Calling updateView()..."); // Debug output
         updateView();
         System.out.println("updateView() completed"); // Debug output
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Called on the JavaFX thread once purchaseStocks() has finished
+    private void completeCheckOut(ArrayList<Product> insufficientProducts) throws IOException, SQLException {
+        System.out.println("Insufficient products count: " + insufficientProducts.size()); // Debug output
+        if(insufficientProducts.isEmpty()){ // If stock is sufficient for all products
+            System.out.println("Stock is sufficient, creating order..."); // Debug output
+            if(reservationLedger != null) {
+                reservationLedger.convert(trolleyId); // the stock is now decremented, the holds are no longer needed
+            }
+            // Close notifier window if it's showing from a previous insufficient stock situation
+            if(removeProductNotifier != null) {
+                removeProductNotifier.closeNotifierWindow();
+            }
+            
+            //get OrderHub and tell it to make a new Order
+            OrderHub orderHub =OrderHub.getOrderHub();
+            Order theOrder = orderHub.newOrder(trolley);
+            System.out.println("Order created with ID: " + theOrder.getOrderId()); // Debug output
+            trolley.clear();
+            displayTaTrolley ="";
+            displayTaReceipt = String.format(
+                    "Order_ID: %s\nOrdered_Date_Time: %s\n%s",
+                    theOrder.getOrderId(),
+                    theOrder.getOrderedDateTime(),
+                    ProductListFormatter.buildString(theOrder.getProductList())
+            );
+            System.out.println("Receipt generated:\n" + displayTaReceipt); // Debug output
+        }
+        else{ // Some products have insufficient stock — remove them and notify the customer
+            removeInsufficientProducts(insufficientProducts);
+        }
+    }
+
+    // Removes products with insufficient stock from the trolley and notifies the customer
+    private void removeInsufficientProducts(ArrayList<Product> insufficientProducts) {
+        System.out.println("Insufficient stock detected"); // Debug output
+        // Step 1: Remove products with insufficient stock from the trolley
+        removeInsufficientProductsFromTrolley(insufficientProducts);
+        
+        // Step 2: Build error message for the notification
+        StringBuilder errorMsg = new StringBuilder();
+        errorMsg.append("The following products were removed from your trolley due to insufficient stock:\n\n");
+        for(Product p : insufficientProducts){
+            errorMsg.append("\u2022 "+ p.getProductId()).append(", ")
+                    .append(p.getProductDescription()).append(" (Only ")
+                    .append(p.getStockQuantity()).append(" available, ")
+                    .append(p.getOrderedQuantity()).append(" requested)\n");
+        }
+        
+        // Step 3: Update trolley display after removal
+        trolley = TrolleyService.mergeAndSort(trolley); // Re-organize trolley after removal
+        displayTaTrolley = ProductListFormatter.buildString(trolley);
+        
+        // Step 4: Show notification window using RemoveProductNotifier
+        initializeRemoveProductNotifierIfNeeded();
+        removeProductNotifier.showRemovalMsg(errorMsg.toString());
+        
+        theProduct=null;
+        displayLaSearchResult = "Some products were removed from your trolley. Please check the notification window.";
+        System.out.println("stock is not enough - products removed from trolley");
     }
 
     /**
@@ -225,15 +360,39 @@ public class CustomerModel {
                 existing.setOrderedQuantity(existing.getOrderedQuantity() + p.getOrderedQuantity());
             } else {
                 // Make a shallow copy to avoid modifying the original
-                grouped.put(id,new Product(p.getProductId(),p.getProductDescription(),
-                        p.getProductImageName(),p.getUnitPrice(),p.getStockQuantity()));
+                Product copy = new Product(p.getProductId(),p.getProductDescription(),
+                        p.getProductImageName(),p.getUnitPrice(),p.getStockQuantity());
+                copy.setOrderedQuantity(p.getOrderedQuantity()); // the constructor defaults it to 1
+                grouped.put(id, copy);
             }
         }
         return new ArrayList<>(grouped.values());
     }
 
+    // Holds the product for this trolley; always succeeds without a ledger (stock is then checked at checkout)
+    private boolean reserve(Product product) {
+        return reservationLedger == null || reservationLedger.reserve(trolleyId, product.getProductId(),
+                product.getStockQuantity(), product.getOrderedQuantity());
+    }
+
+    // The stock a customer can still add to a trolley: on-hand stock minus the units held in trolleys
+    private int availableStock(Product product) {
+        if(reservationLedger == null) {
+            return product.getStockQuantity();
+        }
+        return reservationLedger.available(product.getProductId(), product.getStockQuantity());
+    }
+
     void cancel(){
+        if(checkoutInProgress){
+            displayLaSearchResult = "Please wait, your trolley is being checked out";
+            updateView();
+            return;
+        }
         trolley.clear();
+        if(reservationLedger != null) {
+            reservationLedger.releaseAll(trolleyId);
+        }
         displayTaTrolley="";
         // Close notifier window if it's showing
         if(removeProductNotifier != null) {
@@ -279,6 +438,11 @@ public class CustomerModel {
         
         // Remove products from trolley that match the insufficient product IDs
         trolley.removeIf(product -> idsToRemove.contains(product.getProductId()));
+        if(reservationLedger != null) {
+            for(String id : idsToRemove) {
+                reservationLedger.release(trolleyId, id); // no longer in the trolley, free the stock for others
+            }
+        }
     }
     
     /**
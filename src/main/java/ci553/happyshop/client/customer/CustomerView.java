@@ -17,6 +17,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * The CustomerView is separated into two sections by a line :
@@ -39,6 +40,8 @@ public class CustomerView  {
 
     TextField tfId; //for user input on the search page. Made accessible so it can be accessed or modified by CustomerModel
     TextField tfName; //for user input on the search page. Made accessible so it can be accessed by CustomerModel
+    private ListView<String> lvSuggestions; //type-ahead suggestions under the search box, hidden while empty
+    private Button btnSearch;
 
     //four controllers needs updating when program going on
     private ImageView ivProduct; //image area in searchPage
@@ -93,8 +96,17 @@ public class CustomerView  {
         tfName.setStyle(UIStyle.textFiledStyle);
         HBox hbName = new HBox(10, laName, tfName);
 
+        // suggestions for every keystroke in either field, clicking one searches for that product
+        lvSuggestions = new ListView<>();
+        lvSuggestions.setPrefHeight(100);
+        lvSuggestions.setVisible(false);
+        lvSuggestions.setManaged(false); // takes no space while hidden
+        lvSuggestions.setOnMouseClicked(event -> suggestionChosen());
+        tfId.textProperty().addListener((observable, oldText, newText) -> cusController.doSuggest(newText));
+        tfName.textProperty().addListener((observable, oldText, newText) -> cusController.doSuggest(newText));
+
         Label laPlaceHolder = new Label(  " ".repeat(15)); //create left-side spacing so that this HBox aligns with others in the layout.
-        Button btnSearch = new Button("Search");
+        btnSearch = new Button("Search");
         btnSearch.setStyle(UIStyle.buttonStyle);
         btnSearch.setOnAction(this::buttonClicked);
         Button btnAddToTrolley = new Button("Add to Trolley");
@@ -115,7 +127,7 @@ public class CustomerView  {
         HBox hbSearchResult = new HBox(5, ivProduct, lbProductInfo);
         hbSearchResult.setAlignment(Pos.CENTER_LEFT);
 
-        VBox vbSearchPage = new VBox(15, laPageTitle, hbId, hbName, hbBtns, hbSearchResult);
+        VBox vbSearchPage = new VBox(15, laPageTitle, hbId, hbName, lvSuggestions, hbBtns, hbSearchResult);
         vbSearchPage.setPrefWidth(COLUMN_WIDTH);
         vbSearchPage.setAlignment(Pos.TOP_CENTER);
         vbSearchPage.setStyle("-fx-padding: 15px;");
@@ -247,6 +259,24 @@ public class CustomerView  {
         }
     }
 
+    public void updateSuggestions(List<String> suggestions) {
+        lvSuggestions.getItems().setAll(suggestions);
+        lvSuggestions.setVisible(!suggestions.isEmpty());
+        lvSuggestions.setManaged(!suggestions.isEmpty());
+    }
+
+    // A suggestion looks like "0002 DAB Radio": search for its product ID
+    private void suggestionChosen() {
+        String chosen = lvSuggestions.getSelectionModel().getSelectedItem();
+        if (chosen == null) {
+            return;
+        }
+        tfName.clear();
+        tfId.setText(chosen.substring(0, chosen.indexOf(' ')));
+        updateSuggestions(List.of());
+        btnSearch.fire();
+    }
+
     // Replaces the last child of hbRoot with the specified page.
     // the last child is either vbTrolleyPage or vbReceiptPage.
     private void showTrolleyOrReceiptPage(Node pageToShow) {
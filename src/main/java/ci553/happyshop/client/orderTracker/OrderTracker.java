@@ -1,8 +1,12 @@
 package ci553.happyshop.client.orderTracker;
 
+import ci553.happyshop.orderManagement.OrderChange;
+import ci553.happyshop.orderManagement.OrderChangeObserver;
 import ci553.happyshop.orderManagement.OrderHub;
-import ci553.happyshop.orderManagement.OrderObserver;
 import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.orderManagement.OrderUpdateDispatcher;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
 import ci553.happyshop.utility.UIStyle;
 import ci553.happyshop.utility.WinPosManager;
 import javafx.geometry.Pos;
@@ -15,24 +19,26 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.io.IOException;
-import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 /**
  * OrderTracker class is for tracking orders and their states.
  * It displays an ordersMap(a list of orders with their associated states) in a TextArea.
- * The ordersMap data is received from the OrderHub.
+ * The ordersMap data is received from the OrderHub: the whole map once when the tracker registers,
+ * then only the orders that changed.
  */
 
-public class OrderTracker implements OrderObserver {
+public class OrderTracker implements OrderChangeObserver {
     private final int WIDTH = UIStyle.trackerWinWidth;
     private final int HEIGHT = UIStyle.trackerWinHeight;
 
     // TreeMap (orderID,state) holding order IDs and their corresponding states.
-    private static final TreeMap<Integer, OrderState> ordersMap = new TreeMap<>();
+    private final TreeMap<Long, OrderState> ordersMap = new TreeMap<>();
     private final TextArea taDisplay; //area to show all orderId and their state on the GUI
+    private final AsyncDatabaseRW asyncDatabaseRW = new AsyncDatabaseRW(DatabaseRWFactory.createDatabaseRW()); // restores stock off the JavaFX thread
+    private OrderUpdateDispatcher updateDispatcher; // delivers the OrderHub updates, null until registered
 
      //Constructor initializes the UI, a title Label, and a TextArea for displaying the order details.
     public OrderTracker() {
@@ -60,21 +66,25 @@ public class OrderTracker implements OrderObserver {
             try {
                 String orderIdText = tfOrderId.getText().trim();
                 if(!orderIdText.isEmpty()) {
-                    int orderId = Integer.parseInt(orderIdText);
+                    long orderId = Long.parseLong(orderIdText);
                     OrderHub orderHub = OrderHub.getOrderHub();
-                    boolean cancelled = orderHub.cancelOrder(orderId);
-                    if(cancelled) {
-                        tfOrderId.clear();
-                        System.out.println("Order " + orderId + " cancelled successfully");
-                    } else {
-                        System.out.println("Failed to cancel order " + orderId);
-                    }
+                    btnCancel.setDisable(true); // until the stock has been restored
+                    orderHub.cancelOrderAsync(orderId, asyncDatabaseRW).whenComplete((cancelled, error) -> {
+                        btnCancel.setDisable(false);
+                        if(error != null) {
+                            Throwable cause = AsyncDatabaseRW.causeOf(error);
+                            System.err.println("Error cancelling order: " + cause.getMessage());
+                            cause.printStackTrace();
+                        } else if(cancelled) {
+                            tfOrderId.clear();
+                            System.out.println("Order " + orderId + " cancelled successfully");
+                        } else {
+                            System.out.println("Failed to cancel order " + orderId);
+                        }
+                    });
                 }
             } catch(NumberFormatException ex) {
                 System.err.println("Invalid order ID format");
-            } catch(IOException | SQLException ex) {
-                System.err.println("Error cancelling order: " + ex.getMessage());
-                ex.printStackTrace();
             }
         });
         
@@ -98,10 +108,18 @@ public class OrderTracker implements OrderObserver {
     /**
      * Registers this OrderTracker instance with the OrderHub.
      * This allows the OrderTracker to receive updates on order state changes.
+     * The updates go through an OrderUpdateDispatcher, so the TextArea is rebuilt
+     * on the JavaFX thread, at most once per frame however many orders change.
      */
     public void registerWithOrderHub(){
         OrderHub orderHub = OrderHub.getOrderHub();
-        orderHub.registerOrderTracker(this);
+        updateDispatcher = new OrderUpdateDispatcher(this);
+        orderHub.registerObserver(updateDispatcher);
+    }
+
+    // the dispatcher of the OrderHub updates, to read its merged, dropped and frame counters; null until registered
+    public OrderUpdateDispatcher getUpdateDispatcher() {
+        return updateDispatcher;
     }
 
     /**
@@ -110,30 +128,49 @@ public class OrderTracker implements OrderObserver {
      * @deprecated Use updateOrderMap() instead (implements OrderObserver interface)
      */
     @Deprecated
-    public void setOrderMap(TreeMap<Integer, OrderState> om) {
+    public void setOrderMap(TreeMap<Long, OrderState> om) {
         updateOrderMap(om);
     }
 
     /**
      * Updates the order map with new data and refreshes the display.
-     * This method is called by OrderHub when order states are updated.
+     * This method is called by OrderHub with the snapshot when this tracker registers.
      * Implements the OrderObserver interface.
      * 
      * @param orderMap A TreeMap containing order IDs as keys and their current states as values
      */
     @Override
-    public void updateOrderMap(TreeMap<Integer, OrderState> orderMap) {
+    public void updateOrderMap(TreeMap<Long, OrderState> orderMap) {
         ordersMap.clear(); // Clears the current map to replace it with the new data.
         ordersMap.putAll(orderMap);// Adds all new order data to the map.
         displayOrderMap();// Updates the display with the new order map.
     }
 
+    /**
+     * Applies the changes to the order map and refreshes the display.
+     * This method is called by OrderHub when order states are updated.
+     * Implements the OrderChangeObserver interface.
+     *
+     * @param changes the changed orders; an order with no new state has been removed from the OrderHub
+     */
+    @Override
+    public void ordersChanged(List<OrderChange> changes) {
+        for (OrderChange change : changes) {
+            if (change.getNewState() == null) {
+                ordersMap.remove(change.getOrderId());
+            } else {
+                ordersMap.put(change.getOrderId(), change.getNewState());
+            }
+        }
+        displayOrderMap();
+    }
+
      //Displays the current order map in the TextArea.
      //Iterates over the ordersMap and formats each order ID and state for display.
     private void displayOrderMap() {
         StringBuilder sb = new StringBuilder();
-        for(Map.Entry<Integer, OrderState> entry : ordersMap.entrySet()) {
-            int orderId = entry.getKey();
+        for(Map.Entry<Long, OrderState> entry : ordersMap.entrySet()) {
+            long orderId = entry.getKey();
             OrderState orderState = entry.getValue();
             sb.append(orderId).append(" ".repeat(5)).append(orderState).append("\n");
         }
@@ -31,7 +31,7 @@ public class PickerClient extends Application {
         pickerController.pickerModel = pickerModel;
         pickerModel.setPickerView(pickerView);
 
-        pickerModel.registerWithOrderHub();
         pickerView.start(window);
+        pickerModel.registerWithOrderHub(); // after start(), the snapshot is shown straight away
     }
 }
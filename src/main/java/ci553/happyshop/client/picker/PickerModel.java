@@ -1,12 +1,21 @@
 package ci553.happyshop.client.picker;
 
+import ci553.happyshop.orderManagement.OrderChange;
+import ci553.happyshop.orderManagement.OrderChangeObserver;
 import ci553.happyshop.orderManagement.OrderHub;
-import ci553.happyshop.orderManagement.OrderObserver;
 import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.orderManagement.OrderUpdateDispatcher;
+import javafx.application.Platform;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * PickerModel represents the logic order picker.
@@ -15,15 +24,20 @@ import java.util.TreeMap;
  * 2. Notifying PickerView to Updates user interface.
  *
  * 1. Observing OrderHub.
- * PickerModel is an observer of  OrderHub, receiving orderMap from OrderHub.
+ * PickerModel is an observer of  OrderHub, receiving orderMap from OrderHub once when it registers,
+ * and then only the orders that changed (see OrderChangeObserver).
  * When a picker claims a task, PickerModel:
- * - Retrieves the first unlocked order from the orderMap.
- * - Locks the selected order to prevent other pickers from accessing it.
+ * - Claims the oldest waiting order from OrderHub, which locks it in the same step
+ *   so no other picker can get it.
  * - Notifies OrderHub to update the orderMap, and begin preparation of the order.
  *
+ * While the order is open, PickerModel renews the picker's lease on it every third of the lease TTL
+ * (a heartbeat). If the heartbeats stop, e.g. the picker's process is gone, OrderHub takes the order
+ * back when the lease expires, so it is never stuck in Progressing.
+ *
  * Once the order is collected by the customer, PickerModel:
- * - Unlocks the order.
- * - Notifies OrderHub to update the orderMap.
+ * - Notifies OrderHub to update the orderMap; OrderHub only collects the order if this picker
+ *   still holds it, and then unlocks it.
  * - Begins the next task if available.
  *
  * All changes in order state are centralized through OrderHub to ensure synchronization.
@@ -39,9 +53,21 @@ import java.util.TreeMap;
  * in response to centralized changes made by the OrderHub.
  */
 
-public class PickerModel implements OrderObserver {
+public class PickerModel implements OrderChangeObserver {
+    private static final AtomicInteger pickerCount = new AtomicInteger();
+    // Pickers are numbered in the order they are created, so a restarted client gets the same IDs back and
+    // resumes the orders it was picking; give each process its own prefix with -Dhappyshop.picker.idPrefix=...
+    private static final String pickerIdPrefix = System.getProperty("happyshop.picker.idPrefix", "picker");
+    // sends the lease heartbeats of every picker
+    private static final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "picker-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private PickerView pickerView;
     private OrderHub orderHub = OrderHub.getOrderHub();
+    private final String pickerId = pickerIdPrefix + "-" + pickerCount.incrementAndGet(); // holds the orders this picker claims
 
     /**
      * Sets the PickerView for this model.
@@ -65,89 +91,178 @@ public class PickerModel implements OrderObserver {
 
     // TreeMap (orderID,state) holding order IDs and their corresponding states.
     // This is now instance-level (not static) and is updated via OrderHub notifications.
-    private TreeMap<Integer, OrderState> orderMap = new TreeMap<>();
+    private TreeMap<Long, OrderState> orderMap = new TreeMap<>();
 
-    private int theOrderId=0; //Order ID assigned to a picker;
+    private long theOrderId=0; //Order ID assigned to a picker;
                               // 0 means no order is currently assigned.
     private OrderState theOrderState;
+    private ScheduledFuture<?> heartbeat; // renews the lease on theOrderId, null if no order is assigned
+    private OrderUpdateDispatcher updateDispatcher; // delivers the OrderHub updates, null until registered
 
     /**
-     * Attempts to find an unlocked order for this picker and mark it as progressing.
-     * The order will be locked to prevent other pickers from accessing it.
-     * Only the first unlocked order found will be processed.
+     * Claims the oldest waiting order for this picker and marks it as progressing.
+     * The order is locked by the claim itself, so no other picker can get it.
      * 
      * Locking is now handled by OrderHub to ensure thread safety across all picker instances.
      */
     public void doProgressing() throws IOException {
-        // Use OrderHub to get the first unlocked order
-        Integer orderId = orderHub.getFirstUnlockedOrder(OrderState.Ordered);
+        Long orderId = orderHub.claimNext(pickerId); // finds and locks the order in one step
         
         if (orderId != null) {
-            // Try to lock the order through OrderHub
-            if (orderHub.lockOrder(orderId)) {
-                theOrderId = orderId; // Save the assigned orderId to this picker and update its state
-                theOrderState = OrderState.Progressing;
-                notifyOrderHub();// Notify the OrderHub about the state change
+            theOrderId = orderId; // Save the assigned orderId to this picker and update its state
+            theOrderState = OrderState.Progressing;
+            if (notifyOrderHub()) { // Notify the OrderHub about the state change
+                startHeartbeat(orderId);
                 updatePickerView(); // Refresh picker view
+            } else { // the order was cancelled in the meantime
+                orderHub.unlockOrder(orderId, pickerId);
+                theOrderId = 0;
             }
-            // If locking failed (shouldn't happen since we checked, but handle gracefully)
+        }
+    }
+
+    // the ID this picker claims orders with
+    public String getPickerId() {
+        return pickerId;
+    }
+
+    // renews the lease on the order every third of the TTL, so two heartbeats can be lost before it expires
+    private synchronized void startHeartbeat(long orderId) {
+        long period = Math.max(1, orderHub.getLeaseTtlMillis() / 3);
+        heartbeat = heartbeatScheduler.scheduleAtFixedRate(() -> {
+            if (!orderHub.renewLease(orderId, pickerId)) {
+                stopHeartbeat();
+                Platform.runLater(() -> orderReclaimed(orderId));
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+    }
+
+    // on the JavaFX thread: the lease expired before the order was collected, OrderHub has taken it back
+    private void orderReclaimed(long orderId) {
+        if (theOrderId == orderId) {
+            theOrderId = 0;
+            displayTaOrderDetail = "Order " + orderId + " was returned to the waiting orders, its lease expired.";
+            updatePickerView();
         }
     }
 
     public void doCollected() throws IOException {
-        if(theOrderId != 0 && orderHub.isOrderLocked(theOrderId)){
+        if(theOrderId != 0){
+            long orderId = theOrderId;
             theOrderState = OrderState.Collected;
-            notifyOrderHub(); // Notify the OrderHub about the state change
-            displayTaOrderDetail = "";
-            updatePickerView(); // update picker view
-            int orderIdToUnlock = theOrderId; // Save before resetting
-            theOrderId = 0;  //reset to no order is with the picker
-            orderHub.unlockOrder(orderIdToUnlock); // Unlock the order through OrderHub
+            // OrderHub checks that this picker still holds the order, and unlocks it once it is collected
+            if (notifyOrderHub()) {
+                stopHeartbeat();
+                theOrderId = 0;  //reset to no order is with the picker
+                displayTaOrderDetail = "";
+                updatePickerView(); // update picker view
+            } else if (!pickerId.equals(orderHub.getLockHolder(orderId))) { // the lease expired, the order was taken back
+                stopHeartbeat();
+                orderReclaimed(orderId);
+            } else {
+                theOrderState = OrderState.Progressing; // still this picker's order, e.g. the order store failed
+            }
         }
     }
 
     // Registers this PickerModel instance with the OrderHub
     //so it can receive updates about orderMap changes.
+    //The updates go through an OrderUpdateDispatcher, so they arrive on the JavaFX thread, at most once per frame.
     public void registerWithOrderHub(){
         OrderHub orderHub = OrderHub.getOrderHub();
-        orderHub.registerPickerModel(this);
+        updateDispatcher = new OrderUpdateDispatcher(this);
+        orderHub.registerObserver(updateDispatcher);
+        resumeClaimedOrder();
+    }
+
+    // the dispatcher of the OrderHub updates, to read its merged, dropped and frame counters; null until registered
+    public OrderUpdateDispatcher getUpdateDispatcher() {
+        return updateDispatcher;
+    }
+
+    // Takes back the order this picker was picking when the system stopped, if its lease is still running.
+    private void resumeClaimedOrder() {
+        try {
+            Long orderId = orderHub.resumeClaim(pickerId);
+            if (orderId != null) {
+                theOrderId = orderId;
+                theOrderState = OrderState.Progressing;
+                displayTaOrderDetail = orderHub.getOrderDetailForPicker(orderId);
+                startHeartbeat(orderId);
+                updatePickerView();
+            }
+        } catch (IOException e) {
+            System.out.println("Error resuming the order of " + pickerId + ": " + e.getMessage());
+        }
     }
 
     //Notifies the OrderHub of a change in the order state.
     //If the order is moving to the 'Progressing' state, asks OrderHub to read the order detail
     // from the file system for displaying in the pickerView.
-    private void notifyOrderHub() throws IOException {
-        orderHub.changeOrderStateMoveFile(theOrderId, theOrderState);
+    //Returns false if OrderHub refused the change, e.g. another caller changed the order first,
+    //or this picker no longer holds the order.
+    private boolean notifyOrderHub() throws IOException {
+        if (!orderHub.changeOrderStateMoveFile(theOrderId, theOrderState, pickerId)) {
+            return false;
+        }
         if (theOrderState == OrderState.Progressing) {
             // Read order file, ie. order details
             displayTaOrderDetail = orderHub.getOrderDetailForPicker(theOrderId);
         }
+        return true;
     }
 
     // Sets the order map with new data and refreshes the display.
     // This method is called by OrderHub to set orderMap for picker.
     // @deprecated Use updateOrderMap() instead (implements OrderObserver interface)
     @Deprecated
-    public void setOrderMap(TreeMap<Integer,OrderState> om) {
+    public void setOrderMap(TreeMap<Long,OrderState> om) {
         updateOrderMap(om);
     }
 
     /**
      * Updates the order map with new data and refreshes the display.
-     * This method is called by OrderHub when order states are updated.
+     * This method is called by OrderHub with the snapshot when this picker registers.
      * Implements the OrderObserver interface.
      * 
      * @param orderMap A TreeMap containing order IDs as keys and their current states as values.
      *                 For pickers, this map is filtered to only include Ordered and Progressing orders.
      */
     @Override
-    public void updateOrderMap(TreeMap<Integer, OrderState> orderMap) {
+    public void updateOrderMap(TreeMap<Long, OrderState> orderMap) {
         this.orderMap.clear();
         this.orderMap.putAll(orderMap);
         displayTaOrderMap = buildOrderMapString();
         updatePickerView();
     }
 
+    /**
+     * Applies the changes to the order map and refreshes the display.
+     * This method is called by OrderHub when order states are updated.
+     * Implements the OrderChangeObserver interface.
+     *
+     * @param changes the changed orders; an order with no new state is no longer Ordered or Progressing
+     */
+    @Override
+    public void ordersChanged(List<OrderChange> changes) {
+        for (OrderChange change : changes) {
+            if (change.getNewState() == null) {
+                orderMap.remove(change.getOrderId());
+            } else {
+                orderMap.put(change.getOrderId(), change.getNewState());
+            }
+        }
+        displayTaOrderMap = buildOrderMapString();
+        updatePickerView();
+    }
+
     /**
      * Returns the order states that this picker is interested in.
      * Pickers only need to see orders in "Ordered" or "Progressing" states.
@@ -163,8 +278,8 @@ public class PickerModel implements OrderObserver {
     //Each line contains the order ID followed by its state, aligned with spacing.
     private String buildOrderMapString() {
         StringBuilder sb = new StringBuilder();
-        for(Map.Entry<Integer, OrderState> entry : orderMap.entrySet()) {
-            int orderId = entry.getKey();
+        for(Map.Entry<Long, OrderState> entry : orderMap.entrySet()) {
+            long orderId = entry.getKey();
             OrderState orderState = entry.getValue();
             sb.append(orderId).append(" ".repeat(8)).append(orderState).append("\n");
         }
@@ -36,6 +36,7 @@ public class WarehouseClient extends Application {
         controller.model = model;
         model.setView(view);
         model.setDatabaseRW(databaseRW);
+        model.watchCatalogue(DatabaseRWFactory.getCatalogueFeed()); // keeps the search results current
         view.start(window);
 
         HistoryWindow historyWindow = new HistoryWindow();
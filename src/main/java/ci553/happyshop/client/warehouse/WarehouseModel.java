@@ -1,6 +1,9 @@
 package ci553.happyshop.client.warehouse;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
+import ci553.happyshop.storageAccess.CatalogueChange;
+import ci553.happyshop.storageAccess.CatalogueFeed;
 import ci553.happyshop.storageAccess.DatabaseRW;
 import ci553.happyshop.storageAccess.DerbyRW;
 import ci553.happyshop.storageAccess.ImageFileManager;
@@ -15,11 +18,20 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class WarehouseModel {
     private WarehouseView view;
     private DatabaseRW databaseRW; //Interface type, not specific implementation
                          //Benefits: Flexibility: Easily change the database implementation.
+    private AsyncDatabaseRW asyncDatabaseRW; // runs the database calls off the JavaFX thread
+    private CompletableFuture<ArrayList<Product>> pendingSearch; // cancelled when a newer search starts
+    private CatalogueFeed.Subscription catalogueSubscription; // keeps the search results current
 
     private ArrayList<Product> productList = new ArrayList<>(); // search results fetched from the database
     private Product theSelectedPro; // the product selected from the ListView before the user edits or deletes
@@ -57,6 +69,16 @@ public class WarehouseModel {
      */
     public void setDatabaseRW(DatabaseRW databaseRW) {
         this.databaseRW = databaseRW;
+        this.asyncDatabaseRW = new AsyncDatabaseRW(databaseRW);
+    }
+
+    /**
+     * Sets the AsyncDatabaseRW for this model, e.g. one delivering results on the calling thread in tests.
+     * @param asyncDatabaseRW the AsyncDatabaseRW instance
+     */
+    public void setAsyncDatabaseRW(AsyncDatabaseRW asyncDatabaseRW) {
+        this.asyncDatabaseRW = asyncDatabaseRW;
+        this.databaseRW = asyncDatabaseRW.getDatabaseRW();
     }
 
     /**
@@ -67,6 +89,30 @@ public class WarehouseModel {
         return databaseRW;
     }
 
+    /**
+     * Subscribes to the catalogue feed, so the search results shown follow the changes made by
+     * other clients (edits, deletes, checkouts) without searching again.
+     * @param catalogueFeed the CatalogueFeed, e.g. DatabaseRWFactory.getCatalogueFeed()
+     */
+    public void watchCatalogue(CatalogueFeed catalogueFeed) {
+        try {
+            catalogueSubscription = catalogueFeed.subscribe(catalogueFeed.currentVersion(),
+                    changes -> asyncDatabaseRW.getUiExecutor().execute(() -> doApplyCatalogueChanges(changes)));
+        } catch (SQLException e) {
+            System.out.println("Catalogue feed not available, search again to refresh: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops following the catalogue feed.
+     */
+    public void stopWatchingCatalogue() {
+        if (catalogueSubscription != null) {
+            catalogueSubscription.close();
+            catalogueSubscription = null;
+        }
+    }
+
     /**
      * Sets the HistoryWindow for this model.
      * @param historyWindow the HistoryWindow instance
@@ -206,62 +252,144 @@ public class WarehouseModel {
         ShowInputErrorMsg
     }
 
-    void doSearch() throws SQLException {
+    // The database calls below run on a background thread (see AsyncDatabaseRW),
+    // their callbacks run on the JavaFX thread and update the view.
+
+    CompletableFuture<Void> doSearch() {
         String keyword = getView().tfSearchKeyword.getText().trim();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true); // only the latest search is shown
+        }
         if (!keyword.equals("")) {
-            productList = getDatabaseRW().searchProduct(keyword);
+            CompletableFuture<ArrayList<Product>> searching = asyncDatabaseRW.searchProduct(keyword);
+            pendingSearch = searching;
+            return searching.handle((products, error) -> {
+                if (searching.isCancelled()) {
+                    return null; // a newer search has taken over the view
+                }
+                pendingSearch = null;
+                if (error != null) {
+                    showDatabaseError("searching products", error);
+                } else {
+                    productList = products;
+                    updateView(UpdateForAction.BtnSearch);
+                }
+                return null;
+            });
         }
         else{
             productList.clear();
             System.out.println("please type product ID or name to search");
         }
         updateView(UpdateForAction.BtnSearch);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Applies catalogue changes to the search results: the listed products that changed are read again
+     * by ID, and the deleted ones removed. Changes to products that are not listed are ignored.
+     * Runs on the JavaFX thread, like the other callbacks.
+     *
+     * @param changes the changes pushed by the CatalogueFeed
+     * @return a future completed once the list is updated
+     */
+    CompletableFuture<Void> doApplyCatalogueChanges(List<CatalogueChange> changes) {
+        Set<String> listedIds = new HashSet<>();
+        for (Product product : productList) {
+            listedIds.add(product.getProductId());
+        }
+        Set<String> changedIds = new HashSet<>();
+        for (CatalogueChange change : changes) {
+            if (listedIds.contains(change.getProductId())) {
+                changedIds.add(change.getProductId());
+            }
+        }
+        if (changedIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return asyncDatabaseRW.submit(db -> {
+            Map<String, Product> current = new HashMap<>(); // null value = deleted
+            for (String productId : changedIds) {
+                current.put(productId, db.searchByProductId(productId));
+            }
+            return current;
+        }).handle((current, error) -> {
+            if (error != null) {
+                System.err.println("Error refreshing search results: " + AsyncDatabaseRW.causeOf(error).getMessage());
+                return null;
+            }
+            ArrayList<Product> refreshed = new ArrayList<>();
+            for (Product product : productList) { // keeps the order of the search
+                if (!current.containsKey(product.getProductId())) {
+                    refreshed.add(product);
+                } else if (current.get(product.getProductId()) != null) {
+                    refreshed.add(current.get(product.getProductId()));
+                }
+            }
+            productList = refreshed;
+            updateView(UpdateForAction.BtnSearch);
+            return null;
+        });
     }
 
     /**
      * Scans all products for low stock conditions and displays alerts.
      * This method checks all products in the database and shows alerts for
      * products that are out of stock or below the low stock threshold.
+     * Only the products needing an alert are read from the database (indexed inStock column).
+     *
+     * @return a future with the products needing an alert, or failed with the SQLException
      */
-    void doCheckLowStock() throws SQLException {
-        try {
-            ArrayList<Product> allProducts = getDatabaseRW().getAllProducts();
-            String alertMsg = StockAlertService.generateCombinedAlertMessage(allProducts);
-            
+    CompletableFuture<ArrayList<Product>> doCheckLowStock() {
+        return asyncDatabaseRW.submit(db -> db.findProductsBelowStock(StockAlertService.DEFAULT_LOW_STOCK_THRESHOLD)
+        ).whenComplete((alertProducts, error) -> {
+            if (error != null) {
+                System.err.println("Error checking low stock: " + AsyncDatabaseRW.causeOf(error).getMessage());
+                if(getAlertSimulator() != null) {
+                    getAlertSimulator().showErrorMsg("Error checking stock levels: " + AsyncDatabaseRW.causeOf(error).getMessage());
+                }
+                return;
+            }
+            String alertMsg = StockAlertService.generateCombinedAlertMessage(alertProducts);
+
             if(alertMsg != null && getAlertSimulator() != null) {
                 getAlertSimulator().showErrorMsg(alertMsg);
             } else if(getAlertSimulator() != null) {
                 getAlertSimulator().showErrorMsg("✅ All products have sufficient stock!\n\nNo low stock alerts at this time.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error checking low stock: " + e.getMessage());
-            if(getAlertSimulator() != null) {
-                getAlertSimulator().showErrorMsg("Error checking stock levels: " + e.getMessage());
-            }
-            throw e;
-        }
+        });
     }
 
-    void doDelete() throws SQLException, IOException {
+    CompletableFuture<Void> doDelete() {
         System.out.println("delete gets called in model");
         Product pro  = getView().obrLvProducts.getSelectionModel().getSelectedItem();
         if (pro != null ) {
-            theSelectedPro = pro;
-            productList.remove(theSelectedPro); //remove the product from product List
-
             //update databse: delete the product from database
-            getDatabaseRW().deleteProduct(theSelectedPro.getProductId());
-
-            //delete the image from imageFolder "images/"
-            String imageName = theSelectedPro.getProductImageName(); //eg 0011.jpg;
-            ImageFileManager.deleteImageFile(StorageLocation.imageFolder, imageName);
+            return asyncDatabaseRW.deleteProduct(pro.getProductId()).handle((ignored, error) -> {
+                if (error != null) {
+                    showDatabaseError("deleting " + pro.getProductId(), error);
+                    return null;
+                }
+                theSelectedPro = pro;
+                productList.remove(theSelectedPro); //remove the product from product List
+
+                //delete the image from imageFolder "images/"
+                String imageName = theSelectedPro.getProductImageName(); //eg 0011.jpg;
+                try {
+                    ImageFileManager.deleteImageFile(StorageLocation.imageFolder, imageName);
+                } catch (IOException e) {
+                    System.err.println("Could not delete image " + imageName + ": " + e.getMessage());
+                }
 
-            updateView(UpdateForAction.BtnDelete);
-            theSelectedPro = null;
+                updateView(UpdateForAction.BtnDelete);
+                theSelectedPro = null;
+                return null;
+            });
         }
         else{
             System.out.println("No product was selected");
         }
+        return CompletableFuture.completedFuture(null);
     }
 
     void doEdit() {
@@ -297,16 +425,17 @@ public class WarehouseModel {
            theNewProId = null;
        }
     }
-    void doSummit() throws SQLException, IOException {
+    CompletableFuture<Void> doSummit() throws IOException {
         if(getView().theProFormMode.equals("EDIT")){
-            doSubmitEdit();
+            return doSubmitEdit();
         }
         if(getView().theProFormMode.equals("NEW")){
-            doSubmitNew();
+            return doSubmitNew();
         }
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void doSubmitEdit() throws IOException, SQLException {
+    private CompletableFuture<Void> doSubmitEdit() throws IOException {
         System.out.println("ok edit is called");
         if(theSelectedPro!=null) {
             String id=theSelectedPro.getProductId();
@@ -335,19 +464,32 @@ public class WarehouseModel {
             else {
                 double price = Double.parseDouble(textPrice);
                 int stock= Integer.parseInt(textStock);
-                //update datbase
-                getDatabaseRW().updateProduct(id,description,price,imageName,stock);
-
-                // Check for low stock alert after update
-                checkAndShowStockAlert(id);
-
-                updateView(UpdateForAction.BtnSummitEdit);
-                theSelectedPro=null;
+                String newImageName = imageName;
+                Product edited = theSelectedPro;
+                //update datbase, and read the product back for the low stock check in the same background call
+                return asyncDatabaseRW.submitWrite(db -> {
+                    db.updateProduct(id,description,price,newImageName,stock);
+                    return StockAlertService.generateAlertMessage(db.searchByProductId(id));
+                }).handle((alertMsg, error) -> {
+                    if (error != null) {
+                        showDatabaseError("updating " + id, error);
+                        return null;
+                    }
+                    // Check for low stock alert after update
+                    if(alertMsg != null && getAlertSimulator() != null) {
+                        getAlertSimulator().showErrorMsg(alertMsg);
+                    }
+                    theSelectedPro = edited;
+                    updateView(UpdateForAction.BtnSummitEdit);
+                    theSelectedPro=null;
+                    return null;
+                });
             }
         }
         else{
             System.out.println("No Product Selected");
         }
+        return CompletableFuture.completedFuture(null);
     }
 
     void doChangeStockBy(String addOrSub) throws SQLException {
@@ -394,42 +536,64 @@ public class WarehouseModel {
         return true;
     }
 
-    private void doSubmitNew() throws SQLException, IOException {
+    private CompletableFuture<Void> doSubmitNew() {
         System.out.println("Adding new Pro in model");
 
         //all info(input from user) about the new product
-        theNewProId = getView().tfIdNewPro.getText().trim();
+        String newProId = getView().tfIdNewPro.getText().trim();
         String textPrice = getView().tfPriceNewPro.getText().trim();
         String textStock = getView().tfStockNewPro.getText().trim();
         String description = getView().taDescriptionNewPro.getText().trim();
         String iPath = getView().imageUriNewPro; //image Path from the imageChooser in View class
 
-        //validate input using ValidationService
-        ValidationService.ValidationResult validationResult = ValidationService.validateNewProduct(
-            theNewProId, textPrice, textStock, description, iPath, getDatabaseRW());
-        if (!validationResult.isValid()) {
-            displayInputErrorMsg = validationResult.getErrorMessage();
-            updateView(UpdateForAction.ShowInputErrorMsg);
-        } else {
+        //validate input using ValidationService, it checks in the database that the ID is not taken
+        return asyncDatabaseRW.submit(db -> ValidationService.validateNewProduct(
+            newProId, textPrice, textStock, description, iPath, db)
+        ).thenCompose(validationResult -> {
+            if (!validationResult.isValid()) {
+                displayInputErrorMsg = validationResult.getErrorMessage();
+                updateView(UpdateForAction.ShowInputErrorMsg);
+                return CompletableFuture.completedFuture(null);
+            }
             // Handle image: if user selected an image, copy it; otherwise use default image
             String imageNameWithExtension;
             if (iPath != null && !iPath.trim().isEmpty()) {
                 // User selected an image - copy it to project image folder using productId as image name
                 // and get the image extension from the source image
-                imageNameWithExtension = ImageFileManager.copyFileToDestination(getView().imageUriNewPro, StorageLocation.imageFolder, theNewProId);
+                try {
+                    imageNameWithExtension = ImageFileManager.copyFileToDestination(iPath, StorageLocation.imageFolder, newProId);
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
             } else {
                 // No image selected - use default image name (productId.jpg)
-                imageNameWithExtension = theNewProId + ".jpg";
+                imageNameWithExtension = newProId + ".jpg";
             }
-            
+
             double price = Double.parseDouble(textPrice);
             int stock = Integer.parseInt(textStock);
 
             //insertNewProduct to databse (String id, String des,double price,String image,int stock)
             //a record in databse looks like ('0001', '40 inch TV', 269.00,'0001.jpg',100)"
-            getDatabaseRW().insertNewProduct(theNewProId,description,price,imageNameWithExtension,stock);
-            updateView(UpdateForAction.BtnSummitNew);
-            theNewProId = null;
+            return asyncDatabaseRW.insertNewProduct(newProId,description,price,imageNameWithExtension,stock)
+                    .thenRun(() -> {
+                        theNewProId = newProId;
+                        updateView(UpdateForAction.BtnSummitNew);
+                        theNewProId = null;
+                    });
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                showDatabaseError("adding " + newProId, error);
+            }
+        });
+    }
+
+    // Shows a failed background database call in the alertSimulator
+    private void showDatabaseError(String action, Throwable error) {
+        String message = "Error " + action + ": " + AsyncDatabaseRW.causeOf(error).getMessage();
+        System.err.println(message);
+        if (getAlertSimulator() != null) {
+            getAlertSimulator().showErrorMsg(message);
         }
     }
 
@@ -502,21 +666,4 @@ public class WarehouseModel {
         getHistoryWindow().showManageHistory(displayManageHistory);
     }
 
-    /**
-     * Checks a product for low stock conditions and shows an alert if needed.
-     * This method is called after stock updates to proactively alert warehouse staff.
-     * 
-     * @param productId The product ID to check
-     */
-    private void checkAndShowStockAlert(String productId) {
-        try {
-            String alertMsg = StockAlertService.checkProductAndGenerateAlert(productId);
-            if(alertMsg != null && getAlertSimulator() != null) {
-                getAlertSimulator().showErrorMsg(alertMsg);
-            }
-        } catch (SQLException e) {
-            System.err.println("Error checking stock alert for product " + productId + ": " + e.getMessage());
-        }
-    }
-
 }
@@ -8,7 +8,7 @@ package ci553.happyshop.exception;
  */
 public class OrderException extends HappyShopException {
     
-    private final int orderId;
+    private final long orderId;
     
     /**
      * Constructs a new OrderException with the specified detail message.
@@ -26,7 +26,7 @@ public class OrderException extends HappyShopException {
      * @param message the detail message
      * @param orderId the order ID related to this exception
      */
-    public OrderException(String message, int orderId) {
+    public OrderException(String message, long orderId) {
         super(message + " (Order ID: " + orderId + ")");
         this.orderId = orderId;
     }
@@ -49,7 +49,7 @@ public class OrderException extends HappyShopException {
      * @param orderId the order ID related to this exception
      * @param cause the cause (which is saved for later retrieval by the getCause() method)
      */
-    public OrderException(String message, int orderId, Throwable cause) {
+    public OrderException(String message, long orderId, Throwable cause) {
         super(message + " (Order ID: " + orderId + ")", cause);
         this.orderId = orderId;
     }
@@ -59,7 +59,7 @@ public class OrderException extends HappyShopException {
      * 
      * @return the order ID, or 0 if not specified
      */
-    public int getOrderId() {
+    public long getOrderId() {
         return orderId;
     }
 }
@@ -0,0 +1,40 @@
+package ci553.happyshop.orderManagement;
+
+/**
+ * One change to the order map in OrderHub, as sent to an OrderChangeObserver.
+ *
+ * - A new order has no old state: (12, null, Ordered)
+ * - A state change has both states: (12, Ordered, Progressing)
+ * - An order removed from the map (or moved out of the states the observer is interested in)
+ *   has no new state: (12, Collected, null)
+ *
+ * OrderChange is immutable, so the same object can be handed to several observers.
+ */
+public class OrderChange {
+    private final long orderId;
+    private final OrderState oldState; // null if the order was not in the map before
+    private final OrderState newState; // null if the order has left the map
+
+    public OrderChange(long orderId, OrderState oldState, OrderState newState) {
+        this.orderId = orderId;
+        this.oldState = oldState;
+        this.newState = newState;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public OrderState getOldState() {
+        return oldState;
+    }
+
+    public OrderState getNewState() {
+        return newState;
+    }
+
+    @Override
+    public String toString() {
+        return "Order " + orderId + ": " + oldState + " -> " + newState;
+    }
+}
@@ -0,0 +1,30 @@
+package ci553.happyshop.orderManagement;
+
+import java.util.List;
+
+/**
+ * An OrderObserver that is sent the changes to the order map instead of the whole map.
+ *
+ * When it is registered with OrderHub.registerObserver(), the observer receives one snapshot of the
+ * orders it is interested in through updateOrderMap(). From then on every change arrives through
+ * ordersChanged(), so a notification costs O(changes) instead of O(orders), however many orders are open.
+ *
+ * The changes are filtered by getInterestedStates(): a state the observer is not interested in is
+ * sent as null, so an order moving from Progressing to Collected reaches a picker as (id, Progressing, null),
+ * meaning "remove it from your view". Changes the observer cannot see at all are not sent.
+ *
+ * OrderHub sends the snapshot and the changes one notification at a time, in the order they happened,
+ * so applying each change to the snapshot always gives the current orders.
+ *
+ * @see OrderChange
+ * @see OrderHub
+ */
+public interface OrderChangeObserver extends OrderObserver {
+
+    /**
+     * Called by OrderHub after one or more orders have changed.
+     *
+     * @param changes the changes, in the order they happened; never empty
+     */
+    void ordersChanged(List<OrderChange> changes);
+}
@@ -4,19 +4,27 @@ import ci553.happyshop.utility.StorageLocation;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * OrderCounter is responsible for generating unique, sequential orderIDs for new orders.
  *
  * <p>This class manages a persistent counter stored in an external text file:(ie,"orders/orderCounter.txt").
  * On first use, it creates the file and starts the counter at 1.
- * For subsequent calls, it reads the current number, increments it by 1, writes the updated value
- * back to the file, and returns the new order ID.</p>
+ * The file holds the last order ID handed out by any process.</p>
+ *
+ * <p>Order IDs are reserved in blocks: the file is locked once per block (1000 IDs by default,
+ * -Dhappyshop.orders.idBlockSize=...) instead of once per order. The counter is moved past the whole
+ * block, and the IDs of the block are then handed out from memory with an AtomicLong, so checkouts
+ * do not queue on the file lock. IDs are unique across processes, since each process reserves its own blocks,
+ * but they are no longer strictly in order of creation between processes, and the IDs left in a block when
+ * the process stops are never used (gaps are acceptable). A block size of 1 reserves one ID per order, as before.</p>
  *
  * <p>File access is synchronized using a file lock to ensure safe operation in a multi-threaded
  * or multi-process environment. The method is simple to use by OrderHub
@@ -29,53 +37,132 @@ import java.nio.channels.FileLock;
  * <p> ByteBuffer allows you to work with raw byte data efficiently.
  * It interacts directly with FileChannel for reading and writing,
  * making file access faster and more flexible than traditional streams.</p>
+ *
+ * <p>generateOrderId() is the entry point used by OrderHub. With -Dhappyshop.orders.idScheme=snowflake
+ * it hands out the time-ordered IDs of a SnowflakeIdGenerator instead (node ID from -Dhappyshop.orders.nodeId),
+ * which never touch the counter file.</p>
  */
 
-public class OrderCounter {
+public class OrderCounter implements OrderIdGenerator {
+
+    // "counter" (default) for sequential IDs from the counter file, or "snowflake" for 64-bit time-ordered IDs
+    public static String idScheme = System.getProperty("happyshop.orders.idScheme", "counter");
+    // How many order IDs are reserved under the file lock at a time
+    public static int idBlockSize = Integer.getInteger("happyshop.orders.idBlockSize", 1000);
+    // The node ID of this process for the snowflake scheme, unique among the processes sharing the orders folder
+    public static int nodeId = Integer.getInteger("happyshop.orders.nodeId", 0);
+
+    private static OrderIdGenerator orderIdGenerator; // shared by OrderHub, created on first use
+    // A FileLock is held by the whole JVM, so two counters of one JVM must not lock at the same time
+    private static final Object jvmFileLock = new Object();
+
+    private final Path path;
+    private final int blockSize;
+    private volatile Block block = new Block(1, 1); // empty, the first call reserves a block
+
+    public OrderCounter(Path path, int blockSize) {
+        this.path = path;
+        this.blockSize = blockSize;
+    }
+
+    // the unique orderId of a new order, from the generator selected by idScheme
+    public static long generateOrderId() throws IOException {
+        OrderIdGenerator generator;
+        synchronized (OrderCounter.class) {
+            if (orderIdGenerator == null) {
+                if ("snowflake".equals(idScheme)) {
+                    orderIdGenerator = new SnowflakeIdGenerator(nodeId);
+                } else {
+                    orderIdGenerator = new OrderCounter(StorageLocation.orderCounterPath, idBlockSize);
+                }
+            }
+            generator = orderIdGenerator;
+        }
+        return generator.nextId();
+    }
+
+    /**
+     * Returns the next order ID of the current block, reserving a new block when it is used up.
+     * Only the thread that finds the block used up touches the file; the others wait for it.
+     */
+    public long nextId() throws IOException {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return id;
+            }
+            synchronized (this) {
+                if (block == current) { // not already replaced by another thread
+                    block = reserveBlock();
+                }
+            }
+        }
+    }
 
-    public static int generateOrderId() throws IOException {
-        Path path = StorageLocation.orderCounterPath;
-        
+    // moves the counter file past the next blockSize IDs, under the file lock, and returns them as a block
+    private Block reserveBlock() throws IOException {
         // Ensure the directory exists
         Path parentDir = path.getParent();
         if (parentDir != null && !Files.exists(parentDir)) {
             Files.createDirectories(parentDir);
             System.out.println("Created directory: " + parentDir);
         }
-        
+
         // Create the file with initial value "0" if it doesn't exist
         if (!Files.exists(path)) {
-            Files.writeString(path, "0", StandardOpenOption.CREATE_NEW);
-            System.out.println("Created orderCounter file: " + path);
+            try {
+                Files.writeString(path, "0", StandardOpenOption.CREATE_NEW);
+                System.out.println("Created orderCounter file: " + path);
+            } catch (FileAlreadyExistsException e) {
+                // created by another process in the meantime
+            }
         }
 
-        // Lock and increment the ID
-        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
-             FileLock lock = channel.lock()) {
-
-            //creates a ByteBuffer of the same size as the file — so you can read the whole thing.
-            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
-            channel.read(buffer); //Reads the file content into the buffer.
-            buffer.flip(); //Prepares the buffer for reading.
-            /** why we must buffer.flip();
-             * After reading data into the buffer,
-             * the cursor (position) is at the end of the data that was just read, not before it.
-             * If you want to read the data you've just written into the buffer,
-             * you need to move the cursor back to the start of the buffer so that you can read from it
-             */
-
-            //Gets the raw byte array from the buffer so you can convert it to a string or number.
-            String content = new String(buffer.array()).trim();
-            int currentId = Integer.parseInt(content);
-            int newId = currentId + 1;
-
-            channel.position(0); // Move to the start of the file
-            channel.truncate(0); // Clear all content in the file (file size becomes 0)
-            //This wraps an existing byte array into a buffer — so you can write it with channel.write().
-            channel.write(ByteBuffer.wrap(String.valueOf(newId).getBytes()));
-
-            System.out.println("OrderId was generated for now: " + newId);
-            return newId;
+        // Lock and move the counter past the block
+        synchronized (jvmFileLock) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                 FileLock lock = channel.lock()) {
+
+                //creates a ByteBuffer of the same size as the file — so you can read the whole thing.
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                channel.read(buffer); //Reads the file content into the buffer.
+                buffer.flip(); //Prepares the buffer for reading.
+                /** why we must buffer.flip();
+                 * After reading data into the buffer,
+                 * the cursor (position) is at the end of the data that was just read, not before it.
+                 * If you want to read the data you've just written into the buffer,
+                 * you need to move the cursor back to the start of the buffer so that you can read from it
+                 */
+
+                //Gets the raw byte array from the buffer so you can convert it to a string or number.
+                String content = new String(buffer.array()).trim();
+                long currentId = content.isEmpty() ? 0 : Long.parseLong(content);
+                long lastId = Math.addExact(currentId, blockSize);
+
+                channel.position(0); // Move to the start of the file
+                channel.truncate(0); // Clear all content in the file (file size becomes 0)
+                //This wraps an existing byte array into a buffer — so you can write it with channel.write().
+                channel.write(ByteBuffer.wrap(String.valueOf(lastId).getBytes()));
+
+                if (blockSize > 1) {
+                    System.out.println("OrderIds reserved: " + (currentId + 1) + " to " + lastId);
+                } else {
+                    System.out.println("OrderId was generated for now: " + lastId);
+                }
+                return new Block(currentId + 1, lastId + 1);
+            }
+        }
+    }
+
+    // a range of reserved IDs: next is the next one to hand out, end is one past the last
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long first, long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
         }
     }
 }
@@ -4,14 +4,15 @@ import ci553.happyshop.catalogue.Order;
 import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.client.orderTracker.OrderTracker;
 import ci553.happyshop.client.picker.PickerModel;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRWFactory;
-import ci553.happyshop.storageAccess.OrderFileManager;
+import ci553.happyshop.storageAccess.OrderStore;
+import ci553.happyshop.storageAccess.OrderStoreFactory;
 import ci553.happyshop.utility.StorageLocation;
+import ci553.happyshop.utility.TimingWheel;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -19,10 +20,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
 
 /**
  * <p>{@code OrderHub} serves as the heart of the ordering system.
@@ -32,34 +38,74 @@ import java.util.stream.Stream;
  * <p> It is the central coordinator responsible for managing all orders. It handles:
  *   Creating and tracking orders
  *   Maintaining and updating the internal order map, <OrderId, OrderState>
- *   Delegating file-related operations (e.g., updating state and moving files) to OrderFileManager class
+ *   Delegating storage operations (e.g., storing orders and changing their state) to an OrderStore
  *   Loading orders in the "ordered" and "progressing" states from storage during system startup
  *
+ * <p>The OrderStore is injected through the constructor; the singleton uses the store of
+ * OrderStoreFactory, tests can create an OrderHub over an InMemoryOrderStore.</p>
+ *
+ * <p>Thread safety: checkouts, pickers and cancellations may call OrderHub from any thread.
+ * The orderMap is a ConcurrentSkipListMap, and a state change is a compare-and-set on it
+ * (orderMap.replace(orderId, oldState, newState)), so when two callers race to move the same order
+ * only one of them wins; the other gets false and nothing is stored. A locked order only moves for
+ * the holder of its lock (see changeOrderStateMoveFile(orderId, newState, holder)). Observers are notified one
+ * change at a time, in the order the changes were made.</p>
+ *
+ * <p>Pickers claim orders with claimNext(pickerId), which takes the oldest Ordered order from a FIFO
+ * ready-queue and locks it in one step, so two pickers never get the same order and a claim does
+ * not depend on how many orders are open. Orders leave the queue lazily: an order cancelled or
+ * locked while queued is skipped when it reaches the front.</p>
+ *
+ * <p>A claim comes with a lease (see PickerLeaseTable) that the picker renews while the order is open.
+ * If the picker stops renewing it, e.g. its window or process is gone, the lease expires after
+ * leaseTtlMillis (-Dhappyshop.orders.leaseTtlMillis=..., 2 minutes by default) and the order goes back
+ * to Ordered and to the ready-queue. The singleton persists the leases in orders/pickerLeases.txt,
+ * and initializeOrderMap() restores them after a restart.</p>
+ *
  * <p> OrderHub also follows the Observer pattern: it notifies registered observers such as OrderTracker
- * and PickerModel whenever the order data changes, keeping the UI and business logic in sync.</p>
+ * and PickerModel whenever the order data changes, keeping the UI and business logic in sync.
+ * An OrderChangeObserver (OrderTracker, PickerModel) gets one snapshot when it registers and then
+ * only the changes (orderId, oldState, newState), so a notification costs O(changes x observers)
+ * rather than O(orders x observers). A plain OrderObserver still gets its filtered copy of the whole map.</p>
  *
  * <p>As the heart of the ordering system, OrderHub connects customers, pickers, and tracker,
  * managementing logic into a unified workflow.</p>
  */
 
 public class OrderHub  {
+    // How long a picker keeps a claimed order without renewing its lease
+    public static long leaseTtlMillis = Long.getLong("happyshop.orders.leaseTtlMillis", 120_000L);
+
     private static OrderHub orderHub; //singleton instance
 
-    private final Path orderedPath = StorageLocation.orderedPath;
-    private final Path progressingPath = StorageLocation.progressingPath;
-    private final Path collectedPath = StorageLocation.collectedPath;
-    private final Path cancelledPath = StorageLocation.cancelledPath;
+    private final OrderStore orderStore; // where the orders and their states are kept
 
-    private TreeMap<Integer,OrderState> orderMap = new TreeMap<>();
-    private TreeMap<Integer,OrderState> OrderedOrderMap = new TreeMap<>();
-    private TreeMap<Integer,OrderState> progressingOrderMap = new TreeMap<>();
+    private final ConcurrentSkipListMap<Long,OrderState> orderMap = new ConcurrentSkipListMap<>();
     
     /**
-     * Tracks which orders are currently locked by pickers.
+     * Tracks which orders are currently locked, and by whom (a picker's ID, or CANCELLATION).
      * This prevents multiple pickers from claiming the same order simultaneously.
      * The locking mechanism is centralized in OrderHub to ensure thread safety.
      */
-    private final java.util.Set<Integer> lockedOrderIds = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, String> orderLocks = new ConcurrentHashMap<>();
+
+    /**
+     * The Ordered orders that pickers can claim, oldest first. An order may still be in the queue
+     * after it was cancelled or locked; claimNext() skips it then.
+     * New orders join at the back; orders given back or reclaimed from a picker go to the front.
+     */
+    private final ConcurrentLinkedDeque<Long> readyQueue = new ConcurrentLinkedDeque<>();
+
+    public static final String CANCELLATION = "cancellation"; // the holder of an order being cancelled
+    public static final String RECOVERED = "recovered"; // the holder of a Progressing order found at startup without a lease, while it is reclaimed
+    private static final String NO_HOLDER = ""; // the holder of an order locked with lockOrder(orderId)
+
+    /**
+     * Monitors that make checking the holder of an order and changing its state one step, so a lease cannot
+     * expire and the order be reclaimed in between (see changeOrderStateMoveFile() and reclaimOrder()).
+     * Orders share the monitors by their ID, so changes of different orders still run in parallel.
+     */
+    private final Object[] orderGuards = new Object[64];
 
     /**
      * Unified list to hold all registered OrderObserver instances.
@@ -68,52 +114,59 @@ public class OrderHub  {
      * - OrderTrackers will be notified of the full orderMap, including all orders (ordered, progressing, collected),
      *   but collected orders are shown for a limited time (10 seconds).
      * - PickerModels will be notified only of orders in the "ordered" or "progressing" states, filtering out collected orders.
-     * 
-     * @deprecated The separate lists (orderTrackerList, pickerModelList) are maintained for backward compatibility
-     * but new code should use the unified observerList.
-     */
-    private ArrayList<OrderObserver> observerList = new ArrayList<>();
-    
-    /**
-     * @deprecated Use observerList instead. Maintained for backward compatibility.
-     */
-    @Deprecated
-    private ArrayList<OrderTracker> orderTrackerList = new ArrayList<>();
-    
-    /**
-     * @deprecated Use observerList instead. Maintained for backward compatibility.
      */
-    @Deprecated
-    private ArrayList<PickerModel> pickerModelList = new ArrayList<>();
+    private final CopyOnWriteArrayList<OrderObserver> observerList = new CopyOnWriteArrayList<>();
+
+    private final Object notifyLock = new Object(); // one notification at a time, so the changes arrive in order
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
-    //Singleton pattern
-    private OrderHub() {}
-    public static OrderHub getOrderHub() {
-        if (orderHub == null)
-            orderHub = new OrderHub();
-            return orderHub;
+    private final PickerLeaseTable leaseTable; // the leases of the orders claimed by pickers
+
+    //Singleton pattern, using the OrderStore selected by OrderStoreFactory
+    //A hub created with this constructor keeps its leases in memory, and they only expire when its wheel is ticked
+    public OrderHub(OrderStore orderStore) {
+        this(orderStore, new PickerLeaseTable(new TimingWheel(1000, 512), leaseTtlMillis, null));
+    }
+
+    public OrderHub(OrderStore orderStore, PickerLeaseTable leaseTable) {
+        this.orderStore = orderStore;
+        this.leaseTable = leaseTable;
+        for (int i = 0; i < orderGuards.length; i++) {
+            orderGuards[i] = new Object();
+        }
+        leaseTable.setExpiryListener(this::reclaimOrder);
+    }
+
+    public static synchronized OrderHub getOrderHub() {
+        if (orderHub == null) {
+            TimingWheel timingWheel = new TimingWheel(1000, 512); // the single wheel expiring every lease
+            timingWheel.start();
+            PickerLeaseTable leaseTable = new PickerLeaseTable(timingWheel, leaseTtlMillis, StorageLocation.pickerLeasesPath);
+            orderHub = new OrderHub(OrderStoreFactory.getOrderStore(), leaseTable);
+        }
+        return orderHub;
     }
 
     //Creates a new order using the provided list of products.
     //and also notify picker and orderTracker
     public Order newOrder(ArrayList<Product> trolley) throws IOException, SQLException {
-        int orderId = OrderCounter.generateOrderId(); //get unique orderId
+        long orderId = OrderCounter.generateOrderId(); //get unique orderId
         String orderedDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         //make an Order Object: id, Ordered_state, orderedDateTime, and productsList(trolley)
         Order theOrder = new Order(orderId,OrderState.Ordered,orderedDateTime,trolley);
 
-        //write order details to file for the orderId in orderedPath (ie. orders/ordered)
+        //store the order details, in the Ordered state (eg. orders/ordered/12.txt)
         String orderDetail = theOrder.orderDetails();
-        Path path = orderedPath;
-        OrderFileManager.createOrderFile(path, orderId, orderDetail);
-
-        orderMap.put(orderId, theOrder.getState()); //add the order to orderMap,state is Ordered initially
-        notifyObservers(); //notify all observers using the unified interface
-        // Also call deprecated methods for backward compatibility
-        notifyOrderTrackers();
-        notifyPickerModels();
+        orderStore.createOrder(orderId, orderDetail);
+
+        //add the order to orderMap,state is Ordered initially; under notifyLock, so no picker's change
+        //to the new order can reach the observers before the order itself
+        synchronized (notifyLock) {
+            orderMap.put(orderId, theOrder.getState());
+            readyQueue.offer(orderId); // pickers can claim it now
+            publishChanges(List.of(new OrderChange(orderId, null, theOrder.getState())));
+        }
         
         return theOrder;
     }
@@ -121,12 +174,18 @@ public class OrderHub  {
     /**
      * Registers an OrderObserver to receive updates about order changes.
      * This is the preferred method for registering observers.
+     * An OrderChangeObserver is sent its snapshot of the orderMap straight away, and only the changes after that.
      * 
      * @param observer the observer to register
      */
     public void registerObserver(OrderObserver observer) {
-        if (observer != null && !observerList.contains(observer)) {
-            observerList.add(observer);
+        if (observer == null) {
+            return;
+        }
+        synchronized (notifyLock) { // no change can be made between the snapshot and the first change sent
+            if (observerList.addIfAbsent(observer) && observer instanceof OrderChangeObserver) {
+                observer.updateOrderMap(getFilteredOrderMap(observer));
+            }
         }
     }
 
@@ -140,15 +199,69 @@ public class OrderHub  {
     }
 
     /**
-     * Notifies all registered observers of changes to the order map.
-     * Each observer receives a filtered view of the order map based on
+     * Sends every registered observer a filtered copy of the whole order map, based on
      * the states they are interested in (via getInterestedStates()).
+     * Change observers take it as a new snapshot. OrderHub itself only sends the changes;
+     * this is for resynchronising the observers.
      */
     public void notifyObservers() {
-        for (OrderObserver observer : observerList) {
-            TreeMap<Integer, OrderState> filteredMap = getFilteredOrderMap(observer);
-            observer.updateOrderMap(filteredMap);
+        synchronized (notifyLock) {
+            for (OrderObserver observer : observerList) {
+                TreeMap<Long, OrderState> filteredMap = getFilteredOrderMap(observer);
+                observer.updateOrderMap(filteredMap);
+            }
+        }
+    }
+
+    /**
+     * Notifies the observers of changes that have just been made to the orderMap.
+     * A change observer gets only the changes it can see (see OrderChangeObserver); a plain observer
+     * gets its filtered copy of the whole map, as before.
+     */
+    private void publishChanges(List<OrderChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (notifyLock) {
+            for (OrderObserver observer : observerList) {
+                if (observer instanceof OrderChangeObserver) {
+                    List<OrderChange> visibleChanges = filterChanges(changes, observer.getInterestedStates());
+                    if (!visibleChanges.isEmpty()) {
+                        ((OrderChangeObserver) observer).ordersChanged(visibleChanges);
+                    }
+                } else {
+                    observer.updateOrderMap(getFilteredOrderMap(observer));
+                }
+            }
+        }
+    }
+
+    // The changes as seen by an observer interested in the given states: the other states become null,
+    // and a change between two states it does not see is left out.
+    private List<OrderChange> filterChanges(List<OrderChange> changes, OrderState[] interestedStates) {
+        if (interestedStates == null || interestedStates.length == 0) {
+            return changes; // interested in every state
+        }
+        ArrayList<OrderChange> visibleChanges = new ArrayList<>(changes.size());
+        for (OrderChange change : changes) {
+            OrderState oldState = isInterested(interestedStates, change.getOldState()) ? change.getOldState() : null;
+            OrderState newState = isInterested(interestedStates, change.getNewState()) ? change.getNewState() : null;
+            if (oldState == change.getOldState() && newState == change.getNewState()) {
+                visibleChanges.add(change);
+            } else if (oldState != null || newState != null) {
+                visibleChanges.add(new OrderChange(change.getOrderId(), oldState, newState));
+            }
+        }
+        return visibleChanges;
+    }
+
+    private boolean isInterested(OrderState[] interestedStates, OrderState state) {
+        for (OrderState interestedState : interestedStates) {
+            if (interestedState == state) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -158,7 +271,7 @@ public class OrderHub  {
      * @param observer the observer requesting the filtered map
      * @return a filtered TreeMap containing only the states the observer is interested in
      */
-    private TreeMap<Integer, OrderState> getFilteredOrderMap(OrderObserver observer) {
+    private TreeMap<Long, OrderState> getFilteredOrderMap(OrderObserver observer) {
         OrderState[] interestedStates = observer.getInterestedStates();
         
         // If no specific states requested, return full map
@@ -167,40 +280,153 @@ public class OrderHub  {
         }
         
         // Filter map to only include interested states
-        TreeMap<Integer, OrderState> filteredMap = new TreeMap<>();
-        for (Map.Entry<Integer, OrderState> entry : orderMap.entrySet()) {
-            for (OrderState state : interestedStates) {
-                if (entry.getValue() == state) {
-                    filteredMap.put(entry.getKey(), entry.getValue());
-                    break;
-                }
+        TreeMap<Long, OrderState> filteredMap = new TreeMap<>();
+        for (Map.Entry<Long, OrderState> entry : orderMap.entrySet()) {
+            if (isInterested(interestedStates, entry.getValue())) {
+                filteredMap.put(entry.getKey(), entry.getValue());
             }
         }
         return filteredMap;
     }
 
+    /**
+     * Claims the oldest Ordered order that nobody has locked, and locks it for the picker, in one step.
+     * Two pickers calling at the same time never get the same order.
+     * The picker then moves the order to Progressing with changeOrderStateMoveFile(), or unlocks it,
+     * and calls renewLease() regularly until the order is collected.
+     *
+     * @param pickerId the picker claiming the order, recorded as the holder of the lock
+     * @return the claimed order ID, or null if no order is waiting
+     */
+    public Long claimNext(String pickerId) {
+        Long orderId;
+        while ((orderId = readyQueue.poll()) != null) {
+            if (orderMap.get(orderId) != OrderState.Ordered) {
+                continue; // cancelled, or already picked through lockOrder(), since it was queued
+            }
+            if (orderLocks.putIfAbsent(orderId, pickerId) == null) {
+                if (orderMap.get(orderId) != OrderState.Ordered) {
+                    // a cancellation locked, moved and unlocked it after the check above; once locked it cannot move
+                    orderLocks.remove(orderId, pickerId);
+                    continue;
+                }
+                leaseTable.acquire(orderId, pickerId); // the picker renews it with renewLease()
+                return orderId;
+            }
+            // locked by a cancellation or by lockOrder(); it is queued again if it is unlocked while still Ordered
+        }
+        return null;
+    }
+
     /**
      * Attempts to lock an order for a picker.
      * This prevents multiple pickers from claiming the same order simultaneously.
+     * Pickers should use claimNext(), which also finds the order.
      * 
      * @param orderId the order ID to lock
      * @return true if the order was successfully locked, false if it was already locked
      */
-    public synchronized boolean lockOrder(int orderId) {
-        if (lockedOrderIds.contains(orderId)) {
-            return false; // Order is already locked
-        }
-        lockedOrderIds.add(orderId);
-        return true; // Successfully locked the order
+    public boolean lockOrder(long orderId) {
+        return lockOrder(orderId, NO_HOLDER);
+    }
+
+    // locks an order for a holder; false if the order is already locked
+    private boolean lockOrder(long orderId, String holder) {
+        return orderLocks.putIfAbsent(orderId, holder) == null;
     }
 
     /**
-     * Unlocks an order, making it available for other pickers.
+     * Unlocks an order locked with lockOrder(orderId), making it available for other pickers.
      * 
      * @param orderId the order ID to unlock
      */
-    public synchronized void unlockOrder(int orderId) {
-        lockedOrderIds.remove(orderId);
+    public void unlockOrder(long orderId) {
+        unlockOrder(orderId, NO_HOLDER);
+    }
+
+    /**
+     * Unlocks an order for the holder of its lock and ends its lease, making it available for other pickers.
+     * An order that is still Ordered goes back to the front of the ready-queue.
+     * Does nothing if someone else holds the order, e.g. a picker whose lease expired giving back
+     * an order that another picker has claimed since.
+     *
+     * @param orderId the order ID to unlock
+     * @param holder  the holder of the lock: a picker ID, CANCELLATION, or an empty string for lockOrder(orderId)
+     */
+    public void unlockOrder(long orderId, String holder) {
+        leaseTable.release(orderId, holder); // before the lock is dropped, so the lease of a new claim is never released
+        if (!orderLocks.remove(orderId, holder)) {
+            return;
+        }
+        if (orderMap.get(orderId) == OrderState.Ordered) {
+            readyQueue.offerFirst(orderId); // e.g. a cancellation that failed, or a picker that gave the order back
+        }
+    }
+
+    /**
+     * Gives a picker back the order it held when the system stopped, whose lease initializeOrderMap() restored,
+     * so a restarted picker with the same ID carries on instead of leaving the order locked until its lease expires.
+     * An order the picker had claimed but not started yet is moved to Progressing.
+     *
+     * @param pickerId the picker's ID
+     * @return the order now Progressing for the picker, or null if it holds none
+     */
+    public Long resumeClaim(String pickerId) throws IOException {
+        for (Map.Entry<Long, String> lock : orderLocks.entrySet()) {
+            long orderId = lock.getKey();
+            if (!pickerId.equals(lock.getValue()) || !leaseTable.renew(orderId, pickerId)) {
+                continue; // another holder's order, or its lease just expired
+            }
+            if (orderMap.get(orderId) == OrderState.Ordered
+                    && !changeOrderStateMoveFile(orderId, OrderState.Progressing, pickerId)) {
+                unlockOrder(orderId, pickerId); // cancelled meanwhile
+                continue;
+            }
+            if (orderMap.get(orderId) == OrderState.Progressing) {
+                return orderId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extends the lease of a picker on the order it claimed; PickerModel calls it while the order is open.
+     *
+     * @param orderId  the claimed order
+     * @param pickerId the picker that claimed it
+     * @return false if the picker no longer holds the order, e.g. its lease expired and the order was reclaimed
+     */
+    public boolean renewLease(long orderId, String pickerId) {
+        return pickerId.equals(orderLocks.get(orderId)) && leaseTable.renew(orderId, pickerId);
+    }
+
+    // the time a picker keeps a claimed order without renewing its lease
+    public long getLeaseTtlMillis() {
+        return leaseTable.getTtlMillis();
+    }
+
+    /**
+     * Takes an order back from a picker whose lease expired: a Progressing order goes back to Ordered,
+     * and the order goes back to the ready-queue. Called on the timing wheel thread.
+     * If the picker collected the order at the same moment, the compare-and-set lets only one of them win.
+     */
+    private void reclaimOrder(long orderId, String holder) {
+        synchronized (guardOf(orderId)) { // the picker cannot move the order while it is taken back
+            if (!orderLocks.remove(orderId, holder)) {
+                return; // unlocked in the meantime
+            }
+            try {
+                if (orderMap.get(orderId) == OrderState.Progressing) {
+                    moveOrder(orderId, OrderState.Progressing, OrderState.Ordered); // not allowed to callers, see canMoveTo()
+                }
+            } catch (IOException e) {
+                System.out.println("Order " + orderId + " could not be reclaimed from " + holder + ": " + e.getMessage());
+            }
+        }
+        if (orderMap.get(orderId) == OrderState.Ordered) {
+            readyQueue.offerFirst(orderId); // it has waited longer than the orders queued since
+            System.out.println("Order " + orderId + " reclaimed from " + holder + " and waiting for a picker again.");
+        }
     }
 
     /**
@@ -209,20 +435,31 @@ public class OrderHub  {
      * @param orderId the order ID to check
      * @return true if the order is locked, false otherwise
      */
-    public synchronized boolean isOrderLocked(int orderId) {
-        return lockedOrderIds.contains(orderId);
+    public boolean isOrderLocked(long orderId) {
+        return orderLocks.containsKey(orderId);
+    }
+
+    /**
+     * Returns who holds the lock of an order: the picker ID given to claimNext(), CANCELLATION,
+     * or an empty string for lockOrder().
+     *
+     * @param orderId the order ID to check
+     * @return the holder, or null if the order is not locked
+     */
+    public String getLockHolder(long orderId) {
+        return orderLocks.get(orderId);
     }
 
     /**
      * Gets the first unlocked order ID from the order map that matches the specified state.
-     * This is used by pickers to find available orders to process.
+     * This scans the whole orderMap; pickers should use claimNext() instead.
      * 
      * @param state the order state to look for (typically OrderState.Ordered)
      * @return the first unlocked order ID, or null if no unlocked orders are available
      */
-    public synchronized Integer getFirstUnlockedOrder(OrderState state) {
-        for (Map.Entry<Integer, OrderState> entry : orderMap.entrySet()) {
-            int orderId = entry.getKey();
+    public Long getFirstUnlockedOrder(OrderState state) {
+        for (Map.Entry<Long, OrderState> entry : orderMap.entrySet()) {
+            long orderId = entry.getKey();
             if (entry.getValue() == state && !isOrderLocked(orderId)) {
                 return orderId;
             }
@@ -234,81 +471,87 @@ public class OrderHub  {
     // @deprecated Use registerObserver() instead
     @Deprecated
     public void registerOrderTracker(OrderTracker orderTracker){
-        orderTrackerList.add(orderTracker);
-        registerObserver(orderTracker); // Also register in unified list
-    }
-    
-    //Notifies all registered observer_OrderTrackers to update and display the latest orderMap.
-    // @deprecated Use notifyObservers() instead
-    @Deprecated
-    public void notifyOrderTrackers(){
-        for(OrderTracker orderTracker : orderTrackerList){
-            orderTracker.setOrderMap(orderMap);
-        }
+        registerObserver(orderTracker);
     }
 
     //Registers a PickerModel to receive updates about changes.
     // @deprecated Use registerObserver() instead
     @Deprecated
     public void registerPickerModel(PickerModel pickerModel){
-        pickerModelList.add(pickerModel);
-        registerObserver(pickerModel); // Also register in unified list
+        registerObserver(pickerModel);
     }
 
-    //notify all pickers to show orderMap (only ordered and progressing states orders)
-    // @deprecated Use notifyObservers() instead
-    @Deprecated
-    public void notifyPickerModels(){
-        TreeMap<Integer,OrderState> orderMapForPicker = new TreeMap<>();
-        progressingOrderMap = filterOrdersByState(OrderState.Progressing);
-        OrderedOrderMap = filterOrdersByState(OrderState.Ordered);
-        orderMapForPicker.putAll(progressingOrderMap);
-        orderMapForPicker.putAll(OrderedOrderMap);
-        for(PickerModel pickerModel : pickerModelList){
-            pickerModel.setOrderMap(orderMapForPicker);
-        }
-    }
-
-    // Filters orderMap that match the specified state, a helper class used by notifyPickerModel()
-    private TreeMap<Integer, OrderState> filterOrdersByState(OrderState state) {
-        TreeMap<Integer, OrderState> filteredOrderMap = new TreeMap<>(); // New map to hold filtered orders
-        // Loop through the orderMap and add matching orders to filteredOrders
-        for (Map.Entry<Integer, OrderState> entry : orderMap.entrySet()) {
-            if (entry.getValue() == state) {
-                filteredOrderMap.put(entry.getKey(), entry.getValue());
+    //Changes the state of the specified order, and of the order in the OrderStore (e.g. moves its file),
+    //for a caller that holds no lock on it, or locked it with lockOrder(orderId).
+    public boolean changeOrderStateMoveFile(long orderId, OrderState newState) throws IOException {
+        return changeOrderStateMoveFile(orderId, newState, NO_HOLDER);
+    }
+
+    /**
+     * Changes the state of the specified order, and of the order in the OrderStore (e.g. moves its file),
+     * on behalf of the holder of its lock. Triggered by PickerModel (holder: its picker ID) and by cancelOrder().
+     *
+     * A locked order only moves for the holder of its lock, and an unlocked order only for a caller without one,
+     * so a picker whose lease expired cannot move the order once it has been reclaimed or claimed by another picker.
+     *
+     * @param holder the picker ID given to claimNext(), CANCELLATION, or an empty string for no lock / lockOrder()
+     * @return false if the order is unknown, the transition is not allowed, the caller does not hold the order,
+     *         or another caller changed the order first
+     */
+    public boolean changeOrderStateMoveFile(long orderId, OrderState newState, String holder) throws IOException {
+        synchronized (guardOf(orderId)) { // the holder cannot change between the check and the move
+            OrderState oldState = orderMap.get(orderId);
+            if(oldState == null || !oldState.canMoveTo(newState)) {
+                return false;
+            }
+            String lockHolder = orderLocks.get(orderId);
+            if(!(lockHolder == null ? NO_HOLDER : lockHolder).equals(holder)) {
+                System.out.println("Order " + orderId + " is not held by " + (holder.isEmpty() ? "this caller" : holder)
+                        + ", it cannot be moved to " + newState);
+                return false;
             }
+            if(!moveOrder(orderId, oldState, newState)) {
+                return false;
+            }
+        }
+        switch(newState){
+            case OrderState.Collected:
+                unlockOrder(orderId, holder); // Unlock the order when it's collected
+                removeCollectedOrder(orderId); //Scheduled removal
+                break;
+            case OrderState.Cancelled:
+                unlockOrder(orderId, holder); // Unlock the order if it was cancelled
+                break;
+        }
+        return true;
+    }
+
+    // the monitor guarding the holder and the state of an order
+    private Object guardOf(long orderId) {
+        return orderGuards[(int) Math.floorMod(orderId, (long) orderGuards.length)];
+    }
+
+    //Moves an order from oldState to newState in the orderMap and the OrderStore, and notifies the observers.
+    //Returns false if the order was no longer in oldState, or the store refused the move.
+    private boolean moveOrder(long orderId, OrderState oldState, OrderState newState) throws IOException {
+        //compare-and-set: only one caller can move the order out of oldState
+        if(!orderMap.replace(orderId, oldState, newState)) {
+            System.out.println("Order " + orderId + " was changed by another caller, it is no longer " + oldState);
+            return false;
         }
-        return filteredOrderMap;
-    }
-
-    //Changes the state of the specified order, updates its file, and moves it to the appropriate folder.
-    //trigger by PickerModel
-    public void changeOrderStateMoveFile(int orderId, OrderState newState) throws IOException {
-        if(orderMap.containsKey(orderId) && !orderMap.get(orderId).equals(newState))
-        {
-            //change orderState in OrderMap, notify all observers
-            orderMap.put(orderId, newState);
-            notifyObservers(); //notify all observers using the unified interface
-            // Also call deprecated methods for backward compatibility
-            notifyOrderTrackers();
-            notifyPickerModels();
-
-            //change orderState in order file and move the file to new state folder
-            switch(newState){
-                case OrderState.Progressing:
-                    OrderFileManager.updateAndMoveOrderFile(orderId, newState,orderedPath,progressingPath);
-                    break;
-                case OrderState.Collected:
-                    OrderFileManager.updateAndMoveOrderFile(orderId, newState,progressingPath,collectedPath);
-                    unlockOrder(orderId); // Unlock the order when it's collected
-                    removeCollectedOrder(orderId); //Scheduled removal
-                    break;
-                case OrderState.Cancelled:
-                    OrderFileManager.updateAndMoveOrderFile(orderId, newState,orderedPath,cancelledPath);
-                    unlockOrder(orderId); // Unlock the order if it was cancelled
-                    break;
+
+        //change orderState in the stored order (e.g. update the file and move it to the new state folder)
+        try {
+            if(!orderStore.transition(orderId, oldState, newState)) {
+                orderMap.replace(orderId, newState, oldState); // the store did not move it, undo
+                return false;
             }
+        } catch (IOException e) {
+            orderMap.replace(orderId, newState, oldState); // the store did not move it, undo
+            throw e;
         }
+        publishChanges(List.of(new OrderChange(orderId, oldState, newState)));
+        return true;
     }
 
     /**
@@ -319,23 +562,23 @@ public class OrderHub  {
      * "ordered" and "progressing" states.
      * The 10-second delay gives enough time for any final updates, and providing a short window for review of completed orders.
      */
-    private void removeCollectedOrder(int orderId) {
+    private void removeCollectedOrder(long orderId) {
         if (orderMap.containsKey(orderId)) {
             // Schedule removal after a few seconds
             scheduler.schedule(() -> {
-                orderMap.remove(orderId); //remove collected order
-                System.out.println("Order " + orderId + " removed from tracker and OrdersMap.");
-                notifyObservers(); //notify all observers using the unified interface
-                notifyOrderTrackers(); // Also call deprecated method for backward compatibility
+                if (orderMap.remove(orderId, OrderState.Collected)) { //remove collected order
+                    System.out.println("Order " + orderId + " removed from tracker and OrdersMap.");
+                    publishChanges(List.of(new OrderChange(orderId, OrderState.Collected, null)));
+                }
             }, 10, TimeUnit.SECONDS );
         }
     }
 
     // Reads details of an order for display in the picker once they started preparing the order.
-    public String  getOrderDetailForPicker(int orderId) throws IOException {
+    public String  getOrderDetailForPicker(long orderId) throws IOException {
         OrderState state = orderMap.get(orderId);
-        if(state.equals(OrderState.Progressing)) {
-            return OrderFileManager.readOrderFile(progressingPath,orderId);
+        if(state == OrderState.Progressing) {
+            return orderStore.readOrder(orderId, OrderState.Progressing);
         }else{
             return "the fuction is only for picker";
         }
@@ -346,11 +589,11 @@ public class OrderHub  {
      * Only orders in "Ordered" state can be cancelled (not progressing or collected orders).
      * 
      * This method:
-     * 1. Validates that the order exists and is in "Ordered" state
+     * 1. Locks the order, and validates that it exists and is in "Ordered" state
      * 2. Reads the order file to extract product information
      * 3. Restores stock for all products in the order
      * 4. Changes order state to "Cancelled"
-     * 5. Moves the order file to the cancelled folder
+     * 5. Moves the stored order to the Cancelled state
      * 6. Notifies all observers (OrderTrackers and PickerModels)
      * 
      * @param orderId The ID of the order to cancel
@@ -358,35 +601,103 @@ public class OrderHub  {
      * @throws IOException if there's an error reading/writing order files
      * @throws SQLException if there's an error restoring stock in the database
      */
-    public boolean cancelOrder(int orderId) throws IOException, SQLException {
-        // Check if order exists and is in Ordered state (only Ordered orders can be cancelled)
+    public boolean cancelOrder(long orderId) throws IOException, SQLException {
+        // Lock the order so a picker cannot claim it while its stock is restored
+        if(!lockOrder(orderId, CANCELLATION)) {
+            System.out.println("Order " + orderId + " cannot be cancelled, it is being picked or cancelled.");
+            return false;
+        }
+        try {
+            // Check if order exists and is in Ordered state (only Ordered orders can be cancelled)
+            if(!canBeCancelled(orderId)) {
+                return false;
+            }
+
+            // Read the stored order to extract product list
+            String orderContent = orderStore.readOrder(orderId, OrderState.Ordered);
+            DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
+            restoreStockOfOrder(orderId, orderContent, databaseRW);
+
+            // Change order state to Cancelled and move file
+            if(!changeOrderStateMoveFile(orderId, OrderState.Cancelled, CANCELLATION)) {
+                return false;
+            }
+        } finally {
+            unlockOrder(orderId, CANCELLATION);
+        }
+        
+        System.out.println("Order " + orderId + " has been cancelled successfully.");
+        return true;
+    }
+
+    /**
+     * Cancels an order like cancelOrder(), but restores the stock on a background thread
+     * (see AsyncDatabaseRW), so the OrderTracker window does not wait for the database.
+     *
+     * The order is locked while it is being cancelled, so a picker cannot start preparing it
+     * in the meantime; an order already locked by a picker cannot be cancelled.
+     *
+     * @param orderId The ID of the order to cancel
+     * @param asyncDatabaseRW the facade used to restore the stock
+     * @return a future completed with true if the order was cancelled, false if it cannot be cancelled,
+     *         or failed with the IOException or SQLException
+     */
+    public CompletableFuture<Boolean> cancelOrderAsync(long orderId, AsyncDatabaseRW asyncDatabaseRW) {
+        if(!lockOrder(orderId, CANCELLATION)) {
+            System.out.println("Order " + orderId + " cannot be cancelled, it is being picked or cancelled.");
+            return CompletableFuture.completedFuture(false);
+        }
+        String orderContent;
+        try {
+            if(!canBeCancelled(orderId)) {
+                unlockOrder(orderId, CANCELLATION);
+                return CompletableFuture.completedFuture(false);
+            }
+            orderContent = orderStore.readOrder(orderId, OrderState.Ordered);
+        } catch (IOException e) {
+            unlockOrder(orderId, CANCELLATION);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return asyncDatabaseRW.submitWrite(db -> {
+            restoreStockOfOrder(orderId, orderContent, db);
+            return null;
+        }).thenApply(ignored -> {
+            boolean cancelled;
+            try {
+                cancelled = changeOrderStateMoveFile(orderId, OrderState.Cancelled, CANCELLATION); // also unlocks the order
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            if(cancelled) {
+                System.out.println("Order " + orderId + " has been cancelled successfully.");
+            }
+            return cancelled;
+        }).whenComplete((cancelled, error) -> unlockOrder(orderId, CANCELLATION));
+    }
+
+    // Only orders in Ordered state can be cancelled
+    private boolean canBeCancelled(long orderId) {
         if(!orderMap.containsKey(orderId)) {
             System.out.println("Order " + orderId + " not found.");
             return false;
         }
-        
+
         OrderState currentState = orderMap.get(orderId);
         if(!currentState.equals(OrderState.Ordered)) {
             System.out.println("Order " + orderId + " cannot be cancelled. Only orders in 'Ordered' state can be cancelled. Current state: " + currentState);
             return false;
         }
+        return true;
+    }
 
-        // Read order file to extract product list
-        String orderContent = OrderFileManager.readOrderFile(orderedPath, orderId);
-        ArrayList<Product> productsToRestore = parseProductsFromOrderFile(orderContent);
-
-        // Restore stock for all products in the order
+    // Restores stock for all products in the order
+    private void restoreStockOfOrder(long orderId, String orderContent, DatabaseRW databaseRW) throws SQLException {
+        ArrayList<Product> productsToRestore = parseProductsFromOrderFile(orderContent, databaseRW);
         if(!productsToRestore.isEmpty()) {
-            DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
             databaseRW.restoreStock(productsToRestore);
             System.out.println("Stock restored for cancelled order " + orderId);
         }
-
-        // Change order state to Cancelled and move file
-        changeOrderStateMoveFile(orderId, OrderState.Cancelled);
-        
-        System.out.println("Order " + orderId + " has been cancelled successfully.");
-        return true;
     }
 
     /**
@@ -394,11 +705,11 @@ public class OrderHub  {
      * Extracts product IDs, quantities, and other details from the Items section.
      * 
      * @param orderContent The full content of the order file
+     * @param databaseRW used to look up the full details of each product
      * @return A list of Product objects with ordered quantities set
      */
-    private ArrayList<Product> parseProductsFromOrderFile(String orderContent) throws SQLException {
+    private ArrayList<Product> parseProductsFromOrderFile(String orderContent, DatabaseRW databaseRW) throws SQLException {
         ArrayList<Product> products = new ArrayList<>();
-        DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
         
         String[] lines = orderContent.split("\n");
         boolean inItemsSection = false;
@@ -446,62 +757,65 @@ public class OrderHub  {
         return products;
     }
 
-    //Initializes the internal order map by loading the uncollected orders from the file system.
+    //Initializes the internal order map by loading the uncollected orders from the OrderStore.
     // Called during system startup by the Main class.
     public void initializeOrderMap(){
-        ArrayList<Integer> orderedIds = orderIdsLoader(orderedPath);
-        ArrayList<Integer> progressingIds = orderIdsLoader(progressingPath);
-        if(orderedIds.size()>0){
-            for(Integer orderId : orderedIds){
-                orderMap.put(orderId, OrderState.Ordered);
+        List<Long> orderedIds = orderIdsLoader(OrderState.Ordered);
+        List<Long> progressingIds = orderIdsLoader(OrderState.Progressing);
+        synchronized (notifyLock) { // as in newOrder(), the orders reach the observers before any change to them
+            ArrayList<OrderChange> changes = new ArrayList<>();
+            for(Long orderId : orderedIds){ // in ID order, so the oldest orders are claimed first
+                if(orderMap.putIfAbsent(orderId, OrderState.Ordered) == null) { // an order may already have moved on
+                    readyQueue.offer(orderId);
+                    changes.add(new OrderChange(orderId, null, OrderState.Ordered));
+                }
             }
-        }
-        if(progressingIds.size()>0){
-            for(Integer orderId : progressingIds){
-                orderMap.put(orderId, OrderState.Progressing);
+            for(Long orderId : progressingIds){
+                if(orderMap.putIfAbsent(orderId, OrderState.Progressing) == null) {
+                    changes.add(new OrderChange(orderId, null, OrderState.Progressing));
+                }
             }
+            publishChanges(changes);
         }
-        notifyObservers(); //notify all observers using the unified interface
-        // Also call deprecated methods for backward compatibility
-        notifyOrderTrackers();
-        notifyPickerModels();
+        recoverLeases();
         System.out.println("orderMap initilized. "+ orderMap.size() + " orders in total, including:");
         System.out.println( orderedIds.size() + " Ordered orders, " +progressingIds.size() + " Progressing orders " );
     }
 
-    // Loads a list of order IDs from the specified directory.
-    // Used internally by initializeOrderMap().
-    private ArrayList<Integer> orderIdsLoader(Path dir) {
-        ArrayList<Integer> orderIds = new ArrayList<>();
-
-        if (Files.exists(dir) && Files.isDirectory(dir)) {
-            try (Stream<Path> fileStream = Files.list(dir)) {
-                // Process the stream without checking it separately
-                List<Path> files = fileStream.filter(Files::isRegularFile).toList();
-
-                if (files.isEmpty()) {
-                    System.out.println(dir + " is empty");
-                } else {
-                    for (Path file : files) {
-                        String fileName = file.getFileName().toString();
-                        if (fileName.endsWith(".txt")) { // Ensure it's a .txt file
-                            try {
-                                int orderId = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
-                                orderIds.add(orderId);
-                                System.out.println(orderId);
-                            } catch (NumberFormatException e) {
-                                System.out.println("Invalid file name: " + fileName);
-                            }
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                System.out.println("Error reading " + dir + ", " + e.getMessage());
+    // Restores the leases of the picks in flight when the system stopped, with the time they had left;
+    // a picker created again with the same ID takes its order back with resumeClaim().
+    // A Progressing order without a lease has no picker to resume it, so it goes back to Ordered straight away.
+    private void recoverLeases() {
+        List<PickerLeaseTable.Lease> leases;
+        try {
+            leases = leaseTable.load();
+        } catch (IOException e) {
+            System.out.println("Error loading picker leases, " + e.getMessage());
+            leases = List.of();
+        }
+        for (PickerLeaseTable.Lease lease : leases) {
+            OrderState state = orderMap.get(lease.getOrderId());
+            if ((state == OrderState.Ordered || state == OrderState.Progressing)
+                    && orderLocks.putIfAbsent(lease.getOrderId(), lease.getHolder()) == null) {
+                leaseTable.acquire(lease.getOrderId(), lease.getHolder(), lease.getRemainingMillis());
             }
-        } else {
-            System.out.println(dir + " does not exist.");
         }
-        return orderIds;
+        for (Map.Entry<Long, OrderState> entry : orderMap.entrySet()) {
+            if (entry.getValue() == OrderState.Progressing && orderLocks.putIfAbsent(entry.getKey(), RECOVERED) == null) {
+                reclaimOrder(entry.getKey(), RECOVERED);
+            }
+        }
+    }
+
+    // Loads the IDs of the stored orders in a state, none if they cannot be listed.
+    // Used internally by initializeOrderMap().
+    private List<Long> orderIdsLoader(OrderState state) {
+        try {
+            return orderStore.listOrderIds(state);
+        } catch (IOException e) {
+            System.out.println("Error loading " + state + " orders, " + e.getMessage());
+            return List.of();
+        }
     }
 
 }
@@ -0,0 +1,24 @@
+package ci553.happyshop.orderManagement;
+
+import java.io.IOException;
+
+/**
+ * The OrderIdGenerator interface defines how a unique ID is obtained for each new order.
+ *
+ * Implementations:
+ * - OrderCounter: sequential IDs from the shared counter file (orders/orderCounter.txt), reserved in blocks.
+ * - SnowflakeIdGenerator: 64-bit time-ordered IDs built from the clock and a node ID, without any shared file.
+ * OrderCounter.generateOrderId() uses the one selected for the system.
+ */
+
+public interface OrderIdGenerator {
+
+    /**
+     * Returns a new order ID, never returned before by this generator or by another process
+     * sharing the same orders folder.
+     *
+     * @return the order ID, always positive
+     * @throws IOException if the ID could not be reserved
+     */
+    long nextId() throws IOException;
+}
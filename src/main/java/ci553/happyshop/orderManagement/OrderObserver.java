@@ -11,6 +11,10 @@ import java.util.TreeMap;
  * Implementing classes should register themselves with OrderHub to receive
  * notifications about order state changes.
  * 
+ * An OrderObserver gets a copy of the whole (filtered) map on every change.
+ * Observers that can apply changes themselves should implement OrderChangeObserver instead.
+ * 
+ * @see OrderChangeObserver
  * @see OrderHub
  */
 public interface OrderObserver {
@@ -24,7 +28,7 @@ public interface OrderObserver {
      * @param orderMap A TreeMap containing order IDs as keys and their current states as values.
      *                 The map may be filtered based on the observer's requirements.
      */
-    void updateOrderMap(TreeMap<Integer, OrderState> orderMap);
+    void updateOrderMap(TreeMap<Long, OrderState> orderMap);
     
     /**
      * Returns the order states that this observer is interested in.
@@ -12,11 +12,25 @@ package ci553.happyshop.orderManagement;
  * Using an enum provides a type-safe and readable way to represent a fixed set of constant values,
  * which improves code clarity, reduces errors from invalid strings or integers,
  * and makes state management more explicit and maintainable across the system.
+ *
+ * The allowed transitions are Ordered -> Progressing -> Collected, and Ordered -> Cancelled (see canMoveTo()).
+ * Only OrderHub itself moves a Progressing order back to Ordered, when the lease of its picker expires.
  */
 
 public enum OrderState {
     Ordered,
     Progressing,
     Collected,
-    Cancelled
+    Cancelled;
+
+    // whether an order in this state may move to the next state, used by OrderHub to reject stale transitions
+    public boolean canMoveTo(OrderState next) {
+        if (this == Ordered) {
+            return next == Progressing || next == Cancelled;
+        }
+        if (this == Progressing) {
+            return next == Collected;
+        }
+        return false; // Collected and Cancelled are final
+    }
 }
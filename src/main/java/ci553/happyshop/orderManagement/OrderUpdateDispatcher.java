@@ -0,0 +1,150 @@
+package ci553.happyshop.orderManagement;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderUpdateDispatcher sits between OrderHub and an observer that updates a window (OrderTracker, PickerModel).
+ * It is registered with OrderHub instead of the window's observer, collects the changes, and hands them
+ * to the observer at most once per frame, on the JavaFX application thread, with one Platform.runLater.
+ *
+ * Without it, every order change rebuilds the window's TextArea on the thread that made the change
+ * (a checkout, a picker, a cancellation), thousands of times a second when orders arrive in a burst.
+ *
+ * How it works:
+ * - Changes are kept per order until the next frame. A second change of the same order is merged into
+ *   the pending one (Ordered -> Progressing then Progressing -> Collected becomes Ordered -> Collected),
+ *   and a change that ends where it started (an order created and removed within the frame) is dropped.
+ * - A snapshot replaces everything pending, since it already includes those changes.
+ * - The first change after a frame schedules the next frame, no sooner than frameMillis after the last one
+ *   (-Dhappyshop.ui.frameMillis=..., 33 ms by default, 0 to only merge what arrives before the UI thread runs).
+ * - getMergedCount(), getDroppedCount() and getFrameCount() tell how much work the coalescing saved.
+ *
+ * The observer's methods are only called on the UI executor, so it may touch the view directly.
+ * Tests pass their own UI executor, so no JavaFX toolkit is needed.
+ *
+ * Example Usage:
+ *     orderHub.registerObserver(new OrderUpdateDispatcher(orderTracker));
+ */
+
+public class OrderUpdateDispatcher implements OrderChangeObserver {
+
+    // The shortest time between two updates of a window
+    public static long frameMillis = Long.getLong("happyshop.ui.frameMillis", 33);
+
+    private final OrderChangeObserver observer;
+    private final Executor uiExecutor;
+    private final long frameNanos;
+
+    // guarded by this
+    private TreeMap<Long, OrderState> pendingSnapshot; // null if no snapshot is waiting
+    private final LinkedHashMap<Long, OrderChange> pendingChanges = new LinkedHashMap<>(); // orderId -> merged change
+    private boolean frameScheduled = false;
+    private long lastFrameNanos;
+    private long mergedCount = 0;
+    private long droppedCount = 0;
+    private long frameCount = 0;
+
+    // updates the observer on the JavaFX application thread, at most once every frameMillis
+    public OrderUpdateDispatcher(OrderChangeObserver observer) {
+        this(observer, Platform::runLater, frameMillis);
+    }
+
+    public OrderUpdateDispatcher(OrderChangeObserver observer, Executor uiExecutor, long frameMillis) {
+        this.observer = observer;
+        this.uiExecutor = uiExecutor;
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+        this.lastFrameNanos = System.nanoTime() - frameNanos; // the first frame does not wait
+    }
+
+    @Override
+    public synchronized void updateOrderMap(TreeMap<Long, OrderState> orderMap) {
+        droppedCount += pendingChanges.size(); // the snapshot already includes them
+        pendingChanges.clear();
+        pendingSnapshot = orderMap;
+        scheduleFrame();
+    }
+
+    @Override
+    public synchronized void ordersChanged(List<OrderChange> changes) {
+        for (OrderChange change : changes) {
+            OrderChange pending = pendingChanges.get(change.getOrderId());
+            if (pending == null) {
+                pendingChanges.put(change.getOrderId(), change);
+                continue;
+            }
+            mergedCount++;
+            if (pending.getOldState() == change.getNewState()) { // back where it started, nothing to show
+                pendingChanges.remove(change.getOrderId());
+                droppedCount++;
+            } else {
+                pendingChanges.put(change.getOrderId(),
+                        new OrderChange(change.getOrderId(), pending.getOldState(), change.getNewState()));
+            }
+        }
+        scheduleFrame();
+    }
+
+    @Override
+    public OrderState[] getInterestedStates() {
+        return observer.getInterestedStates(); // OrderHub filters for the window's observer
+    }
+
+    // schedules the next frame if none is waiting; called with the lock held
+    private void scheduleFrame() {
+        if (frameScheduled) {
+            return; // the waiting frame will take the new changes too
+        }
+        frameScheduled = true;
+        long delayNanos = Math.max(0, lastFrameNanos + frameNanos - System.nanoTime());
+        if (delayNanos == 0) {
+            uiExecutor.execute(this::runFrame);
+        } else {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, uiExecutor).execute(this::runFrame);
+        }
+    }
+
+    // runs on the UI executor: hands everything pending to the observer
+    private void runFrame() {
+        TreeMap<Long, OrderState> snapshot;
+        List<OrderChange> changes;
+        synchronized (this) {
+            snapshot = pendingSnapshot;
+            changes = new ArrayList<>(pendingChanges.values());
+            pendingSnapshot = null;
+            pendingChanges.clear();
+            frameScheduled = false;
+            lastFrameNanos = System.nanoTime();
+            frameCount++;
+        }
+        // outside the lock, so OrderHub is never blocked by the window
+        if (snapshot != null) {
+            observer.updateOrderMap(snapshot);
+        }
+        if (!changes.isEmpty()) {
+            observer.ordersChanged(changes);
+        }
+    }
+
+    // the changes merged into a pending change of the same order
+    public synchronized long getMergedCount() {
+        return mergedCount;
+    }
+
+    // the pending updates thrown away: undone within a frame, or replaced by a snapshot
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    // the number of times the observer was updated
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+}
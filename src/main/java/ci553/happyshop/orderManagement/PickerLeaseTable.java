@@ -0,0 +1,243 @@
+package ci553.happyshop.orderManagement;
+
+import ci553.happyshop.utility.TimingWheel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * PickerLeaseTable keeps the leases of the orders claimed by pickers. It is owned by OrderHub.
+ *
+ * Responsibilities:
+ * - acquire() gives a picker a lease on the order it claimed, valid for the TTL.
+ * - renew() extends the lease; PickerModel calls it regularly (a heartbeat) while the order is open.
+ * - release() ends the lease when the order is collected, cancelled or given back, if the caller still holds it.
+ * - A lease that is not renewed in time expires, and the expiry listener (OrderHub) puts the order
+ *   back in the ready-queue. Expiries are scheduled on a single TimingWheel, so renewing a lease is O(1)
+ *   and nothing scans the table.
+ *
+ * Persistence:
+ * The leases are written to a small text file (one "orderId holder deadline" line per lease) when one is
+ * acquired, released or expires, through a temporary file and an atomic move, so a crash leaves either the old
+ * or the new table. Renewals stay in memory: a renewal only rewrites the file when the lease would outlive
+ * the deadline written there, and then writes a deadline two TTLs ahead, so the heartbeats of a picker cause
+ * at most one write per TTL and the file never gives a lease less time than it has.
+ * After a restart, load() returns them and OrderHub restores the in-flight picks with the time they had left
+ * (up to one TTL more than in memory); a lease whose deadline passed while the system was down expires straight away.
+ *
+ * Example Usage:
+ *     leaseTable.acquire(orderId, pickerId);
+ *     leaseTable.renew(orderId, pickerId); // every TTL / 3 while the order is open
+ *     leaseTable.release(orderId, pickerId); // once collected
+ */
+
+public class PickerLeaseTable {
+    private final TimingWheel timingWheel;
+    private final long ttlMillis;
+    private final Path leasePath; // null if the leases are not persisted
+
+    // all guarded by this
+    private final HashMap<Long, Lease> leases = new HashMap<>(); // orderId -> lease
+    private BiConsumer<Long, String> expiryListener = (orderId, holder) -> { };
+    private long expiredCount = 0;
+    private long saveCount = 0;
+
+    public PickerLeaseTable(TimingWheel timingWheel, long ttlMillis, Path leasePath) {
+        this.timingWheel = timingWheel;
+        this.ttlMillis = ttlMillis;
+        this.leasePath = leasePath;
+    }
+
+    /**
+     * Sets what to do when a lease expires; called on the timing wheel thread with the order ID
+     * and the holder of the expired lease.
+     */
+    public synchronized void setExpiryListener(BiConsumer<Long, String> expiryListener) {
+        this.expiryListener = expiryListener;
+    }
+
+    /**
+     * Gives a holder a lease on an order for the TTL, replacing any lease on the order.
+     */
+    public void acquire(long orderId, String holder) {
+        acquire(orderId, holder, ttlMillis);
+    }
+
+    /**
+     * Gives a holder a lease on an order that expires after durationMillis,
+     * e.g. the time a lease restored after a restart had left.
+     */
+    public synchronized void acquire(long orderId, String holder, long durationMillis) {
+        Lease previous = leases.remove(orderId);
+        if (previous != null) {
+            previous.timeout.cancel();
+        }
+        Lease lease = new Lease(orderId, holder);
+        leases.put(orderId, lease);
+        schedule(lease, durationMillis);
+        lease.savedDeadlineMillis = lease.deadlineMillis;
+        save();
+    }
+
+    /**
+     * Extends the lease of a holder by the TTL.
+     *
+     * @return false if the holder has no lease on the order, e.g. it has expired
+     */
+    public synchronized boolean renew(long orderId, String holder) {
+        Lease lease = leases.get(orderId);
+        if (lease == null || !lease.holder.equals(holder)) {
+            return false;
+        }
+        lease.timeout.cancel();
+        schedule(lease, ttlMillis);
+        if (lease.deadlineMillis > lease.savedDeadlineMillis) { // the file would expire the lease too early
+            lease.savedDeadlineMillis = lease.deadlineMillis + ttlMillis;
+            save();
+        }
+        return true;
+    }
+
+    // Ends the lease of a holder on an order; does nothing if the order has no lease or another holder's
+    public synchronized void release(long orderId, String holder) {
+        Lease lease = leases.get(orderId);
+        if (lease != null && lease.holder.equals(holder)) {
+            leases.remove(orderId);
+            lease.timeout.cancel();
+            save();
+        }
+    }
+
+    /**
+     * Reads the leases persisted by the previous run.
+     *
+     * @return the leases, with the time each has left (0 if its deadline has passed); none if there is no file
+     */
+    public List<Lease> load() throws IOException {
+        ArrayList<Lease> loaded = new ArrayList<>();
+        if (leasePath == null || !Files.exists(leasePath)) {
+            return loaded;
+        }
+        long now = System.currentTimeMillis();
+        for (String line : Files.readAllLines(leasePath)) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length != 3) {
+                continue; // blank or damaged line
+            }
+            try {
+                Lease lease = new Lease(Long.parseLong(fields[0]), fields[1]);
+                lease.deadlineMillis = Long.parseLong(fields[2]);
+                lease.remainingMillis = Math.max(0, lease.deadlineMillis - now);
+                loaded.add(lease);
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring damaged lease: " + line);
+            }
+        }
+        return loaded;
+    }
+
+    // the holder of the lease on an order, or null if it has none
+    public synchronized String getHolder(long orderId) {
+        Lease lease = leases.get(orderId);
+        return lease == null ? null : lease.holder;
+    }
+
+    public synchronized int size() {
+        return leases.size();
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    // the number of times the lease file was written
+    public synchronized long getSaveCount() {
+        return saveCount;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    // schedules the expiry of a lease; called with the lock held
+    private void schedule(Lease lease, long durationMillis) {
+        lease.deadlineMillis = System.currentTimeMillis() + durationMillis;
+        lease.timeout = timingWheel.schedule(() -> expire(lease), durationMillis);
+    }
+
+    // runs on the timing wheel thread
+    private void expire(Lease lease) {
+        BiConsumer<Long, String> listener;
+        synchronized (this) {
+            if (leases.get(lease.orderId) != lease) {
+                return; // released or replaced in the meantime
+            }
+            leases.remove(lease.orderId);
+            expiredCount++;
+            save();
+            listener = expiryListener;
+        }
+        System.out.println("Lease of order " + lease.orderId + " held by " + lease.holder + " expired.");
+        listener.accept(lease.orderId, lease.holder); // outside the lock, OrderHub may call back into the table
+    }
+
+    // writes the whole table to the lease file; called with the lock held
+    private void save() {
+        if (leasePath == null) {
+            return;
+        }
+        saveCount++;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            sb.append(lease.orderId).append(' ').append(lease.holder).append(' ').append(lease.savedDeadlineMillis).append('\n');
+        }
+        try {
+            Path parentDir = leasePath.toAbsolutePath().getParent();
+            Files.createDirectories(parentDir);
+            Path tempFile = parentDir.resolve(leasePath.getFileName() + ".tmp");
+            Files.writeString(tempFile, sb.toString());
+            Files.move(tempFile, leasePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the leases still work in memory, they are only lost if the system restarts before the next save
+            System.out.println("Picker leases not saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The lease of one holder on one order.
+     */
+    public static class Lease {
+        private final long orderId;
+        private final String holder;
+        private long deadlineMillis; // epoch millis
+        private long savedDeadlineMillis; // the deadline in the lease file, never before deadlineMillis
+        private long remainingMillis; // set by load()
+        private TimingWheel.Timeout timeout;
+
+        private Lease(long orderId, String holder) {
+            this.orderId = orderId;
+            this.holder = holder;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public String getHolder() {
+            return holder;
+        }
+
+        // the time the lease had left when it was loaded
+        public long getRemainingMillis() {
+            return remainingMillis;
+        }
+    }
+}
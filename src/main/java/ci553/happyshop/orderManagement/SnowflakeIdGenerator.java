@@ -0,0 +1,96 @@
+package ci553.happyshop.orderManagement;
+
+import java.util.function.LongSupplier;
+
+/**
+ * SnowflakeIdGenerator builds 64-bit order IDs without any coordination between processes,
+ * so several shop processes can share the orders folder without contending on orderCounter.txt.
+ *
+ * ID layout (the sign bit is always 0):
+ *     [41 bits: milliseconds since 2025-01-01 UTC][10 bits: node ID][12 bits: sequence]
+ *
+ * - Each process is given its own node ID (0 to 1023, -Dhappyshop.orders.nodeId=...), so two processes
+ *   can never build the same ID.
+ * - Within one millisecond a node hands out up to 4096 IDs; the 4097th borrows the next millisecond
+ *   instead of waiting, and the clock catches up.
+ * - IDs are sorted by creation time across nodes, to the millisecond (and in order within a node).
+ *
+ * Clock regression:
+ * If the system clock moves back (e.g. an NTP correction), the generator keeps counting from the last
+ * timestamp it used instead of reusing old ones, so IDs stay unique and increasing; they run slightly ahead
+ * of the clock until it catches up. A regression of more than CLOCK_WARNING_MILLIS is reported.
+ * Nothing is persisted, so a node restarted while its clock is still behind the IDs of its previous run
+ * could repeat them; restart a node after a clock step only once the clock has passed its last order.
+ *
+ * Example Usage:
+ *     OrderIdGenerator generator = new SnowflakeIdGenerator(3);
+ *     long orderId = generator.nextId();
+ */
+
+public class SnowflakeIdGenerator implements OrderIdGenerator {
+    public static final long EPOCH_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << (63 - NODE_BITS - SEQUENCE_BITS)) - 1;
+    private static final long CLOCK_WARNING_MILLIS = 10; // smaller steps are not reported, e.g. a borrowed millisecond
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // guarded by this
+    private long lastTimestamp = -1;
+    private long sequence = 0;
+    private boolean clockBehind = false; // reported until the clock catches up
+    private long clockRegressions = 0;
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    // with a clock that tests can move back and forth
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = clock.getAsLong() - EPOCH_MILLIS;
+        if (timestamp < lastTimestamp) {
+            if (!clockBehind && lastTimestamp - timestamp > CLOCK_WARNING_MILLIS) {
+                clockBehind = true;
+                clockRegressions++;
+                System.out.println("Clock moved back by " + (lastTimestamp - timestamp)
+                        + " ms, order IDs continue from the last timestamp.");
+            }
+            timestamp = lastTimestamp; // never reuse an older timestamp
+        } else {
+            clockBehind = false;
+        }
+
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                timestamp++; // the millisecond is used up, borrow the next one
+            }
+        } else {
+            sequence = 0;
+        }
+        if (timestamp < 0 || timestamp > MAX_TIMESTAMP) {
+            throw new IllegalStateException("Clock out of the range of order IDs: " + (timestamp + EPOCH_MILLIS));
+        }
+        lastTimestamp = timestamp;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    //a set of getter methods
+    public synchronized long getClockRegressions() { return clockRegressions; }
+
+    // the parts of an ID, e.g. to show when an order was created
+    public static long timestampOf(long orderId) { return (orderId >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS; }
+    public static int nodeIdOf(long orderId) { return (int) ((orderId >>> SEQUENCE_BITS) & MAX_NODE_ID); }
+}
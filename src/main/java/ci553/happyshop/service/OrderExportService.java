@@ -1,18 +1,18 @@
 package ci553.happyshop.service;
 
-import ci553.happyshop.storageAccess.OrderFileManager;
-import ci553.happyshop.utility.StorageLocation;
+import ci553.happyshop.orderManagement.OrderState;
+import ci553.happyshop.storageAccess.OrderStore;
+import ci553.happyshop.storageAccess.OrderStoreFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Stream;
 
 /**
  * Service class for exporting order data to various formats.
@@ -27,8 +27,6 @@ import java.util.stream.Stream;
  */
 public class OrderExportService {
     
-    private static final Path collectedPath = StorageLocation.collectedPath;
-    private static final Path cancelledPath = StorageLocation.cancelledPath;
     private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /**
@@ -38,6 +36,17 @@ public class OrderExportService {
      * @throws IOException if there's an error reading or writing files
      */
     public static void exportToCSV(String outputPath) throws IOException {
+        exportToCSV(OrderStoreFactory.getOrderStore(), outputPath);
+    }
+
+    /**
+     * Exports the order history of an OrderStore to a CSV file.
+     * 
+     * @param orderStore The store to read the orders from
+     * @param outputPath The path where the CSV file should be saved
+     * @throws IOException if there's an error reading or writing files
+     */
+    public static void exportToCSV(OrderStore orderStore, String outputPath) throws IOException {
         Path csvPath = Paths.get(outputPath);
         
         try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
@@ -46,44 +55,34 @@ public class OrderExportService {
             writer.newLine();
             
             // Export collected orders
-            exportOrdersFromFolderToCSV(collectedPath, "Collected", writer);
+            exportOrdersToCSV(orderStore, OrderState.Collected, writer);
             
             // Export cancelled orders
-            exportOrdersFromFolderToCSV(cancelledPath, "Cancelled", writer);
+            exportOrdersToCSV(orderStore, OrderState.Cancelled, writer);
         }
         
         System.out.println("Order history exported to CSV: " + outputPath);
     }
 
     /**
-     * Exports orders from a specific folder to CSV format.
+     * Exports the orders in a state to CSV format.
      * 
-     * @param folderPath The folder containing order files
-     * @param state The state of orders in this folder
+     * @param orderStore The store to read the orders from
+     * @param state The state of the orders
      * @param writer The CSV writer
-     * @throws IOException if there's an error reading files
+     * @throws IOException if there's an error reading or writing the orders
      */
-    private static void exportOrdersFromFolderToCSV(Path folderPath, String state, BufferedWriter writer) throws IOException {
-        if (!Files.exists(folderPath) || !Files.isDirectory(folderPath)) {
-            return;
-        }
-
-        try (Stream<Path> fileStream = Files.list(folderPath)) {
-            List<Path> files = fileStream
-                .filter(Files::isRegularFile)
-                .filter(path -> path.getFileName().toString().endsWith(".txt"))
-                .toList();
-
-            for (Path file : files) {
+    private static void exportOrdersToCSV(OrderStore orderStore, OrderState state, BufferedWriter writer) throws IOException {
+        try {
+            orderStore.forEachOrder(state, (orderId, orderContent) -> {
                 try {
-                    String fileName = file.getFileName().toString();
-                    int orderId = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
-                    String orderContent = OrderFileManager.readOrderFile(folderPath, orderId);
-                    writeOrderToCSV(orderId, state, orderContent, writer);
-                } catch (Exception e) {
-                    System.err.println("Error exporting order: " + file + " - " + e.getMessage());
+                    writeOrderToCSV(orderId, state.name(), orderContent, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // the CSV file cannot be written, stop
                 }
-            }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
@@ -96,7 +95,7 @@ public class OrderExportService {
      * @param writer The CSV writer
      * @throws IOException if there's an error writing
      */
-    private static void writeOrderToCSV(int orderId, String state, String orderContent, BufferedWriter writer) throws IOException {
+    private static void writeOrderToCSV(long orderId, String state, String orderContent, BufferedWriter writer) throws IOException {
         String[] lines = orderContent.split("\n");
         String orderedDate = "";
         String collectedDate = "";
@@ -133,8 +132,19 @@ public class OrderExportService {
      * @throws IOException if there's an error reading or writing files
      */
     public static void exportToJSON(String outputPath) throws IOException {
+        exportToJSON(OrderStoreFactory.getOrderStore(), outputPath);
+    }
+
+    /**
+     * Exports the order history of an OrderStore to a JSON file.
+     * 
+     * @param orderStore The store to read the orders from
+     * @param outputPath The path where the JSON file should be saved
+     * @throws IOException if there's an error reading or writing files
+     */
+    public static void exportToJSON(OrderStore orderStore, String outputPath) throws IOException {
         Path jsonPath = Paths.get(outputPath);
-        ArrayList<String> history = OrderHistoryService.loadOrderHistory();
+        ArrayList<String> history = OrderHistoryService.loadOrderHistory(orderStore);
         
         try (BufferedWriter writer = Files.newBufferedWriter(jsonPath)) {
             writer.write("{\n");
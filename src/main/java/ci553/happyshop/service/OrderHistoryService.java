@@ -1,23 +1,18 @@
 package ci553.happyshop.service;
 
-import ci553.happyshop.catalogue.Order;
-import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.orderManagement.OrderState;
-import ci553.happyshop.storageAccess.OrderFileManager;
-import ci553.happyshop.utility.StorageLocation;
+import ci553.happyshop.storageAccess.OrderStore;
+import ci553.happyshop.storageAccess.OrderStoreFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Stream;
+import java.util.Collections;
 
 /**
  * Service class for managing order history and analytics.
  * 
  * Responsibilities:
- * - Load order history from collected and cancelled folders
+ * - Load order history (collected and cancelled orders) from the OrderStore
  * - Calculate order statistics (total orders, revenue, popular products)
  * - Provide data for order history display
  * - Support export functionality
@@ -26,72 +21,49 @@ import java.util.stream.Stream;
  * separating order history operations from business logic.
  */
 public class OrderHistoryService {
-    
-    private static final Path collectedPath = StorageLocation.collectedPath;
-    private static final Path cancelledPath = StorageLocation.cancelledPath;
 
     /**
-     * Loads all historical orders from collected and cancelled folders.
+     * Loads all historical orders (collected and cancelled) from the system's OrderStore.
      * 
      * @return List of order summary strings (ID, State, Date, Total)
-     * @throws IOException if there's an error reading order files
+     * @throws IOException if there's an error reading the orders
      */
     public static ArrayList<String> loadOrderHistory() throws IOException {
+        return loadOrderHistory(OrderStoreFactory.getOrderStore());
+    }
+
+    /**
+     * Loads all historical orders (collected and cancelled) from an OrderStore.
+     * 
+     * @param orderStore The store to read the orders from
+     * @return List of order summary strings (ID, State, Date, Total)
+     * @throws IOException if there's an error reading the orders
+     */
+    public static ArrayList<String> loadOrderHistory(OrderStore orderStore) throws IOException {
         ArrayList<String> history = new ArrayList<>();
         
         // Load collected orders
-        history.addAll(loadOrdersFromFolder(collectedPath, OrderState.Collected));
+        history.addAll(loadOrders(orderStore, OrderState.Collected));
         
         // Load cancelled orders
-        history.addAll(loadOrdersFromFolder(cancelledPath, OrderState.Cancelled));
+        history.addAll(loadOrders(orderStore, OrderState.Cancelled));
         
         return history;
     }
 
     /**
-     * Loads orders from a specific folder and formats them for display.
+     * Loads the orders in a state and formats them for display, newest (highest ID) first.
      * 
-     * @param folderPath The folder to read orders from
-     * @param state The state of orders in this folder
+     * @param orderStore The store to read the orders from
+     * @param state The state of the orders
      * @return List of formatted order strings
-     * @throws IOException if there's an error reading files
+     * @throws IOException if there's an error listing the orders
      */
-    private static ArrayList<String> loadOrdersFromFolder(Path folderPath, OrderState state) throws IOException {
+    private static ArrayList<String> loadOrders(OrderStore orderStore, OrderState state) throws IOException {
         ArrayList<String> orders = new ArrayList<>();
-        
-        if (!Files.exists(folderPath) || !Files.isDirectory(folderPath)) {
-            return orders;
-        }
-
-        try (Stream<Path> fileStream = Files.list(folderPath)) {
-            List<Path> files = fileStream
-                .filter(Files::isRegularFile)
-                .filter(path -> path.getFileName().toString().endsWith(".txt"))
-                .sorted((p1, p2) -> {
-                    // Sort by order ID (extracted from filename) in descending order
-                    try {
-                        int id1 = Integer.parseInt(p1.getFileName().toString().replace(".txt", ""));
-                        int id2 = Integer.parseInt(p2.getFileName().toString().replace(".txt", ""));
-                        return Integer.compare(id2, id1); // Descending order
-                    } catch (NumberFormatException e) {
-                        return 0;
-                    }
-                })
-                .toList();
-
-            for (Path file : files) {
-                try {
-                    String fileName = file.getFileName().toString();
-                    int orderId = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
-                    String orderContent = OrderFileManager.readOrderFile(folderPath, orderId);
-                    String formatted = formatOrderSummary(orderId, state, orderContent);
-                    orders.add(formatted);
-                } catch (Exception e) {
-                    System.err.println("Error reading order file: " + file + " - " + e.getMessage());
-                }
-            }
-        }
-        
+        orderStore.forEachOrder(state, (orderId, orderContent) ->
+                orders.add(formatOrderSummary(orderId, state, orderContent)));
+        Collections.reverse(orders); // the store scans in ascending ID order
         return orders;
     }
 
@@ -103,7 +75,7 @@ public class OrderHistoryService {
      * @param orderContent The full order file content
      * @return Formatted string for display
      */
-    private static String formatOrderSummary(int orderId, OrderState state, String orderContent) {
+    private static String formatOrderSummary(long orderId, OrderState state, String orderContent) {
         String[] lines = orderContent.split("\n");
         String dateTime = "";
         double total = 0.0;
@@ -132,10 +104,21 @@ public class OrderHistoryService {
      * Calculates order statistics from historical orders.
      * 
      * @return OrderStatistics object containing calculated metrics
-     * @throws IOException if there's an error reading order files
+     * @throws IOException if there's an error reading the orders
      */
     public static OrderStatistics calculateStatistics() throws IOException {
-        ArrayList<String> history = loadOrderHistory();
+        return calculateStatistics(OrderStoreFactory.getOrderStore());
+    }
+
+    /**
+     * Calculates order statistics from the historical orders of an OrderStore.
+     * 
+     * @param orderStore The store to read the orders from
+     * @return OrderStatistics object containing calculated metrics
+     * @throws IOException if there's an error reading the orders
+     */
+    public static OrderStatistics calculateStatistics(OrderStore orderStore) throws IOException {
+        ArrayList<String> history = loadOrderHistory(orderStore);
         
         int totalOrders = history.size();
         double totalRevenue = 0.0;
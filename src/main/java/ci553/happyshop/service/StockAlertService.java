@@ -1,6 +1,7 @@
 package ci553.happyshop.service;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.CatalogueSnapshot;
 import ci553.happyshop.storageAccess.DatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRWFactory;
 
@@ -64,37 +65,40 @@ public class StockAlertService {
     }
 
     /**
-     * Scans all products in the database and returns a list of products with low stock.
+     * Scans all products in the catalogue snapshot and returns a list of products with low stock.
      * 
      * @return List of products with stock below the threshold
-     * @throws SQLException if there's an error accessing the database
      */
-    public static ArrayList<Product> scanForLowStockProducts() throws SQLException {
+    public static ArrayList<Product> scanForLowStockProducts() {
         return scanForLowStockProducts(DEFAULT_LOW_STOCK_THRESHOLD);
     }
 
     /**
-     * Scans all products in the database and returns a list of products with low stock.
+     * Scans all products in the catalogue snapshot and returns a list of products with low stock.
+     * The scan reads the stock column only; Products are created for the matching rows.
      * 
      * @param threshold The stock threshold to use
      * @return List of products with stock below the threshold
-     * @throws SQLException if there's an error accessing the database
      */
-    public static ArrayList<Product> scanForLowStockProducts(int threshold) throws SQLException {
-        ArrayList<Product> lowStockProducts = new ArrayList<>();
-        DatabaseRW databaseRW = DatabaseRWFactory.createDatabaseRW();
-        
-        // Get all products from the database
-        ArrayList<Product> allProducts = databaseRW.getAllProducts();
-        
-        // Check each product for low stock
-        for (Product product : allProducts) {
-            if (isLowStock(product, threshold) || isOutOfStock(product)) {
-                lowStockProducts.add(product);
-            }
+    public static ArrayList<Product> scanForLowStockProducts(int threshold) {
+        return scanForLowStockProducts(DatabaseRWFactory.getCatalogueColumns().snapshot(), threshold);
+    }
+
+    /**
+     * Returns the products of a snapshot with stock at or below the threshold, in productID order
+     * (low stock and out of stock products).
+     * 
+     * @param snapshot The catalogue snapshot to scan
+     * @param threshold The stock threshold to use
+     * @return List of products with stock below the threshold
+     */
+    public static ArrayList<Product> scanForLowStockProducts(CatalogueSnapshot snapshot, int threshold) {
+        int[] rows = snapshot.rowsWithStockAtMost(threshold);
+        ArrayList<Product> products = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            products.add(snapshot.toProduct(row));
         }
-        
-        return lowStockProducts;
+        return products;
     }
 
     /**
@@ -197,5 +201,51 @@ public class StockAlertService {
         
         return alert.toString();
     }
-}
 
+    /**
+     * Generates the combined alert message for a catalogue snapshot, without creating Products.
+     * 
+     * @param snapshot The catalogue snapshot to scan
+     * @param threshold The stock threshold to use
+     * @return Combined alert message for all low stock products, or null if none
+     */
+    public static String generateCombinedAlertMessage(CatalogueSnapshot snapshot, int threshold) {
+        int[] rows = snapshot.rowsWithStockAtMost(threshold);
+        if (rows.length == 0) {
+            return null;
+        }
+        int outOfStockCount = 0;
+        for (int row : rows) {
+            outOfStockCount += snapshot.getStock(row) <= 0 ? 1 : 0;
+        }
+        int lowStockCount = rows.length - outOfStockCount;
+
+        StringBuilder alert = new StringBuilder();
+        alert.append("📦 STOCK ALERT SUMMARY\n");
+        alert.append("=".repeat(40)).append("\n\n");
+
+        if (outOfStockCount > 0) {
+            alert.append("🚨 OUT OF STOCK (").append(outOfStockCount).append("):\n");
+            for (int row : rows) {
+                if (snapshot.getStock(row) <= 0) {
+                    alert.append(String.format("  • %s - %s (0 units)\n",
+                        snapshot.getProductId(row), snapshot.getDescription(row)));
+                }
+            }
+            alert.append("\n");
+        }
+
+        if (lowStockCount > 0) {
+            alert.append("⚠️ LOW STOCK (").append(lowStockCount).append("):\n");
+            for (int row : rows) {
+                if (snapshot.getStock(row) > 0) {
+                    alert.append(String.format("  • %s - %s (%d units)\n",
+                        snapshot.getProductId(row), snapshot.getDescription(row),
+                        snapshot.getStock(row)));
+                }
+            }
+        }
+
+        return alert.toString();
+    }
+}
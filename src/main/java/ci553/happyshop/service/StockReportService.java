@@ -0,0 +1,81 @@
+package ci553.happyshop.service;
+
+import ci553.happyshop.storageAccess.CatalogueSnapshot;
+import ci553.happyshop.storageAccess.DatabaseRWFactory;
+
+/**
+ * Service class for stock valuation and catalogue reports.
+ *
+ * Responsibilities:
+ * - Calculate the total value of the stock held
+ * - List the products holding the most stock value
+ * - Count the products in a price range
+ *
+ * Every report scans the columnar CatalogueSnapshot (see CatalogueColumns),
+ * so it does not query the database or create a Product per row.
+ */
+public class StockReportService {
+
+    /**
+     * Default number of products listed in the stock value report.
+     */
+    public static final int DEFAULT_TOP_PRODUCTS = 5;
+
+    /**
+     * Returns the current catalogue snapshot.
+     *
+     * @return the snapshot including every product write reported so far
+     */
+    public static CatalogueSnapshot currentSnapshot() {
+        return DatabaseRWFactory.getCatalogueColumns().snapshot();
+    }
+
+    /**
+     * Calculates the value of all stock (stock x unit price).
+     *
+     * @param snapshot The catalogue snapshot to scan
+     * @return the stock value in pounds
+     */
+    public static double calculateStockValue(CatalogueSnapshot snapshot) {
+        return snapshot.totalStockValuePence() / 100.0;
+    }
+
+    /**
+     * Counts the products priced between two amounts (inclusive).
+     *
+     * @param snapshot The catalogue snapshot to scan
+     * @param minPrice The lowest unit price in pounds
+     * @param maxPrice The highest unit price in pounds
+     * @return the number of products in the range
+     */
+    public static int countProductsInPriceRange(CatalogueSnapshot snapshot, double minPrice, double maxPrice) {
+        return snapshot.rowsWithPriceBetween(Math.round(minPrice * 100), Math.round(maxPrice * 100)).length;
+    }
+
+    /**
+     * Generates the stock valuation report: the total value and the products holding the most of it.
+     *
+     * @param snapshot The catalogue snapshot to scan
+     * @param topN The number of products to list
+     * @return Formatted report
+     */
+    public static String generateValuationReport(CatalogueSnapshot snapshot, int topN) {
+        StringBuilder report = new StringBuilder();
+        report.append("💷 STOCK VALUATION REPORT\n");
+        report.append("=".repeat(40)).append("\n\n");
+        report.append(String.format("Products: %d\n", snapshot.size()));
+        report.append(String.format("Total stock value: £%.2f\n", calculateStockValue(snapshot)));
+
+        int[] rows = snapshot.topByStockValue(topN);
+        if (rows.length > 0) {
+            report.append("\nTop ").append(rows.length).append(" by stock value:\n");
+            for (int row : rows) {
+                report.append(String.format("  • %s - %s (%d x £%.2f = £%.2f)\n",
+                    snapshot.getProductId(row), snapshot.getDescription(row), snapshot.getStock(row),
+                    snapshot.getPricePence(row) / 100.0,
+                    snapshot.getStock(row) * snapshot.getPricePence(row) / 100.0));
+            }
+        }
+        return report.toString();
+    }
+}
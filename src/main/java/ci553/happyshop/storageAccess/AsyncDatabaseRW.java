@@ -0,0 +1,205 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import javafx.application.Platform;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AsyncDatabaseRW is an asynchronous facade over a DatabaseRW, so that the JavaFX windows
+ * never wait for the database.
+ *
+ * Responsibilities:
+ * - Runs every blocking DatabaseRW call on an I/O executor (by default one virtual thread per call).
+ * - Returns a CompletableFuture whose completion, and therefore every callback chained to it,
+ *   happens on the UI executor (by default the JavaFX application thread, via Platform.runLater).
+ * - Fails a read with a TimeoutException when it takes longer than the timeout, and interrupts it.
+ * - Cancelling the returned future of a read also interrupts the running call.
+ *
+ * Reads and writes:
+ * A write that is interrupted may or may not have been committed, so telling the user it failed
+ * could be wrong (e.g. a purchase that did reduce the stock). Writes therefore have no timeout,
+ * and cancelling a write only stops it if it has not started yet. Reads can be timed out and
+ * cancelled at any point, e.g. an old search is cancelled when the user starts a new one.
+ *
+ * Example Usage:
+ *     asyncDatabaseRW.searchProduct(keyword)
+ *             .whenComplete((products, error) -> { ... update the view, we are on the FX thread ... });
+ *
+ * Because callbacks run on the UI executor they may touch the view directly. Tests pass a direct
+ * executor (Runnable::run) as UI executor, so no JavaFX toolkit is needed.
+ */
+
+public class AsyncDatabaseRW {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    // shared by all facades using the default executor, virtual threads are cheap so no pool size is needed
+    private static final ExecutorService virtualThreadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DatabaseRW databaseRW;
+    private final ExecutorService ioExecutor;
+    private final Executor uiExecutor;
+    private final Duration timeout;
+
+    // uses virtual threads for the database calls and the JavaFX application thread for the results
+    public AsyncDatabaseRW(DatabaseRW databaseRW) {
+        this(databaseRW, virtualThreadExecutor, Platform::runLater, DEFAULT_TIMEOUT);
+    }
+
+    public AsyncDatabaseRW(DatabaseRW databaseRW, ExecutorService ioExecutor, Executor uiExecutor, Duration timeout) {
+        this.databaseRW = databaseRW;
+        this.ioExecutor = ioExecutor;
+        this.uiExecutor = uiExecutor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * A blocking piece of work using the DatabaseRW, e.g. db -> db.searchProduct(keyword).
+     * Several DatabaseRW calls can be combined in one DatabaseCall to run them in one trip to the I/O executor.
+     */
+    @FunctionalInterface
+    public interface DatabaseCall<T> {
+        T call(DatabaseRW databaseRW) throws SQLException;
+    }
+
+    /**
+     * Runs a read on the I/O executor, with the timeout.
+     *
+     * @param call the blocking work, it must not change the database
+     * @return a future completed on the UI executor with the result, the SQLException,
+     *         or a TimeoutException if the call took longer than the timeout
+     */
+    public <T> CompletableFuture<T> submit(DatabaseCall<T> call) {
+        UiFuture<T> result = start(call, true);
+        CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.task.cancel(true)) { // false if the call already finished
+                uiExecutor.execute(() -> result.completeExceptionally(
+                        new TimeoutException("Database call took longer than " + timeout.toMillis() + " ms")));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a write on the I/O executor, without timeout and without interrupting it once it has started.
+     *
+     * @param call the blocking work
+     * @return a future completed on the UI executor with the result or the SQLException
+     */
+    public <T> CompletableFuture<T> submitWrite(DatabaseCall<T> call) {
+        return start(call, false);
+    }
+
+    private <T> UiFuture<T> start(DatabaseCall<T> call, boolean interruptible) {
+        UiFuture<T> result = new UiFuture<>(interruptible);
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                T value = call.call(databaseRW);
+                if (!result.task.isCancelled()) { // a timed out call must not overwrite the TimeoutException
+                    uiExecutor.execute(() -> result.complete(value));
+                }
+            } catch (Throwable e) {
+                if (!result.task.isCancelled()) {
+                    uiExecutor.execute(() -> result.completeExceptionally(e));
+                }
+            }
+        }, null);
+        result.task = task; // set before the task runs
+        ioExecutor.execute(task);
+        return result;
+    }
+
+    // one method for each DatabaseRW method used by the clients
+    public CompletableFuture<ArrayList<Product>> searchProduct(String keyword) {
+        return submit(db -> db.searchProduct(keyword));
+    }
+
+    public CompletableFuture<Product> searchByProductId(String productId) {
+        return submit(db -> db.searchByProductId(productId));
+    }
+
+    public CompletableFuture<ArrayList<Product>> purchaseStocks(ArrayList<Product> proList) {
+        return submitWrite(db -> db.purchaseStocks(proList));
+    }
+
+    public CompletableFuture<Void> updateProduct(String id, String des, double price, String imageName, int stock) {
+        return submitWrite(db -> {
+            db.updateProduct(id, des, price, imageName, stock);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteProduct(String id) {
+        return submitWrite(db -> {
+            db.deleteProduct(id);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> insertNewProduct(String id, String des, double price, String image, int stock) {
+        return submitWrite(db -> {
+            db.insertNewProduct(id, des, price, image, stock);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> isProIdAvailable(String productId) {
+        return submit(db -> db.isProIdAvailable(productId));
+    }
+
+    public CompletableFuture<Void> restoreStock(ArrayList<Product> proList) {
+        return submitWrite(db -> {
+            db.restoreStock(proList);
+            return null;
+        });
+    }
+
+    public DatabaseRW getDatabaseRW() {
+        return databaseRW;
+    }
+
+    // the executor running the callbacks, e.g. to hand work from another thread to the JavaFX thread
+    public Executor getUiExecutor() {
+        return uiExecutor;
+    }
+
+    /**
+     * Unwraps the cause of a failed future, e.g. the SQLException inside a CompletionException.
+     */
+    public static Throwable causeOf(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    // A CompletableFuture that also cancels the database call when it is cancelled.
+    private static class UiFuture<T> extends CompletableFuture<T> {
+        private final boolean interruptible;
+        private volatile Future<?> task;
+
+        private UiFuture(boolean interruptible) {
+            this.interruptible = interruptible;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && task != null) {
+                task.cancel(interruptible); // a started write is left to finish
+            }
+            return cancelled;
+        }
+    }
+}
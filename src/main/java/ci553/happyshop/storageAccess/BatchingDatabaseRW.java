@@ -0,0 +1,90 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * BatchingDatabaseRW is a decorator that sends purchaseStocks() through a shared CheckoutBatcher,
+ * so concurrent checkouts are committed together. Everything else is delegated unchanged.
+ *
+ * Example Usage:
+ *     DatabaseRW db = new BatchingDatabaseRW(new CachedDatabaseRW(new DerbyRW(pool), cache), batcher);
+ *
+ * The batcher purchases with its own DatabaseRW, which must be the same kind of stack
+ * (e.g. cached), so that batched purchases invalidate the cache like direct ones.
+ */
+
+public class BatchingDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final CheckoutBatcher batcher; // Shared by all instances created by DatabaseRWFactory
+
+    public BatchingDatabaseRW(DatabaseRW delegate, CheckoutBatcher batcher) {
+        this.delegate = delegate;
+        this.batcher = batcher;
+    }
+
+    // waits for the batch holding this trolley, same result as delegate.purchaseStocks()
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        return batcher.purchase(proList);
+    }
+
+    public ArrayList<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> purchases) throws SQLException {
+        return delegate.purchaseStocksBatch(purchases);
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return delegate.searchProduct(keyword);
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return delegate.searchByProductId(productId);
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        delegate.updateProduct(id, des, price, imageName, stock);
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        delegate.deleteProduct(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        delegate.insertNewProduct(id, des, price, image, stock);
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return delegate.isProIdAvailable(productId);
+    }
+
+    public void restoreStock(ArrayList<Product> proList) throws SQLException {
+        delegate.restoreStock(proList);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        return delegate.page(afterId, limit);
+    }
+
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        delegate.forEachProduct(action);
+    }
+
+    public ArrayList<Product> searchByNamePrefix(String prefix, int limit) throws SQLException {
+        return delegate.searchByNamePrefix(prefix, limit);
+    }
+
+    public ArrayList<Product> findProductsBelowStock(int threshold) throws SQLException {
+        return delegate.findProductsBelowStock(threshold);
+    }
+
+    public CheckoutBatcher getBatcher() {
+        return batcher;
+    }
+}
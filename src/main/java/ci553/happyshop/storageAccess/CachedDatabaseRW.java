@@ -0,0 +1,173 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * CachedDatabaseRW is a read-through caching decorator around another DatabaseRW (normally DerbyRW).
+ * Lookups by product ID are answered from a shared ProductCache; everything else is delegated.
+ *
+ * Responsibilities:
+ * - searchByProductId() and isProIdAvailable() read through the cache.
+ * - searchProduct() uses the cache for the ID lookup and caches the products found by name.
+ *   A keyword that is not a product ID is not cached as missing, so name searches do not fill
+ *   the cache with entries that evict the real products.
+ * - Every write method invalidates the products it touched, after the write has finished,
+ *   even if it failed (the database state is then unknown).
+ *
+ * Benefits:
+ * - The same hot products read by the customer search, the warehouse search, the stock alerts
+ *   and the order hub no longer cost a database round trip each time.
+ * - The decorator works with any DatabaseRW, so it is enabled or disabled in DatabaseRWFactory
+ *   without changing any client.
+ *
+ * Example Usage:
+ *     DatabaseRW db = new CachedDatabaseRW(new DerbyRW(pool), cache);
+ *
+ * Note: getAllProducts(), page(), forEachProduct(), searchByNamePrefix() and findProductsBelowStock()
+ * are not cached and do not fill the cache, so a scan cannot evict the hot products.
+ */
+
+public class CachedDatabaseRW implements DatabaseRW {
+    private final DatabaseRW delegate;
+    private final ProductCache cache; // Shared by all instances created by DatabaseRWFactory
+
+    public CachedDatabaseRW(DatabaseRW delegate, ProductCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = searchKeywordAsId(keyword);
+        if (product != null) {
+            productList.add(product);
+            return productList;
+        }
+
+        // not an ID, search by name in the database and remember the products found
+        long stamp = cache.getStamp();
+        productList = delegate.searchProduct(keyword);
+        for (Product found : productList) {
+            cache.put(found.getProductId(), found, stamp);
+        }
+        return productList;
+    }
+
+    // the ID lookup of searchProduct(): like searchByProductId(), but a keyword matching no product is not cached
+    private Product searchKeywordAsId(String keyword) throws SQLException {
+        ProductCache.Lookup lookup = cache.get(keyword);
+        if (lookup != null) {
+            return lookup.getProduct();
+        }
+        long stamp = cache.getStamp();
+        Product product = delegate.searchByProductId(keyword);
+        if (product != null) {
+            cache.put(keyword, product, stamp);
+        }
+        return product;
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        ProductCache.Lookup lookup = cache.get(productId);
+        if (lookup != null) {
+            return lookup.getProduct();
+        }
+        long stamp = cache.getStamp(); // taken before loading, see ProductCache
+        Product product = delegate.searchByProductId(productId);
+        cache.put(productId, product, stamp);
+        return product;
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        ProductCache.Lookup lookup = cache.get(productId);
+        if (lookup != null) {
+            return lookup.getProduct() == null;
+        }
+        return delegate.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        try {
+            return delegate.purchaseStocks(proList);
+        } finally {
+            invalidate(proList);
+        }
+    }
+
+    public ArrayList<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> purchases) throws SQLException {
+        try {
+            return delegate.purchaseStocksBatch(purchases);
+        } finally {
+            for (ArrayList<Product> proList : purchases) {
+                invalidate(proList);
+            }
+        }
+    }
+
+    public void restoreStock(ArrayList<Product> proList) throws SQLException {
+        try {
+            delegate.restoreStock(proList);
+        } finally {
+            invalidate(proList);
+        }
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        try {
+            delegate.updateProduct(id, des, price, imageName, stock);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        try {
+            delegate.deleteProduct(id);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        try {
+            delegate.insertNewProduct(id, des, price, image, stock);
+        } finally {
+            cache.invalidate(id); // drops a cached "not found"
+        }
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        return delegate.page(afterId, limit);
+    }
+
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        delegate.forEachProduct(action);
+    }
+
+    public ArrayList<Product> searchByNamePrefix(String prefix, int limit) throws SQLException {
+        return delegate.searchByNamePrefix(prefix, limit);
+    }
+
+    public ArrayList<Product> findProductsBelowStock(int threshold) throws SQLException {
+        return delegate.findProductsBelowStock(threshold);
+    }
+
+    private void invalidate(ArrayList<Product> proList) {
+        for (Product product : proList) {
+            cache.invalidate(product.getProductId());
+        }
+    }
+
+    public ProductCache getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,45 @@
+package ci553.happyshop.storageAccess;
+
+/**
+ * One row of ProductChangeLog: a product of ProductTable was inserted, updated or deleted
+ * at a catalogue version. Returned by CatalogueFeed, in version order.
+ *
+ * A change only names the product; a reader that needs the new values reads the product again.
+ */
+
+public class CatalogueChange {
+    public enum Type {
+        Inserted,
+        Updated,
+        Deleted
+    }
+
+    private final long version;
+    private final String productId;
+    private final Type type;
+
+    public CatalogueChange(long version, String productId, Type type) {
+        this.version = version;
+        this.productId = productId;
+        this.type = type;
+    }
+
+    // the changeType column: 'I', 'U' or 'D'
+    static Type typeOf(String changeType) {
+        switch (changeType) {
+            case "I": return Type.Inserted;
+            case "D": return Type.Deleted;
+            default: return Type.Updated;
+        }
+    }
+
+    //a set of getter methods
+    public long getVersion() { return version; }
+    public String getProductId() { return productId; }
+    public Type getType() { return type; }
+
+    @Override
+    public String toString() {
+        return version + " " + productId + " " + type;
+    }
+}
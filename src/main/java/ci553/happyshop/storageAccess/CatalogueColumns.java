@@ -0,0 +1,195 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CatalogueColumns keeps the current CatalogueSnapshot, the columnar copy of the catalogue used by
+ * StockAlertService and StockReportService. It is owned by the DatabaseRWFactory, built from the
+ * database on first use, and kept current as a CatalogueListener, so scans never read the ProductTable.
+ *
+ * How it works:
+ * - Product writes and stock changes are only recorded, per product, in a small pending map.
+ * - snapshot() returns the current snapshot if nothing changed. Otherwise it merges the pending
+ *   changes into a new snapshot (one pass over the sorted columns) and publishes it; a burst of
+ *   checkouts between two scans costs one merge.
+ * - Descriptions are dictionary-encoded: each distinct description gets a code once, and the
+ *   snapshot holds the codes. Codes of descriptions no longer used are dropped by rebuild().
+ *
+ * Stock changes arrive as deltas after each commit. Two writes to the same product that commit
+ * at the same moment may be reported in the other order, so the stock in a snapshot can be off
+ * until the next rebuild (e.g. a warehouse edit reported before a checkout committed ahead of it).
+ * It is meant for alerts and reports, not for deciding whether a product is in stock.
+ *
+ * Example Usage:
+ *     CatalogueSnapshot snapshot = DatabaseRWFactory.getCatalogueColumns().snapshot();
+ *     int[] rows = snapshot.rowsWithStockAtMost(10);
+ */
+
+public class CatalogueColumns implements CatalogueListener {
+    // guarded by this
+    private final TreeMap<String, Change> pending = new TreeMap<>();
+    private final HashMap<String, Integer> descriptionCodes = new HashMap<>();
+    private String[] descriptions = new String[16];
+    private int descriptionCount = 0;
+
+    private volatile CatalogueSnapshot current = CatalogueSnapshot.EMPTY;
+
+    /**
+     * Replaces the content with the whole catalogue of the given DatabaseRW.
+     */
+    public void rebuild(DatabaseRW source) throws SQLException {
+        ArrayList<Product> products = new ArrayList<>();
+        source.forEachProduct(products::add); // in productID order
+        synchronized (this) {
+            pending.clear();
+            descriptionCodes.clear();
+            descriptions = new String[16];
+            descriptionCount = 0;
+            int size = products.size();
+            String[] productIds = new String[size];
+            int[] stock = new int[size];
+            long[] pricePence = new long[size];
+            int[] codes = new int[size];
+            for (int i = 0; i < size; i++) {
+                Product product = products.get(i);
+                productIds[i] = product.getProductId();
+                stock[i] = product.getStockQuantity();
+                pricePence[i] = toPence(product.getUnitPrice());
+                codes[i] = codeOf(product.getProductDescription());
+            }
+            current = new CatalogueSnapshot(productIds, stock, pricePence, codes,
+                    Arrays.copyOf(descriptions, descriptionCount));
+        }
+    }
+
+    /**
+     * Returns a snapshot including every change reported so far.
+     */
+    public CatalogueSnapshot snapshot() {
+        if (!hasPending()) {
+            return current;
+        }
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                current = merge(current);
+                pending.clear();
+            }
+            return current;
+        }
+    }
+
+    private synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    // merges the pending changes (sorted) with the rows of the snapshot (sorted), like a merge sort
+    private CatalogueSnapshot merge(CatalogueSnapshot base) {
+        int capacity = base.size() + pending.size();
+        String[] productIds = new String[capacity];
+        int[] stock = new int[capacity];
+        long[] pricePence = new long[capacity];
+        int[] codes = new int[capacity];
+        int size = 0;
+        int row = 0;
+        for (Map.Entry<String, Change> entry : pending.entrySet()) {
+            String productId = entry.getKey();
+            while (row < base.size() && base.getProductId(row).compareTo(productId) < 0) { // unchanged rows
+                productIds[size] = base.getProductId(row);
+                stock[size] = base.getStock(row);
+                pricePence[size] = base.getPricePence(row);
+                codes[size] = base.getDescriptionCode(row); // the dictionary only grows until rebuild()
+                size++;
+                row++;
+            }
+            boolean inBase = row < base.size() && base.getProductId(row).equals(productId);
+            Change change = entry.getValue();
+            if (!change.deleted && (change.saved || inBase)) { // a delta for an unknown product is dropped
+                productIds[size] = productId;
+                stock[size] = (change.saved ? change.stock : base.getStock(row)) + change.stockDelta;
+                pricePence[size] = change.saved ? change.pricePence : base.getPricePence(row);
+                codes[size] = change.description != null ? codeOf(change.description) : base.getDescriptionCode(row);
+                size++;
+            }
+            if (inBase) {
+                row++;
+            }
+        }
+        for (; row < base.size(); row++) {
+            productIds[size] = base.getProductId(row);
+            stock[size] = base.getStock(row);
+            pricePence[size] = base.getPricePence(row);
+            codes[size] = base.getDescriptionCode(row); // the dictionary only grows until rebuild()
+            size++;
+        }
+        return new CatalogueSnapshot(Arrays.copyOf(productIds, size), Arrays.copyOf(stock, size),
+                Arrays.copyOf(pricePence, size), Arrays.copyOf(codes, size),
+                Arrays.copyOf(descriptions, descriptionCount));
+    }
+
+    // the dictionary code of a description, adding it if it is new
+    private int codeOf(String description) {
+        Integer code = descriptionCodes.get(description);
+        if (code == null) {
+            if (descriptionCount == descriptions.length) {
+                descriptions = Arrays.copyOf(descriptions, descriptionCount * 2);
+            }
+            code = descriptionCount;
+            descriptions[descriptionCount++] = description;
+            descriptionCodes.put(description, code);
+        }
+        return code;
+    }
+
+    private static long toPence(double price) {
+        return Math.round(price * 100);
+    }
+
+    // Called with the description only; the price and stock are kept.
+    @Override
+    public synchronized void productSaved(String productId, String description) {
+        Change change = pending.computeIfAbsent(productId, id -> new Change());
+        change.description = description;
+    }
+
+    @Override
+    public synchronized void productSaved(String productId, String description, double unitPrice, int stock) {
+        Change change = new Change(); // replaces earlier changes, the values are absolute
+        change.saved = true;
+        change.description = description;
+        change.pricePence = toPence(unitPrice);
+        change.stock = stock;
+        pending.put(productId, change);
+    }
+
+    @Override
+    public synchronized void productDeleted(String productId) {
+        Change change = new Change();
+        change.deleted = true;
+        pending.put(productId, change);
+    }
+
+    @Override
+    public synchronized void stockChanged(String productId, int delta) {
+        Change change = pending.computeIfAbsent(productId, id -> new Change());
+        if (!change.deleted) {
+            change.stockDelta += delta;
+        }
+    }
+
+    // what happened to a product since the last snapshot
+    private static class Change {
+        private boolean deleted;
+        private boolean saved; // description, price and stock hold the saved values
+        private String description; // null = unchanged
+        private long pricePence;
+        private int stock;
+        private int stockDelta; // added to the saved or the previous stock
+    }
+}
@@ -0,0 +1,67 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CatalogueEvents passes product changes from DerbyRW (and the other DatabaseRW backends)
+ * to the registered CatalogueListeners.
+ * DatabaseRWFactory owns one instance that is shared by every DatabaseRW it creates, so an edit
+ * made in one warehouse client updates the in-memory indexes used by every customer client.
+ *
+ * The listener list is a CopyOnWriteArrayList: listeners are registered a few times at startup
+ * but notified on every write, so notification never needs a lock.
+ *
+ * A failing listener is reported and skipped; it must not undo or block a committed write.
+ */
+
+public class CatalogueEvents {
+    private final List<CatalogueListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(CatalogueListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CatalogueListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void fireProductSaved(String productId, String description, double unitPrice, int stock) {
+        for (CatalogueListener listener : listeners) {
+            try {
+                listener.productSaved(productId, description, unitPrice, stock);
+            } catch (RuntimeException e) {
+                System.err.println("Catalogue listener failed for product " + productId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void fireProductDeleted(String productId) {
+        for (CatalogueListener listener : listeners) {
+            try {
+                listener.productDeleted(productId);
+            } catch (RuntimeException e) {
+                System.err.println("Catalogue listener failed for product " + productId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void fireStockChanged(String productId, int delta) {
+        for (CatalogueListener listener : listeners) {
+            try {
+                listener.stockChanged(productId, delta);
+            } catch (RuntimeException e) {
+                System.err.println("Catalogue listener failed for product " + productId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // fires stockChanged for every line of a purchase (sign -1) or a restore (sign 1)
+    public void fireStockChanged(List<? extends Product> proList, int sign) {
+        for (Product product : proList) {
+            fireStockChanged(product.getProductId(), sign * product.getOrderedQuantity());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * CatalogueFeed tells its readers what changed in ProductTable since a catalogue version,
+ * so an open view can refresh the products it shows instead of searching again.
+ *
+ * How it works:
+ * - Triggers on ProductTable (see SchemaMigrator) add a row to ProductChangeLog for every insert,
+ *   update and delete, in the writer's transaction. The identity column of the row is the catalogue
+ *   version, so every writer (DerbyRW, a write-behind flush, a checkpoint, SetDatabase) is covered.
+ * - changesSince(version) reads the log rows after a version. Derby holds the row lock of a change
+ *   that is not committed yet, so a reader waits for it instead of skipping its version.
+ * - subscribe() registers a subscriber that is pushed the changes after its version. The feed is a
+ *   CatalogueListener: every committed write in this JVM schedules one poll on the notifier, and
+ *   writes arriving while a poll is scheduled share it. A subscriber is never called concurrently.
+ * - Writes the events do not announce (another process, or a checkpoint missed) are picked up by
+ *   the periodic poll DatabaseRWFactory runs on the notifier, which also calls prune() so the log
+ *   only keeps the rows a subscriber may still need.
+ *
+ * A feed created without a connection pool keeps the changes in memory instead, recording the catalogue
+ * events it is told about in a bounded window of the latest changes. It is used by the mapped backend,
+ * which does not write to Derby; only the writes made in this JVM are seen, and a subscriber that falls
+ * more than the window behind misses the older changes.
+ *
+ * DatabaseRWFactory owns one instance. With the memory backend the log only moves at checkpoints.
+ *
+ * Example Usage:
+ *     CatalogueFeed feed = DatabaseRWFactory.getCatalogueFeed();
+ *     CatalogueFeed.Subscription subscription = feed.subscribe(feed.currentVersion(),
+ *             changes -> ... re-read the changed products ...);
+ */
+
+public class CatalogueFeed implements CatalogueListener {
+    private final ConnectionPool pool;
+    private final Executor notifier; // runs the polls, off the writer's thread
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+    private final Object pollLock = new Object(); // one poll at a time, so versions are delivered in order
+    private final ArrayDeque<CatalogueChange> recentChanges; // null = read ProductChangeLog, else guarded by itself
+    private final int recentChangesCapacity;
+    private long recentVersion; // the version of the last recorded change, guarded by recentChanges
+
+    public CatalogueFeed(ConnectionPool pool, Executor notifier) {
+        this.pool = pool;
+        this.notifier = notifier;
+        this.recentChanges = null;
+        this.recentChangesCapacity = 0;
+    }
+
+    // a feed of the catalogue events of this JVM, keeping the latest capacity changes in memory
+    public CatalogueFeed(Executor notifier, int capacity) {
+        this.pool = null;
+        this.notifier = notifier;
+        this.recentChanges = new ArrayDeque<>();
+        this.recentChangesCapacity = capacity;
+    }
+
+    /**
+     * Returns the latest catalogue version, 0 if nothing was changed yet.
+     */
+    public long currentVersion() throws SQLException {
+        if (recentChanges != null) {
+            synchronized (recentChanges) {
+                return recentVersion;
+            }
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare("SELECT MAX(version) FROM ProductChangeLog");
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0; // getLong() returns 0 for NULL
+            }
+        }
+    }
+
+    /**
+     * Returns the changes after a version, oldest first.
+     *
+     * @param version the last version the caller has seen, 0 for all changes
+     */
+    public List<CatalogueChange> changesSince(long version) throws SQLException {
+        List<CatalogueChange> changes = new ArrayList<>();
+        if (recentChanges != null) {
+            synchronized (recentChanges) {
+                for (CatalogueChange change : recentChanges) {
+                    if (change.getVersion() > version) {
+                        changes.add(change);
+                    }
+                }
+            }
+            return changes;
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(
+                    "SELECT version, productID, changeType FROM ProductChangeLog WHERE version > ? ORDER BY version");
+            stmt.setLong(1, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new CatalogueChange(rs.getLong(1), rs.getString(2).trim(),
+                            CatalogueChange.typeOf(rs.getString(3))));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Pushes every change after fromVersion to the subscriber, starting with the ones already logged.
+     * The subscriber runs on the notifier thread and must hand UI work to the UI thread.
+     *
+     * @param fromVersion the last version the subscriber has seen, usually currentVersion()
+     * @param subscriber  called with the new changes, oldest first, never with an empty list
+     */
+    public Subscription subscribe(long fromVersion, Consumer<List<CatalogueChange>> subscriber) {
+        Subscription subscription = new Subscription(fromVersion, subscriber);
+        subscriptions.add(subscription);
+        requestPoll(); // catch up with the changes already after fromVersion
+        return subscription;
+    }
+
+    /**
+     * Schedules a poll on the notifier, unless one is already scheduled.
+     * Called on every catalogue event, and by DatabaseRWFactory after a checkpoint.
+     */
+    public void requestPoll() {
+        if (!subscriptions.isEmpty() && pollScheduled.compareAndSet(false, true)) {
+            notifier.execute(() -> {
+                pollScheduled.set(false); // a write committed from now on needs another poll
+                poll();
+            });
+        }
+    }
+
+    /**
+     * Pushes the new changes to every subscriber now, on the calling thread.
+     * If the log cannot be read the subscribers get the changes at the next poll.
+     */
+    public void poll() {
+        synchronized (pollLock) {
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+            long oldest = Long.MAX_VALUE;
+            for (Subscription subscription : subscriptions) {
+                oldest = Math.min(oldest, subscription.version);
+            }
+            List<CatalogueChange> changes;
+            try {
+                changes = changesSince(oldest);
+            } catch (SQLException e) {
+                System.out.println("Catalogue feed poll failed, retried at the next poll: " + e.getMessage());
+                return;
+            }
+            for (Subscription subscription : subscriptions) {
+                subscription.deliver(changes);
+            }
+        }
+    }
+
+    /**
+     * Deletes the ProductChangeLog rows every subscriber has already been pushed, always keeping the latest
+     * retained rows, so a view subscribing from currentVersion() meanwhile does not lose its first changes.
+     * Does nothing for a feed kept in memory, whose window is already bounded.
+     *
+     * @param retained the number of latest rows never deleted
+     * @return the number of rows deleted
+     */
+    public int prune(int retained) throws SQLException {
+        if (recentChanges != null) {
+            return 0;
+        }
+        synchronized (pollLock) { // the subscription versions only move during a poll
+            long pruneTo = currentVersion() - retained;
+            for (Subscription subscription : subscriptions) {
+                pruneTo = Math.min(pruneTo, subscription.version);
+            }
+            if (pruneTo <= 0) {
+                return 0;
+            }
+            try (PooledConnection conn = pool.borrow()) {
+                PreparedStatement stmt = conn.prepare("DELETE FROM ProductChangeLog WHERE version <= ?");
+                stmt.setLong(1, pruneTo);
+                return stmt.executeUpdate();
+            }
+        }
+    }
+
+    @Override
+    public void productSaved(String productId, String description) {
+        record(productId, CatalogueChange.Type.Updated); // the events do not tell an insert from an update
+        requestPoll();
+    }
+
+    @Override
+    public void productDeleted(String productId) {
+        record(productId, CatalogueChange.Type.Deleted);
+        requestPoll();
+    }
+
+    @Override
+    public void stockChanged(String productId, int delta) {
+        record(productId, CatalogueChange.Type.Updated);
+        requestPoll();
+    }
+
+    // adds a change to the in-memory window, dropping the oldest one when it is full; ProductChangeLog feeds ignore it
+    private void record(String productId, CatalogueChange.Type type) {
+        if (recentChanges == null) {
+            return;
+        }
+        synchronized (recentChanges) {
+            recentChanges.addLast(new CatalogueChange(++recentVersion, productId, type));
+            if (recentChanges.size() > recentChangesCapacity) {
+                recentChanges.removeFirst();
+            }
+        }
+    }
+
+    // a subscriber and the last version pushed to it, guarded by pollLock
+    public class Subscription implements AutoCloseable {
+        private final Consumer<List<CatalogueChange>> subscriber;
+        private long version;
+
+        private Subscription(long version, Consumer<List<CatalogueChange>> subscriber) {
+            this.version = version;
+            this.subscriber = subscriber;
+        }
+
+        // pushes the changes after this subscription's version, the list is in version order
+        private void deliver(List<CatalogueChange> changes) {
+            int first = 0;
+            while (first < changes.size() && changes.get(first).getVersion() <= version) {
+                first++;
+            }
+            if (first == changes.size()) {
+                return;
+            }
+            List<CatalogueChange> newChanges = List.copyOf(changes.subList(first, changes.size()));
+            version = newChanges.get(newChanges.size() - 1).getVersion(); // a failing subscriber does not get them twice
+            try {
+                subscriber.accept(newChanges);
+            } catch (RuntimeException e) {
+                System.err.println("Catalogue feed subscriber failed: " + e.getMessage());
+            }
+        }
+
+        // the last version pushed to the subscriber
+        public long getVersion() {
+            synchronized (pollLock) {
+                return version;
+            }
+        }
+
+        // stops the pushes; a poll already running may still call the subscriber once
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
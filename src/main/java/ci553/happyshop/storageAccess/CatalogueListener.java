@@ -0,0 +1,46 @@
+package ci553.happyshop.storageAccess;
+
+/**
+ * A CatalogueListener is told about every product written through a DatabaseRW,
+ * after the write has been committed. In-memory views of the catalogue (such as the
+ * ProductNameIndex and the ProductSuggestionIndex) implement it to stay current
+ * without re-reading the ProductTable.
+ *
+ * Listeners are called on the thread that made the write, so they must be quick and thread-safe.
+ */
+
+public interface CatalogueListener {
+
+    /**
+     * Called after a product was inserted or updated.
+     *
+     * @param productId   the product ID
+     * @param description the (new) description of the product
+     */
+    void productSaved(String productId, String description);
+
+    /**
+     * Called after a product was inserted or updated, with the columns other than the image.
+     * Listeners that only index descriptions can leave it to call productSaved(productId, description).
+     *
+     * @param productId   the product ID
+     * @param description the (new) description of the product
+     * @param unitPrice   the (new) unit price
+     * @param stock       the (new) stock level
+     */
+    default void productSaved(String productId, String description, double unitPrice, int stock) {
+        productSaved(productId, description);
+    }
+
+    // Called after a product was deleted.
+    void productDeleted(String productId);
+
+    /**
+     * Called after a purchase, a restore or a write-behind flush changed the stock of a product.
+     *
+     * @param productId the product ID
+     * @param delta     the change, negative for a purchase
+     */
+    default void stockChanged(String productId, int delta) {
+    }
+}
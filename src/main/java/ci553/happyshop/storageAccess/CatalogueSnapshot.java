@@ -0,0 +1,141 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * An immutable, column-oriented copy of the catalogue for scans that look at every product
+ * (low stock alerts, stock valuation, reports), published by CatalogueColumns.
+ *
+ * Row i of every column is the i-th product in productID order:
+ *     productIds        String[]  the product IDs
+ *     stock             int[]     the stock levels
+ *     pricePence        long[]    the unit prices in pence, so sums are exact
+ *     descriptionCodes  int[]     codes into descriptions, the dictionary of distinct descriptions
+ *
+ * How it works:
+ * - A scan reads one or two primitive arrays from start to end, without creating a Product or touching
+ *   a String, so it is a tight loop over contiguous memory that the JIT can unroll and vectorise.
+ * - Queries return row numbers (int[]); the caller reads the columns it needs, or calls toProduct().
+ * - A snapshot never changes, so it can be scanned from any thread without locking, while
+ *   CatalogueColumns prepares the next one.
+ *
+ * The image column is not held: no scan needs it, so toProduct() leaves it empty.
+ */
+
+public class CatalogueSnapshot {
+    public static final CatalogueSnapshot EMPTY =
+            new CatalogueSnapshot(new String[0], new int[0], new long[0], new int[0], new String[0]);
+
+    private final String[] productIds;
+    private final int[] stock;
+    private final long[] pricePence;
+    private final int[] descriptionCodes;
+    private final String[] descriptions;
+
+    CatalogueSnapshot(String[] productIds, int[] stock, long[] pricePence, int[] descriptionCodes,
+                      String[] descriptions) {
+        this.productIds = productIds;
+        this.stock = stock;
+        this.pricePence = pricePence;
+        this.descriptionCodes = descriptionCodes;
+        this.descriptions = descriptions;
+    }
+
+    /**
+     * Rows with stock <= threshold, i.e. the products needing a low stock or out of stock alert.
+     */
+    public int[] rowsWithStockAtMost(int threshold) {
+        int count = 0;
+        for (int i = 0; i < stock.length; i++) { // branch-free count, sizes the result exactly
+            count += stock[i] <= threshold ? 1 : 0;
+        }
+        int[] rows = new int[count];
+        for (int i = 0, n = 0; n < count; i++) {
+            if (stock[i] <= threshold) {
+                rows[n++] = i;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Rows with minPence <= unit price <= maxPence.
+     */
+    public int[] rowsWithPriceBetween(long minPence, long maxPence) {
+        int count = 0;
+        for (int i = 0; i < pricePence.length; i++) {
+            count += pricePence[i] >= minPence && pricePence[i] <= maxPence ? 1 : 0;
+        }
+        int[] rows = new int[count];
+        for (int i = 0, n = 0; n < count; i++) {
+            if (pricePence[i] >= minPence && pricePence[i] <= maxPence) {
+                rows[n++] = i;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The value of all stock (stock x unit price) in pence.
+     */
+    public long totalStockValuePence() {
+        long total = 0;
+        for (int i = 0; i < stock.length; i++) {
+            total += stock[i] * pricePence[i];
+        }
+        return total;
+    }
+
+    /**
+     * The n rows holding the most stock value, highest first (ties in productID order).
+     */
+    public int[] topByStockValue(int n) {
+        n = Math.min(n, stock.length);
+        if (n <= 0) {
+            return new int[0];
+        }
+        long[] values = new long[stock.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = stock[i] * pricePence[i];
+        }
+        // min-heap of the best n so far, its head is the one to drop next
+        PriorityQueue<Integer> best = new PriorityQueue<>(n, (a, b) ->
+                values[a] != values[b] ? Long.compare(values[a], values[b]) : Integer.compare(b, a));
+        for (int i = 0; i < values.length; i++) {
+            if (best.size() < n) {
+                best.add(i);
+            } else if (values[i] > values[best.peek()]) {
+                best.poll();
+                best.add(i);
+            }
+        }
+        int[] rows = new int[best.size()];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = best.poll();
+        }
+        return rows;
+    }
+
+    // the row of a product, or -1
+    public int indexOf(String productId) {
+        int row = Arrays.binarySearch(productIds, productId);
+        return row >= 0 ? row : -1;
+    }
+
+    public Product toProduct(int row) {
+        return new Product(productIds[row], getDescription(row), "", pricePence[row] / 100.0, stock[row]);
+    }
+
+    //a set of getter methods
+    public int size() { return productIds.length; }
+    public String getProductId(int row) { return productIds[row]; }
+    public int getStock(int row) { return stock[row]; }
+    public long getPricePence(int row) { return pricePence[row]; }
+    public String getDescription(int row) { return descriptions[descriptionCodes[row]]; }
+    public int getDescriptionCount() { return descriptions.length; } // the dictionary size
+
+    int getDescriptionCode(int row) { return descriptionCodes[row]; }
+}
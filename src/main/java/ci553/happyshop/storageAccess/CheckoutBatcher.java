@@ -0,0 +1,189 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CheckoutBatcher groups checkouts that arrive at the same time into one database transaction
+ * (group commit), so that many customers checking out at once share one commit and one log flush.
+ *
+ * Responsibilities:
+ * - Queues each purchase request and returns a future for its result.
+ * - A single batcher thread takes the first waiting request, then keeps collecting requests until
+ *   the batch window has passed or the batch is full, and purchases them all with purchaseStocksBatch().
+ * - Completes each caller's future with its own result: the insufficient products of that trolley only.
+ * - If the batch fails with a SQLException, purchases each request of the batch on its own,
+ *   so one bad request cannot fail the checkouts it was batched with.
+ *
+ * Benefits:
+ * - Under load, the number of commits grows with the number of batches instead of the number of checkouts.
+ * - A customer sees the same result as without batching: purchaseStocksBatch() runs each trolley in its
+ *   own savepoint, in arrival order.
+ *
+ * Example Usage:
+ *     CheckoutBatcher batcher = new CheckoutBatcher(databaseRW, Duration.ofMillis(2), 32);
+ *     ArrayList<Product> insufficientProducts = batcher.purchase(trolley); // waits for its batch
+ *
+ * Batching is opt-in (see DatabaseRWFactory.checkoutBatchingEnabled): a lone checkout waits up to
+ * one batch window before it is purchased.
+ */
+
+public class CheckoutBatcher implements AutoCloseable {
+    private final DatabaseRW databaseRW;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread batcherThread;
+    private volatile boolean running = true;
+
+    // batcher metrics, only written by the batcher thread
+    private volatile long batchCount = 0;
+    private volatile long requestCount = 0;
+    private volatile long fallbackCount = 0; // batches retried one request at a time after a SQLException
+
+    public CheckoutBatcher(DatabaseRW databaseRW, Duration window, int maxBatchSize) {
+        this.databaseRW = databaseRW;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batcherThread = Thread.ofPlatform().daemon().name("checkout-batcher").start(this::run);
+    }
+
+    /**
+     * Queues a purchase for the next batch.
+     *
+     * @param proList the trolley, products with requested quantities
+     * @return a future with the insufficient products (empty = purchased), or failed with the SQLException
+     */
+    public CompletableFuture<ArrayList<Product>> submit(ArrayList<Product> proList) {
+        Request request = new Request(proList);
+        if (!running) {
+            request.future.completeExceptionally(new SQLException("Checkout batcher is closed"));
+            return request.future;
+        }
+        queue.add(request);
+        return request.future;
+    }
+
+    /**
+     * Queues a purchase and waits for its result. The wait is not interruptible, because once queued
+     * the purchase will happen, and the caller must know whether it did.
+     */
+    public ArrayList<Product> purchase(ArrayList<Product> proList) throws SQLException {
+        try {
+            return submit(proList).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw e;
+        }
+    }
+
+    private void run() {
+        ArrayList<Request> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break; // window over and nothing waiting
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                break; // closed
+            } finally {
+                batch.clear();
+            }
+        }
+        // fail whatever is still queued, nobody will purchase it
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new SQLException("Checkout batcher is closed"));
+        }
+    }
+
+    private void process(ArrayList<Request> batch) {
+        batchCount++;
+        requestCount += batch.size();
+        if (batch.size() == 1) { // nothing to share, no savepoint needed
+            purchaseAlone(batch.get(0));
+            return;
+        }
+
+        List<ArrayList<Product>> purchases = new ArrayList<>();
+        for (Request request : batch) {
+            purchases.add(request.proList);
+        }
+        try {
+            ArrayList<ArrayList<Product>> results = databaseRW.purchaseStocksBatch(purchases);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (SQLException e) {
+            // the batch was rolled back as a whole, retry each request so only the failing one fails
+            fallbackCount++;
+            System.out.println("Checkout batch failed, purchasing one by one: " + e.getMessage());
+            for (Request request : batch) {
+                purchaseAlone(request);
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void purchaseAlone(Request request) {
+        try {
+            request.future.complete(databaseRW.purchaseStocks(request.proList));
+        } catch (SQLException | RuntimeException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops the batcher thread. Requests still waiting for a batch fail with a SQLException.
+     */
+    public void close() {
+        running = false;
+        batcherThread.interrupt();
+    }
+
+    //a set of getter methods
+    public long getBatchCount() { return batchCount; }
+    public long getRequestCount() { return requestCount; }
+    public long getFallbackCount() { return fallbackCount; }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0 : (double) requestCount / batches;
+    }
+
+    public String getStats() {
+        return String.format("CheckoutBatcher[batches=%d, requests=%d, avgBatchSize=%.2f, fallbacks=%d]",
+                batchCount, requestCount, getAverageBatchSize(), fallbackCount);
+    }
+
+    // A queued purchase and the future of its caller
+    private static class Request {
+        private final ArrayList<Product> proList;
+        private final CompletableFuture<ArrayList<Product>> future = new CompletableFuture<>();
+
+        private Request(ArrayList<Product> proList) {
+            this.proList = proList;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small bounded pool of JDBC connections shared by every DatabaseRW created by the DatabaseRWFactory.
+ *
+ * Why a pool:
+ * Opening a Derby connection (and compiling the same SQL again and again) costs far more than
+ * the queries HappyShop actually runs. The pool keeps up to {@code maxSize} connections open and
+ * hands them out on demand, and every connection keeps its own cache of prepared statements
+ * (see {@link PooledConnection}).
+ *
+ * How it works:
+ * - A Semaphore with {@code maxSize} permits bounds the number of connections in use at the same time.
+ * - Idle connections wait in a deque; a borrower takes the most recently returned one (it is the warmest).
+ * - New connections are only opened when no idle connection is available, so the pool grows lazily.
+ * - If no connection becomes free within {@code borrowTimeoutMillis}, borrow() throws an SQLException.
+ *
+ * Example Usage:
+ *     try (PooledConnection conn = pool.borrow()) {
+ *         PreparedStatement stmt = conn.prepare("SELECT * FROM ProductTable WHERE productID = ?");
+ *         ...
+ *     } // the connection goes back to the pool here
+ *
+ * Metrics (pool size, wait time, borrow/return counters) are exposed through getter methods
+ * and summarised by {@link #getStats()}.
+ */
+
+public class ConnectionPool {
+    private final String dbURL;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    // counters
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder returnCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    /**
+     * @param dbURL               the JDBC URL used to open new connections
+     * @param maxSize             the maximum number of connections that can be in use at the same time
+     * @param borrowTimeoutMillis how long borrow() waits for a free connection before giving up
+     */
+    public ConnectionPool(String dbURL, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.dbURL = dbURL;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection is available.
+     * The caller must close() the returned PooledConnection (ideally with try-with-resources)
+     * to give it back to the pool.
+     *
+     * @return a connection that is in auto-commit mode
+     * @throws SQLException if the pool is closed, the wait timed out, or a new connection could not be opened
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            totalWaitNanos.add(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection conn = idleConnections.pollFirst();
+            if (conn == null) {
+                conn = new PooledConnection(DriverManager.getConnection(dbURL), this);
+                openConnections.incrementAndGet();
+            }
+            conn.markBorrowed();
+            borrowCount.increment();
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            permits.release(); // nothing was handed out, so give the permit back
+            throw e;
+        }
+    }
+
+    /**
+     * Called by PooledConnection.close(). Resets the connection to auto-commit mode and
+     * puts it back on the idle deque, or discards it if it can no longer be used.
+     */
+    void release(PooledConnection conn) {
+        returnCount.increment();
+        try {
+            if (closed || !conn.resetForReuse()) {
+                discard(conn);
+            } else {
+                idleConnections.offerFirst(conn);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection conn) {
+        openConnections.decrementAndGet();
+        conn.closePhysically();
+    }
+
+    /**
+     * Closes all idle connections and rejects further borrows.
+     * Connections that are still borrowed are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection conn;
+        while ((conn = idleConnections.pollFirst()) != null) {
+            discard(conn);
+        }
+    }
+
+    //a set of getter methods for pool metrics
+    public String getDbURL() { return dbURL; }
+    public int getMaxSize() { return maxSize; }
+    public int getOpenConnections() { return openConnections.get(); }
+    public int getIdleConnections() { return idleConnections.size(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public long getBorrowCount() { return borrowCount.sum(); }
+    public long getReturnCount() { return returnCount.sum(); }
+    public long getTimeoutCount() { return timeoutCount.sum(); }
+    public long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()); }
+
+    /**
+     * @return the average time (in milliseconds) a borrower waited for a connection
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum() + timeoutCount.sum();
+        return borrows == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / borrows;
+    }
+
+    /**
+     * @return a one-line summary of the pool metrics, useful for logging
+     */
+    public String getStats() {
+        return String.format("ConnectionPool[max=%d, open=%d, active=%d, idle=%d, borrows=%d, returns=%d, timeouts=%d, avgWait=%.3f ms]",
+                maxSize, getOpenConnections(), getActiveConnections(), getIdleConnections(),
+                getBorrowCount(), getReturnCount(), getTimeoutCount(), getAverageWaitMillis());
+    }
+}
@@ -4,6 +4,9 @@ import ci553.happyshop.catalogue.Product;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The DatabaseRW interface defines the contract for interacting with the product database.
@@ -54,6 +57,26 @@ public interface DatabaseRW {
      */
     ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException;
 
+    /**
+     * Purchases several trolleys at once (used by CheckoutBatcher to group concurrent checkouts).
+     * Each trolley succeeds or fails on its own, with the same result purchaseStocks() would give,
+     * as if the trolleys were purchased one after another in list order.
+     *
+     * The default implementation calls purchaseStocks() for each trolley; DerbyRW overrides it
+     * to commit the whole batch in one transaction.
+     *
+     * @param purchases the trolleys, each a list of products with requested quantities
+     * @return the insufficient products of each trolley, in the same order (an empty list = purchased)
+     * @throws SQLException if a database access error occurs
+     */
+    default ArrayList<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> purchases) throws SQLException {
+        ArrayList<ArrayList<Product>> results = new ArrayList<>();
+        for (ArrayList<Product> proList : purchases) {
+            results.add(purchaseStocks(proList));
+        }
+        return results;
+    }
+
 
     /**
      * Updates the details of a product identified by its ID.
@@ -104,6 +127,91 @@ public interface DatabaseRW {
      * @throws SQLException if a database access error occurs
      */
     ArrayList<Product> getAllProducts() throws SQLException;
-}
 
+    /**
+     * Retrieves one page of products in productID order, starting after the given ID (keyset pagination).
+     * Unlike an OFFSET, the cost of a page does not grow with its position in the catalogue,
+     * and products inserted or deleted between calls do not shift the following pages.
+     *
+     * The default implementation filters getAllProducts(), so each page loads the whole catalogue;
+     * every backend in this package overrides it (DerbyRW with a keyset query).
+     *
+     * @param afterId the last productID of the previous page, or null for the first page
+     * @param limit   the maximum number of products in the page
+     * @return the page, empty when there are no more products
+     * @throws SQLException if a database access error occurs
+     */
+    default ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        ArrayList<Product> all = getAllProducts();
+        all.sort(null); // Product is Comparable by productID
+        ArrayList<Product> page = new ArrayList<>();
+        for (Product product : all) {
+            if ((afterId == null || product.getProductId().compareTo(afterId) > 0) && page.size() < limit) {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Passes every product, in productID order, to the action without building a list of all products.
+     * Full-catalogue operations (e.g. low stock scans) should use this instead of getAllProducts(),
+     * so they run in constant memory whatever the size of the catalogue.
+     *
+     * The default implementation makes a single getAllProducts() pass (paging over the default page()
+     * would load the whole catalogue once per page); the backends override it to stream the products.
+     *
+     * @param action called once for each product
+     * @throws SQLException if a database access error occurs
+     */
+    default void forEachProduct(Consumer<Product> action) throws SQLException {
+        ArrayList<Product> all = getAllProducts();
+        all.sort(null); // Product is Comparable by productID
+        for (Product product : all) {
+            action.accept(product);
+        }
+    }
+
+    /**
+     * Finds the products whose description starts with the prefix, ignoring case,
+     * ordered by description.
+     *
+     * The default implementation scans the catalogue; DerbyRW overrides it with an indexed query.
+     *
+     * @param prefix the start of the description
+     * @param limit  the maximum number of products returned
+     * @return the matching products, at most limit
+     * @throws SQLException if a database access error occurs
+     */
+    default ArrayList<Product> searchByNamePrefix(String prefix, int limit) throws SQLException {
+        String lowerPrefix = prefix.toLowerCase();
+        ArrayList<Product> found = new ArrayList<>();
+        forEachProduct(product -> {
+            if (product.getProductDescription().toLowerCase().startsWith(lowerPrefix)) {
+                found.add(product);
+            }
+        });
+        found.sort(Comparator.comparing(product -> product.getProductDescription().toLowerCase()));
+        return new ArrayList<>(found.subList(0, Math.min(limit, found.size())));
+    }
 
+    /**
+     * Finds the products with at most threshold units in stock, i.e. the products that are
+     * low in stock or out of stock (see StockAlertService), in productID order.
+     *
+     * The default implementation scans the catalogue; DerbyRW overrides it with an indexed query.
+     *
+     * @param threshold the highest stock quantity included
+     * @return the products at or below the threshold
+     * @throws SQLException if a database access error occurs
+     */
+    default ArrayList<Product> findProductsBelowStock(int threshold) throws SQLException {
+        ArrayList<Product> found = new ArrayList<>();
+        forEachProduct(product -> {
+            if (product.getStockQuantity() <= threshold) {
+                found.add(product);
+            }
+        });
+        return found;
+    }
+}
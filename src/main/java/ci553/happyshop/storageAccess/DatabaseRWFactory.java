@@ -1,12 +1,34 @@
 package ci553.happyshop.storageAccess;
 
+import ci553.happyshop.utility.TimingWheel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The DatabaseRWFactory class centralizes database configuration and object creation.
  * It acts as a factory pattern to provide flexible instantiation of the DatabaseRW interface.
  *
  * Responsibilities:
  * - Holds the database URL used to connect to the database.
- * - Creates instances of DatabaseRW (e.g., DerbyRW, MySQLRW, SQLiteRW).
+ * - Owns the connection pool shared by every DatabaseRW it creates, and upgrades the schema
+ *   (SchemaMigrator) when the pool is created.
+ * - Owns the product cache, and wraps each DatabaseRW in a CachedDatabaseRW when caching is enabled.
+ * - Owns the checkout batcher, and wraps each DatabaseRW in a BatchingDatabaseRW when batching is enabled.
+ * - Owns the reservation ledger holding the stock reserved by customer trolleys.
+ * - Owns the catalogue events, and the in-memory indexes that listen to them
+ *   (the product name index, the suggestion index and the catalogue columns), built from the database on first use.
+ * - Owns the catalogue feed, pushing the ProductChangeLog rows to the open views.
+ * - Creates instances of DatabaseRW (e.g., DerbyRW, MySQLRW, SQLiteRW), or shares one InMemoryDatabaseRW
+ *   when the "memory" backend is selected, checkpointing it to Derby periodically and on shutdown,
+ *   one WriteBehindDatabaseRW when the "writebehind" backend is selected, or one MappedDatabaseRW
+ *   when the "mapped" backend is selected.
  *
  * Benefits:
  * - Database Abstraction: Keeps the system decoupled from specific database implementations.
@@ -24,11 +46,347 @@ public class DatabaseRWFactory {
 
     public static String dbURL = "jdbc:derby:happyShopDB"; //or other database URL in the future (eg MySQLRW or SQLiteRW)
 
+    // "derby" (default), "memory" to serve the catalogue from memory, "writebehind" to journal
+    // stock changes and write them to Derby in batches, or "mapped" to keep the catalogue in a
+    // memory-mapped file instead of Derby: -Dhappyshop.db.backend=memory
+    public static String backend = System.getProperty("happyshop.db.backend", "derby");
+    // The mapped backend's file, and how many products it holds when it is created
+    public static String mappedStorePath = System.getProperty("happyshop.db.mappedFile", "happyShopDB-products.dat");
+    public static int mappedStoreCapacity = Integer.getInteger("happyshop.db.mappedCapacity", 10_000);
+    // The write-behind journal file and how often its changes are flushed to Derby
+    public static String stockJournalPath = System.getProperty("happyshop.db.stockJournal", "happyShopDB-stock.journal");
+    public static long stockFlushMillis = Long.getLong("happyshop.db.stockFlushMillis", 100L);
+    // How often the memory backend writes the catalogue to Derby, -Dhappyshop.db.checkpointMillis=...
+    public static long checkpointMillis = Long.getLong("happyshop.db.checkpointMillis", 60_000L);
+
+    // Connection pool settings, can be overridden with -Dhappyshop.db.poolSize=... etc.
+    public static int connectionPoolSize = Integer.getInteger("happyshop.db.poolSize", 8);
+    public static long connectionWaitMillis = Long.getLong("happyshop.db.poolWaitMillis", 5000L);
+
+    // Rows fetched per round trip by full-catalogue scans (page() and forEachProduct())
+    public static int fetchSize = Integer.getInteger("happyshop.db.fetchSize", 200);
+
+    // Product cache settings, disable with -Dhappyshop.db.cache=false
+    public static boolean productCacheEnabled = Boolean.parseBoolean(System.getProperty("happyshop.db.cache", "true"));
+    public static int productCacheSize = Integer.getInteger("happyshop.db.cacheSize", 1024);
+
+    // Group commit of concurrent checkouts, enable with -Dhappyshop.db.checkoutBatch=true
+    public static boolean checkoutBatchingEnabled = Boolean.parseBoolean(System.getProperty("happyshop.db.checkoutBatch", "false"));
+    public static long checkoutBatchWindowMillis = Long.getLong("happyshop.db.checkoutBatchWindowMillis", 2L);
+    public static int checkoutBatchMaxSize = Integer.getInteger("happyshop.db.checkoutBatchMaxSize", 32);
+
+    // How long a stock hold placed by add-to-trolley lives without being renewed, -Dhappyshop.reservation.ttlMillis=...
+    public static long reservationTtlMillis = Long.getLong("happyshop.reservation.ttlMillis", 10 * 60 * 1000L);
+
+    // Name search index, disable with -Dhappyshop.db.nameIndex=false to search with LIKE
+    public static boolean productNameIndexEnabled = Boolean.parseBoolean(System.getProperty("happyshop.db.nameIndex", "true"));
+
+    // Memory budget of the customer type-ahead suggestions, -Dhappyshop.suggest.maxBytes=...
+    public static long suggestionIndexMaxBytes = Long.getLong("happyshop.suggest.maxBytes", 4L * 1024 * 1024);
+
+    // Latest changes the catalogue feed always keeps (in ProductChangeLog, or in memory for the mapped backend),
+    // and how often it polls and prunes the log: -Dhappyshop.feed.recentChanges=... -Dhappyshop.feed.pollMillis=...
+    public static int catalogueFeedRecentChanges = Integer.getInteger("happyshop.feed.recentChanges", 10_000);
+    public static long catalogueFeedPollMillis = Long.getLong("happyshop.feed.pollMillis", 5000L);
+
+    private static ConnectionPool connectionPool; // shared by all DatabaseRW instances, created on first use
+    private static ProductCache productCache; // shared by all CachedDatabaseRW instances, created on first use
+    private static CheckoutBatcher checkoutBatcher; // shared by all BatchingDatabaseRW instances, created on first use
+    private static ReservationLedger reservationLedger; // shared by all customer clients, created on first use
+    private static ProductNameIndex productNameIndex; // shared by all DerbyRW instances, built on first use
+    private static ProductSuggestionIndex productSuggestionIndex; // shared by all customer clients, built on first use
+    private static CatalogueColumns catalogueColumns; // shared by the stock alerts and reports, built on first use
+    private static volatile CatalogueFeed catalogueFeed; // shared by the warehouse clients, created on first use
+    private static InMemoryDatabaseRW inMemoryDatabaseRW; // the memory backend, loaded from Derby on first use
+    private static WriteBehindDatabaseRW writeBehindDatabaseRW; // the write-behind backend, recovered on first use
+    private static MappedDatabaseRW mappedDatabaseRW; // the mapped backend, opened on first use
+    private static final CatalogueEvents catalogueEvents = new CatalogueEvents(); // shared by all DerbyRW instances
+
     /**
-     * Creates an instance of DatabaseRW (currently returning DerbyRW, but can be modified to return other implementations).
+     * Creates an instance of DatabaseRW (DerbyRW, or the shared InMemoryDatabaseRW for the memory backend).
+     * Every instance shares the same connection pool and, if enabled, the same product cache
+     * and the same checkout batcher.
      */
     public static DatabaseRW createDatabaseRW() {
-        return new DerbyRW(); // or other database implementations in the future (eg MySQLRW or SQLiteRW)
+        DatabaseRW databaseRW = createUnbatchedDatabaseRW();
+        if (checkoutBatchingEnabled) {
+            return new BatchingDatabaseRW(databaseRW, getCheckoutBatcher());
+        }
+        return databaseRW;
+    }
+
+    // the DatabaseRW without checkout batching, also used by the batcher itself to purchase
+    private static DatabaseRW createUnbatchedDatabaseRW() {
+        if ("memory".equals(backend)) {
+            return getInMemoryDatabaseRW(); // already in memory, nothing to cache
+        }
+        if ("writebehind".equals(backend)) {
+            return getWriteBehindDatabaseRW();
+        }
+        if ("mapped".equals(backend)) {
+            return getMappedDatabaseRW(); // reads are already at memory speed, nothing to cache
+        }
+        DatabaseRW databaseRW = new DerbyRW(getConnectionPool(), getProductNameIndex(), catalogueEvents); // or other database implementations in the future (eg MySQLRW or SQLiteRW)
+        if (productCacheEnabled) {
+            return new CachedDatabaseRW(databaseRW, getProductCache());
+        }
+        return databaseRW;
+    }
+
+    /**
+     * Returns the connection pool shared by every DatabaseRW created by this factory,
+     * creating it on first use. Useful for reading the pool metrics.
+     */
+    public static synchronized ConnectionPool getConnectionPool() {
+        if (connectionPool == null) {
+            connectionPool = new ConnectionPool(dbURL, connectionPoolSize, connectionWaitMillis);
+            try (PooledConnection conn = connectionPool.borrow()) {
+                SchemaMigrator.migrate(conn.getConnection()); // upgrades an existing database in place
+            } catch (SQLException e) {
+                System.out.println("Schema migration failed: " + e.getMessage());
+            }
+        }
+        return connectionPool;
+    }
+
+    /**
+     * Returns the InMemoryDatabaseRW of the memory backend, loading it from Derby on first use.
+     * It is written back to Derby every checkpointMillis and when the JVM shuts down.
+     * If loading fails the catalogue starts empty and is never checkpointed, so Derby is not wiped.
+     */
+    public static synchronized InMemoryDatabaseRW getInMemoryDatabaseRW() {
+        if (inMemoryDatabaseRW == null) {
+            inMemoryDatabaseRW = new InMemoryDatabaseRW(getProductNameIndex(), catalogueEvents);
+            try {
+                int loaded = inMemoryDatabaseRW.loadFrom(new DerbyRW(getConnectionPool()));
+                System.out.println("Memory backend loaded: " + loaded + " products.");
+                startCheckpoints(inMemoryDatabaseRW);
+            } catch (SQLException e) {
+                System.out.println("Memory backend not loaded, checkpoints disabled: " + e.getMessage());
+            }
+        }
+        return inMemoryDatabaseRW;
+    }
+
+    /**
+     * Returns the WriteBehindDatabaseRW of the write-behind backend, replaying its journal into Derby
+     * and starting its flusher on first use. It is flushed and closed when the JVM shuts down.
+     * Unlike the other backends there is no fallback: running without the journal would replay its
+     * records on top of newer stock at the next start.
+     */
+    public static synchronized WriteBehindDatabaseRW getWriteBehindDatabaseRW() {
+        if (writeBehindDatabaseRW == null) {
+            try {
+                WriteBehindDatabaseRW writeBehind = WriteBehindDatabaseRW.open(
+                        new DerbyRW(getConnectionPool(), getProductNameIndex(), catalogueEvents),
+                        new StockJournal(Path.of(stockJournalPath)), getProductNameIndex());
+                writeBehind.start(Duration.ofMillis(stockFlushMillis));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        writeBehind.close();
+                    } catch (SQLException | IOException e) {
+                        System.out.println("Stock flush on shutdown failed, the journal keeps the changes: " + e.getMessage());
+                    }
+                }, "stock-flusher-shutdown"));
+                writeBehindDatabaseRW = writeBehind;
+            } catch (SQLException | IOException e) {
+                throw new IllegalStateException("Write-behind backend could not be opened: " + e.getMessage(), e);
+            }
+        }
+        return writeBehindDatabaseRW;
+    }
+
+    /**
+     * Returns the MappedDatabaseRW of the mapped backend, opening its file on first use. A new file is
+     * filled from Derby once; after that Derby is not used (nor booted) by this backend.
+     * It searches by scanning its records, since the name index is loaded from Derby.
+     * The file is forced to disk and closed when the JVM shuts down.
+     */
+    public static synchronized MappedDatabaseRW getMappedDatabaseRW() {
+        if (mappedDatabaseRW == null) {
+            try {
+                MappedDatabaseRW mapped = MappedDatabaseRW.open(Path.of(mappedStorePath), mappedStoreCapacity,
+                        null, catalogueEvents);
+                if (mapped.wasCreated()) {
+                    int loaded = mapped.loadFrom(new DerbyRW(getConnectionPool()));
+                    System.out.println("Mapped backend filled from Derby: " + loaded + " products.");
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        mapped.close();
+                    } catch (IOException e) {
+                        System.out.println("Mapped store not closed cleanly: " + e.getMessage());
+                    }
+                }, "mapped-store-shutdown"));
+                mappedDatabaseRW = mapped;
+            } catch (SQLException | IOException e) {
+                throw new IllegalStateException("Mapped backend could not be opened: " + e.getMessage(), e);
+            }
+        }
+        return mappedDatabaseRW;
+    }
+
+    // writes the memory backend to Derby on a daemon thread, and once more on shutdown
+    private static void startCheckpoints(InMemoryDatabaseRW memory) {
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable checkpoint = () -> {
+            try {
+                memory.checkpoint(new DerbyRW(getConnectionPool()));
+                if (catalogueFeed != null) {
+                    catalogueFeed.requestPoll(); // the checkpoint moved the change log without catalogue events
+                }
+            } catch (SQLException e) {
+                System.out.println("Checkpoint failed: " + e.getMessage()); // retried at the next checkpoint
+            }
+        };
+        checkpointer.scheduleWithFixedDelay(checkpoint, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            checkpointer.shutdownNow();
+            checkpoint.run();
+        }, "db-checkpoint-shutdown"));
     }
-}
 
+    /**
+     * Returns the product cache shared by every CachedDatabaseRW created by this factory,
+     * creating it on first use. Useful for reading the hit, miss and eviction counters.
+     */
+    public static synchronized ProductCache getProductCache() {
+        if (productCache == null) {
+            productCache = new ProductCache(productCacheSize);
+        }
+        return productCache;
+    }
+
+    /**
+     * Returns the checkout batcher shared by every BatchingDatabaseRW created by this factory,
+     * starting it on first use. Useful for reading the batch counters.
+     */
+    public static synchronized CheckoutBatcher getCheckoutBatcher() {
+        if (checkoutBatcher == null) {
+            checkoutBatcher = new CheckoutBatcher(createUnbatchedDatabaseRW(),
+                    Duration.ofMillis(checkoutBatchWindowMillis), checkoutBatchMaxSize);
+        }
+        return checkoutBatcher;
+    }
+
+    /**
+     * Returns the reservation ledger shared by every customer client, creating it on first use
+     * with a timing wheel ticking every second to expire the holds.
+     */
+    public static synchronized ReservationLedger getReservationLedger() {
+        if (reservationLedger == null) {
+            TimingWheel timingWheel = new TimingWheel(1000, 512);
+            timingWheel.start();
+            reservationLedger = new ReservationLedger(timingWheel, reservationTtlMillis);
+        }
+        return reservationLedger;
+    }
+
+    /**
+     * Returns the product name index shared by every DerbyRW created by this factory,
+     * loading it from the database on first use. Returns null if the index is disabled.
+     * If loading fails the index stays unloaded and DerbyRW falls back to LIKE searches.
+     */
+    public static synchronized ProductNameIndex getProductNameIndex() {
+        if (!productNameIndexEnabled) {
+            return null;
+        }
+        if (productNameIndex == null) {
+            productNameIndex = new ProductNameIndex();
+            catalogueEvents.addListener(productNameIndex);
+            try {
+                productNameIndex.rebuild(new DerbyRW(getConnectionPool()).loadDescriptions());
+                System.out.println("Product name index loaded: " + productNameIndex.getProductCount() + " products.");
+            } catch (SQLException e) {
+                System.out.println("Product name index not loaded, searching with LIKE: " + e.getMessage());
+            }
+        }
+        return productNameIndex;
+    }
+
+    /**
+     * Returns the type-ahead suggestion index shared by every customer client,
+     * loading it from the selected backend on first use. If loading fails there are no suggestions
+     * until products are written.
+     */
+    public static synchronized ProductSuggestionIndex getProductSuggestionIndex() {
+        if (productSuggestionIndex == null) {
+            productSuggestionIndex = new ProductSuggestionIndex(suggestionIndexMaxBytes);
+            catalogueEvents.addListener(productSuggestionIndex);
+            try {
+                productSuggestionIndex.rebuild(loadDescriptions());
+            } catch (SQLException e) {
+                System.out.println("Suggestion index not loaded: " + e.getMessage());
+            }
+        }
+        return productSuggestionIndex;
+    }
+
+    // the description of every product; the mapped backend scans its records, so Derby is not booted
+    private static HashMap<String, String> loadDescriptions() throws SQLException {
+        if (!"mapped".equals(backend)) {
+            return new DerbyRW(getConnectionPool()).loadDescriptions();
+        }
+        HashMap<String, String> descriptions = new HashMap<>();
+        getMappedDatabaseRW().forEachProduct(
+                product -> descriptions.put(product.getProductId(), product.getProductDescription()));
+        return descriptions;
+    }
+
+    /**
+     * Returns the columnar catalogue snapshots used by the stock alerts and reports,
+     * loading them from the selected backend on first use. If loading fails the snapshot
+     * only holds the products written since.
+     */
+    public static synchronized CatalogueColumns getCatalogueColumns() {
+        if (catalogueColumns == null) {
+            catalogueColumns = new CatalogueColumns();
+            catalogueEvents.addListener(catalogueColumns);
+            try {
+                catalogueColumns.rebuild(createDatabaseRW());
+            } catch (SQLException e) {
+                System.out.println("Catalogue columns not loaded: " + e.getMessage());
+            }
+        }
+        return catalogueColumns;
+    }
+
+    /**
+     * Returns the catalogue feed shared by every client, creating it on first use.
+     * Its subscribers are called on one daemon thread, which also polls the feed every catalogueFeedPollMillis
+     * and prunes ProductChangeLog. The mapped backend does not write to Derby, so its feed records
+     * the catalogue events in memory instead of reading ProductChangeLog.
+     */
+    public static synchronized CatalogueFeed getCatalogueFeed() {
+        if (catalogueFeed == null) {
+            ScheduledExecutorService notifier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "catalogue-feed");
+                thread.setDaemon(true);
+                return thread;
+            });
+            CatalogueFeed feed = "mapped".equals(backend)
+                    ? new CatalogueFeed(notifier, catalogueFeedRecentChanges)
+                    : new CatalogueFeed(getConnectionPool(), notifier);
+            catalogueEvents.addListener(feed);
+            notifier.scheduleWithFixedDelay(() -> {
+                feed.poll();
+                try {
+                    feed.prune(catalogueFeedRecentChanges);
+                } catch (SQLException e) {
+                    System.out.println("Catalogue feed prune failed, retried at the next poll: " + e.getMessage());
+                }
+            }, catalogueFeedPollMillis, catalogueFeedPollMillis, TimeUnit.MILLISECONDS);
+            catalogueFeed = feed;
+        }
+        return catalogueFeed;
+    }
+
+    // Returns the catalogue events shared by every DerbyRW created by this factory, to register more listeners.
+    public static CatalogueEvents getCatalogueEvents() {
+        return catalogueEvents;
+    }
+}
@@ -4,8 +4,12 @@ import ci553.happyshop.catalogue.Product;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 /** ProductTable definition
  * "CREATE TABLE ProductTable(" +
@@ -16,11 +20,35 @@ import java.util.concurrent.locks.ReentrantLock;
  *         "inStock INT," +
  *         "CHECK (inStock >= 0)" +
  *           ")",
+ * plus, added by SchemaMigrator:
+ *         descriptionLower VARCHAR(100) GENERATED ALWAYS AS (LOWER(description)), indexed
+ *         an index on inStock
+ *         StockJournalState(journal, lastSequence), used by WriteBehindDatabaseRW
+ *         ProductChangeLog(version, productID, changeType), written by triggers, read by CatalogueFeed
  */
 
 public class DerbyRW implements DatabaseRW {
-    private static String dbURL = DatabaseRWFactory.dbURL; // Shared by all instances
-    private  Lock lock = new ReentrantLock(); // Each instance has its own lock
+    private final ConnectionPool pool; // Shared by all instances created by DatabaseRWFactory
+    private final ProductLockManager lockManager = ProductLockManager.getProductLockManager(); // Shared by all instances
+    private final ProductNameIndex nameIndex; // Shared by all instances created by DatabaseRWFactory, null = search with LIKE
+    private final CatalogueEvents catalogueEvents; // told about every committed product write
+
+    // uses the connection pool, name index and catalogue events owned by DatabaseRWFactory
+    public DerbyRW() {
+        this(DatabaseRWFactory.getConnectionPool(), DatabaseRWFactory.getProductNameIndex(),
+                DatabaseRWFactory.getCatalogueEvents());
+    }
+
+    public DerbyRW(ConnectionPool pool) {
+        this(pool, null, new CatalogueEvents());
+    }
+
+    // the name index must already be registered with the catalogue events to stay current
+    public DerbyRW(ConnectionPool pool, ProductNameIndex nameIndex, CatalogueEvents catalogueEvents) {
+        this.pool = pool;
+        this.nameIndex = nameIndex;
+        this.catalogueEvents = catalogueEvents;
+    }
 
     //search product by product Id or name, return a list of products or null
     //search by Id at first, if get null, search by product name
@@ -49,8 +77,8 @@ public class DerbyRW implements DatabaseRW {
         Product product = null;
         String query = "SELECT * FROM ProductTable WHERE productID = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement pstmt = conn.prepare(query);
             // Set the productId parameter
             pstmt.setString(1, proId);
 
@@ -65,20 +93,31 @@ public class DerbyRW implements DatabaseRW {
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            throw e; // do not report "not found" for a failed query, a cache would remember it
         }
         return product;
     }
 
     //helper method
     //search  by product name, return a List of products or null
+    //uses the in-memory name index when it is loaded, otherwise a LIKE scan of the table
+    //(a "contains" LIKE cannot use an index, but comparing descriptionLower saves a LOWER() per row)
+    //'%' and '_' in the keyword are escaped, so both paths match them as plain characters
     private ArrayList<Product> searchByProName(String name) {
-        ArrayList<Product> productList = new ArrayList<>();
-        String query = "SELECT * FROM ProductTable WHERE LOWER(description) LIKE LOWER(?)";
+        if (nameIndex != null && nameIndex.isLoaded()) {
+            ArrayList<Product> productList = searchByProductIds(nameIndex.search(name));
+            if (productList.isEmpty()) {
+                System.out.println("Product " + name + " not found.");
+            }
+            return productList;
+        }
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable WHERE descriptionLower LIKE ? ESCAPE '!' ORDER BY productID";
 
-            stmt.setString(1, "%" + name.toLowerCase() + "%");
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            stmt.setString(1, "%" + escapeLike(name.toLowerCase()) + "%");
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -97,15 +136,67 @@ public class DerbyRW implements DatabaseRW {
         return productList; // could be empty if no matches
     }
 
+    //helper method
+    //loads the products found by the name index, on one connection, keeping the given order
+    private ArrayList<Product> searchByProductIds(List<String> productIds) {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable WHERE productID = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            for (String productId : productIds) {
+                stmt.setString(1, productId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) { // may be gone if it was deleted after the index lookup
+                        productList.add(makeProObjFromDbRecord(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Database query error, search by IDs: " + productIds + " " + e.getMessage());
+        }
+        return productList;
+    }
+
+    /**
+     * Reads the descriptions of all products, used once at startup to build the in-memory indexes.
+     *
+     * @return productID -> description
+     * @throws SQLException if a database access error occurs
+     */
+    public HashMap<String, String> loadDescriptions() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            return loadDescriptions(conn);
+        }
+    }
+
+    //helper method for loadDescriptions and replaceAll, runs on the caller's connection
+    private HashMap<String, String> loadDescriptions(PooledConnection conn) throws SQLException {
+        HashMap<String, String> descriptions = new HashMap<>();
+        String query = "SELECT productID, description FROM ProductTable";
+
+        try (ResultSet rs = conn.prepare(query).executeQuery()) {
+            while (rs.next()) {
+                descriptions.put(rs.getString("productID"), rs.getString("description"));
+            }
+        }
+        return descriptions;
+    }
+
+    //make a Product object from the database record, without printing it (used by full-catalogue scans)
+    private Product makeProduct(ResultSet rs) throws SQLException {
+        return new Product(rs.getString("productID"), rs.getString("description"), rs.getString("image"),
+                rs.getDouble("unitPrice"), rs.getInt("inStock"));
+    }
+
     //make a Product object from the database record
     private Product makeProObjFromDbRecord(ResultSet rs) throws SQLException {
-        Product product = null;
-        String productId = rs.getString("productID");
-        String description = rs.getString("description");
-        String imagePath = rs.getString("image");
-        double unitPrice = rs.getDouble("unitPrice");
-        int inStock = rs.getInt("inStock");
-        product =new Product(productId,description,imagePath,unitPrice,inStock);
+        Product product = makeProduct(rs);
+        String productId = product.getProductId();
+        String description = product.getProductDescription();
+        String imagePath = product.getProductImageName();
+        double unitPrice = product.getUnitPrice();
+        int inStock = product.getStockQuantity();
 
         // Show product details
         System.out.println("Product ID: " + productId);
@@ -128,58 +219,32 @@ public class DerbyRW implements DatabaseRW {
         return product;
     }
 
+    /**
+     * Purchases the trolley with one conditional UPDATE per line:
+     *     UPDATE ProductTable SET inStock = inStock - ? WHERE productID = ? AND inStock >= ?
+     * The stock check and the decrement are a single atomic statement in Derby, so no JVM lock is needed
+     * and checkouts of different products run in parallel, even across DerbyRW instances.
+     *
+     * - Lines are processed in productID order, so two checkouts sharing products take Derby's
+     *   row locks in the same order and cannot deadlock.
+     * - All lines run in one transaction: if any line is insufficient, the whole transaction is
+     *   rolled back and every insufficient product is returned (the DatabaseRW contract).
+     */
     public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
-        lock.lock();  // Lock the critical section to prevent concurrent access
-        ArrayList<Product> insufficientProducts = new ArrayList<>();
-
-        String checkSql = "SELECT inStock FROM ProductTable WHERE productId = ?";
-        String updateSql = "UPDATE ProductTable SET inStock = inStock - ? WHERE productId = ?";
+        ArrayList<Product> insufficientProducts;
+        ArrayList<Product> reservedLines = new ArrayList<>();
 
-        // Use try-with-resources for Connection and PreparedStatements
-        try (Connection conn = DriverManager.getConnection(dbURL)) {
+        // Use try-with-resources so the pooled connection is always returned
+        try (PooledConnection conn = pool.borrow()) {
             conn.setAutoCommit(false); // Turn off auto-commit for transaction
 
-            // Use a second try-with-resources for the PreparedStatements
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-                 PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-
-                boolean allSufficient = true; // Flag to track if all products have sufficient stock
-
-                for (Product product : proList) {
-                    checkStmt.setString(1, product.getProductId());
-                    ResultSet rs = checkStmt.executeQuery();
-
-                    if (rs.next()) {
-                        int currentStock = rs.getInt("inStock");
-                        int newStock = currentStock - product.getOrderedQuantity();
-
-                        // Debugging: Print values before update
-                        System.out.println("Product ID: " + product.getProductId());
-                        System.out.println("Before change: " + currentStock);
-                        System.out.println("Quantity Ordered: " + product.getOrderedQuantity());
-
-                        if (newStock >= 0) { // Ensure stock doesn't go negative
-                            updateStmt.setInt(1, product.getOrderedQuantity());
-                            updateStmt.setString(2, product.getProductId());
-                            updateStmt.addBatch();
-
-                            // Debugging: Print values after update
-                            System.out.println("After change: " + newStock);
-                            System.out.println("Update successful for Product ID: " + product.getProductId());
-                        } else {
-                            insufficientProducts.add(product);
-                            allSufficient = false; // Mark that there's at least one insufficient product
-                            System.out.println("Not enough stock for Product ID: " + product.getProductId());
-                        }
-                        System.out.println("--------------------------------");
-                    }
-                }
+            try {
+                insufficientProducts = reserveStocks(conn, proList, reservedLines);
 
-                if (allSufficient) {
-                    // If all products have sufficient stock, execute the batch and commit
-                    updateStmt.executeBatch();
+                if (insufficientProducts.isEmpty()) {
                     conn.commit();  // Commit all updates if all updates succeed
                     System.out.println("Database update successful.");
+                    catalogueEvents.fireStockChanged(reservedLines, -1);
                 } else {
                     // If there's insufficient stock for any product, rollback the entire transaction
                     conn.rollback();
@@ -188,35 +253,147 @@ public class DerbyRW implements DatabaseRW {
 
             } catch (SQLException e) {
                 conn.rollback();  // Rollback if anything failed inside
-                System.out.println("Database update error, update failed");
+                System.out.println("Database update error, update failed: " + e.getMessage());
+                throw e; // the caller must not create an order for a failed purchase
             }
-        } finally {
-            lock.unlock(); // Always release the lock after the operation
         }
 
         return insufficientProducts;
     }
 
+    /**
+     * Purchases several trolleys in one transaction, so the whole batch costs one commit (one log flush).
+     * Each trolley runs inside its own savepoint: an insufficient trolley is rolled back to its savepoint
+     * and does not affect the others, exactly as if it had been purchased with purchaseStocks() on its own.
+     * Trolleys are purchased in list order, so a later trolley sees the stock left by the earlier ones.
+     *
+     * The row locks of a batch are held until its commit, so the rows of every product in the batch are locked
+     * first, in productID order (the lock order of purchaseStocks); otherwise two batches, or a batch and
+     * a purchaseStocks(), holding the same products in a different trolley order could deadlock.
+     *
+     * If a SQLException occurs the whole batch is rolled back and nothing is purchased.
+     */
+    public ArrayList<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> purchases) throws SQLException {
+        ArrayList<ArrayList<Product>> results = new ArrayList<>();
+        ArrayList<ArrayList<Product>> reservedLines = new ArrayList<>(); // per trolley, the lines of known products
+
+        try (PooledConnection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+
+            try {
+                lockProductRows(conn, purchases);
+                for (ArrayList<Product> proList : purchases) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    ArrayList<Product> reserved = new ArrayList<>();
+                    ArrayList<Product> insufficientProducts = reserveStocks(conn, proList, reserved);
+                    if (insufficientProducts.isEmpty()) {
+                        conn.releaseSavepoint(savepoint);
+                    } else {
+                        conn.rollback(savepoint); // only this trolley is undone
+                    }
+                    results.add(insufficientProducts);
+                    reservedLines.add(reserved);
+                }
+                conn.commit();
+                System.out.println("Batch of " + purchases.size() + " purchases committed.");
+                for (int i = 0; i < purchases.size(); i++) {
+                    if (results.get(i).isEmpty()) { // the rolled back trolleys changed nothing
+                        catalogueEvents.fireStockChanged(reservedLines.get(i), -1);
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                System.out.println("Batch purchase error, all updates rolled back: " + e.getMessage());
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    // helper method for purchaseStocksBatch, runs inside the caller's transaction: locks the rows of all the products
+    // in the batch, in productID order, with an UPDATE that changes nothing (so the change triggers do not fire)
+    private void lockProductRows(PooledConnection conn, List<ArrayList<Product>> purchases) throws SQLException {
+        TreeSet<String> productIds = new TreeSet<>();
+        for (ArrayList<Product> proList : purchases) {
+            for (Product product : proList) {
+                productIds.add(product.getProductId());
+            }
+        }
+        PreparedStatement lockStmt = conn.prepare("UPDATE ProductTable SET inStock = inStock WHERE productID = ?");
+        for (String productId : productIds) {
+            lockStmt.setString(1, productId);
+            lockStmt.addBatch();
+        }
+        lockStmt.executeBatch();
+    }
+
+    // helper method for purchaseStocks and purchaseStocksBatch, runs inside the caller's transaction
+    // and returns the products without enough stock (their reservation must then be rolled back);
+    // the lines actually reserved are added to reservedLines
+    private ArrayList<Product> reserveStocks(PooledConnection conn, ArrayList<Product> proList,
+                                             ArrayList<Product> reservedLines) throws SQLException {
+        ArrayList<Product> insufficientProducts = new ArrayList<>();
+
+        String updateSql = "UPDATE ProductTable SET inStock = inStock - ? WHERE productID = ? AND inStock >= ?";
+        String checkSql = "SELECT inStock FROM ProductTable WHERE productID = ?";
+
+        ArrayList<Product> sortedList = new ArrayList<>(proList);
+        sortedList.sort(Comparator.comparing(Product::getProductId)); // deterministic lock order
+
+        PreparedStatement updateStmt = conn.prepare(updateSql);
+        PreparedStatement checkStmt = conn.prepare(checkSql);
+
+        for (Product product : sortedList) {
+            int quantity = product.getOrderedQuantity();
+            updateStmt.setInt(1, quantity);
+            updateStmt.setString(2, product.getProductId());
+            updateStmt.setInt(3, quantity);
+
+            if (updateStmt.executeUpdate() == 1) {
+                reservedLines.add(product);
+                System.out.println("Reserved " + quantity + " of Product ID: " + product.getProductId());
+            } else if (productExists(checkStmt, product.getProductId())) {
+                // the row exists but did not hold enough stock
+                insufficientProducts.add(product);
+                System.out.println("Not enough stock for Product ID: " + product.getProductId());
+            }
+            // unknown products are skipped, as before
+        }
+        return insufficientProducts;
+    }
+
+    //helper method for reserveStocks, runs inside the caller's transaction
+    private boolean productExists(PreparedStatement checkStmt, String proId) throws SQLException {
+        checkStmt.setString(1, proId);
+        try (ResultSet rs = checkStmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
 
     //warehouse edits an existing product
+    //purchases do not take the product's stripe, so the new stock is only written if the stock read before
+    //is still current; a purchase or restore committed in between makes the edit fail instead of being overwritten
     public void updateProduct(String id, String des, double price, String iName, int stock) throws SQLException {
-        lock.lock();
+        ProductLockManager.ProductLocks locks = lockManager.lock(id); // lock only this product, across all DatabaseRW instances
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
         String updateSql = "UPDATE ProductTable SET " +
                 "description = ?, " +
                 "unitPrice = ?, " +
                 "image = ?, "+
                 "inStock = ? " +
-                "WHERE productID = ?";
+                "WHERE productID = ? AND inStock = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-             PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement selectStmt = conn.prepare(selectSql);
+            PreparedStatement updateStmt = conn.prepare(updateSql);
 
             // Print Before Update
+            int stockBefore;
             selectStmt.setString(1, id);
             try (ResultSet rs = selectStmt.executeQuery()) {
                 if (rs.next()) {
+                    stockBefore = rs.getInt("inStock");
                     System.out.println("Before Update:");
                     System.out.println("ID: " + rs.getString("productID"));
                     System.out.println("Description: " + rs.getString("description"));
@@ -235,7 +412,13 @@ public class DerbyRW implements DatabaseRW {
             updateStmt.setString(3, iName);
             updateStmt.setInt(4, stock);
             updateStmt.setString(5, id);
-            updateStmt.executeUpdate();
+            updateStmt.setInt(6, stockBefore);
+            if (updateStmt.executeUpdate() == 0) {
+                System.out.println("Stock of " + id + " changed during the update, the edit was not saved.");
+                throw new SQLException("The stock of product " + id + " changed while it was being updated, try again",
+                        "40001"); // the state of a serialization failure
+            }
+            catalogueEvents.fireProductSaved(id, des, price, stock);
 
             // Print After Update
             try (ResultSet rs = selectStmt.executeQuery()) {
@@ -250,20 +433,19 @@ public class DerbyRW implements DatabaseRW {
             }
         }
         finally {
-            lock.unlock(); // Always release the lock after the operation
+            locks.close(); // Always release the lock after the operation
         }
     }
 
 //warehouse delete an existing product
     public void deleteProduct(String proId) throws SQLException {
-        lock.lock();
+        ProductLockManager.ProductLocks locks = lockManager.lock(proId); // excludes other writers of this product only
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
         String deleteSql = "DELETE FROM ProductTable WHERE productID = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
-             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-            conn.setAutoCommit(true); // Set auto-commit to true immediately
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement selectStmt = conn.prepare(selectSql);
+            PreparedStatement deleteStmt = conn.prepare(deleteSql);
 
             // print product details before deletion
             selectStmt.setString(1, proId);
@@ -283,11 +465,12 @@ public class DerbyRW implements DatabaseRW {
             // delete from database
             deleteStmt.setString(1, proId);
             deleteStmt.executeUpdate();
+            catalogueEvents.fireProductDeleted(proId);
             System.out.println("Product " + proId + " deleted from database.");
         }
 
         finally {
-            lock.unlock(); // Always release the lock after the operation
+            locks.close(); // Always release the lock after the operation
         }
     }
 
@@ -296,32 +479,32 @@ public class DerbyRW implements DatabaseRW {
     public boolean isProIdAvailable(String proId) throws SQLException {
         String query = "SELECT COUNT(*) FROM ProductTable WHERE productID = ?";
                              //the count of records that match the given proId.
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
             stmt.setString(1, proId);
-            ResultSet rs = stmt.executeQuery();
             // the rs is the COUNT(*) result (a single number): how many records that match the given proId.
             // If count > 0, the ID is already in the database, so it's not available, return false
             // If count = 0, the ID is available, return true
-            if (rs.next()) { // Move cursor to the first (and only) row
-                int count = rs.getInt(1); // Get the first column value (the count)
-                if (count == 0) return true;
-                else return false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) { // Move cursor to the first (and only) row
+                    int count = rs.getInt(1); // Get the first column value (the count)
+                    if (count == 0) return true;
+                    else return false;
+                }
+                return false; // Default case (should not happen)
             }
-            return false; // Default case (should not happen)
         }
     }
 
     //   /images/0001TV.jpg
     //warehouse adds a new product to database
     public void insertNewProduct(String id, String des,double price,String image,int stock) throws SQLException {
-        lock.lock();
-        String insertSql = "INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)";
+        ProductLockManager.ProductLocks locks = lockManager.lock(id);
+        String insertSql = "INSERT INTO ProductTable(productID, description, unitPrice, image, inStock) VALUES(?, ?, ?, ?, ?)";
         String selectSql = "SELECT * FROM ProductTable WHERE productID = ?";
-        try (Connection conn = DriverManager.getConnection(dbURL);
-        PreparedStatement insertStmt = conn.prepareStatement(insertSql);
-        PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-            conn.setAutoCommit(true); // Set auto-commit to true immediately
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement insertStmt = conn.prepare(insertSql);
+            PreparedStatement selectStmt = conn.prepare(selectSql);
             insertStmt.setString(1, id);
             insertStmt.setString(2, des);
             insertStmt.setDouble(3, price);
@@ -329,17 +512,19 @@ public class DerbyRW implements DatabaseRW {
             insertStmt.setInt(5, stock);
             selectStmt.setString(1, id);
             insertStmt.executeUpdate();
-            ResultSet rs = selectStmt.executeQuery();
-            if (rs.next()) { //print the inserted record
-                System.out.println("Insert successful for Product ID: \" + id");
-                System.out.println("ID: " + rs.getString("productID"));
-                System.out.println("Description: " + rs.getString("description"));
-                System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
-                System.out.println("Stock: " + rs.getInt("inStock"));
+            catalogueEvents.fireProductSaved(id, des, price, stock);
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                if (rs.next()) { //print the inserted record
+                    System.out.println("Insert successful for Product ID: \" + id");
+                    System.out.println("ID: " + rs.getString("productID"));
+                    System.out.println("Description: " + rs.getString("description"));
+                    System.out.println("Unit Price: " + rs.getDouble("unitPrice"));
+                    System.out.println("Stock: " + rs.getInt("inStock"));
+                }
             }
         }
         finally {
-            lock.unlock(); // Always release the lock after the operation
+            locks.close(); // Always release the lock after the operation
         }
     }
 
@@ -351,30 +536,44 @@ public class DerbyRW implements DatabaseRW {
      * @throws SQLException if a database access error occurs
      */
     public void restoreStock(ArrayList<Product> proList) throws SQLException {
-        lock.lock();
+        ArrayList<String> productIds = new ArrayList<>();
+        for (Product product : proList) {
+            productIds.add(product.getProductId());
+        }
+        ProductLockManager.ProductLocks locks = lockManager.lockAll(productIds); // stripes are taken in sorted order
         String updateSql = "UPDATE ProductTable SET inStock = inStock + ? WHERE productId = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbURL)) {
+        try (PooledConnection conn = pool.borrow()) {
             conn.setAutoCommit(false); // Turn off auto-commit for transaction
 
-            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                for (Product product : proList) {
+            try {
+                PreparedStatement updateStmt = conn.prepare(updateSql);
+                ArrayList<Product> sortedList = new ArrayList<>(proList);
+                sortedList.sort(Comparator.comparing(Product::getProductId)); // same lock order as purchaseStocks
+                for (Product product : sortedList) {
                     updateStmt.setInt(1, product.getOrderedQuantity());
                     updateStmt.setString(2, product.getProductId());
                     updateStmt.addBatch();
                 }
 
                 // Execute all updates in a batch
-                updateStmt.executeBatch();
+                int[] updateCounts = updateStmt.executeBatch();
                 conn.commit(); // Commit all updates
                 System.out.println("Stock restored successfully for cancelled order.");
+                ArrayList<Product> restoredLines = new ArrayList<>(); // unknown products match no row and are not announced
+                for (int i = 0; i < sortedList.size(); i++) {
+                    if (updateCounts[i] > 0) {
+                        restoredLines.add(sortedList.get(i));
+                    }
+                }
+                catalogueEvents.fireStockChanged(restoredLines, 1);
             } catch (SQLException e) {
                 conn.rollback(); // Rollback if anything failed
                 System.err.println("Error restoring stock: " + e.getMessage());
                 throw e;
             }
         } finally {
-            lock.unlock(); // Always release the lock after the operation
+            locks.close(); // Always release the lock after the operation
         }
     }
 
@@ -388,9 +587,8 @@ public class DerbyRW implements DatabaseRW {
         ArrayList<Product> productList = new ArrayList<>();
         String query = "SELECT * FROM ProductTable ORDER BY productID";
 
-        try (Connection conn = DriverManager.getConnection(dbURL);
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare(query).executeQuery()) {
             
             while (rs.next()) {
                 productList.add(makeProObjFromDbRecord(rs));
@@ -400,4 +598,205 @@ public class DerbyRW implements DatabaseRW {
         return productList;
     }
 
+    /**
+     * Retrieves one page of products after the given productID, using the primary key index:
+     *     SELECT * FROM ProductTable WHERE productID > ? ORDER BY productID FETCH NEXT ? ROWS ONLY
+     */
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        String firstPageQuery = "SELECT * FROM ProductTable ORDER BY productID FETCH NEXT ? ROWS ONLY";
+        String nextPageQuery = "SELECT * FROM ProductTable WHERE productID > ? ORDER BY productID FETCH NEXT ? ROWS ONLY";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt;
+            if (afterId == null) {
+                stmt = conn.prepare(firstPageQuery);
+                stmt.setInt(1, limit);
+            } else {
+                stmt = conn.prepare(nextPageQuery);
+                stmt.setString(1, afterId);
+                stmt.setInt(2, limit);
+            }
+            stmt.setFetchSize(Math.min(limit, DatabaseRWFactory.fetchSize));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productList.add(makeProduct(rs));
+                }
+            }
+        }
+        return productList;
+    }
+
+    /**
+     * Streams every product through one forward-only cursor. Derby fetches fetchSize rows at a time,
+     * so only one batch of rows and the current Product are in memory at once.
+     * The pooled connection is held until the scan finishes, so the action should be quick.
+     */
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        String query = "SELECT * FROM ProductTable ORDER BY productID";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            stmt.setFetchSize(DatabaseRWFactory.fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(makeProduct(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the products whose description starts with the prefix, ignoring case, using the index on
+     * descriptionLower (Derby turns LIKE 'prefix%' into an index range):
+     *     SELECT * FROM ProductTable WHERE descriptionLower LIKE 'rad%' ORDER BY descriptionLower
+     * The rows come out of the index already in order, so no sort is needed either.
+     */
+    public ArrayList<Product> searchByNamePrefix(String prefix, int limit) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable WHERE descriptionLower LIKE ? ESCAPE '!' " +
+                "ORDER BY descriptionLower FETCH NEXT ? ROWS ONLY";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            stmt.setString(1, escapeLike(prefix.toLowerCase()) + "%");
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productList.add(makeProduct(rs));
+                }
+            }
+        }
+        return productList;
+    }
+
+    /**
+     * Finds the products with at most threshold units in stock (low stock and out of stock),
+     * using the index on inStock, so only those rows are read:
+     *     SELECT * FROM ProductTable WHERE inStock <= ? ORDER BY productID
+     */
+    public ArrayList<Product> findProductsBelowStock(int threshold) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        String query = "SELECT * FROM ProductTable WHERE inStock <= ? ORDER BY productID";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            stmt.setInt(1, threshold);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    productList.add(makeProduct(rs));
+                }
+            }
+        }
+        return productList;
+    }
+
+    /**
+     * Makes ProductTable hold exactly the given products, in one transaction: existing rows are updated,
+     * missing rows are inserted and rows not in the list are deleted. Used by InMemoryDatabaseRW to
+     * checkpoint its catalogue; no catalogue events are fired, the products have not changed.
+     *
+     * @param productList the whole catalogue
+     * @throws SQLException if a database access error occurs, nothing is written then
+     */
+    public void replaceAll(ArrayList<Product> productList) throws SQLException {
+        String updateSql = "UPDATE ProductTable SET description = ?, unitPrice = ?, image = ?, inStock = ? WHERE productID = ?";
+        String insertSql = "INSERT INTO ProductTable(description, unitPrice, image, inStock, productID) VALUES(?, ?, ?, ?, ?)";
+        String deleteSql = "DELETE FROM ProductTable WHERE productID = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+            try {
+                HashMap<String, String> existing = loadDescriptions(conn);
+                PreparedStatement updateStmt = conn.prepare(updateSql);
+                PreparedStatement insertStmt = conn.prepare(insertSql);
+                for (Product product : productList) {
+                    // both statements take the same parameters in the same order
+                    PreparedStatement stmt = existing.remove(product.getProductId()) != null ? updateStmt : insertStmt;
+                    stmt.setString(1, product.getProductDescription());
+                    stmt.setDouble(2, product.getUnitPrice());
+                    stmt.setString(3, product.getProductImageName());
+                    stmt.setInt(4, product.getStockQuantity());
+                    stmt.setString(5, product.getProductId());
+                    stmt.addBatch();
+                }
+                updateStmt.executeBatch();
+                insertStmt.executeBatch();
+
+                PreparedStatement deleteStmt = conn.prepare(deleteSql);
+                for (String productId : existing.keySet()) { // rows not in the list
+                    deleteStmt.setString(1, productId);
+                    deleteStmt.addBatch();
+                }
+                deleteStmt.executeBatch();
+                conn.commit();
+                System.out.println("Checkpoint written: " + productList.size() + " products, "
+                        + existing.size() + " deleted.");
+            } catch (SQLException e) {
+                conn.rollback();
+                System.out.println("Checkpoint failed, nothing written: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Applies coalesced stock changes from the StockJournal, and records the last journal record they include,
+     * in one transaction:
+     *     UPDATE ProductTable SET inStock = inStock + ? WHERE productID = ?     (one per product)
+     *     UPDATE StockJournalState SET lastSequence = ? WHERE journal = 'stock'
+     * Used by WriteBehindDatabaseRW; changes to products that no longer exist are dropped.
+     *
+     * @param deltas       productID -> net stock change
+     * @param lastSequence the last journal record included in the deltas
+     * @throws SQLException if a database access error occurs, nothing is applied then
+     */
+    public void applyStockDeltas(Map<String, Integer> deltas, long lastSequence) throws SQLException {
+        String updateSql = "UPDATE ProductTable SET inStock = inStock + ? WHERE productID = ?";
+        String sequenceSql = "UPDATE StockJournalState SET lastSequence = ? WHERE journal = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement updateStmt = conn.prepare(updateSql);
+                for (String productId : new TreeSet<>(deltas.keySet())) { // same lock order as purchaseStocks
+                    updateStmt.setInt(1, deltas.get(productId));
+                    updateStmt.setString(2, productId);
+                    updateStmt.addBatch();
+                }
+                updateStmt.executeBatch();
+
+                PreparedStatement sequenceStmt = conn.prepare(sequenceSql);
+                sequenceStmt.setLong(1, lastSequence);
+                sequenceStmt.setString(2, SchemaMigrator.STOCK_JOURNAL);
+                sequenceStmt.executeUpdate();
+                conn.commit();
+                for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                    catalogueEvents.fireStockChanged(delta.getKey(), delta.getValue());
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                System.out.println("Stock flush failed, nothing applied: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    // the last StockJournal record applied to ProductTable, 0 if none
+    public long getAppliedJournalSequence() throws SQLException {
+        String query = "SELECT lastSequence FROM StockJournalState WHERE journal = ?";
+
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(query);
+            stmt.setString(1, SchemaMigrator.STOCK_JOURNAL);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // escapes the LIKE wildcards typed by the user, '!' is the ESCAPE character
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
 }
@@ -0,0 +1,78 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * FileOrderStore is the OrderStore of the original folder layout: each order is a text file
+ * (e.g. 12.txt) in the folder of its state, and OrderFileManager moves it on every state change.
+ *
+ *     orders/ordered       orders in the Ordered state
+ *     orders/progressing   orders in the Progressing state
+ *     orders/collected     orders in the Collected state
+ *     orders/cancelled     orders in the Cancelled state
+ *
+ * The root folder is given to the constructor, so tests can use a temporary folder;
+ * OrderStoreFactory uses StorageLocation.ordersPath.
+ */
+
+public class FileOrderStore implements OrderStore {
+    private final Path ordersPath;
+
+    public FileOrderStore(Path ordersPath) {
+        this.ordersPath = ordersPath;
+    }
+
+    // the folder of a state, e.g. orders/progressing
+    public Path folderOf(OrderState state) {
+        return ordersPath.resolve(state.name().toLowerCase());
+    }
+
+    public void createOrder(long orderId, String orderDetail) throws IOException {
+        for (OrderState state : OrderState.values()) { // the other stores refuse an ID in any state too
+            Path existing = folderOf(state).resolve(orderId + ".txt");
+            if (Files.exists(existing)) {
+                throw new FileAlreadyExistsException(existing.toString(), null, "Order " + orderId + " already exists");
+            }
+        }
+        OrderFileManager.createOrderFile(folderOf(OrderState.Ordered), orderId, orderDetail);
+    }
+
+    public boolean transition(long orderId, OrderState from, OrderState to) throws IOException {
+        return OrderFileManager.updateAndMoveOrderFile(orderId, to, folderOf(from), folderOf(to));
+    }
+
+    public String readOrder(long orderId, OrderState state) throws IOException {
+        return OrderFileManager.readOrderFile(folderOf(state), orderId);
+    }
+
+    public List<Long> listOrderIds(OrderState state) throws IOException {
+        ArrayList<Long> orderIds = new ArrayList<>();
+        Path dir = folderOf(state);
+        if (!Files.isDirectory(dir)) {
+            return orderIds;
+        }
+        try (Stream<Path> fileStream = Files.list(dir)) {
+            for (Path file : fileStream.filter(Files::isRegularFile).toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".txt")) { // skips the temp files of an interrupted update too
+                    try {
+                        orderIds.add(Long.parseLong(fileName.substring(0, fileName.lastIndexOf('.'))));
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid file name: " + fileName);
+                    }
+                }
+            }
+        }
+        Collections.sort(orderIds);
+        return orderIds;
+    }
+}
@@ -0,0 +1,303 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * InMemoryDatabaseRW holds the whole catalogue in memory. It is used for load tests, and for the
+ * "fast mode" deployment (-Dhappyshop.db.backend=memory) where Derby is only written at checkpoints.
+ * DatabaseRWFactory creates one instance, loads it from Derby and shares it with every client.
+ *
+ * How it works:
+ * - Products live in a ConcurrentHashMap keyed by productID, so lookups never lock.
+ *   A ConcurrentSkipListSet of the IDs gives the productID order needed by page() and forEachProduct().
+ * - The stock of each product is an int updated with compare-and-set through a VarHandle:
+ *   a purchase line only succeeds if the stock it read is still the stock when it writes.
+ * - purchaseStocks() takes the lines in productID order and decrements them one by one with CAS.
+ *   If any line is short, the lines already taken are put back, so the trolley is all-or-nothing
+ *   and every short line is reported, as the DatabaseRW contract requires.
+ *
+ * A concurrent checkout may briefly see the stock taken by a trolley that is then put back, and be told
+ * that the product is short; Derby would make it wait for the row lock instead. Stock is never oversold.
+ *
+ * Product details (description, price, image) are replaced as one immutable Details object, so a reader
+ * never sees the description of one edit with the price of another.
+ *
+ * checkpoint() copies the catalogue to Derby; DatabaseRWFactory calls it periodically and on shutdown.
+ * Writes made after the last checkpoint are lost if the JVM crashes.
+ *
+ * Example Usage:
+ *     InMemoryDatabaseRW memory = new InMemoryDatabaseRW(catalogueEvents);
+ *     memory.loadFrom(new DerbyRW(pool));
+ *     ...
+ *     memory.checkpoint(new DerbyRW(pool));
+ */
+
+public class InMemoryDatabaseRW implements DatabaseRW {
+    private static final VarHandle STOCK;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(Entry.class, "stock", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> products = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> orderedIds = new ConcurrentSkipListSet<>(); // productID order for scans
+    private final ProductNameIndex nameIndex; // null = search by scanning the descriptions
+    private final CatalogueEvents catalogueEvents; // told about every product write
+
+    public InMemoryDatabaseRW() {
+        this(null, new CatalogueEvents());
+    }
+
+    public InMemoryDatabaseRW(CatalogueEvents catalogueEvents) {
+        this(null, catalogueEvents);
+    }
+
+    // the name index must already be registered with the catalogue events to stay current
+    public InMemoryDatabaseRW(ProductNameIndex nameIndex, CatalogueEvents catalogueEvents) {
+        this.nameIndex = nameIndex;
+        this.catalogueEvents = catalogueEvents;
+    }
+
+    /**
+     * Loads every product of the source (e.g. DerbyRW) into memory, replacing products with the same ID.
+     *
+     * @return the number of products loaded
+     */
+    public int loadFrom(DatabaseRW source) throws SQLException {
+        int[] count = {0};
+        source.forEachProduct(product -> {
+            put(product.getProductId(), new Details(product.getProductDescription(), product.getUnitPrice(),
+                    product.getProductImageName()), product.getStockQuantity());
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Copies the current catalogue to Derby, in one transaction.
+     * Each product is copied as it is when it is read, so the copy is not a snapshot of a single instant.
+     */
+    public void checkpoint(DerbyRW target) throws SQLException {
+        target.replaceAll(getAllProducts());
+    }
+
+    //search product by product Id or name, ordered by productID like DerbyRW
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = searchByProductId(keyword);
+        if (product != null) {
+            productList.add(product);
+        } else if (nameIndex != null && nameIndex.isLoaded()) {
+            for (String productId : nameIndex.search(keyword)) {
+                Product found = searchByProductId(productId);
+                if (found != null) { // may be gone if it was deleted after the index lookup
+                    productList.add(found);
+                }
+            }
+        } else {
+            String lowerKeyword = keyword.toLowerCase();
+            for (String productId : orderedIds) {
+                Entry entry = products.get(productId);
+                if (entry != null && entry.details.description.toLowerCase().contains(lowerKeyword)) {
+                    productList.add(entry.toProduct());
+                }
+            }
+        }
+        return productList;
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        Entry entry = products.get(productId);
+        return entry == null ? null : entry.toProduct();
+    }
+
+    /**
+     * Decrements every line with CAS in productID order, and puts the taken lines back if any line is short.
+     */
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> insufficientProducts = new ArrayList<>();
+        ArrayList<Entry> takenEntries = new ArrayList<>();
+        ArrayList<Integer> takenQuantities = new ArrayList<>();
+        ArrayList<Product> takenLines = new ArrayList<>();
+
+        ArrayList<Product> sortedList = new ArrayList<>(proList);
+        sortedList.sort(Comparator.comparing(Product::getProductId)); // same order as DerbyRW
+        for (Product product : sortedList) {
+            Entry entry = products.get(product.getProductId());
+            if (entry == null) {
+                continue; // unknown products are skipped, as in DerbyRW
+            }
+            if (entry.take(product.getOrderedQuantity())) {
+                takenEntries.add(entry);
+                takenQuantities.add(product.getOrderedQuantity());
+                takenLines.add(product);
+            } else {
+                insufficientProducts.add(product);
+            }
+        }
+
+        if (!insufficientProducts.isEmpty()) {
+            for (int i = 0; i < takenEntries.size(); i++) { // all-or-nothing: undo the lines that succeeded
+                takenEntries.get(i).add(takenQuantities.get(i));
+            }
+        } else {
+            catalogueEvents.fireStockChanged(takenLines, -1);
+        }
+        return insufficientProducts;
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        checkStock(stock);
+        Entry entry = products.get(id);
+        if (entry == null) {
+            System.out.println("Product not found: " + id);
+            return;
+        }
+        entry.details = new Details(des, price, imageName);
+        STOCK.setVolatile(entry, stock);
+        catalogueEvents.fireProductSaved(id, des, price, stock);
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        if (products.remove(id) != null) {
+            orderedIds.remove(id);
+            if (products.containsKey(id)) {
+                orderedIds.add(id); // inserted again meanwhile
+            }
+            catalogueEvents.fireProductDeleted(id);
+        }
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        checkStock(stock);
+        Entry entry = new Entry(id, new Details(des, price, image), stock);
+        if (products.putIfAbsent(id, entry) != null) {
+            throw new SQLException("Product ID already exists: " + id, "23505"); // Derby's duplicate key state
+        }
+        orderedIds.add(id);
+        catalogueEvents.fireProductSaved(id, des, price, stock);
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return !products.containsKey(productId);
+    }
+
+    public void restoreStock(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> restoredLines = new ArrayList<>(); // unknown products are skipped and not announced
+        for (Product product : proList) {
+            Entry entry = products.get(product.getProductId());
+            if (entry != null) {
+                entry.add(product.getOrderedQuantity());
+                restoredLines.add(product);
+            }
+        }
+        catalogueEvents.fireStockChanged(restoredLines, 1);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        forEachProduct(productList::add);
+        return productList;
+    }
+
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        for (String productId : afterId == null ? orderedIds : orderedIds.tailSet(afterId, false)) {
+            if (productList.size() >= limit) {
+                break;
+            }
+            Entry entry = products.get(productId);
+            if (entry != null) {
+                productList.add(entry.toProduct());
+            }
+        }
+        return productList;
+    }
+
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        for (String productId : orderedIds) {
+            Entry entry = products.get(productId);
+            if (entry != null) { // may have been deleted during the scan
+                action.accept(entry.toProduct());
+            }
+        }
+    }
+
+    public int getProductCount() {
+        return products.size();
+    }
+
+    // the same rule as the CHECK (inStock >= 0) constraint of ProductTable
+    private static void checkStock(int stock) throws SQLException {
+        if (stock < 0) {
+            throw new SQLException("Stock cannot be negative: " + stock, "23513"); // Derby's check constraint state
+        }
+    }
+
+    private void put(String productId, Details details, int stock) {
+        products.put(productId, new Entry(productId, details, stock));
+        orderedIds.add(productId);
+        catalogueEvents.fireProductSaved(productId, details.description, details.unitPrice, stock);
+    }
+
+    // the fields edited together by the warehouse, replaced as a whole
+    private static class Details {
+        private final String description;
+        private final double unitPrice;
+        private final String image;
+
+        private Details(String description, double unitPrice, String image) {
+            this.description = description;
+            this.unitPrice = unitPrice;
+            this.image = image;
+        }
+    }
+
+    // one product: its details, and its stock updated through the STOCK VarHandle
+    private static class Entry {
+        private final String productId;
+        private volatile Details details;
+        private volatile int stock;
+
+        private Entry(String productId, Details details, int stock) {
+            this.productId = productId;
+            this.details = details;
+            this.stock = stock;
+        }
+
+        // takes quantity units if they are in stock, retrying if another thread changed the stock meanwhile
+        private boolean take(int quantity) {
+            int current;
+            do {
+                current = (int) STOCK.getVolatile(this);
+                if (current < quantity) {
+                    return false;
+                }
+            } while (!STOCK.compareAndSet(this, current, current - quantity));
+            return true;
+        }
+
+        private void add(int quantity) {
+            STOCK.getAndAdd(this, quantity);
+        }
+
+        private Product toProduct() {
+            Details current = details;
+            return new Product(productId, current.description, current.image, current.unitPrice,
+                    (int) STOCK.getVolatile(this));
+        }
+    }
+}
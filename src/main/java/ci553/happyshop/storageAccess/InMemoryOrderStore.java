@@ -0,0 +1,86 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+/**
+ * InMemoryOrderStore keeps the orders in memory, so nothing touches the disk.
+ * It is used by tests (100k orders in well under a second) and by the "memory" order store
+ * (-Dhappyshop.orders.store=memory), whose orders are lost when the JVM stops.
+ *
+ * How it works:
+ * - A ConcurrentSkipListMap maps orderId -> StoredOrder, so listing and scanning run in ID order
+ *   without sorting, and readers never lock.
+ * - A StoredOrder (state and text) is immutable and replaced as a whole with replace(key, old, new),
+ *   so a transition only succeeds if the order is still in the state it was read in;
+ *   two pickers moving the same order cannot both succeed.
+ */
+
+public class InMemoryOrderStore implements OrderStore {
+    private final ConcurrentSkipListMap<Long, StoredOrder> orders = new ConcurrentSkipListMap<>();
+
+    public void createOrder(long orderId, String orderDetail) throws IOException {
+        if (orders.putIfAbsent(orderId, new StoredOrder(OrderState.Ordered, orderDetail)) != null) {
+            throw new IOException("Order " + orderId + " already exists");
+        }
+    }
+
+    public boolean transition(long orderId, OrderState from, OrderState to) throws IOException {
+        StoredOrder current = orders.get(orderId);
+        if (current == null || current.state != from) {
+            System.out.println("Order " + orderId + " not found in state " + from);
+            return false;
+        }
+        StoredOrder moved = new StoredOrder(to, OrderFileManager.updateStateAndTime(current.orderDetail, to));
+        return orders.replace(orderId, current, moved);
+    }
+
+    public String readOrder(long orderId, OrderState state) throws IOException {
+        StoredOrder stored = orders.get(orderId);
+        if (stored == null || stored.state != state) {
+            throw new IOException("Order not found: " + orderId + " in state " + state);
+        }
+        return stored.orderDetail;
+    }
+
+    public List<Long> listOrderIds(OrderState state) {
+        ArrayList<Long> orderIds = new ArrayList<>();
+        for (Map.Entry<Long, StoredOrder> entry : orders.entrySet()) {
+            if (entry.getValue().state == state) {
+                orderIds.add(entry.getKey());
+            }
+        }
+        return orderIds;
+    }
+
+    // scans the map once instead of reading each listed order
+    @Override
+    public void forEachOrder(OrderState state, BiConsumer<Long, String> action) {
+        for (Map.Entry<Long, StoredOrder> entry : orders.entrySet()) {
+            if (entry.getValue().state == state) {
+                action.accept(entry.getKey(), entry.getValue().orderDetail);
+            }
+        }
+    }
+
+    // the number of orders held, in every state
+    public int size() {
+        return orders.size();
+    }
+
+    private static class StoredOrder {
+        private final OrderState state;
+        private final String orderDetail;
+
+        private StoredOrder(OrderState state, String orderDetail) {
+            this.state = state;
+            this.orderDetail = orderDetail;
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * JournalOrderStore keeps the orders in an append-only journal split into segment files
+ * (orders/journal/segment-000001.log, ...), instead of one text file per order.
+ * Creating an order or changing its state appends one record to the newest segment, so it costs
+ * the same however many orders there are, and no file is created, rewritten or moved.
+ *
+ * Record layout: [int length][long crc32][payload], payload = [byte type][long orderId] followed by
+ * - Created:    [int textLength][UTF-8 order text]        a new order, in the Ordered state
+ * - Transition: [byte from][byte to][UTF time]            a state change and the time it happened
+ * - Snapshot:   [byte state][int textLength][UTF-8 text]  an order with its transitions folded in, written by compact()
+ *
+ * How it works:
+ * - An in-memory index maps orderId -> IndexEntry: the current state, the segment and offset of the
+ *   order's Created or Snapshot record, and the transitions recorded after it.
+ *   Reading an order is one positional read plus re-applying those transitions to the text.
+ * - The newest segment is rolled over once it reaches segmentBytes; older segments are only read.
+ * - At startup every segment is replayed in order to rebuild the index. A torn record at the end of
+ *   the newest segment (a crash in the middle of a write) is cut off, like StockJournal does.
+ * - compact() rewrites the older segments into one, holding a Snapshot of each order they contain,
+ *   and deletes them. New records keep going to the newest segment while it runs.
+ * - exportFolderView() writes the original folder layout (orders/ordered/12.txt, ...) for people and
+ *   tools that read the order files.
+ *
+ * Records are not forced to disk on every append, like the order files were not; rolled segments
+ * and the newest one on close() are.
+ *
+ * Example Usage:
+ *     JournalOrderStore orderStore = new JournalOrderStore(StorageLocation.orderJournalPath, 4 * 1024 * 1024);
+ *     orderStore.createOrder(12, order.orderDetails());
+ *     orderStore.transition(12, OrderState.Ordered, OrderState.Progressing);
+ */
+
+public class JournalOrderStore implements OrderStore, AutoCloseable {
+    private static final byte CREATED = 1;
+    private static final byte TRANSITION = 2;
+    private static final byte SNAPSHOT = 3;
+    private static final int HEADER_BYTES = 12;
+    private static final OrderState[] STATES = OrderState.values();
+
+    private final Path journalDir;
+    private final long segmentBytes;
+    private final ConcurrentSkipListMap<Long, IndexEntry> index = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object compactLock = new Object(); // one compaction at a time
+
+    private Segment active; // the segment appended to, guarded by this
+
+    // journal metrics
+    private long appendCount = 0; // guarded by this
+    private long compactionCount = 0; // guarded by compactLock
+
+    /**
+     * Opens the journal in a folder, creating the folder and the first segment if needed,
+     * and replays the segments to rebuild the index.
+     *
+     * @param journalDir   the folder of the segment files
+     * @param segmentBytes the size at which a segment is rolled over
+     */
+    public JournalOrderStore(Path journalDir, long segmentBytes) throws IOException {
+        this.journalDir = journalDir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(journalDir);
+        ArrayList<Integer> segmentIds = new ArrayList<>();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(".compact")) {
+                    Files.delete(file); // left by a compaction that did not finish, the segments it read are still there
+                } else if (fileName.startsWith("segment-") && fileName.endsWith(".log")) {
+                    segmentIds.add(Integer.parseInt(fileName.substring(8, fileName.length() - 4)));
+                }
+            }
+        }
+        Collections.sort(segmentIds);
+        for (int i = 0; i < segmentIds.size(); i++) {
+            boolean newest = i == segmentIds.size() - 1;
+            Segment segment = openSegment(segmentIds.get(i), newest);
+            segments.put(segment.id, segment);
+            replay(segment, newest);
+        }
+        if (segments.isEmpty()) {
+            segments.put(1, openSegment(1, true));
+        }
+        active = segments.lastEntry().getValue();
+        active.channel.position(active.size);
+    }
+
+    public synchronized void createOrder(long orderId, String orderDetail) throws IOException {
+        if (index.containsKey(orderId)) {
+            throw new IOException("Order " + orderId + " already exists");
+        }
+        long offset = append(encodeText(CREATED, orderId, OrderState.Ordered, orderDetail));
+        index.put(orderId, new IndexEntry(OrderState.Ordered, active, offset, IndexEntry.NO_TRANSITIONS));
+    }
+
+    public synchronized boolean transition(long orderId, OrderState from, OrderState to) throws IOException {
+        IndexEntry entry = index.get(orderId);
+        if (entry == null || entry.state != from) {
+            System.out.println("Order " + orderId + " not found in state " + from);
+            return false;
+        }
+        String now = OrderFileManager.timestamp();
+        append(encodeTransition(orderId, from, to, now));
+        index.put(orderId, entry.withTransition(to, now));
+        return true;
+    }
+
+    public String readOrder(long orderId, OrderState state) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            IndexEntry entry = index.get(orderId);
+            if (entry == null || entry.state != state) {
+                throw new IOException("Order not found: " + orderId + " in state " + state);
+            }
+            try {
+                return entry.applyTransitions(readText(entry));
+            } catch (ClosedChannelException e) {
+                if (attempt == 3) {
+                    throw e;
+                }
+                // its segment was compacted while we read it, the index now points to the new one
+            }
+        }
+    }
+
+    public List<Long> listOrderIds(OrderState state) {
+        ArrayList<Long> orderIds = new ArrayList<>();
+        for (Map.Entry<Long, IndexEntry> entry : index.entrySet()) {
+            if (entry.getValue().state == state) {
+                orderIds.add(entry.getKey());
+            }
+        }
+        return orderIds;
+    }
+
+    // walks the index once instead of listing first
+    @Override
+    public void forEachOrder(OrderState state, BiConsumer<Long, String> action) {
+        for (Map.Entry<Long, IndexEntry> entry : index.entrySet()) {
+            if (entry.getValue().state != state) {
+                continue;
+            }
+            String orderDetail;
+            try {
+                orderDetail = readOrder(entry.getKey(), state);
+            } catch (IOException e) {
+                System.err.println("Error reading order " + entry.getKey() + ": " + e.getMessage());
+                continue;
+            }
+            action.accept(entry.getKey(), orderDetail);
+        }
+    }
+
+    /**
+     * Rewrites every segment before the newest one into a single segment holding one Snapshot record
+     * per order, then deletes them. Writers only wait while the new segment replaces the old ones.
+     *
+     * The new segment takes the ID of the newest segment it replaces, so at startup it is still replayed
+     * before the records appended while it was written. A crash before the swap leaves a .compact file,
+     * deleted at the next start; a crash after it leaves old segments that the Snapshots override.
+     *
+     * @return the number of orders rewritten, 0 if the older segments were already compact
+     */
+    public int compact() throws IOException {
+        synchronized (compactLock) {
+            List<Segment> closed;
+            long closedRecords = 0;
+            synchronized (this) {
+                closed = new ArrayList<>(segments.headMap(active.id).values());
+                for (Segment segment : closed) {
+                    closedRecords += segment.records;
+                }
+            }
+            if (closed.isEmpty()) {
+                return 0;
+            }
+            Set<Segment> closedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            closedSet.addAll(closed);
+            ArrayList<Map.Entry<Long, IndexEntry>> live = new ArrayList<>();
+            for (Map.Entry<Long, IndexEntry> entry : index.entrySet()) {
+                if (closedSet.contains(entry.getValue().segment)) {
+                    live.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+            if (closed.size() == 1 && closedRecords == live.size()) {
+                return 0; // one record per order already, nothing to fold
+            }
+
+            int compactedId = closed.get(closed.size() - 1).id;
+            Path compactFile = journalDir.resolve(String.format("segment-%06d.compact", compactedId));
+            long[] offsets = new long[live.size()];
+            try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = 0;
+                for (int i = 0; i < live.size(); i++) {
+                    IndexEntry entry = live.get(i).getValue();
+                    String text = entry.applyTransitions(readText(entry));
+                    offsets[i] = position;
+                    position += write(out, encodeText(SNAPSHOT, live.get(i).getKey(), entry.state, text));
+                }
+                out.force(false);
+            }
+
+            synchronized (this) {
+                Files.move(compactFile, segmentPath(compactedId),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Segment compacted = openSegment(compactedId, false);
+                compacted.records = live.size();
+                for (int i = 0; i < live.size(); i++) {
+                    long orderId = live.get(i).getKey();
+                    int folded = live.get(i).getValue().transitions.length;
+                    index.put(orderId, index.get(orderId).movedTo(compacted, offsets[i], folded));
+                }
+                for (Segment segment : closed) {
+                    segments.remove(segment.id);
+                }
+                segments.put(compactedId, compacted);
+            }
+            for (Segment segment : closed) {
+                segment.channel.close(); // a reader still using it gets ClosedChannelException and reads again
+                if (segment.id != compactedId) {
+                    Files.deleteIfExists(segmentPath(segment.id));
+                }
+            }
+            compactionCount++;
+            System.out.println("Order journal compacted: " + closed.size() + " segments, " + live.size() + " orders.");
+            return live.size();
+        }
+    }
+
+    /**
+     * Writes every order as a text file in the folder of its state, the layout FileOrderStore uses
+     * (e.g. orders/collected/12.txt). Order files already in those folders are replaced.
+     *
+     * @param ordersPath the root folder of the view, e.g. StorageLocation.ordersPath
+     * @return the number of orders written
+     */
+    public int exportFolderView(Path ordersPath) throws IOException {
+        FileOrderStore view = new FileOrderStore(ordersPath);
+        int exported = 0;
+        for (OrderState state : STATES) {
+            Path folder = view.folderOf(state);
+            Files.createDirectories(folder);
+            try (Stream<Path> files = Files.list(folder)) {
+                for (Path file : files.filter(file -> file.toString().endsWith(".txt")).toList()) {
+                    Files.delete(file); // the order may have moved to another state since the last export
+                }
+            }
+            int[] written = {0};
+            try {
+                forEachOrder(state, (orderId, orderDetail) -> {
+                    try {
+                        Files.writeString(folder.resolve(orderId + ".txt"),
+                                orderDetail + System.lineSeparator(), StandardCharsets.UTF_8);
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            exported += written[0];
+        }
+        return exported;
+    }
+
+    //a set of getter methods
+    public int size() { return index.size(); }
+    public int getSegmentCount() { return segments.size(); }
+    public synchronized long getAppendCount() { return appendCount; }
+
+    public long getCompactionCount() {
+        synchronized (compactLock) {
+            return compactionCount;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        active.channel.force(false);
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    // appends a record to the active segment, rolling it over first if it is full; returns the record's offset
+    private long append(byte[] payload) throws IOException { // guarded by this
+        if (active.size > 0 && active.size + HEADER_BYTES + payload.length > segmentBytes) {
+            active.channel.force(false); // a rolled segment may be compacted, so it must be on disk
+            active = openSegment(active.id + 1, true);
+            segments.put(active.id, active);
+        }
+        long offset = active.size;
+        active.size += write(active.channel, payload);
+        active.records++;
+        appendCount++;
+        return offset;
+    }
+
+    // writes a record at the channel's position; returns its size
+    private static int write(FileChannel channel, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putLong(crcOf(payload)).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer.capacity();
+    }
+
+    // the text of the Created or Snapshot record an entry points to
+    private String readText(IndexEntry entry) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(entry.segment.channel, header, entry.offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(entry.segment.channel, payload, entry.offset + HEADER_BYTES);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()))) {
+            byte type = in.readByte();
+            in.readLong(); // orderId
+            if (type == SNAPSHOT) {
+                in.readByte(); // state, already in the index
+            }
+            return readString(in);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Order journal record cut short at " + position);
+            }
+        }
+    }
+
+    // reads every complete record of a segment into the index; a torn tail of the newest segment is cut off
+    private void replay(Segment segment, boolean newest) throws IOException {
+        long position = 0;
+        long size = segment.channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            int length = header.getInt(0);
+            long crc = header.getLong(4);
+            if (length <= 0 || position + HEADER_BYTES + length > size) {
+                break; // torn header or payload
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment.channel, payload, position + HEADER_BYTES);
+            if (crcOf(payload.array()) != crc) {
+                break; // torn or corrupted payload
+            }
+            apply(segment, position, payload.array());
+            segment.records++;
+            position += HEADER_BYTES + length;
+        }
+        if (position < size) {
+            if (newest) {
+                System.out.println("Order journal: cut off " + (size - position) + " bytes of a torn record.");
+                segment.channel.truncate(position);
+            } else {
+                System.out.println("Order journal: " + segmentPath(segment.id) + " is damaged after byte " + position);
+            }
+        }
+        segment.size = position;
+    }
+
+    private void apply(Segment segment, long offset, byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte type = in.readByte();
+            long orderId = in.readLong();
+            if (type == CREATED) {
+                index.put(orderId, new IndexEntry(OrderState.Ordered, segment, offset, IndexEntry.NO_TRANSITIONS));
+            } else if (type == SNAPSHOT) {
+                index.put(orderId, new IndexEntry(STATES[in.readByte()], segment, offset, IndexEntry.NO_TRANSITIONS));
+            } else if (type == TRANSITION) {
+                in.readByte(); // from, checked when the record was written
+                OrderState to = STATES[in.readByte()];
+                String time = in.readUTF();
+                IndexEntry entry = index.get(orderId);
+                if (entry != null) {
+                    index.put(orderId, entry.withTransition(to, time));
+                }
+            }
+        }
+    }
+
+    private Segment openSegment(int id, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(segmentPath(id), StandardOpenOption.READ);
+        Segment segment = new Segment(id, channel);
+        segment.size = channel.size();
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return journalDir.resolve(String.format("segment-%06d.log", id));
+    }
+
+    private static byte[] encodeText(byte type, long orderId, OrderState state, String text) throws IOException {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(textBytes.length + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeLong(orderId);
+            if (type == SNAPSHOT) {
+                out.writeByte(state.ordinal());
+            }
+            out.writeInt(textBytes.length);
+            out.write(textBytes);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeTransition(long orderId, OrderState from, OrderState to, String time) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TRANSITION);
+            out.writeLong(orderId);
+            out.writeByte(from.ordinal());
+            out.writeByte(to.ordinal());
+            out.writeUTF(time);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] textBytes = new byte[in.readInt()];
+        in.readFully(textBytes);
+        return new String(textBytes, StandardCharsets.UTF_8);
+    }
+
+    private static long crcOf(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    /**
+     * A segment file. Its channel is read with positional reads, so readers never move the position
+     * the active segment is appended at.
+     */
+    private static class Segment {
+        private final int id;
+        private final FileChannel channel;
+        private long size; // bytes of complete records
+        private long records; // records held, guarded by the store
+
+        private Segment(int id, FileChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Where an order is in the journal. Immutable: a transition or a compaction puts a new entry in the index,
+     * so a reader always sees a consistent state, record and transitions.
+     */
+    private static class IndexEntry {
+        private static final OrderState[] NO_TRANSITIONS = new OrderState[0];
+
+        private final OrderState state;
+        private final Segment segment;
+        private final long offset; // of the Created or Snapshot record
+        private final OrderState[] transitions; // the states recorded after that record, oldest first
+        private final String[] times; // when each of those states was entered
+
+        private IndexEntry(OrderState state, Segment segment, long offset, OrderState[] transitions) {
+            this(state, segment, offset, transitions, new String[transitions.length]);
+        }
+
+        private IndexEntry(OrderState state, Segment segment, long offset, OrderState[] transitions, String[] times) {
+            this.state = state;
+            this.segment = segment;
+            this.offset = offset;
+            this.transitions = transitions;
+            this.times = times;
+        }
+
+        private IndexEntry withTransition(OrderState to, String time) {
+            OrderState[] newTransitions = Arrays.copyOf(transitions, transitions.length + 1);
+            String[] newTimes = Arrays.copyOf(times, times.length + 1);
+            newTransitions[transitions.length] = to;
+            newTimes[times.length] = time;
+            return new IndexEntry(to, segment, offset, newTransitions, newTimes);
+        }
+
+        // the entry after its record and first folded transitions were rewritten as a Snapshot
+        private IndexEntry movedTo(Segment newSegment, long newOffset, int folded) {
+            return new IndexEntry(state, newSegment, newOffset,
+                    Arrays.copyOfRange(transitions, folded, transitions.length),
+                    Arrays.copyOfRange(times, folded, times.length));
+        }
+
+        private String applyTransitions(String text) {
+            for (int i = 0; i < transitions.length; i++) {
+                text = OrderFileManager.updateStateAndTime(text, transitions[i], times[i]);
+            }
+            return text;
+        }
+    }
+}
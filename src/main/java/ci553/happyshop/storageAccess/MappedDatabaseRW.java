@@ -0,0 +1,517 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * MappedDatabaseRW keeps the catalogue in fixed-width records inside a memory-mapped file, so it is
+ * persistent like Derby but starts in milliseconds and reads at memory speed.
+ * Select it with -Dhappyshop.db.backend=mapped.
+ *
+ * File layout (big-endian):
+ *     header  (64 bytes):  magic, format version, capacity, high-water mark (slots ever used)
+ *     records (capacity x 440 bytes), one per product:
+ *         0 state int (0 = free, 1 = live)     4 stock int     8 version int (seqlock)
+ *        12 productID, 4 chars                24 unitPrice double
+ *        32 description length + 100 chars   234 image length + 100 chars
+ *
+ * How it works:
+ * - An open-addressing (linear probing) index maps productID -> record slot. It is rebuilt by scanning the
+ *   records when the file is opened, and is an AtomicIntegerArray so lookups never lock.
+ * - Reads decode the record straight from the mapped pages, with no read() call and no intermediate buffer.
+ * - Stock is changed in place with compare-and-set on the mapped int (a VarHandle view of the buffer),
+ *   so a purchase line is one atomic write. Trolleys are all-or-nothing with ordered CAS, as in InMemoryDatabaseRW.
+ * - Description, price and image are written under a seqlock: readers retry if the version changed
+ *   while they read, so they never see half an edit.
+ * - Inserts and deletes take the write lock, purchases the read lock, so a purchase never decrements a slot
+ *   that was just reused for another product.
+ *
+ * The capacity is fixed when the file is created (happyshop.db.mappedCapacity); an insert into a full
+ * store fails. Changes reach the file through the OS page cache, so they survive a JVM crash; force()
+ * (called by close()) also makes them survive a power cut. A JVM crash in the middle of a purchase
+ * can leave some lines of that trolley decremented.
+ *
+ * Example Usage:
+ *     MappedDatabaseRW db = MappedDatabaseRW.open(Path.of("products.dat"), 10_000, null, new CatalogueEvents());
+ */
+
+public class MappedDatabaseRW implements DatabaseRW, AutoCloseable {
+    private static final int MAGIC = 0x48535053; // "HSPS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_HIGH_WATER = 12;
+
+    private static final int RECORD_SIZE = 440;
+    private static final int STATE = 0;
+    private static final int STOCK = 4;
+    private static final int VERSION = 8;
+    private static final int ID = 12;
+    private static final int ID_CHARS = 4;
+    private static final int PRICE = 24;
+    private static final int DESCRIPTION = 32;
+    private static final int IMAGE = 234;
+    private static final int TEXT_CHARS = 100; // VARCHAR(100), as in ProductTable
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicIntegerArray index; // slot + 1, 0 = empty, -1 = deleted
+    private final ConcurrentSkipListSet<String> orderedIds = new ConcurrentSkipListSet<>(); // productID order for scans
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>(); // guarded by the write lock
+    private final ProductNameIndex nameIndex; // null = search by scanning the descriptions
+    private final CatalogueEvents catalogueEvents; // told about every product write
+    private final boolean created;
+
+    private MappedDatabaseRW(FileChannel channel, MappedByteBuffer buffer, int capacity, boolean created,
+                             ProductNameIndex nameIndex, CatalogueEvents catalogueEvents) {
+        this.channel = channel;
+        this.created = created;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.index = new AtomicIntegerArray(Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1); // >= 2x capacity
+        this.nameIndex = nameIndex;
+        this.catalogueEvents = catalogueEvents;
+    }
+
+    /**
+     * Opens the store, creating the file with room for capacity products if it does not exist.
+     *
+     * @param capacity  used only when the file is created
+     * @param nameIndex the name index used to search, or null to scan
+     * @throws IOException if the file cannot be mapped or is not a product store
+     */
+    public static MappedDatabaseRW open(Path file, int capacity, ProductNameIndex nameIndex,
+                                        CatalogueEvents catalogueEvents) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (!created) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                    throw new IOException("Not a product store: " + file);
+                }
+                capacity = header.getInt(HEADER_CAPACITY);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            if (created) {
+                buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(HEADER_CAPACITY, capacity)
+                        .putInt(HEADER_HIGH_WATER, 0);
+            }
+            MappedDatabaseRW store = new MappedDatabaseRW(channel, buffer, capacity, created, nameIndex, catalogueEvents);
+            store.rebuildIndex();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // scans the used records once, to fill the index, the ID order and the free list
+    private void rebuildIndex() {
+        int highWater = buffer.getInt(HEADER_HIGH_WATER);
+        for (int slot = 0; slot < highWater; slot++) {
+            int offset = offsetOf(slot);
+            if (buffer.getInt(offset + STATE) == 1) {
+                String productId = readText(offset + ID, ID_CHARS);
+                indexPut(productId, slot);
+                orderedIds.add(productId);
+            } else {
+                freeSlots.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Inserts every product of the source (e.g. DerbyRW) that the store does not hold yet,
+     * e.g. to fill a new store from Derby once.
+     *
+     * @return the number of products inserted
+     */
+    public int loadFrom(DatabaseRW source) throws SQLException {
+        int[] count = {0};
+        SQLException[] failure = {null};
+        source.forEachProduct(product -> {
+            if (failure[0] == null && find(product.getProductId()) < 0) {
+                try {
+                    insertNewProduct(product.getProductId(), product.getProductDescription(), product.getUnitPrice(),
+                            product.getProductImageName(), product.getStockQuantity());
+                    count[0]++;
+                } catch (SQLException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return count[0];
+    }
+
+    //search product by product Id or name, ordered by productID like DerbyRW
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        Product product = searchByProductId(keyword);
+        if (product != null) {
+            productList.add(product);
+        } else if (nameIndex != null && nameIndex.isLoaded()) {
+            for (String productId : nameIndex.search(keyword)) {
+                Product found = searchByProductId(productId);
+                if (found != null) {
+                    productList.add(found);
+                }
+            }
+        } else {
+            String lowerKeyword = keyword.toLowerCase();
+            forEachProduct(found -> {
+                if (found.getProductDescription().toLowerCase().contains(lowerKeyword)) {
+                    productList.add(found);
+                }
+            });
+        }
+        return productList;
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        int slot = find(productId);
+        return slot < 0 ? null : read(slot, productId);
+    }
+
+    /**
+     * Decrements every line in place with CAS in productID order, and puts the taken lines back if any line is short.
+     */
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> insufficientProducts = new ArrayList<>();
+        ArrayList<Integer> takenOffsets = new ArrayList<>();
+        ArrayList<Integer> takenQuantities = new ArrayList<>();
+        ArrayList<Product> takenLines = new ArrayList<>();
+
+        ArrayList<Product> sortedList = new ArrayList<>(proList);
+        sortedList.sort(Comparator.comparing(Product::getProductId)); // same order as DerbyRW
+        structureLock.readLock().lock();
+        try {
+            for (Product product : sortedList) {
+                int slot = find(product.getProductId());
+                if (slot < 0) {
+                    continue; // unknown products are skipped, as in DerbyRW
+                }
+                int offset = offsetOf(slot);
+                if (take(offset, product.getOrderedQuantity())) {
+                    takenOffsets.add(offset);
+                    takenQuantities.add(product.getOrderedQuantity());
+                    takenLines.add(product);
+                } else {
+                    insufficientProducts.add(product);
+                }
+            }
+            if (!insufficientProducts.isEmpty()) {
+                for (int i = 0; i < takenOffsets.size(); i++) { // all-or-nothing: undo the lines that succeeded
+                    INT.getAndAdd(buffer, takenOffsets.get(i) + STOCK, takenQuantities.get(i));
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        if (insufficientProducts.isEmpty()) {
+            catalogueEvents.fireStockChanged(takenLines, -1);
+        }
+        return insufficientProducts;
+    }
+
+    // takes quantity units if they are in stock, retrying if another thread changed the stock meanwhile
+    private boolean take(int offset, int quantity) {
+        int current;
+        do {
+            current = (int) INT.getVolatile(buffer, offset + STOCK);
+            if (current < quantity) {
+                return false;
+            }
+        } while (!INT.compareAndSet(buffer, offset + STOCK, current, current - quantity));
+        return true;
+    }
+
+    public void restoreStock(ArrayList<Product> proList) throws SQLException {
+        ArrayList<Product> restoredLines = new ArrayList<>(); // unknown products are skipped and not announced
+        structureLock.readLock().lock();
+        try {
+            for (Product product : proList) {
+                int slot = find(product.getProductId());
+                if (slot >= 0) {
+                    INT.getAndAdd(buffer, offsetOf(slot) + STOCK, product.getOrderedQuantity());
+                    restoredLines.add(product);
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        catalogueEvents.fireStockChanged(restoredLines, 1);
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        checkFields(id, des, imageName, stock);
+        structureLock.writeLock().lock();
+        try {
+            int slot = find(id);
+            if (slot < 0) {
+                System.out.println("Product not found: " + id);
+                return;
+            }
+            int offset = offsetOf(slot);
+            writeDetails(offset, null, des, price, imageName);
+            INT.setVolatile(buffer, offset + STOCK, stock);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        catalogueEvents.fireProductSaved(id, des, price, stock);
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        structureLock.writeLock().lock();
+        try {
+            int position = indexPosition(id);
+            if (position < 0) {
+                return;
+            }
+            int slot = index.get(position) - 1;
+            index.set(position, -1);
+            INT.setVolatile(buffer, offsetOf(slot) + STATE, 0);
+            freeSlots.add(slot);
+            orderedIds.remove(id);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        catalogueEvents.fireProductDeleted(id);
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        checkFields(id, des, image, stock);
+        structureLock.writeLock().lock();
+        try {
+            if (find(id) >= 0) {
+                throw new SQLException("Product ID already exists: " + id, "23505"); // Derby's duplicate key state
+            }
+            int slot;
+            if (!freeSlots.isEmpty()) {
+                slot = freeSlots.poll();
+            } else {
+                slot = buffer.getInt(HEADER_HIGH_WATER);
+                if (slot >= capacity) {
+                    throw new SQLException("Product store is full: " + capacity + " products");
+                }
+                buffer.putInt(HEADER_HIGH_WATER, slot + 1);
+            }
+            int offset = offsetOf(slot);
+            writeDetails(offset, id, des, price, image);
+            INT.setVolatile(buffer, offset + STOCK, stock);
+            INT.setVolatile(buffer, offset + STATE, 1); // live only once it is complete
+            indexPut(id, slot);
+            orderedIds.add(id);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        catalogueEvents.fireProductSaved(id, des, price, stock);
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return find(productId) < 0;
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        forEachProduct(productList::add);
+        return productList;
+    }
+
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        ArrayList<Product> productList = new ArrayList<>();
+        for (String productId : afterId == null ? orderedIds : orderedIds.tailSet(afterId, false)) {
+            if (productList.size() >= limit) {
+                break;
+            }
+            Product product = searchByProductId(productId);
+            if (product != null) {
+                productList.add(product);
+            }
+        }
+        return productList;
+    }
+
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        for (String productId : orderedIds) {
+            Product product = searchByProductId(productId);
+            if (product != null) { // may have been deleted during the scan
+                action.accept(product);
+            }
+        }
+    }
+
+    //a set of getter methods
+    public boolean wasCreated() { // true if open() created the file, e.g. to fill it
+        return created;
+    }
+
+    public int getProductCount() {
+        return orderedIds.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes the changed pages to disk, so they also survive a power cut.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    // the same rules as the ProductTable columns
+    private static void checkFields(String id, String des, String image, int stock) throws SQLException {
+        if (id.length() > ID_CHARS || des.length() > TEXT_CHARS || image.length() > TEXT_CHARS) {
+            throw new SQLException("Value too long for its column", "22001"); // Derby's truncation state
+        }
+        if (stock < 0) {
+            throw new SQLException("Stock cannot be negative: " + stock, "23513"); // Derby's check constraint state
+        }
+    }
+
+    // reads a record, retrying while a writer is changing its details (seqlock)
+    private Product read(int slot, String productId) {
+        int offset = offsetOf(slot);
+        while (true) {
+            int version = (int) INT.getAcquire(buffer, offset + VERSION);
+            if ((version & 1) == 0) {
+                String id = readText(offset + ID, ID_CHARS);
+                String description = readText(offset + DESCRIPTION, TEXT_CHARS);
+                String image = readText(offset + IMAGE, TEXT_CHARS);
+                double price = buffer.getDouble(offset + PRICE);
+                int stock = (int) INT.getVolatile(buffer, offset + STOCK);
+                boolean live = (int) INT.getVolatile(buffer, offset + STATE) == 1;
+                VarHandle.loadLoadFence();
+                if ((int) INT.getVolatile(buffer, offset + VERSION) == version) {
+                    return live && id.equals(productId) ? new Product(id, description, image, price, stock) : null;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // writes the details (and the ID of a new record) under the seqlock, the caller holds the write lock
+    private void writeDetails(int offset, String id, String des, double price, String image) {
+        int version = (int) INT.getVolatile(buffer, offset + VERSION);
+        INT.setVolatile(buffer, offset + VERSION, version + 1); // odd: readers retry
+        VarHandle.storeStoreFence();
+        if (id != null) {
+            writeText(offset + ID, ID_CHARS, id);
+        }
+        writeText(offset + DESCRIPTION, TEXT_CHARS, des);
+        writeText(offset + IMAGE, TEXT_CHARS, image);
+        buffer.putDouble(offset + PRICE, price);
+        INT.setRelease(buffer, offset + VERSION, version + 2);
+    }
+
+    // text slots hold a length (short) and then the chars, except the ID which is padded with '\0'
+    private String readText(int position, int maxChars) {
+        int length;
+        int start;
+        if (maxChars == ID_CHARS) {
+            length = 0;
+            while (length < ID_CHARS && buffer.getChar(position + 2 * length) != '\0') {
+                length++;
+            }
+            start = position;
+        } else {
+            length = Math.min(Math.max(buffer.getShort(position), 0), maxChars); // a torn length is retried
+            start = position + 2;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(start + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private void writeText(int position, int maxChars, String text) {
+        if (maxChars == ID_CHARS) {
+            for (int i = 0; i < ID_CHARS; i++) {
+                buffer.putChar(position + 2 * i, i < text.length() ? text.charAt(i) : '\0');
+            }
+            return;
+        }
+        buffer.putShort(position, (short) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.putChar(position + 2 + 2 * i, text.charAt(i));
+        }
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // the record slot of a live product, or -1
+    private int find(String productId) {
+        int position = indexPosition(productId);
+        return position < 0 ? -1 : index.get(position) - 1;
+    }
+
+    // the index position holding the product, or -1; a hit is checked against the record
+    private int indexPosition(String productId) {
+        int mask = index.length() - 1;
+        int position = spread(productId.hashCode()) & mask;
+        for (int probes = 0; probes < index.length(); probes++) {
+            int entry = index.get(position);
+            if (entry == 0) {
+                return -1;
+            }
+            if (entry > 0) {
+                int offset = offsetOf(entry - 1);
+                if ((int) INT.getVolatile(buffer, offset + STATE) == 1
+                        && readText(offset + ID, ID_CHARS).equals(productId)) {
+                    return position;
+                }
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    // the caller holds the write lock (or is rebuilding the index)
+    private void indexPut(String productId, int slot) {
+        int mask = index.length() - 1;
+        int position = spread(productId.hashCode()) & mask;
+        while (index.get(position) > 0) {
+            position = (position + 1) & mask;
+        }
+        index.set(position, slot + 1); // reuses a deleted position or takes an empty one
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+}
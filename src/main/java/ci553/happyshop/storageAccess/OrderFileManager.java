@@ -45,7 +45,7 @@ import java.time.format.DateTimeFormatter;
 public class OrderFileManager {
 
     //Creates a new order file in the specified directory with the given content.
-    public static void createOrderFile(Path dir, int orderId, String orderDetail) throws IOException {
+    public static void createOrderFile(Path dir, long orderId, String orderDetail) throws IOException {
         // Ensure the directory exists before creating the file
         if (!Files.exists(dir)) {
             Files.createDirectories(dir);
@@ -71,7 +71,7 @@ public class OrderFileManager {
     //Ordered state in orders/ordered
     //Progressing state in orders/progressing
     //Collected state in orders/collected
-    public static boolean updateAndMoveOrderFile(int orderId, OrderState newState, Path sourceDir, Path targetDir) throws IOException {
+    public static boolean updateAndMoveOrderFile(long orderId, OrderState newState, Path sourceDir, Path targetDir) throws IOException {
         // Ensure the target directory exists before moving the file
         if (!Files.exists(targetDir)) {
             Files.createDirectories(targetDir);
@@ -98,26 +98,18 @@ public class OrderFileManager {
      * This method creates a temporary file with the updated content and replaces
      * the original file once updates are complete.
      */
-    private static void updateOrderStateAndTime(Path sourceDir, int orderId, OrderState newState) throws IOException {
+    private static void updateOrderStateAndTime(Path sourceDir, long orderId, OrderState newState) throws IOException {
         String orderFileName = String.valueOf(orderId)+".txt";
         String tempFileName = String.valueOf(orderId) + "_temp.txt";
         Path sourcePath = sourceDir.resolve(orderFileName);
         Path tempFilePath = sourceDir.resolve(tempFileName);
 
+        String now = timestamp();
         try (BufferedReader reader = Files.newBufferedReader(sourcePath, StandardCharsets.UTF_8);
              BufferedWriter writer = Files.newBufferedWriter(tempFilePath, StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                if (line.startsWith("State")) {
-                    line = "State: " + newState;
-                } else if (newState.equals(OrderState.Progressing) && line.startsWith("ProgressingDateTime")) {
-                    line = "ProgressingDateTime: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                } else if (newState.equals(OrderState.Collected) && line.startsWith("CollectedDateTime")) {
-                    line = "CollectedDateTime: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                } else if (newState.equals(OrderState.Cancelled) && line.startsWith("CancelledDateTime")) {
-                    line = "CancelledDateTime: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                }
-                writer.write(line);
+                writer.write(updateLine(line, newState, now));
                 writer.newLine();
             }
         }
@@ -131,8 +123,47 @@ public class OrderFileManager {
         }
     }
 
+    /**
+     * Updates the state and timestamp fields of an order text held in memory, like the order file
+     * is updated on a state change. Used by the OrderStores that do not keep one file per order.
+     */
+    static String updateStateAndTime(String orderContent, OrderState newState) {
+        return updateStateAndTime(orderContent, newState, timestamp());
+    }
+
+    // as above, with the time of the new state given, e.g. the time recorded in the order journal
+    static String updateStateAndTime(String orderContent, OrderState newState, String now) {
+        StringBuilder updated = new StringBuilder(orderContent.length() + 32);
+        for (String line : orderContent.split("\n", -1)) {
+            if (updated.length() > 0) {
+                updated.append('\n');
+            }
+            updated.append(updateLine(line, newState, now));
+        }
+        return updated.toString();
+    }
+
+    // the current time, as written in the order text
+    static String timestamp() {
+        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    // the line with the new state, or the time of the new state, otherwise the line unchanged
+    private static String updateLine(String line, OrderState newState, String now) {
+        if (line.startsWith("State")) {
+            return "State: " + newState;
+        } else if (newState.equals(OrderState.Progressing) && line.startsWith("ProgressingDateTime")) {
+            return "ProgressingDateTime: " + now;
+        } else if (newState.equals(OrderState.Collected) && line.startsWith("CollectedDateTime")) {
+            return "CollectedDateTime: " + now;
+        } else if (newState.equals(OrderState.Cancelled) && line.startsWith("CancelledDateTime")) {
+            return "CancelledDateTime: " + now;
+        }
+        return line;
+    }
+
     //Reads the content of an order file as a single string.
-    public static String readOrderFile(Path dir, int orderId) throws IOException {
+    public static String readOrderFile(Path dir, long orderId) throws IOException {
         String orderFileName = String.valueOf(orderId)+".txt";
         Path path = dir.resolve(orderFileName);
         // Check if the file exists before reading
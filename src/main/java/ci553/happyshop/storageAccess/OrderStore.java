@@ -0,0 +1,87 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * The OrderStore interface defines the contract for storing orders and their states.
+ * OrderHub, OrderHistoryService and OrderExportService only use this interface, so the storage
+ * can be swapped without changing them.
+ *
+ * Implementations:
+ * - FileOrderStore: one text file per order, in one folder per state (orders/ordered, ...), the original layout.
+ * - InMemoryOrderStore: a concurrent map, for tests and for runs that do not need to keep their orders.
+ * - JournalOrderStore: an append-only segmented journal with an in-memory index, which can still write the folder layout as a view.
+ * OrderStoreFactory creates the one selected for the system.
+ *
+ * An order is stored as its text (Order.orderDetails()): the state line and the timestamp of each
+ * state are updated by transition(), so every implementation returns the same text.
+ */
+
+public interface OrderStore {
+
+    /**
+     * Stores a new order in the Ordered state.
+     *
+     * @param orderId     the order ID
+     * @param orderDetail the order text, as written by Order.orderDetails()
+     * @throws IOException if the order could not be stored, or an order with the same ID is already stored
+     */
+    void createOrder(long orderId, String orderDetail) throws IOException;
+
+    /**
+     * Moves an order from one state to another, recording the time of the new state in its text.
+     *
+     * @param orderId the order ID
+     * @param from    the current state of the order
+     * @param to      the new state
+     * @return true if the order was moved, false if it is not stored in the from state
+     * @throws IOException if the order could not be updated
+     */
+    boolean transition(long orderId, OrderState from, OrderState to) throws IOException;
+
+    /**
+     * Reads the text of an order.
+     *
+     * @param orderId the order ID
+     * @param state   the current state of the order
+     * @return the order text
+     * @throws IOException if the order is not stored in that state or could not be read
+     */
+    String readOrder(long orderId, OrderState state) throws IOException;
+
+    /**
+     * Lists the IDs of the orders in a state, in ascending order.
+     *
+     * @param state the state
+     * @return the order IDs, empty if there are none
+     * @throws IOException if the orders could not be listed
+     */
+    List<Long> listOrderIds(OrderState state) throws IOException;
+
+    /**
+     * Calls an action with the ID and text of each order in a state, in ascending ID order.
+     * History and export code should use this to walk past orders.
+     *
+     * The default implementation reads each listed order; an order that cannot be read is reported and skipped.
+     *
+     * @param state  the state, e.g. Collected or Cancelled
+     * @param action called once for each order
+     * @throws IOException if the orders could not be listed
+     */
+    default void forEachOrder(OrderState state, BiConsumer<Long, String> action) throws IOException {
+        for (long orderId : listOrderIds(state)) {
+            String orderDetail;
+            try {
+                orderDetail = readOrder(orderId, state);
+            } catch (IOException e) {
+                System.err.println("Error reading order " + orderId + ": " + e.getMessage());
+                continue;
+            }
+            action.accept(orderId, orderDetail);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.utility.StorageLocation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderStoreFactory creates the OrderStore shared by OrderHub and the order history services,
+ * like DatabaseRWFactory does for the DatabaseRW.
+ *
+ * The store is selected with -Dhappyshop.orders.store=...:
+ * - "files" (default): FileOrderStore, one text file per order under StorageLocation.ordersPath
+ * - "memory": InMemoryOrderStore, orders are lost when the JVM stops
+ * - "journal": JournalOrderStore, an append-only journal in StorageLocation.orderJournalPath,
+ *   compacted periodically on a daemon thread and closed on shutdown. With -Dhappyshop.orders.folderView=true
+ *   it also writes the folder layout of the "files" store after each compaction and on shutdown.
+ *
+ * Example Usage:
+ *     OrderStore orderStore = OrderStoreFactory.getOrderStore();
+ */
+
+public class OrderStoreFactory {
+
+    public static String store = System.getProperty("happyshop.orders.store", "files");
+    // The journal store's folder, the size at which it starts a new segment, and how often it is compacted
+    public static String journalPath = System.getProperty("happyshop.orders.journalDir", StorageLocation.orderJournalPath.toString());
+    public static long journalSegmentBytes = Long.getLong("happyshop.orders.segmentBytes", 4L * 1024 * 1024);
+    public static long journalCompactMillis = Long.getLong("happyshop.orders.compactMillis", 10 * 60 * 1000L);
+    // Whether the journal store keeps the one-file-per-order folders up to date as a read-only view
+    public static boolean folderViewEnabled = Boolean.parseBoolean(System.getProperty("happyshop.orders.folderView", "false"));
+
+    private static OrderStore orderStore; // shared by OrderHub and the history services, created on first use
+
+    /**
+     * Returns the OrderStore selected for the system, creating it on first use.
+     * Every caller gets the same instance, so the history sees the orders made by OrderHub.
+     */
+    public static synchronized OrderStore getOrderStore() {
+        if (orderStore == null) {
+            if ("memory".equals(store)) {
+                orderStore = new InMemoryOrderStore();
+            } else if ("journal".equals(store)) {
+                orderStore = openJournalOrderStore();
+            } else {
+                orderStore = new FileOrderStore(StorageLocation.ordersPath);
+            }
+        }
+        return orderStore;
+    }
+
+    /**
+     * Opens the journal store and starts its compactions. Unlike the database backends there is no fallback:
+     * running on the order files would hide every order in the journal.
+     */
+    private static JournalOrderStore openJournalOrderStore() {
+        try {
+            JournalOrderStore journal = new JournalOrderStore(Path.of(journalPath), journalSegmentBytes);
+            ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    journal.compact();
+                    if (folderViewEnabled) {
+                        journal.exportFolderView(StorageLocation.ordersPath);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Order journal compaction failed: " + e.getMessage()); // retried next time
+                }
+            }, journalCompactMillis, journalCompactMillis, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                compactor.shutdownNow();
+                try {
+                    if (folderViewEnabled) {
+                        journal.exportFolderView(StorageLocation.ordersPath);
+                    }
+                    journal.close();
+                } catch (IOException e) {
+                    System.out.println("Order journal not closed cleanly: " + e.getMessage());
+                }
+            }, "order-journal-shutdown"));
+            return journal;
+        } catch (IOException e) {
+            throw new IllegalStateException("Order journal could not be opened: " + e.getMessage(), e);
+        }
+    }
+}
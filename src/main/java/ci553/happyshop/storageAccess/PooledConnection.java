@@ -0,0 +1,130 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A JDBC connection borrowed from a {@link ConnectionPool}.
+ *
+ * Each PooledConnection keeps a cache of PreparedStatements keyed by their SQL text,
+ * so a statement is compiled by Derby only once per connection instead of once per call.
+ *
+ * Rules for callers:
+ * - Use prepare(sql) instead of Connection.prepareStatement(sql).
+ * - Do NOT close the statements returned by prepare(); they belong to the cache.
+ *   Do close the ResultSets they produce (try-with-resources).
+ * - Close the PooledConnection itself to return it to the pool. Any transaction that was
+ *   left open is rolled back and auto-commit is switched back on before the next borrower gets it.
+ *   Closing it again (e.g. in an error path as well as in try-with-resources) does nothing.
+ *
+ * A PooledConnection is used by one thread at a time (the borrower), so the statement cache
+ * does not need to be thread-safe.
+ */
+
+public class PooledConnection implements AutoCloseable {
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final Map<String, PreparedStatement> statementCache = new HashMap<>();
+    private long statementCacheHits = 0;
+    private final AtomicBoolean returned = new AtomicBoolean(false); // true once closed, until borrowed again
+
+    PooledConnection(Connection connection, ConnectionPool pool) {
+        this.connection = connection;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a cached PreparedStatement for the given SQL, preparing it on first use.
+     *
+     * @param sql the SQL text, with ? placeholders
+     * @return a prepared statement owned by this connection (do not close it)
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statementCache.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = connection.prepareStatement(sql);
+            statementCache.put(sql, stmt);
+        } else {
+            statementCacheHits++;
+            stmt.clearParameters();
+        }
+        return stmt;
+    }
+
+    // the underlying JDBC connection, for anything prepare() does not cover (e.g. plain Statements)
+    public Connection getConnection() { return connection; }
+
+    // a set of pass-through methods for transaction handling
+    public void setAutoCommit(boolean autoCommit) throws SQLException { connection.setAutoCommit(autoCommit); }
+    public void commit() throws SQLException { connection.commit(); }
+    public void rollback() throws SQLException { connection.rollback(); }
+    public Savepoint setSavepoint() throws SQLException { return connection.setSavepoint(); }
+    public void rollback(Savepoint savepoint) throws SQLException { connection.rollback(savepoint); }
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException { connection.releaseSavepoint(savepoint); }
+
+    public int getCachedStatementCount() { return statementCache.size(); }
+    public long getStatementCacheHits() { return statementCacheHits; }
+
+    /**
+     * Returns this connection to the pool it was borrowed from.
+     * Only the first close() after a borrow returns it, so the pool never gets it back twice.
+     */
+    @Override
+    public void close() {
+        if (returned.compareAndSet(false, true)) {
+            pool.release(this);
+        }
+    }
+
+    // called by ConnectionPool.borrow() when the connection is handed out again
+    void markBorrowed() {
+        returned.set(false);
+    }
+
+    /**
+     * Rolls back any unfinished transaction, clears pending batches and restores auto-commit,
+     * so the next borrower gets a clean connection.
+     *
+     * @return true if the connection can be reused, false if it should be discarded
+     */
+    boolean resetForReuse() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            for (PreparedStatement stmt : statementCache.values()) {
+                stmt.clearBatch();
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Discarding pooled connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Closes the cached statements and the physical connection.
+    void closePhysically() {
+        for (PreparedStatement stmt : statementCache.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+                // the connection is being thrown away anyway
+            }
+        }
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+}
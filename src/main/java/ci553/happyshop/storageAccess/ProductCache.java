@@ -0,0 +1,140 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of products keyed by productID.
+ * It is owned by the DatabaseRWFactory and shared by every CachedDatabaseRW, so a write
+ * made through one client invalidates the entry seen by all the others.
+ *
+ * Responsibilities:
+ * - Holds a copy of recently read products, including "not found" results for unknown IDs.
+ * - Evicts the least recently used entry when the capacity is reached.
+ * - Counts hits, misses and evictions.
+ *
+ * Products are mutable (setOrderedQuantity), so the cache stores its own copy and hands out
+ * a fresh copy on every hit. A caller changing the ordered quantity of a search result can
+ * therefore never change what the next caller sees.
+ *
+ * Avoiding stale entries:
+ * A reader that misses loads the product from the database and then puts it into the cache.
+ * If a writer invalidated the product in between, the loaded value may already be out of date.
+ * To prevent this, the reader takes a stamp with getStamp() before loading, and put() ignores
+ * the value if any invalidation happened after that stamp.
+ */
+
+public class ProductCache {
+    private static final Product NOT_FOUND = new Product("", "", "", 0, 0); // cached result of an unknown ID
+
+    private final int capacity;
+    private final LinkedHashMap<String, Product> entries;
+    private long invalidationCount = 0; // also used as the stamp, guarded by this
+
+    // cache metrics
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public ProductCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) { // access order, eldest = least recently used
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Product> eldest) {
+                if (size() > ProductCache.this.capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a product.
+     *
+     * @param productId the product ID
+     * @return a lookup result, or null on a cache miss
+     */
+    public synchronized Lookup get(String productId) {
+        Product cached = entries.get(productId);
+        if (cached == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return new Lookup(cached == NOT_FOUND ? null : copyOf(cached));
+    }
+
+    /**
+     * @return the stamp to pass to put() after loading a product from the database
+     */
+    public synchronized long getStamp() {
+        return invalidationCount;
+    }
+
+    /**
+     * Caches a product loaded from the database, unless it was invalidated since the stamp was taken.
+     *
+     * @param productId the product ID that was looked up
+     * @param product   the loaded product, or null if the ID does not exist
+     * @param stamp     the value of getStamp() taken before loading
+     */
+    public synchronized void put(String productId, Product product, long stamp) {
+        if (stamp != invalidationCount) {
+            return; // a writer ran while we were loading, the value may be stale
+        }
+        entries.put(productId, product == null ? NOT_FOUND : copyOf(product));
+    }
+
+    // Removes a product after it was written, so the next read loads it from the database.
+    public synchronized void invalidate(String productId) {
+        invalidationCount++;
+        entries.remove(productId);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidationCount++;
+        entries.clear();
+    }
+
+    private static Product copyOf(Product product) {
+        return new Product(product.getProductId(), product.getProductDescription(),
+                product.getProductImageName(), product.getUnitPrice(), product.getStockQuantity());
+    }
+
+    //a set of getter methods for cache metrics
+    public int getCapacity() { return capacity; }
+    public synchronized int getSize() { return entries.size(); }
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    public synchronized double getHitRatio() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * @return a one-line summary of the cache metrics, useful for logging
+     */
+    public synchronized String getStats() {
+        return String.format("ProductCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.2f]",
+                entries.size(), capacity, hitCount, missCount, evictionCount, getHitRatio());
+    }
+
+    /**
+     * The result of a cache hit. The product is null when the ID is known not to exist.
+     */
+    public static class Lookup {
+        private final Product product;
+
+        private Lookup(Product product) {
+            this.product = product;
+        }
+
+        public Product getProduct() { return product; }
+    }
+}
@@ -0,0 +1,171 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ProductLockManager provides process-wide locking per product, shared by every DatabaseRW instance.
+ * It implements the Singleton pattern so that two warehouse clients and several customers
+ * really exclude each other when they write the same product.
+ *
+ * Striped locking:
+ * Instead of one lock per product (unbounded) or one lock for everything (no parallelism),
+ * a fixed array of ReentrantLocks ("stripes") is used. A productID is hashed to one stripe,
+ * so writers of the same product always meet on the same lock, while writers of unrelated
+ * products almost always take different locks and run in parallel.
+ *
+ * Multi-product operations (e.g. restoring the stock of a whole order) call lockAll(),
+ * which acquires the distinct stripes in ascending stripe order. Because every caller uses the
+ * same order, two multi-product writers can never deadlock each other.
+ *
+ * Example Usage:
+ *     try (ProductLockManager.ProductLocks locks = lockManager.lock(productId)) {
+ *         // read-check-write the product
+ *     } // unlocked here
+ *
+ * Contention metrics:
+ * Every acquisition first tries the lock without waiting. If the stripe is busy the acquisition
+ * counts as contended, the wait time is recorded, and the productID is counted so the hottest
+ * SKUs can be listed with getHotProducts().
+ */
+
+public class ProductLockManager {
+    public static final int DEFAULT_STRIPE_COUNT = 64;
+
+    private static final ProductLockManager productLockManager = new ProductLockManager(DEFAULT_STRIPE_COUNT); //singleton instance
+
+    private final ReentrantLock[] stripes;
+
+    // contention metrics
+    private final LongAdder acquisitionCount = new LongAdder();
+    private final LongAdder contentionCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final Map<String, LongAdder> contentionByProduct = new ConcurrentHashMap<>();
+
+    // package-private so tests can create isolated managers
+    ProductLockManager(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    //Singleton pattern
+    public static ProductLockManager getProductLockManager() {
+        return productLockManager;
+    }
+
+    /**
+     * Locks the stripe of a single product.
+     *
+     * @param productId the product ID
+     * @return a handle that unlocks the stripe when closed
+     */
+    public ProductLocks lock(String productId) {
+        return lockAll(List.of(productId));
+    }
+
+    /**
+     * Locks the stripes of several products, in ascending stripe order to avoid deadlocks.
+     * Products that share a stripe only lock it once.
+     *
+     * @param productIds the product IDs to lock (duplicates are allowed)
+     * @return a handle that unlocks all stripes when closed
+     */
+    public ProductLocks lockAll(Collection<String> productIds) {
+        // map each product to its stripe, remembering one product per stripe for the metrics
+        String[] productForStripe = new String[stripes.length];
+        for (String productId : productIds) {
+            productForStripe[stripeOf(productId)] = productId;
+        }
+
+        int[] lockedStripes = new int[productIds.size()];
+        int count = 0;
+        for (int i = 0; i < stripes.length; i++) { // ascending stripe order
+            if (productForStripe[i] != null) {
+                acquire(i, productForStripe[i]);
+                lockedStripes[count++] = i;
+            }
+        }
+        return new ProductLocks(Arrays.copyOf(lockedStripes, count));
+    }
+
+    private void acquire(int stripe, String productId) {
+        ReentrantLock lock = stripes[stripe];
+        acquisitionCount.increment();
+        if (lock.tryLock()) {
+            return; // uncontended
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        totalWaitNanos.add(System.nanoTime() - start);
+        contentionCount.increment();
+        contentionByProduct.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    int stripeOf(String productId) {
+        int h = productId.trim().hashCode();
+        h ^= (h >>> 16); // spread the high bits, productIDs differ mostly in their last characters
+        return (h & 0x7fffffff) % stripes.length;
+    }
+
+    //a set of getter methods for contention metrics
+    public int getStripeCount() { return stripes.length; }
+    public long getAcquisitionCount() { return acquisitionCount.sum(); }
+    public long getContentionCount() { return contentionCount.sum(); }
+    public long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()); }
+
+    /**
+     * Lists the products whose locks were most often contended, hottest first.
+     *
+     * @param limit the maximum number of products to return
+     * @return entries of productID and contended acquisition count
+     */
+    public List<Map.Entry<String, Long>> getHotProducts(int limit) {
+        List<Map.Entry<String, Long>> hot = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : contentionByProduct.entrySet()) {
+            hot.add(Map.entry(entry.getKey(), entry.getValue().sum()));
+        }
+        hot.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return hot.size() > limit ? new ArrayList<>(hot.subList(0, limit)) : hot;
+    }
+
+    /**
+     * @return a one-line summary of the lock metrics, useful for logging
+     */
+    public String getStats() {
+        return String.format("ProductLockManager[stripes=%d, acquisitions=%d, contended=%d, totalWait=%d ms, hot=%s]",
+                getStripeCount(), getAcquisitionCount(), getContentionCount(), getTotalWaitMillis(), getHotProducts(5));
+    }
+
+    /**
+     * The stripes held by one lock()/lockAll() call. Closing it releases them in reverse order.
+     */
+    public class ProductLocks implements AutoCloseable {
+        private final int[] lockedStripes;
+        private boolean released = false;
+
+        private ProductLocks(int[] lockedStripes) {
+            this.lockedStripes = lockedStripes;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (int i = lockedStripes.length - 1; i >= 0; i--) {
+                stripes[lockedStripes[i]].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory trigram inverted index over product descriptions, used by DerbyRW to answer
+ * name searches without the full table scan of  LOWER(description) LIKE '%keyword%'.
+ * It is owned by the DatabaseRWFactory, built from the ProductTable on first use,
+ * and kept current as a CatalogueListener of the DerbyRW write methods (insert, update, delete).
+ *
+ * How it works:
+ * - Every lower-cased description is cut into trigrams, e.g. "radio" -> "rad", "adi", "dio".
+ * - For each trigram the index keeps a posting list: the slots of the products containing it.
+ * - A keyword can only be contained in a description that contains all of its trigrams, so a search
+ *   walks the shortest posting list of the keyword's trigrams and checks each candidate with contains().
+ *   The final contains() check makes the results exactly the same as the LIKE query.
+ * - Keywords shorter than 3 characters have no trigram; they are checked against every description,
+ *   which is still a scan of memory rather than of the database.
+ *
+ * Each product gets a slot number. Updating a product gives it a new slot and marks the old one dead,
+ * so posting lists are only ever appended to. When dead slots outnumber live ones the index compacts itself.
+ *
+ * Results are returned in productID order.
+ */
+
+public class ProductNameIndex implements CatalogueListener {
+    private static final int GRAM = 3;
+
+    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+    private final ArrayList<String> slotIds = new ArrayList<>();   // slot -> productID
+    private final ArrayList<String> slotTexts = new ArrayList<>(); // slot -> lower-case description, null if dead
+    private final HashMap<String, Integer> slotOf = new HashMap<>(); // productID -> live slot
+    private final HashMap<String, PostingList> postings = new HashMap<>(); // trigram -> slots
+    private int deadSlots = 0;
+    private volatile boolean loaded = false;
+
+    /**
+     * Replaces the content of the index, e.g. with all descriptions read from the ProductTable at startup.
+     *
+     * @param descriptions productID -> description
+     */
+    public void rebuild(Map<String, String> descriptions) {
+        rwLock.writeLock().lock();
+        try {
+            clear();
+            for (Map.Entry<String, String> entry : descriptions.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+            loaded = true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Adds or replaces the description of a product, called after it was inserted or updated.
+    @Override
+    public void productSaved(String productId, String description) {
+        rwLock.writeLock().lock();
+        try {
+            kill(productId);
+            add(productId, description);
+            compactIfNeeded();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Removes a product, called after it was deleted.
+    @Override
+    public void productDeleted(String productId) {
+        rwLock.writeLock().lock();
+        try {
+            kill(productId);
+            compactIfNeeded();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the products whose description contains the keyword, ignoring case.
+     *
+     * @param keyword the substring to search for
+     * @return the matching productIDs in ascending order
+     */
+    public List<String> search(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        ArrayList<String> result = new ArrayList<>();
+
+        rwLock.readLock().lock();
+        try {
+            PostingList candidates = shortestPostingList(needle);
+            if (candidates == null && needle.length() >= GRAM) {
+                return result; // some trigram of the keyword occurs nowhere
+            }
+            int size = candidates == null ? slotTexts.size() : candidates.size;
+            for (int i = 0; i < size; i++) {
+                int slot = candidates == null ? i : candidates.slots[i];
+                String text = slotTexts.get(slot);
+                if (text != null && text.contains(needle)) {
+                    result.add(slotIds.get(slot));
+                }
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    // returns null if the keyword is too short to have trigrams, or if one of its trigrams is unknown
+    private PostingList shortestPostingList(String needle) {
+        PostingList shortest = null;
+        for (String gram : trigrams(needle)) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return null;
+            }
+            if (shortest == null || list.size < shortest.size) {
+                shortest = list;
+            }
+        }
+        return shortest;
+    }
+
+    private void add(String productId, String description) {
+        if (description == null) {
+            return; // LIKE never matches a NULL description
+        }
+        String text = description.toLowerCase(Locale.ROOT);
+        int slot = slotIds.size();
+        slotIds.add(productId);
+        slotTexts.add(text);
+        slotOf.put(productId, slot);
+        for (String gram : trigrams(text)) {
+            postings.computeIfAbsent(gram, g -> new PostingList()).add(slot);
+        }
+    }
+
+    private void kill(String productId) {
+        Integer slot = slotOf.remove(productId);
+        if (slot != null) {
+            slotTexts.set(slot, null);
+            deadSlots++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deadSlots > 1024 && deadSlots > slotOf.size()) {
+            HashMap<String, String> live = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : slotOf.entrySet()) {
+                live.put(entry.getKey(), slotTexts.get(entry.getValue()));
+            }
+            clear();
+            for (Map.Entry<String, String> entry : live.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void clear() {
+        slotIds.clear();
+        slotTexts.clear();
+        slotOf.clear();
+        postings.clear();
+        deadSlots = 0;
+    }
+
+    // the distinct trigrams of a lower-case text
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    //a set of getter methods
+    public boolean isLoaded() { return loaded; }
+
+    public int getProductCount() {
+        rwLock.readLock().lock();
+        try {
+            return slotOf.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    public int getTrigramCount() {
+        rwLock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // A growable array of slots in ascending order.
+    private static class PostingList {
+        private int[] slots = new int[4];
+        private int size = 0;
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ci553.happyshop.storageAccess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory prefix index over product IDs and descriptions, used for type-ahead suggestions
+ * in the customer search box. It never touches the database after it has been built.
+ * It is owned by the DatabaseRWFactory and kept current as a CatalogueListener, so products
+ * inserted, edited or deleted in the warehouse appear in (or disappear from) the suggestions at once.
+ *
+ * How it works:
+ * - Each product is indexed under its ID and under every word-start of its lower-cased description,
+ *   e.g. "DAB Radio" is indexed as "dab radio" and "radio", so typing "rad" finds it.
+ * - The keys are kept sorted in a ConcurrentSkipListSet. All keys starting with a prefix are next to
+ *   each other, so suggest() reads a small range of the set instead of looking at every product.
+ * - Each key is stored as  key + '\0' + productID  so that two products with the same word still
+ *   have different entries.
+ *
+ * Memory budget:
+ * The estimated size of the index is kept below maxBytes. A product that does not fit is not indexed
+ * (and counted in getRejectedCount()) rather than growing the index without limit.
+ *
+ * Reads do not lock, so the JavaFX thread can call suggest() on every keystroke.
+ */
+
+public class ProductSuggestionIndex implements CatalogueListener {
+    private static final char SEPARATOR = '\0';
+    private static final int ENTRY_OVERHEAD_BYTES = 64; // skip-list node, index and String headers
+    private static final int MAX_WORD_KEYS = 8; // per product, long descriptions add little after this
+
+    private final long maxBytes;
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private final Map<String, Indexed> products = new ConcurrentHashMap<>(); // productID -> what was indexed
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ProductSuggestionIndex(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Replaces the content of the index, e.g. with all descriptions read from the ProductTable at startup.
+     *
+     * @param descriptions productID -> description
+     */
+    public synchronized void rebuild(Map<String, String> descriptions) {
+        keys.clear();
+        products.clear();
+        usedBytes.set(0);
+        rejectedCount.set(0);
+        for (Map.Entry<String, String> entry : descriptions.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void productSaved(String productId, String description) {
+        remove(productId);
+        add(productId, description);
+    }
+
+    @Override
+    public synchronized void productDeleted(String productId) {
+        remove(productId);
+    }
+
+    /**
+     * Suggests products whose ID or a word of whose description starts with the typed text.
+     *
+     * @param typed the text typed so far
+     * @param limit the maximum number of suggestions
+     * @return suggestions like "0002 DAB Radio", in key order, without duplicates
+     */
+    public List<String> suggest(String typed, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        String prefix = typed.trim().toLowerCase(Locale.ROOT);
+        if (prefix.isEmpty()) {
+            return suggestions;
+        }
+
+        Set<String> seen = new LinkedHashSet<>();
+        for (String key : keys.tailSet(prefix, true)) {
+            if (!key.startsWith(prefix) || seen.size() >= limit) {
+                break; // past the range of keys with this prefix
+            }
+            String productId = key.substring(key.lastIndexOf(SEPARATOR) + 1);
+            Indexed indexed = products.get(productId);
+            if (indexed != null && seen.add(productId)) {
+                suggestions.add(productId + " " + indexed.description);
+            }
+        }
+        return suggestions;
+    }
+
+    // called while holding the monitor, readers see each key appear or disappear atomically
+    private void add(String productId, String description) {
+        String text = description == null ? "" : description.toLowerCase(Locale.ROOT);
+        List<String> productKeys = new ArrayList<>();
+        productKeys.add(productId.toLowerCase(Locale.ROOT) + SEPARATOR + productId);
+        int start = 0;
+        while (start < text.length() && productKeys.size() <= MAX_WORD_KEYS) {
+            if (text.charAt(start) != ' ' && (start == 0 || text.charAt(start - 1) == ' ')) {
+                productKeys.add(text.substring(start) + SEPARATOR + productId);
+            }
+            start++;
+        }
+
+        long bytes = 0;
+        for (String key : productKeys) {
+            bytes += ENTRY_OVERHEAD_BYTES + 2L * key.length();
+        }
+        bytes += ENTRY_OVERHEAD_BYTES + 2L * text.length();
+        if (usedBytes.get() + bytes > maxBytes) {
+            rejectedCount.incrementAndGet();
+            System.out.println("Suggestion index is full (" + maxBytes + " bytes), product " + productId + " not indexed.");
+            return;
+        }
+
+        products.put(productId, new Indexed(description == null ? "" : description, productKeys, bytes));
+        keys.addAll(productKeys);
+        usedBytes.addAndGet(bytes);
+    }
+
+    private void remove(String productId) {
+        Indexed indexed = products.remove(productId);
+        if (indexed != null) {
+            keys.removeAll(indexed.keys);
+            usedBytes.addAndGet(-indexed.bytes);
+        }
+    }
+
+    //a set of getter methods
+    public long getMaxBytes() { return maxBytes; }
+    public long getUsedBytes() { return usedBytes.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public int getProductCount() { return products.size(); }
+    public int getKeyCount() { return keys.size(); }
+
+    // What was indexed for one product, so it can be removed again.
+    private static class Indexed {
+        private final String description;
+        private final List<String> keys;
+        private final long bytes;
+
+        private Indexed(String description, List<String> keys, long bytes) {
+            this.description = description;
+            this.keys = keys;
+            this.bytes = bytes;
+        }
+    }
+}
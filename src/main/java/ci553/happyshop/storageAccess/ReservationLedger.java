@@ -0,0 +1,205 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * ReservationLedger keeps the time-limited stock holds placed when customers add products to their trolley.
+ * It is owned by the DatabaseRWFactory and shared by every customer client.
+ *
+ * Responsibilities:
+ * - reserve() places (or grows) a hold for a trolley, only if the stock not held by anyone covers it.
+ * - Every hold expires after the TTL unless the trolley adds the product again; expiries are
+ *   scheduled on a TimingWheel, so thousands of holds cost no scanning.
+ * - confirm() tops up the holds of a trolley before checkout, convert() drops them once the purchase
+ *   has decremented the stock, releaseAll() drops them when the trolley is cancelled.
+ * - available() answers "on-hand stock minus live holds" from a per-product running total,
+ *   without looking at the individual holds or the database.
+ *
+ * Benefits:
+ * - A customer learns that stock is short when adding to the trolley, not after a failed checkout,
+ *   so checkouts that would fail (and their retries) no longer reach the database.
+ *
+ * The ledger is in memory only, like the trolleys it belongs to: after a restart there are no trolleys
+ * and therefore no holds to recover. purchaseStocks() still checks the stock in the database, so the
+ * ledger can never oversell, even if the warehouse lowers the stock of a held product.
+ *
+ * Example Usage:
+ *     if (ledger.reserve(trolleyId, product.getProductId(), product.getStockQuantity(), 1)) { ...add to trolley... }
+ */
+
+public class ReservationLedger {
+    private final TimingWheel timingWheel;
+    private final long ttlMillis;
+
+    // all guarded by this
+    private final HashMap<String, Integer> heldByProduct = new HashMap<>(); // productId -> sum of live holds
+    private final HashMap<String, HashMap<String, Hold>> holdsByOwner = new HashMap<>(); // ownerId -> productId -> hold
+
+    // ledger metrics
+    private long reservedCount = 0;
+    private long rejectedCount = 0;
+    private long expiredCount = 0;
+    private long convertedCount = 0;
+
+    public ReservationLedger(TimingWheel timingWheel, long ttlMillis) {
+        this.timingWheel = timingWheel;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Places a hold for a trolley, or adds to its existing hold on the product and renews its TTL.
+     *
+     * @param ownerId   identifies the trolley
+     * @param productId the product to hold
+     * @param onHand    the stock in the database, as last read (e.g. by the search)
+     * @param quantity  the quantity to add to the hold
+     * @return true if the hold was placed, false if not enough stock is free of other holds
+     */
+    public synchronized boolean reserve(String ownerId, String productId, int onHand, int quantity) {
+        if (available(productId, onHand) < quantity) {
+            rejectedCount++;
+            return false;
+        }
+        Hold hold = holdsByOwner.computeIfAbsent(ownerId, id -> new HashMap<>())
+                .computeIfAbsent(productId, id -> new Hold(ownerId, productId));
+        hold.quantity += quantity;
+        heldByProduct.merge(productId, quantity, Integer::sum);
+        renew(hold);
+        reservedCount++;
+        return true;
+    }
+
+    /**
+     * Makes sure a trolley holds the ordered quantity of every line before checkout,
+     * topping up the holds that expired or were never placed.
+     *
+     * @param ownerId identifies the trolley
+     * @param lines   the grouped trolley, stockQuantity = on-hand stock as last read
+     * @return copies of the lines that cannot be held, with stockQuantity set to what the trolley
+     *         can get, empty if the whole trolley is held
+     */
+    public synchronized ArrayList<Product> confirm(String ownerId, ArrayList<Product> lines) {
+        ArrayList<Product> unavailable = new ArrayList<>();
+        for (Product line : lines) {
+            String productId = line.getProductId();
+            int missing = line.getOrderedQuantity() - getHeldQuantity(ownerId, productId);
+            if (missing > 0 && !reserve(ownerId, productId, line.getStockQuantity(), missing)) {
+                Product shortLine = new Product(productId, line.getProductDescription(), line.getProductImageName(),
+                        line.getUnitPrice(),
+                        getHeldQuantity(ownerId, productId) + available(productId, line.getStockQuantity()));
+                shortLine.setOrderedQuantity(line.getOrderedQuantity());
+                unavailable.add(shortLine);
+            }
+        }
+        return unavailable;
+    }
+
+    /**
+     * Drops the holds of a trolley whose purchase has committed: the stock they protected
+     * has now been decremented in the database.
+     */
+    public synchronized void convert(String ownerId) {
+        HashMap<String, Hold> holds = holdsByOwner.remove(ownerId);
+        if (holds != null) {
+            for (Hold hold : holds.values()) {
+                drop(hold);
+                convertedCount++;
+            }
+        }
+    }
+
+    // Drops all holds of a trolley, e.g. when the customer cancels it
+    public synchronized void releaseAll(String ownerId) {
+        HashMap<String, Hold> holds = holdsByOwner.remove(ownerId);
+        if (holds != null) {
+            for (Hold hold : holds.values()) {
+                drop(hold);
+            }
+        }
+    }
+
+    // Drops the hold of a trolley on one product, e.g. when the product is removed from the trolley
+    public synchronized void release(String ownerId, String productId) {
+        HashMap<String, Hold> holds = holdsByOwner.get(ownerId);
+        if (holds != null) {
+            Hold hold = holds.remove(productId);
+            if (hold != null) {
+                drop(hold);
+            }
+            if (holds.isEmpty()) {
+                holdsByOwner.remove(ownerId);
+            }
+        }
+    }
+
+    /**
+     * The stock that can still be reserved: on-hand stock minus all live holds.
+     *
+     * @param onHand the stock in the database, as last read
+     */
+    public synchronized int available(String productId, int onHand) {
+        return Math.max(0, onHand - heldByProduct.getOrDefault(productId, 0));
+    }
+
+    //a set of getter methods
+    public synchronized int getHeldQuantity(String productId) {
+        return heldByProduct.getOrDefault(productId, 0);
+    }
+
+    public synchronized int getHeldQuantity(String ownerId, String productId) {
+        HashMap<String, Hold> holds = holdsByOwner.get(ownerId);
+        Hold hold = holds == null ? null : holds.get(productId);
+        return hold == null ? 0 : hold.quantity;
+    }
+
+    public synchronized long getExpiredCount() { return expiredCount; }
+    public synchronized long getRejectedCount() { return rejectedCount; }
+
+    public synchronized String getStats() {
+        return String.format("ReservationLedger[trolleys=%d, reserved=%d, rejected=%d, expired=%d, converted=%d]",
+                holdsByOwner.size(), reservedCount, rejectedCount, expiredCount, convertedCount);
+    }
+
+    private void renew(Hold hold) {
+        if (hold.timeout != null) {
+            hold.timeout.cancel();
+        }
+        hold.timeout = timingWheel.schedule(() -> expire(hold), ttlMillis);
+    }
+
+    // runs on the timing wheel thread
+    private synchronized void expire(Hold hold) {
+        HashMap<String, Hold> holds = holdsByOwner.get(hold.ownerId);
+        if (holds == null || holds.get(hold.productId) != hold) {
+            return; // already converted or released
+        }
+        release(hold.ownerId, hold.productId);
+        expiredCount++;
+        System.out.println("Hold expired: " + hold.quantity + " of Product ID: " + hold.productId);
+    }
+
+    // removes the hold from the running total and cancels its expiry, the caller removes it from holdsByOwner
+    private void drop(Hold hold) {
+        heldByProduct.computeIfPresent(hold.productId, (id, held) -> held == hold.quantity ? null : held - hold.quantity);
+        if (hold.timeout != null) {
+            hold.timeout.cancel();
+        }
+    }
+
+    // The quantity of one product held by one trolley
+    private static class Hold {
+        private final String ownerId;
+        private final String productId;
+        private int quantity = 0;
+        private TimingWheel.Timeout timeout;
+
+        private Hold(String ownerId, String productId) {
+            this.ownerId = ownerId;
+            this.productId = productId;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SchemaMigrator upgrades an existing ProductTable in place to the current schema, without losing data.
+ * It is run by DatabaseRWFactory when the connection pool is created, and by SetDatabase after
+ * creating a fresh table, so old and new databases end up with the same schema.
+ *
+ * Migrations (each one is skipped if it has already been applied):
+ * 1. descriptionLower: a generated column, always equal to LOWER(description). Derby fills it
+ *    for the existing rows and keeps it up to date on every insert and update.
+ * 2. ProductDescLowerIdx: an index on descriptionLower, so a prefix search
+ *    (descriptionLower LIKE 'rad%') reads an index range instead of the whole table.
+ * 3. ProductInStockIdx: an index on inStock, so a stock threshold query
+ *    (inStock <= 10) reads only the low stock rows.
+ * 4. StockJournalState: the sequence number of the last StockJournal record applied to ProductTable,
+ *    updated in the same transaction as the stock, so a journal replay never applies a record twice.
+ * 5. ProductChangeLog: one row per changed product, numbered by an identity column, the catalogue version.
+ * 6. ProductInsertedTrg, ProductUpdatedTrg, ProductDeletedTrg: triggers on ProductTable writing the
+ *    ProductChangeLog rows in the writer's transaction, so every writer is logged (see CatalogueFeed).
+ *    An update that changes no column, e.g. a checkpoint rewriting an unchanged row, is not logged.
+ *
+ * Writers must name their columns (INSERT INTO ProductTable(productID, ...) VALUES ...),
+ * because a generated column cannot be given a value.
+ *
+ * Example Usage:
+ *     try (PooledConnection conn = pool.borrow()) {
+ *         SchemaMigrator.migrate(conn.getConnection());
+ *     }
+ */
+
+public class SchemaMigrator {
+    public static final String DESCRIPTION_LOWER_INDEX = "PRODUCTDESCLOWERIDX";
+    public static final String IN_STOCK_INDEX = "PRODUCTINSTOCKIDX";
+    public static final String STOCK_JOURNAL = "stock"; // the StockJournalState row of the stock journal
+    public static final String[] CHANGE_TRIGGERS = {"PRODUCTINSERTEDTRG", "PRODUCTUPDATEDTRG", "PRODUCTDELETEDTRG"};
+
+    /**
+     * Applies the missing migrations to ProductTable.
+     *
+     * @param connection a connection in auto-commit mode
+     * @return the number of migrations applied, 0 if the schema was already current
+     * @throws SQLException if ProductTable does not exist or a migration fails
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        int applied = 0;
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (Statement stmt = connection.createStatement()) {
+            if (!hasColumn(metaData, "PRODUCTTABLE", "DESCRIPTIONLOWER")) {
+                stmt.executeUpdate("ALTER TABLE ProductTable ADD COLUMN descriptionLower VARCHAR(100) " +
+                        "GENERATED ALWAYS AS (LOWER(description))");
+                applied++;
+                System.out.println("Schema migration: added ProductTable.descriptionLower");
+            }
+            if (!hasIndex(metaData, "PRODUCTTABLE", DESCRIPTION_LOWER_INDEX)) {
+                stmt.executeUpdate("CREATE INDEX " + DESCRIPTION_LOWER_INDEX + " ON ProductTable(descriptionLower)");
+                applied++;
+                System.out.println("Schema migration: indexed ProductTable.descriptionLower");
+            }
+            if (!hasIndex(metaData, "PRODUCTTABLE", IN_STOCK_INDEX)) {
+                stmt.executeUpdate("CREATE INDEX " + IN_STOCK_INDEX + " ON ProductTable(inStock)");
+                applied++;
+                System.out.println("Schema migration: indexed ProductTable.inStock");
+            }
+            if (!hasTable(metaData, "STOCKJOURNALSTATE")) {
+                stmt.executeUpdate("CREATE TABLE StockJournalState(journal VARCHAR(32) PRIMARY KEY, lastSequence BIGINT NOT NULL)");
+                stmt.executeUpdate("INSERT INTO StockJournalState VALUES('" + STOCK_JOURNAL + "', 0)");
+                applied++;
+                System.out.println("Schema migration: created StockJournalState");
+            }
+            if (!hasTable(metaData, "PRODUCTCHANGELOG")) {
+                stmt.executeUpdate("CREATE TABLE ProductChangeLog(version BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " +
+                        "productID CHAR(4) NOT NULL, changeType CHAR(1) NOT NULL)");
+                applied++;
+                System.out.println("Schema migration: created ProductChangeLog");
+            }
+            if (!hasTrigger(connection, CHANGE_TRIGGERS[0])) { // the triggers are dropped with ProductTable
+                stmt.executeUpdate("CREATE TRIGGER " + CHANGE_TRIGGERS[0] + " AFTER INSERT ON ProductTable " +
+                        "REFERENCING NEW AS n FOR EACH ROW " +
+                        "INSERT INTO ProductChangeLog(productID, changeType) VALUES(n.productID, 'I')");
+                stmt.executeUpdate("CREATE TRIGGER " + CHANGE_TRIGGERS[1] + " AFTER UPDATE ON ProductTable " +
+                        "REFERENCING OLD AS o NEW AS n FOR EACH ROW " +
+                        "WHEN (o.inStock <> n.inStock OR o.unitPrice <> n.unitPrice " +
+                        "OR COALESCE(o.description, '') <> COALESCE(n.description, '') " +
+                        "OR COALESCE(o.image, '') <> COALESCE(n.image, '')) " +
+                        "INSERT INTO ProductChangeLog(productID, changeType) VALUES(n.productID, 'U')");
+                stmt.executeUpdate("CREATE TRIGGER " + CHANGE_TRIGGERS[2] + " AFTER DELETE ON ProductTable " +
+                        "REFERENCING OLD AS o FOR EACH ROW " +
+                        "INSERT INTO ProductChangeLog(productID, changeType) VALUES(o.productID, 'D')");
+                applied++;
+                System.out.println("Schema migration: added the ProductTable change triggers");
+            }
+        }
+        return applied;
+    }
+
+    // Derby stores unquoted identifiers in upper case
+    private static boolean hasColumn(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasTable(DatabaseMetaData metaData, String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasTrigger(Connection connection, String trigger) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM SYS.SYSTRIGGERS WHERE TRIGGERNAME = ?")) {
+            stmt.setString(1, trigger);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean hasIndex(DatabaseMetaData metaData, String table, String index) throws SQLException {
+        try (ResultSet rs = metaData.getIndexInfo(null, null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equals(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,222 @@
+package ci553.happyshop.storageAccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * StockJournal is the local append-only file that makes write-behind stock changes durable
+ * before they reach ProductTable (see WriteBehindDatabaseRW).
+ *
+ * Record layout: [int length][long crc32][payload], payload = [long sequence][int lines] + lines x [UTF productId][int delta].
+ * One record holds all the stock changes of one purchase or restore, so a trolley is never half replayed.
+ *
+ * How it works:
+ * - append() writes a record and returns its sequence number, without forcing it to disk.
+ * - sync(sequence) forces the file to disk up to that record. A thread whose record was already forced
+ *   by another thread's sync returns at once, so concurrent checkouts share one fsync (group commit).
+ * - replay() reads the records back at startup. A torn record at the end (a crash in the middle of
+ *   a write) fails its length or CRC check; it and anything after it are cut off.
+ * - truncate(sequence) empties the file once every record up to the last one has been applied to the database.
+ *
+ * Example Usage:
+ *     long sequence = journal.append(Map.of("0001", -2));
+ *     journal.sync(sequence); // durable from here on
+ */
+
+public class StockJournal implements AutoCloseable {
+    private final FileChannel channel;
+    private final Object syncLock = new Object(); // one fsync at a time
+
+    // guarded by this
+    private long nextSequence = 1;
+    private long lastAppended = 0;
+
+    private volatile long lastSynced = 0;
+
+    // journal metrics
+    private long appendCount = 0; // guarded by this
+    private long syncCount = 0; // guarded by syncLock
+
+    public StockJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size()); // never overwrite records, even if replay() is not called
+    }
+
+    /**
+     * Reads every complete record, cuts off a torn tail, and positions the journal for appending.
+     *
+     * @return the records in sequence order
+     */
+    public synchronized ArrayList<Record> replay() throws IOException {
+        ArrayList<Record> records = new ArrayList<>();
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        while (position + header.capacity() <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            long crc = header.getLong();
+            if (length <= 0 || position + header.capacity() + length > size) {
+                break; // torn header or payload
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + header.capacity());
+            if (crcOf(payload.array()) != crc) {
+                break; // torn or corrupted payload
+            }
+            Record record = decode(payload.array());
+            records.add(record);
+            nextSequence = Math.max(nextSequence, record.getSequence() + 1);
+            position += header.capacity() + length;
+        }
+        if (position < size) {
+            System.out.println("Stock journal: cut off " + (size - position) + " bytes of a torn record.");
+            channel.truncate(position);
+        }
+        channel.position(position);
+        lastAppended = nextSequence - 1;
+        lastSynced = lastAppended;
+        return records;
+    }
+
+    /**
+     * Makes the next sequence number at least sequence + 1, e.g. after the journal has been emptied
+     * so that new records are never mistaken for ones the database already holds.
+     */
+    public synchronized void advancePast(long sequence) {
+        nextSequence = Math.max(nextSequence, sequence + 1);
+    }
+
+    /**
+     * Writes a record holding the stock changes of one purchase or restore. Call sync() to make it durable.
+     *
+     * @param deltas productID -> stock change (negative for a purchase)
+     * @return the sequence number of the record
+     */
+    public synchronized long append(Map<String, Integer> deltas) throws IOException {
+        long sequence = nextSequence;
+        byte[] payload = encode(sequence, deltas);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + payload.length);
+        buffer.putInt(payload.length).putLong(crcOf(payload)).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        nextSequence++;
+        lastAppended = sequence;
+        appendCount++;
+        return sequence;
+    }
+
+    /**
+     * Forces the journal to disk up to the given record, unless another sync already did.
+     */
+    public void sync(long sequence) throws IOException {
+        if (lastSynced >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (lastSynced >= sequence) {
+                return; // forced by the thread that held the lock before us
+            }
+            long upTo;
+            synchronized (this) {
+                upTo = lastAppended; // everything written so far is covered by this force
+            }
+            channel.force(false);
+            syncCount++;
+            lastSynced = upTo;
+        }
+    }
+
+    /**
+     * Empties the journal if no record after the given sequence has been appended,
+     * i.e. once the database holds every record.
+     *
+     * @return true if the journal was emptied
+     */
+    public synchronized boolean truncate(long appliedSequence) throws IOException {
+        if (lastAppended > appliedSequence || channel.size() == 0) {
+            return false;
+        }
+        channel.truncate(0);
+        channel.position(0);
+        return true;
+    }
+
+    //a set of getter methods
+    public synchronized long getAppendCount() { return appendCount; }
+
+    public long getSyncCount() {
+        synchronized (syncLock) {
+            return syncCount;
+        }
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] encode(long sequence, Map<String, Integer> deltas) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(sequence);
+            out.writeInt(deltas.size());
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                out.writeUTF(delta.getKey());
+                out.writeInt(delta.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Record decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long sequence = in.readLong();
+            int lines = in.readInt();
+            LinkedHashMap<String, Integer> deltas = new LinkedHashMap<>();
+            for (int i = 0; i < lines; i++) {
+                deltas.put(in.readUTF(), in.readInt());
+            }
+            return new Record(sequence, deltas);
+        }
+    }
+
+    private static long crcOf(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    /**
+     * The stock changes of one purchase or restore, read back by replay().
+     */
+    public static class Record {
+        private final long sequence;
+        private final LinkedHashMap<String, Integer> deltas;
+
+        private Record(long sequence, LinkedHashMap<String, Integer> deltas) {
+            this.sequence = sequence;
+            this.deltas = deltas;
+        }
+
+        public long getSequence() { return sequence; }
+        public Map<String, Integer> getDeltas() { return deltas; }
+    }
+}
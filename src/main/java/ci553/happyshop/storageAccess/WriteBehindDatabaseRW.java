@@ -0,0 +1,334 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * WriteBehindDatabaseRW takes stock changes off the checkout path: purchases and restores are applied
+ * to an in-memory view of the catalogue, made durable in a local StockJournal, and written to
+ * ProductTable later, in batches. Select it with -Dhappyshop.db.backend=writebehind.
+ *
+ * How it works:
+ * - The InMemoryDatabaseRW view is authoritative: it decides with CAS whether a trolley is in stock,
+ *   and answers every read.
+ * - Each successful purchase or restore appends one journal record and waits for it to be fsync'd
+ *   (concurrent checkouts share an fsync). The checkout is durable when purchaseStocks() returns.
+ * - The stock changes are also summed per product in a pending map. The flusher writes the sums
+ *   to Derby every flushInterval, one UPDATE per product however many checkouts touched it, together
+ *   with the sequence number of the last journal record they include (DerbyRW.applyStockDeltas()).
+ * - open() replays the journal records that Derby does not hold yet, so a crash loses nothing
+ *   that a customer was told had been purchased. The journal is emptied once Derby holds everything.
+ *
+ * Warehouse writes (update, insert, delete) are rare and go straight to Derby: they take the write lock,
+ * which waits for the checkouts in progress, flush the pending changes, and then write Derby and the view,
+ * so a stock level typed by the warehouse is never overwritten by an older delta.
+ *
+ * Example Usage:
+ *     WriteBehindDatabaseRW db = WriteBehindDatabaseRW.open(new DerbyRW(pool), new StockJournal(path), null);
+ *     db.start(Duration.ofMillis(100));
+ */
+
+public class WriteBehindDatabaseRW implements DatabaseRW, AutoCloseable {
+    private final DerbyRW store;
+    private final InMemoryDatabaseRW view;
+    private final StockJournal journal;
+
+    // purchases and restores share the read lock, warehouse writes take the write lock
+    private final ReentrantReadWriteLock catalogueLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object(); // one flush at a time
+
+    // guarded by this
+    private HashMap<String, Integer> pendingDeltas = new HashMap<>(); // productID -> net change not yet in Derby
+    private long pendingSequence; // the last journal record included in pendingDeltas
+    private long flushedSequence; // the last journal record in Derby, guarded by flushLock
+
+    private ScheduledExecutorService flusher;
+
+    // write-behind metrics
+    private long journaledCount = 0; // guarded by this
+    private long flushCount = 0; // guarded by flushLock
+    private long flushedUpdateCount = 0; // guarded by flushLock
+
+    private WriteBehindDatabaseRW(DerbyRW store, InMemoryDatabaseRW view, StockJournal journal, long appliedSequence) {
+        this.store = store;
+        this.view = view;
+        this.journal = journal;
+        this.pendingSequence = appliedSequence;
+        this.flushedSequence = appliedSequence;
+    }
+
+    /**
+     * Recovers and opens the write-behind layer: replays the journal records missing from Derby,
+     * then loads the view from Derby.
+     *
+     * @param store     the Derby database written behind
+     * @param journal   the stock journal, with the records of the last run if it did not shut down cleanly
+     * @param nameIndex the name index used by the view to search, or null to scan
+     */
+    public static WriteBehindDatabaseRW open(DerbyRW store, StockJournal journal, ProductNameIndex nameIndex)
+            throws SQLException, IOException {
+        long applied = store.getAppliedJournalSequence();
+        HashMap<String, Integer> missing = new HashMap<>();
+        long lastSequence = applied;
+        int replayed = 0;
+        for (StockJournal.Record record : journal.replay()) {
+            if (record.getSequence() > applied) { // Derby does not hold this one yet
+                for (Map.Entry<String, Integer> delta : record.getDeltas().entrySet()) {
+                    missing.merge(delta.getKey(), delta.getValue(), Integer::sum);
+                }
+                lastSequence = record.getSequence();
+                replayed++;
+            }
+        }
+        if (replayed > 0) {
+            store.applyStockDeltas(missing, lastSequence);
+            System.out.println("Stock journal replayed: " + replayed + " records.");
+        }
+        journal.advancePast(lastSequence);
+        journal.truncate(lastSequence);
+
+        InMemoryDatabaseRW view = new InMemoryDatabaseRW(nameIndex, new CatalogueEvents()); // DerbyRW fires the events
+        view.loadFrom(store);
+        return new WriteBehindDatabaseRW(store, view, journal, lastSequence);
+    }
+
+    /**
+     * Starts the flusher, a daemon thread that writes the pending stock changes to Derby every interval.
+     */
+    public synchronized void start(Duration interval) {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stock-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (SQLException e) {
+                    System.out.println("Stock flush failed, retrying later: " + e.getMessage());
+                }
+            }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending stock changes to Derby in one transaction. If it fails, the changes
+     * stay pending (they are still in the journal) and are retried by the next flush.
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            HashMap<String, Integer> deltas;
+            long sequence;
+            synchronized (this) {
+                deltas = pendingDeltas;
+                sequence = pendingSequence;
+                pendingDeltas = new HashMap<>();
+            }
+            if (sequence == flushedSequence) {
+                return; // nothing journaled since the last flush
+            }
+            deltas.values().removeIf(delta -> delta == 0); // e.g. an order cancelled before the flush
+            try {
+                store.applyStockDeltas(deltas, sequence);
+            } catch (SQLException e) {
+                synchronized (this) { // put them back, they are added up with the newer ones
+                    for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                        pendingDeltas.merge(delta.getKey(), delta.getValue(), Integer::sum);
+                    }
+                }
+                throw e;
+            }
+            flushedSequence = sequence;
+            flushCount++;
+            flushedUpdateCount += deltas.size();
+            try {
+                journal.truncate(sequence); // only empties it if nothing newer was journaled meanwhile
+            } catch (IOException e) {
+                // harmless: the records are in Derby, so a replay skips them
+                System.out.println("Stock journal not truncated: " + e.getMessage());
+            }
+        }
+    }
+
+    public ArrayList<Product> purchaseStocks(ArrayList<Product> proList) throws SQLException {
+        catalogueLock.readLock().lock();
+        try {
+            ArrayList<Product> insufficientProducts = view.purchaseStocks(proList);
+            if (insufficientProducts.isEmpty()) {
+                LinkedHashMap<String, Integer> deltas = new LinkedHashMap<>();
+                for (Product product : proList) {
+                    if (!view.isProIdAvailable(product.getProductId())) { // unknown products were skipped
+                        deltas.merge(product.getProductId(), -product.getOrderedQuantity(), Integer::sum);
+                    }
+                }
+                try {
+                    journal(deltas);
+                } catch (IOException e) {
+                    view.restoreStock(proList); // nothing was recorded, so not purchased
+                    throw new SQLException("Stock journal write failed: " + e.getMessage(), e);
+                }
+            }
+            return insufficientProducts;
+        } finally {
+            catalogueLock.readLock().unlock();
+        }
+    }
+
+    public void restoreStock(ArrayList<Product> proList) throws SQLException {
+        catalogueLock.readLock().lock();
+        try {
+            LinkedHashMap<String, Integer> deltas = new LinkedHashMap<>();
+            for (Product product : proList) {
+                if (!view.isProIdAvailable(product.getProductId())) {
+                    deltas.merge(product.getProductId(), product.getOrderedQuantity(), Integer::sum);
+                }
+            }
+            try {
+                journal(deltas);
+            } catch (IOException e) {
+                throw new SQLException("Stock journal write failed: " + e.getMessage(), e); // nothing restored
+            } catch (SQLException e) {
+                view.restoreStock(proList); // recorded, Derby will get it, so the view must too
+                throw e;
+            }
+            view.restoreStock(proList);
+        } finally {
+            catalogueLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the record, adds it to the pending changes and waits until it is on disk.
+     * If the fsync fails, the pending changes are flushed to Derby instead.
+     *
+     * @throws IOException  if the record could not be written: nothing was recorded
+     * @throws SQLException if the record was written but neither the fsync nor the flush succeeded:
+     *                      the change stands (it is pending) but may be lost in a crash
+     */
+    private void journal(Map<String, Integer> deltas) throws IOException, SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long sequence;
+        synchronized (this) { // so pendingSequence covers exactly the records in pendingDeltas
+            sequence = journal.append(deltas);
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                pendingDeltas.merge(delta.getKey(), delta.getValue(), Integer::sum);
+            }
+            pendingSequence = sequence;
+            journaledCount++;
+        }
+        try {
+            journal.sync(sequence); // outside the lock, so concurrent checkouts share one fsync
+        } catch (IOException e) {
+            System.out.println("Stock journal sync failed, flushing to the database: " + e.getMessage());
+            flush();
+        }
+    }
+
+    public void updateProduct(String id, String des, double price, String imageName, int stock) throws SQLException {
+        catalogueLock.writeLock().lock();
+        try {
+            flush(); // a warehouse write must not reach Derby before the stock changes made ahead of it
+            store.updateProduct(id, des, price, imageName, stock);
+            view.updateProduct(id, des, price, imageName, stock);
+        } finally {
+            catalogueLock.writeLock().unlock();
+        }
+    }
+
+    public void deleteProduct(String id) throws SQLException {
+        catalogueLock.writeLock().lock();
+        try {
+            flush();
+            store.deleteProduct(id);
+            view.deleteProduct(id);
+        } finally {
+            catalogueLock.writeLock().unlock();
+        }
+    }
+
+    public void insertNewProduct(String id, String des, double price, String image, int stock) throws SQLException {
+        catalogueLock.writeLock().lock();
+        try {
+            flush();
+            store.insertNewProduct(id, des, price, image, stock);
+            view.insertNewProduct(id, des, price, image, stock);
+        } finally {
+            catalogueLock.writeLock().unlock();
+        }
+    }
+
+    // reads are answered by the view, which is never behind Derby
+
+    public ArrayList<Product> searchProduct(String keyword) throws SQLException {
+        return view.searchProduct(keyword);
+    }
+
+    public Product searchByProductId(String productId) throws SQLException {
+        return view.searchByProductId(productId);
+    }
+
+    public boolean isProIdAvailable(String productId) throws SQLException {
+        return view.isProIdAvailable(productId);
+    }
+
+    public ArrayList<Product> getAllProducts() throws SQLException {
+        return view.getAllProducts();
+    }
+
+    public ArrayList<Product> page(String afterId, int limit) throws SQLException {
+        return view.page(afterId, limit);
+    }
+
+    public void forEachProduct(Consumer<Product> action) throws SQLException {
+        view.forEachProduct(action);
+    }
+
+    //a set of getter methods
+    public synchronized int getPendingProductCount() {
+        return pendingDeltas.size();
+    }
+
+    public StockJournal getJournal() {
+        return journal;
+    }
+
+    public String getStats() {
+        long journaled;
+        synchronized (this) {
+            journaled = journaledCount;
+        }
+        synchronized (flushLock) {
+            return String.format("WriteBehindDatabaseRW[journaled=%d, fsyncs=%d, flushes=%d, flushedUpdates=%d]",
+                    journaled, journal.getSyncCount(), flushCount, flushedUpdateCount);
+        }
+    }
+
+    /**
+     * Stops the flusher, writes the pending changes to Derby and closes the journal.
+     */
+    public void close() throws SQLException, IOException {
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+        }
+        flush();
+        journal.close();
+    }
+}
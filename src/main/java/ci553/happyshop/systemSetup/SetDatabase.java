@@ -1,6 +1,7 @@
 package ci553.happyshop.systemSetup;
 
 import ci553.happyshop.storageAccess.DatabaseRWFactory;
+import ci553.happyshop.storageAccess.SchemaMigrator;
 import ci553.happyshop.utility.StorageLocation;
 
 import java.io.IOException;
@@ -20,7 +21,8 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * Key operations:
  * 1. Deletes all existing tables in the database.
- * 2. Recreates the database tables based on the initial schema.
+ * 2. Recreates the database tables based on the initial schema, then brings them to the current
+ *    schema with SchemaMigrator (generated and indexed columns).
  * 3. Inserts default values into the newly created tables.
  * 4. Deletes all existing image files from the working image folder (images/).
  * 5. Copies all image files from the backup folder (images_resetDB/) into the working image folder.
@@ -35,8 +37,8 @@ public class SetDatabase {
     private static Path imageWorkingFolderPath = StorageLocation.imageFolderPath;
     private static Path imageBackupFolderPath = StorageLocation.imageResetFolderPath;
 
-    private String[] tables = {"ProductTable"};
-    // Currently only "ProductTable" exists, but using an array allows easy expansion
+    private String[] tables = {"ProductTable", "StockJournalState", "ProductChangeLog"};
+    // StockJournalState and ProductChangeLog are created by SchemaMigrator, using an array allows easy expansion
     // if more tables need to be processed in the future without changing the logic structure.
 
     private static final Lock lock = new ReentrantLock();    // Create a global lock
@@ -44,6 +46,8 @@ public class SetDatabase {
     public static void main(String[] args) throws SQLException, IOException {
         SetDatabase setDB = new SetDatabase();
         setDB.clearTables(); // clear all tables in the tables array from database if they are existing
+        Files.deleteIfExists(Path.of(DatabaseRWFactory.stockJournalPath)); // its records belong to the old stock
+        Files.deleteIfExists(Path.of(DatabaseRWFactory.mappedStorePath)); // refilled from the new tables
         setDB.initializeTable();//create and initialize databse and tables
         setDB.queryTableAfterInitilization();
         deleteFilesInFolder(imageWorkingFolderPath);
@@ -129,6 +133,9 @@ public class SetDatabase {
                 statement.executeBatch();
                 connection.commit(); // Commit the transaction if everything was successful
 
+                connection.setAutoCommit(true);
+                SchemaMigrator.migrate(connection); // same schema as an upgraded database
+
                 System.out.println("Table and data initialized successfully.");
 
             } catch (SQLException e) {
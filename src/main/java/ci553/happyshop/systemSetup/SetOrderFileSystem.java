@@ -16,7 +16,8 @@ import java.util.concurrent.locks.ReentrantLock;
  *  It resets the order system to a clean state.
  *
  * It performs the following actions:
- * 1. Deletes all existing files inside the orders folder (but retains the folder structure).
+ * 1. Deletes all existing files inside the orders folder (but retains the folder structure),
+ *    including the segments of the order journal (orders/journal) when it is used.
  * 2. Ensures that all required order-related folders exist:
  *    - The main orders folder (`orders/`)
  *    - Subfolders for each order state: `ordered/`, `progressing/`, `collected/`, and `cancelled/`
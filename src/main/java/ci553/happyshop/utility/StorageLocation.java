@@ -25,12 +25,20 @@ import java.nio.file.Paths;
  *         Subfolder to store orders in the "Progressing" state (e.g., being prepared by a picker).
  *    - collectedPath:
  *         Subfolder to store orders in the "Collected" state (e.g., customer collected).
+ *    - orderJournalPath:
+ *         Subfolder holding the segment files of the order journal, when orders are journaled
+ *         instead of kept as one file per order (see OrderStoreFactory).
  *
  * 3. Order ID Tracking:
  *    - orderCounterFile / orderCounterPath:
  *         A text file (orders/orderCounter.txt) used to track and increment the unique order ID
  *         when a new order is created.
  *
+ * 4. Picker Leases:
+ *    - pickerLeasesPath:
+ *         A text file (orders/pickerLeases.txt) holding the leases of the orders claimed by pickers,
+ *         so the picks in flight are recovered after a restart (see PickerLeaseTable).
+ *
  * These static paths ensure consistent folder usage throughout the application and simplify
  * file-related operations such as reset, loading, and persistence.
  *
@@ -61,8 +69,12 @@ public class StorageLocation {
     public static final Path progressingPath = ordersPath.resolve("progressing");// orders/progressing to store orders at Progressing state
     public static final Path collectedPath = ordersPath.resolve("collected");//orders/collected to store orders at Collected state
     public static final Path cancelledPath = ordersPath.resolve("cancelled");//orders/cancelled to store orders at Cancelled state
+    public static final Path orderJournalPath = ordersPath.resolve("journal");//orders/journal to store the order journal segments
 
     //OrderCounter File and its Path, ie orders/orderCounter.txt
     public static final String orderCounterFile = "orderCounter.txt";
     public static final Path orderCounterPath = ordersPath.resolve(orderCounterFile);
+
+    //Picker leases file, ie orders/pickerLeases.txt
+    public static final Path pickerLeasesPath = ordersPath.resolve("pickerLeases.txt");
 }
@@ -0,0 +1,155 @@
+package ci553.happyshop.utility;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel: a cheap scheduler for a large number of timeouts that are
+ * usually cancelled or rescheduled before they fire (e.g. stock reservations, leases).
+ *
+ * How it works:
+ * - Time is cut into ticks of tickMillis. The wheel has wheelSize buckets, and a timeout due
+ *   at tick T is stored in bucket T % wheelSize.
+ * - Every tick the wheel advances by one bucket and runs the timeouts of that bucket that are due;
+ *   timeouts due in a later round of the wheel stay in the bucket.
+ * - Scheduling and cancelling are O(1), and a tick only looks at one bucket, whatever the number
+ *   of pending timeouts. A ScheduledExecutorService would instead keep every timeout in a heap.
+ *
+ * Timeouts fire up to one tick late, which is fine for expiries measured in seconds or minutes.
+ * Tasks run on the ticking thread and must be short.
+ *
+ * Example Usage:
+ *     TimingWheel wheel = new TimingWheel(1000, 512);
+ *     wheel.start();
+ *     TimingWheel.Timeout timeout = wheel.schedule(() -> expire(holdId), 600_000);
+ *     timeout.cancel(); // e.g. when the hold is used before it expires
+ *
+ * Tests can leave the wheel stopped and call tick() themselves.
+ */
+
+public class TimingWheel implements AutoCloseable {
+    private final long tickMillis;
+    private final ArrayList<HashSet<Timeout>> buckets;
+    private long currentTick = 0; // guarded by this
+    private int pendingCount = 0; // guarded by this
+    private ScheduledExecutorService ticker;
+
+    public TimingWheel(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Starts a daemon thread that calls tick() every tickMillis.
+     */
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "timing-wheel");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules a task to run once, after at least delayMillis (rounded up to whole ticks).
+     *
+     * @return a handle to cancel the task before it runs
+     */
+    public synchronized Timeout schedule(Runnable task, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        Timeout timeout = new Timeout(task, currentTick + ticks);
+        bucketOf(timeout.deadlineTick).add(timeout);
+        pendingCount++;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel by one tick and runs the tasks that are due.
+     */
+    public void tick() {
+        ArrayList<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            Iterator<Timeout> iterator = bucketOf(currentTick).iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.deadlineTick <= currentTick) { // otherwise due in a later round
+                    iterator.remove();
+                    pendingCount--;
+                    timeout.done = true;
+                    due.add(timeout);
+                }
+            }
+        }
+        for (Timeout timeout : due) { // outside the lock, a task may schedule again
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Timing wheel task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private HashSet<Timeout> bucketOf(long tick) {
+        return buckets.get((int) (tick % buckets.size()));
+    }
+
+    // the number of tasks scheduled and not yet run or cancelled
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Stops the ticking thread. Pending tasks are not run.
+     */
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * A scheduled task, returned by schedule().
+     */
+    public class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private boolean done = false; // run or cancelled, guarded by the wheel
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels the task.
+         * @return true if it was cancelled, false if it has already run or been cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+                bucketOf(deadlineTick).remove(this);
+                pendingCount--;
+                return true;
+            }
+        }
+    }
+}
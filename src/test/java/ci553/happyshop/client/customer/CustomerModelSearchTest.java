@@ -1,6 +1,7 @@
 package ci553.happyshop.client.customer;
 
 import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
 import ci553.happyshop.storageAccess.DatabaseRW;
 import ci553.happyshop.testutil.MockDatabaseRW;
 import javafx.scene.control.TextField;
@@ -9,7 +10,9 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,7 +44,9 @@ class CustomerModelSearchTest {
         mockDatabaseRW = new MockDatabaseRW();
         mockCustomerView = new MockCustomerView();
         
-        customerModel.setDatabaseRW(mockDatabaseRW);
+        // database calls on virtual threads, results delivered on the calling thread instead of the FX thread
+        customerModel.setAsyncDatabaseRW(new AsyncDatabaseRW(mockDatabaseRW,
+                Executors.newVirtualThreadPerTaskExecutor(), Runnable::run, Duration.ofSeconds(5)));
         customerModel.setCusView(mockCustomerView);
     }
 
@@ -56,7 +61,7 @@ class CustomerModelSearchTest {
         mockDatabaseRW.setSearchResult(testProduct);
 
         // Act
-        customerModel.search();
+        customerModel.search().join();
 
         // Assert
         assertNotNull(customerModel.getTrolley()); // Verify search was called
@@ -75,7 +80,7 @@ class CustomerModelSearchTest {
         mockDatabaseRW.setSearchResult(testProduct);
 
         // Act
-        customerModel.search();
+        customerModel.search().join();
 
         // Assert
         assertNotNull(customerModel.getTrolley()); // Verify search was called
@@ -92,7 +97,7 @@ class CustomerModelSearchTest {
         mockDatabaseRW.setSearchResult(testProduct);
 
         // Act
-        customerModel.search();
+        customerModel.search().join();
 
         // Assert - should use ID "0001", not "Radio"
         assertNotNull(customerModel.getTrolley());
@@ -106,7 +111,7 @@ class CustomerModelSearchTest {
         mockCustomerView.tfName.setText("");
 
         // Act
-        customerModel.search();
+        customerModel.search().join();
 
         // Assert - should not throw exception and should handle gracefully
         assertNotNull(customerModel.getTrolley());
@@ -66,9 +66,9 @@ class PickerModelTest {
     @DisplayName("Should update order map when notified")
     void testUpdateOrderMap() {
         // Arrange: Create a test order map
-        TreeMap<Integer, OrderState> orderMap = new TreeMap<>();
-        orderMap.put(1, OrderState.Ordered);
-        orderMap.put(2, OrderState.Progressing);
+        TreeMap<Long, OrderState> orderMap = new TreeMap<>();
+        orderMap.put(1L, OrderState.Ordered);
+        orderMap.put(2L, OrderState.Progressing);
 
         // Act: Update the order map
         pickerModel.updateOrderMap(orderMap);
@@ -94,7 +94,7 @@ class PickerModelTest {
     @DisplayName("Should handle empty order map")
     void testUpdateOrderMapEmpty() {
         // Arrange: Empty order map
-        TreeMap<Integer, OrderState> emptyMap = new TreeMap<>();
+        TreeMap<Long, OrderState> emptyMap = new TreeMap<>();
 
         // Act: Update with empty map
         pickerModel.updateOrderMap(emptyMap);
@@ -2,12 +2,17 @@ package ci553.happyshop.client.warehouse;
 
 import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.service.ValidationService;
+import ci553.happyshop.storageAccess.AsyncDatabaseRW;
+import ci553.happyshop.storageAccess.CatalogueChange;
 import ci553.happyshop.testutil.MockDatabaseRW;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,7 +46,9 @@ class WarehouseModelTest {
         mockDatabaseRW = new MockDatabaseRW();
         mockView = new MockWarehouseView();
         
-        warehouseModel.setDatabaseRW(mockDatabaseRW);
+        // database calls on virtual threads, results delivered on the calling thread instead of the FX thread
+        warehouseModel.setAsyncDatabaseRW(new AsyncDatabaseRW(mockDatabaseRW,
+                Executors.newVirtualThreadPerTaskExecutor(), Runnable::run, Duration.ofSeconds(5)));
         warehouseModel.setView(mockView);
     }
 
@@ -56,7 +63,7 @@ class WarehouseModelTest {
         mockView.tfSearchKeyword.setText("TV");
 
         // Act
-        warehouseModel.doSearch();
+        warehouseModel.doSearch().join();
 
         // Assert: Search should complete without exception
         // Full verification would require checking the product list
@@ -86,7 +93,7 @@ class WarehouseModelTest {
         mockDatabaseRW.addProduct(lowStockProduct);
 
         // Act
-        warehouseModel.doCheckLowStock();
+        warehouseModel.doCheckLowStock().join();
 
         // Assert: Should complete without exception
         // In a full test, we would verify that alerts are shown
@@ -99,15 +106,43 @@ class WarehouseModelTest {
         // Arrange: Configure mock to throw exception
         mockDatabaseRW.setExceptionToThrow(new SQLException("Database error"));
 
-        // Act & Assert
-        assertThrows(SQLException.class, () -> {
-            warehouseModel.doCheckLowStock();
-        }, "Should propagate SQLException");
+        // Act & Assert: the check runs in the background, the SQLException fails the returned future
+        CompletionException error = assertThrows(CompletionException.class, () -> {
+            warehouseModel.doCheckLowStock().join();
+        });
+        assertInstanceOf(SQLException.class, error.getCause(), "Should propagate SQLException");
+    }
+
+    @Test
+    @DisplayName("Should refresh the listed products named by catalogue changes")
+    void testDoApplyCatalogueChanges() {
+        // Arrange: two products listed by a search
+        Product tv = new Product("0001", "TV", "0001.jpg", 100.0, 50);
+        Product radio = new Product("0002", "Radio", "0002.jpg", 50.0, 30);
+        mockDatabaseRW.addProduct(tv);
+        mockDatabaseRW.addProduct(radio);
+        mockDatabaseRW.setSearchResults(new java.util.ArrayList<>(java.util.List.of(tv, radio)));
+        mockView.tfSearchKeyword.setText("o");
+        ((WarehouseView) mockView).tfSearchKeyword = mockView.tfSearchKeyword; // the model reads the hidden view field
+        warehouseModel.doSearch().join();
+
+        // Act: the TV is edited and the radio deleted by another client, an unlisted product changes too
+        mockDatabaseRW.addProduct(new Product("0001", "TV", "0001.jpg", 90.0, 48));
+        mockDatabaseRW.deleteProduct("0002");
+        warehouseModel.doApplyCatalogueChanges(java.util.List.of(
+                new CatalogueChange(7, "0001", CatalogueChange.Type.Updated),
+                new CatalogueChange(8, "0002", CatalogueChange.Type.Deleted),
+                new CatalogueChange(9, "0009", CatalogueChange.Type.Updated))).join();
+
+        // Assert
+        assertEquals(1, mockView.shownProducts.size(), "The deleted product should be removed");
+        assertEquals(90.0, mockView.shownProducts.get(0).getUnitPrice(), "The edited product should be read again");
     }
 
     // Mock WarehouseView for testing
     private static class MockWarehouseView extends WarehouseView {
         public javafx.scene.control.TextField tfSearchKeyword = new javafx.scene.control.TextField();
+        public java.util.ArrayList<Product> shownProducts = new java.util.ArrayList<>();
         
         public MockWarehouseView() {
             // Minimal mock implementation
@@ -115,7 +150,7 @@ class WarehouseModelTest {
 
         @Override
         public void updateObservableProductList(java.util.ArrayList<Product> productList) {
-            // Mock implementation
+            shownProducts = new java.util.ArrayList<>(productList);
         }
 
         @Override
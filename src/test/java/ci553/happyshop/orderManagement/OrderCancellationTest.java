@@ -57,7 +57,7 @@ class OrderCancellationTest {
     void testCancelOrderInOrderedState() throws IOException, SQLException {
         // Arrange: Create a new order (starts in Ordered state)
         Order order = orderHub.newOrder(testProducts);
-        int orderId = order.getOrderId();
+        long orderId = order.getOrderId();
         
         // Verify order is in Ordered state
         assertEquals(OrderState.Ordered, order.getState());
@@ -73,7 +73,7 @@ class OrderCancellationTest {
     @DisplayName("Should not cancel order that doesn't exist")
     void testCancelNonExistentOrder() throws IOException, SQLException {
         // Arrange: Use a non-existent order ID
-        int nonExistentOrderId = 99999;
+        long nonExistentOrderId = 99999;
         
         // Act: Try to cancel non-existent order
         boolean cancelled = orderHub.cancelOrder(nonExistentOrderId);
@@ -99,7 +99,7 @@ class OrderCancellationTest {
     void testStockRestorationOnCancellation() throws IOException, SQLException {
         // Arrange: Create order and get initial stock
         Order order = orderHub.newOrder(testProducts);
-        int orderId = order.getOrderId();
+        long orderId = order.getOrderId();
         
         // Get initial stock levels (would need to query database)
         // For this test, we verify the restoreStock method is called
@@ -118,7 +118,7 @@ class OrderCancellationTest {
     void testOrderStateChangesToCancelled() throws IOException, SQLException {
         // Arrange: Create order
         Order order = orderHub.newOrder(testProducts);
-        int orderId = order.getOrderId();
+        long orderId = order.getOrderId();
         
         // Act: Cancel the order
         orderHub.cancelOrder(orderId);
@@ -142,7 +142,7 @@ class OrderCancellationTest {
         multipleProducts.add(p2);
         
         Order order = orderHub.newOrder(multipleProducts);
-        int orderId = order.getOrderId();
+        long orderId = order.getOrderId();
         
         // Act: Cancel the order
         boolean cancelled = orderHub.cancelOrder(orderId);
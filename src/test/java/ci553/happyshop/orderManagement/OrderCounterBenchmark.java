@@ -0,0 +1,57 @@
+package ci553.happyshop.orderManagement;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares order ID throughput of the file lock per order (block size 1, the previous behaviour)
+ * against block allocation (1000 IDs per file lock), with 1 and 8 concurrent checkouts,
+ * on a counter file in a temporary folder.
+ *
+ * This is not a unit test (it is not run by Maven). Run it from the IDE, or with:
+ *     mvn test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=ci553.happyshop.orderManagement.OrderCounterBenchmark
+ */
+
+public class OrderCounterBenchmark {
+    private static final int IDS_PER_THREAD = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        Path folder = Files.createTempDirectory("orderCounterBenchmark");
+
+        List<String> results = new ArrayList<>();
+        for (int threads : new int[]{1, 8}) {
+            for (int blockSize : new int[]{1, 1000}) {
+                Path counterFile = folder.resolve("orderCounter-" + threads + "-" + blockSize + ".txt");
+                results.add(run(new OrderCounter(counterFile, blockSize), blockSize, threads));
+            }
+        }
+        System.out.printf("%n%10s %10s %14s%n", "blockSize", "threads", "ids/s");
+        results.forEach(System.out::println); // printed last, after the counter's own messages
+    }
+
+    private static String run(OrderCounter counter, int blockSize, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    counter.nextId();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        return String.format("%10d %10d %14.0f", blockSize, threads, threads * IDS_PER_THREAD / seconds);
+    }
+}
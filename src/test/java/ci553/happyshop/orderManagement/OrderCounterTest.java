@@ -0,0 +1,93 @@
+package ci553.happyshop.orderManagement;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the block allocation of order IDs in OrderCounter.
+ *
+ * These tests verify:
+ * - A block size of 1 hands out sequential IDs and records each one in the file, as before
+ * - Two counters sharing the file (like two processes) never hand out the same ID
+ * - A counter started again continues after the block reserved by the previous one
+ *
+ * Why these tests are important:
+ * - An order ID names the order in the store, so a duplicate would overwrite another customer's order
+ */
+@DisplayName("OrderCounter Tests")
+class OrderCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should hand out sequential IDs with a block size of 1")
+    void testBlockSizeOne() throws IOException {
+        Path counterFile = tempDir.resolve("orders/orderCounter.txt");
+        OrderCounter counter = new OrderCounter(counterFile, 1);
+
+        assertEquals(1, counter.nextId());
+        assertEquals(2, counter.nextId());
+        assertEquals(3, counter.nextId());
+        assertEquals("3", Files.readString(counterFile).trim());
+    }
+
+    @Test
+    @DisplayName("Should never hand out the same ID from two counters sharing the file")
+    void testUniqueAcrossCounters() throws Exception {
+        Path counterFile = tempDir.resolve("orderCounter.txt");
+        OrderCounter first = new OrderCounter(counterFile, 10);
+        OrderCounter second = new OrderCounter(counterFile, 10);
+        int idsPerThread = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            OrderCounter counter = t % 2 == 0 ? first : second;
+            results.add(executor.submit(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(counter.nextId());
+                }
+                return ids;
+            }));
+        }
+        Set<Long> all = new HashSet<>();
+        for (Future<List<Long>> result : results) {
+            for (long id : result.get()) {
+                assertTrue(all.add(id), "Order ID " + id + " was handed out twice");
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(4 * idsPerThread, all.size());
+        long reserved = Long.parseLong(Files.readString(counterFile).trim());
+        assertTrue(all.stream().allMatch(id -> id >= 1 && id <= reserved), "Every ID should be inside a reserved block");
+    }
+
+    @Test
+    @DisplayName("Should continue after the previous block when started again")
+    void testRestart() throws IOException {
+        Path counterFile = tempDir.resolve("orderCounter.txt");
+        OrderCounter counter = new OrderCounter(counterFile, 100);
+        assertEquals(1, counter.nextId());
+        assertEquals(2, counter.nextId());
+
+        OrderCounter restarted = new OrderCounter(counterFile, 100); // the IDs 3 to 100 are skipped
+        assertEquals(101, restarted.nextId());
+    }
+}
@@ -3,6 +3,7 @@ package ci553.happyshop.orderManagement;
 import ci553.happyshop.catalogue.Product;
 import ci553.happyshop.client.orderTracker.OrderTracker;
 import ci553.happyshop.client.picker.PickerModel;
+import ci553.happyshop.storageAccess.InMemoryOrderStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,7 +11,15 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,13 +28,14 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * These tests verify:
  * - Order creation
- * - Order state transitions
- * - Order locking mechanism
- * - Observer notifications
+ * - Order state transitions, which a locked order only makes for the holder of its lock
+ * - Order locking mechanism, and claiming orders oldest first from the ready-queue
+ * - Observer notifications, and that change observers get one snapshot and then only the changes they can see
  * 
  * Why these tests are important:
  * - Ensures the central order management system works correctly
- * - Validates thread-safe order locking
+ * - Validates thread-safe order locking, that concurrent state changes cannot both win,
+ *   and that two pickers never claim the same order
  * - Confirms observer pattern implementation
  * - Tests order lifecycle management
  */
@@ -37,7 +47,7 @@ class OrderHubTest {
 
     @BeforeEach
     void setUp() {
-        orderHub = OrderHub.getOrderHub();
+        orderHub = new OrderHub(new InMemoryOrderStore()); // a fresh hub, no order files written
         testProducts = new ArrayList<>();
         testProducts.add(new Product("0001", "TV", "0001.jpg", 100.0, 50));
         testProducts.get(0).setOrderedQuantity(2);
@@ -61,7 +71,7 @@ class OrderHubTest {
         // Arrange: Create an order first
         try {
             ci553.happyshop.catalogue.Order order = orderHub.newOrder(testProducts);
-            int orderId = order.getOrderId();
+            long orderId = order.getOrderId();
 
             // Act: Try to lock the order
             boolean locked = orderHub.lockOrder(orderId);
@@ -80,7 +90,7 @@ class OrderHubTest {
         // Arrange
         try {
             ci553.happyshop.catalogue.Order order = orderHub.newOrder(testProducts);
-            int orderId = order.getOrderId();
+            long orderId = order.getOrderId();
             orderHub.lockOrder(orderId);
 
             // Act: Try to lock again
@@ -99,7 +109,7 @@ class OrderHubTest {
         // Arrange
         try {
             ci553.happyshop.catalogue.Order order = orderHub.newOrder(testProducts);
-            int orderId = order.getOrderId();
+            long orderId = order.getOrderId();
             orderHub.lockOrder(orderId);
             assertTrue(orderHub.isOrderLocked(orderId), "Order should be locked");
 
@@ -120,14 +130,14 @@ class OrderHubTest {
         try {
             ci553.happyshop.catalogue.Order order1 = orderHub.newOrder(testProducts);
             ci553.happyshop.catalogue.Order order2 = orderHub.newOrder(testProducts);
-            int orderId1 = order1.getOrderId();
-            int orderId2 = order2.getOrderId();
+            long orderId1 = order1.getOrderId();
+            long orderId2 = order2.getOrderId();
             
             // Lock first order
             orderHub.lockOrder(orderId1);
 
             // Act: Get first unlocked order
-            Integer unlockedOrderId = orderHub.getFirstUnlockedOrder(OrderState.Ordered);
+            Long unlockedOrderId = orderHub.getFirstUnlockedOrder(OrderState.Ordered);
 
             // Assert
             assertNotNull(unlockedOrderId, "Should find an unlocked order");
@@ -143,11 +153,11 @@ class OrderHubTest {
         // Arrange: Create and lock all orders
         try {
             ci553.happyshop.catalogue.Order order = orderHub.newOrder(testProducts);
-            int orderId = order.getOrderId();
+            long orderId = order.getOrderId();
             orderHub.lockOrder(orderId);
 
             // Act: Try to get unlocked order
-            Integer unlockedOrderId = orderHub.getFirstUnlockedOrder(OrderState.Ordered);
+            Long unlockedOrderId = orderHub.getFirstUnlockedOrder(OrderState.Ordered);
 
             // Assert
             assertNull(unlockedOrderId, "Should return null when no unlocked orders");
@@ -176,7 +186,7 @@ class OrderHubTest {
         // Arrange
         try {
             ci553.happyshop.catalogue.Order order = orderHub.newOrder(testProducts);
-            int orderId = order.getOrderId();
+            long orderId = order.getOrderId();
 
             // Act: Change state to Progressing
             orderHub.changeOrderStateMoveFile(orderId, OrderState.Progressing);
@@ -188,7 +198,220 @@ class OrderHubTest {
             fail("Should not throw exception: " + e.getMessage());
         }
     }
-}
 
+    @Test
+    @DisplayName("Should let only one of many concurrent callers move an order")
+    void testConcurrentStateChanges() throws Exception {
+        int orders = 50;
+        ArrayList<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            orderIds.add(orderHub.newOrder(testProducts).getOrderId());
+        }
+        AtomicReference<TreeMap<Long, OrderState>> lastMap = new AtomicReference<>();
+        orderHub.registerObserver(lastMap::set);
+
+        // half the callers try to pick each order, the other half to cancel it
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger wins = new AtomicInteger();
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int caller = 0; caller < 8; caller++) {
+            OrderState target = caller % 2 == 0 ? OrderState.Progressing : OrderState.Cancelled;
+            futures.add(executor.submit(() -> {
+                for (long orderId : orderIds) {
+                    if (orderHub.changeOrderStateMoveFile(orderId, target)) {
+                        wins.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(orders, wins.get(), "Each order should be moved exactly once");
+        for (long orderId : orderIds) {
+            OrderState state = lastMap.get().get(orderId);
+            assertTrue(state == OrderState.Progressing || state == OrderState.Cancelled,
+                    "The last notification should show every order moved, got " + state);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject transitions that skip or reverse a state")
+    void testInvalidStateChanges() throws IOException, SQLException {
+        long orderId = orderHub.newOrder(testProducts).getOrderId();
+
+        assertFalse(orderHub.changeOrderStateMoveFile(orderId, OrderState.Collected), "Ordered cannot skip to Collected");
+        assertTrue(orderHub.changeOrderStateMoveFile(orderId, OrderState.Progressing));
+        assertFalse(orderHub.changeOrderStateMoveFile(orderId, OrderState.Ordered), "Progressing cannot go back");
+        assertFalse(orderHub.changeOrderStateMoveFile(orderId, OrderState.Cancelled), "Only Ordered orders can be cancelled");
+        assertTrue(orderHub.changeOrderStateMoveFile(orderId, OrderState.Collected));
+        assertFalse(orderHub.changeOrderStateMoveFile(99999, OrderState.Progressing), "An unknown order cannot move");
+    }
+
+    @Test
+    @DisplayName("Should only let the holder of a lock move the order")
+    void testHolderCheckedStateChanges() throws IOException, SQLException {
+        long claimed = orderHub.newOrder(testProducts).getOrderId();
+        long locked = orderHub.newOrder(testProducts).getOrderId();
+        assertEquals(claimed, orderHub.claimNext("picker-a"));
+        orderHub.lockOrder(locked);
+
+        assertFalse(orderHub.changeOrderStateMoveFile(claimed, OrderState.Progressing), "A caller without the lock cannot move it");
+        assertFalse(orderHub.changeOrderStateMoveFile(claimed, OrderState.Progressing, "picker-b"), "Another picker cannot move it");
+        assertTrue(orderHub.changeOrderStateMoveFile(claimed, OrderState.Progressing, "picker-a"));
+        assertFalse(orderHub.changeOrderStateMoveFile(claimed, OrderState.Collected, "picker-b"));
+        assertTrue(orderHub.changeOrderStateMoveFile(claimed, OrderState.Collected, "picker-a"));
+
+        assertFalse(orderHub.changeOrderStateMoveFile(locked, OrderState.Cancelled, OrderHub.CANCELLATION),
+                "A cancellation cannot move an order locked by someone else");
+        assertTrue(orderHub.changeOrderStateMoveFile(locked, OrderState.Cancelled), "lockOrder(orderId) holds it for the caller");
+    }
+
+    @Test
+    @DisplayName("Should send a change observer one snapshot and then only the changes")
+    void testChangeObserver() throws IOException, SQLException {
+        long first = orderHub.newOrder(testProducts).getOrderId();
+        RecordingChangeObserver picker = new RecordingChangeObserver(OrderState.Ordered, OrderState.Progressing);
+        orderHub.registerObserver(picker);
+        orderHub.registerObserver(picker); // registering twice must not send a second snapshot
+
+        assertEquals(1, picker.snapshots.size(), "The snapshot should be sent once, on registration");
+        assertEquals(OrderState.Ordered, picker.snapshots.get(0).get(first));
+
+        long second = orderHub.newOrder(testProducts).getOrderId();
+        orderHub.changeOrderStateMoveFile(first, OrderState.Progressing);
+        orderHub.changeOrderStateMoveFile(first, OrderState.Collected);
+        orderHub.changeOrderStateMoveFile(second, OrderState.Cancelled);
+
+        assertEquals(1, picker.snapshots.size(), "Changes should not resend the map");
+        assertEquals(List.of(
+                "Order " + second + ": null -> Ordered",
+                "Order " + first + ": Ordered -> Progressing",
+                "Order " + first + ": Progressing -> null", // Collected is not shown to pickers
+                "Order " + second + ": Ordered -> null"), picker.changes);
+    }
+
+    @Test
+    @DisplayName("Should claim the oldest waiting order and skip cancelled or locked ones")
+    void testClaimNext() throws IOException, SQLException {
+        long first = orderHub.newOrder(testProducts).getOrderId();
+        long second = orderHub.newOrder(testProducts).getOrderId();
+        long third = orderHub.newOrder(testProducts).getOrderId();
+        long fourth = orderHub.newOrder(testProducts).getOrderId();
+        orderHub.changeOrderStateMoveFile(first, OrderState.Cancelled);
+        orderHub.lockOrder(second);
+
+        assertEquals(third, orderHub.claimNext("picker-a"), "Cancelled and locked orders should be skipped");
+        assertEquals("picker-a", orderHub.getLockHolder(third));
+        assertEquals(fourth, orderHub.claimNext("picker-b"));
+        assertNull(orderHub.claimNext("picker-a"), "No order should be left to claim");
+
+        orderHub.unlockOrder(second); // given back while still Ordered
+        assertEquals(second, orderHub.claimNext("picker-b"), "An unlocked order should be claimable again");
+        orderHub.unlockOrder(third, "picker-b"); // not the holder
+        assertEquals("picker-a", orderHub.getLockHolder(third));
+        orderHub.unlockOrder(third, "picker-a");
+        assertEquals(third, orderHub.claimNext("picker-b"));
+    }
+
+    @Test
+    @DisplayName("Should never let two pickers claim the same order")
+    void testConcurrentClaims() throws Exception {
+        int orders = 2000;
+        for (int i = 0; i < orders; i++) {
+            orderHub.newOrder(testProducts);
+        }
+        Set<Long> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int picker = 0; picker < 8; picker++) {
+            String pickerId = "picker-" + picker;
+            futures.add(executor.submit(() -> {
+                Long orderId;
+                while ((orderId = orderHub.claimNext(pickerId)) != null) {
+                    if (!claimed.add(orderId)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, duplicates.get(), "No order should be claimed twice");
+        assertEquals(orders, claimed.size(), "Every order should be claimed");
+    }
+
+    @Test
+    @DisplayName("Should only claim orders that are still Ordered while cancellations race the pickers")
+    void testClaimsRacingCancellations() throws Exception {
+        int orders = 1000;
+        ArrayList<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            orderIds.add(orderHub.newOrder(testProducts).getOrderId());
+        }
+        AtomicInteger notOrdered = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> {
+            for (long orderId : orderIds) {
+                orderHub.changeOrderStateMoveFile(orderId, OrderState.Cancelled); // fails once a picker holds it
+            }
+            return null;
+        }));
+        for (int picker = 0; picker < 4; picker++) {
+            String pickerId = "picker-" + picker;
+            futures.add(executor.submit(() -> {
+                Long orderId;
+                while ((orderId = orderHub.claimNext(pickerId)) != null) {
+                    // a claimed order is Ordered and locked, so nobody else can have moved it
+                    if (!orderHub.changeOrderStateMoveFile(orderId, OrderState.Progressing, pickerId)) {
+                        notOrdered.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(0, notOrdered.get(), "claimNext() should never return an order that is no longer Ordered");
+    }
 
+    // an OrderChangeObserver that records what it is sent
+    private static class RecordingChangeObserver implements OrderChangeObserver {
+        private final OrderState[] interestedStates;
+        private final ArrayList<TreeMap<Long, OrderState>> snapshots = new ArrayList<>();
+        private final ArrayList<String> changes = new ArrayList<>();
 
+        private RecordingChangeObserver(OrderState... interestedStates) {
+            this.interestedStates = interestedStates;
+        }
+
+        @Override
+        public void updateOrderMap(TreeMap<Long, OrderState> orderMap) {
+            snapshots.add(orderMap);
+        }
+
+        @Override
+        public void ordersChanged(List<OrderChange> orderChanges) {
+            for (OrderChange change : orderChanges) {
+                changes.add(change.toString());
+            }
+        }
+
+        @Override
+        public OrderState[] getInterestedStates() {
+            return interestedStates;
+        }
+    }
+}
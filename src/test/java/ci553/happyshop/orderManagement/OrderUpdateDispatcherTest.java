@@ -0,0 +1,132 @@
+package ci553.happyshop.orderManagement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OrderUpdateDispatcher, with a queue standing in for the JavaFX application thread.
+ *
+ * These tests verify:
+ * - A burst of changes reaches the observer as one frame, merged per order
+ * - A change undone within a frame is dropped, and a snapshot replaces the pending changes
+ * - A frame is not run sooner than frameMillis after the previous one
+ *
+ * Why these tests are important:
+ * - The windows must show the same orders as OrderHub, whatever the coalescing left out
+ * - The JavaFX thread must not be flooded when thousands of orders change per second
+ */
+@DisplayName("OrderUpdateDispatcher Tests")
+class OrderUpdateDispatcherTest {
+
+    private final LinkedBlockingQueue<Runnable> uiQueue = new LinkedBlockingQueue<>(); // the "UI thread"
+    private RecordingObserver window;
+
+    @BeforeEach
+    void setUp() {
+        window = new RecordingObserver();
+    }
+
+    // runs the next frame waiting for the UI thread
+    private void runNextFrame() throws InterruptedException {
+        Runnable frame = uiQueue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame, "A frame should have been scheduled");
+        frame.run();
+    }
+
+    @Test
+    @DisplayName("Should merge a burst of changes into one frame")
+    void testBurstIsMerged() throws InterruptedException {
+        OrderUpdateDispatcher dispatcher = new OrderUpdateDispatcher(window, uiQueue::add, 0);
+
+        for (long orderId = 1; orderId <= 100; orderId++) {
+            dispatcher.ordersChanged(List.of(new OrderChange(orderId, null, OrderState.Ordered)));
+            dispatcher.ordersChanged(List.of(new OrderChange(orderId, OrderState.Ordered, OrderState.Progressing)));
+        }
+        dispatcher.ordersChanged(List.of(new OrderChange(7, OrderState.Progressing, OrderState.Collected)));
+
+        assertEquals(1, uiQueue.size(), "Only one frame should be waiting for the UI thread");
+        runNextFrame();
+
+        assertEquals(1, window.frames.size());
+        assertEquals(100, window.frames.get(0).size(), "One change per order");
+        assertEquals(new OrderChange(7, null, OrderState.Collected).toString(), window.frames.get(0).get(6).toString());
+        assertEquals(101, dispatcher.getMergedCount());
+        assertEquals(1, dispatcher.getFrameCount());
+    }
+
+    @Test
+    @DisplayName("Should drop changes undone within a frame or replaced by a snapshot")
+    void testDroppedChanges() throws InterruptedException {
+        OrderUpdateDispatcher dispatcher = new OrderUpdateDispatcher(window, uiQueue::add, 0);
+
+        dispatcher.ordersChanged(List.of(new OrderChange(1, null, OrderState.Ordered),
+                new OrderChange(2, null, OrderState.Ordered)));
+        dispatcher.ordersChanged(List.of(new OrderChange(1, OrderState.Ordered, null))); // gone before it was shown
+        runNextFrame();
+        assertEquals(List.of(new OrderChange(2, null, OrderState.Ordered).toString()), window.frameText(0));
+        assertEquals(1, dispatcher.getDroppedCount());
+
+        dispatcher.ordersChanged(List.of(new OrderChange(2, OrderState.Ordered, OrderState.Progressing)));
+        TreeMap<Long, OrderState> snapshot = new TreeMap<>();
+        snapshot.put(2L, OrderState.Progressing);
+        dispatcher.updateOrderMap(snapshot);
+        dispatcher.ordersChanged(List.of(new OrderChange(3, null, OrderState.Ordered)));
+        runNextFrame();
+
+        assertEquals(List.of(snapshot), window.snapshots, "The snapshot should be passed on as it is");
+        assertEquals(List.of(new OrderChange(3, null, OrderState.Ordered).toString()), window.frameText(1),
+                "Only the changes after the snapshot should follow it");
+        assertEquals(2, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("Should wait frameMillis between two frames")
+    void testFramePacing() throws InterruptedException {
+        OrderUpdateDispatcher dispatcher = new OrderUpdateDispatcher(window, uiQueue::add, 200);
+
+        dispatcher.ordersChanged(List.of(new OrderChange(1, null, OrderState.Ordered)));
+        runNextFrame(); // the first frame does not wait
+        long frameRun = System.nanoTime();
+
+        dispatcher.ordersChanged(List.of(new OrderChange(2, null, OrderState.Ordered)));
+        assertTrue(uiQueue.isEmpty(), "The next frame should not be handed to the UI thread straight away");
+        runNextFrame();
+
+        assertTrue(System.nanoTime() - frameRun >= TimeUnit.MILLISECONDS.toNanos(190),
+                "The second frame should come a frame after the first");
+        assertEquals(2, window.frames.size());
+    }
+
+    // an observer that records what it is sent, like a window would display it
+    private static class RecordingObserver implements OrderChangeObserver {
+        private final ArrayList<TreeMap<Long, OrderState>> snapshots = new ArrayList<>();
+        private final ArrayList<List<OrderChange>> frames = new ArrayList<>();
+
+        @Override
+        public void updateOrderMap(TreeMap<Long, OrderState> orderMap) {
+            snapshots.add(orderMap);
+        }
+
+        @Override
+        public void ordersChanged(List<OrderChange> changes) {
+            frames.add(changes);
+        }
+
+        private List<String> frameText(int frame) {
+            ArrayList<String> text = new ArrayList<>();
+            for (OrderChange change : frames.get(frame)) {
+                text.add(change.toString());
+            }
+            return text;
+        }
+    }
+}
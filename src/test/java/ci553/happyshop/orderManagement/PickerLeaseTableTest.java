@@ -0,0 +1,180 @@
+package ci553.happyshop.orderManagement;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.storageAccess.InMemoryOrderStore;
+import ci553.happyshop.utility.TimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PickerLeaseTable, and for OrderHub taking orders back when their leases expire.
+ *
+ * These tests verify:
+ * - A lease expires after the TTL unless its holder renews it, and only the holder can renew or release it
+ * - The leases are saved to the lease file and loaded back with the time they have left,
+ *   and renewing a lease does not rewrite the file each time
+ * - OrderHub moves a Progressing order whose lease expired back to Ordered, and a picker can claim it again
+ * - A new OrderHub restores the leases of the picks in flight, and reclaims Progressing orders without one
+ *
+ * Why these tests are important:
+ * - An order must never stay locked in Progressing because its picker disappeared,
+ *   and a restart must not hand an order being picked to a second picker straight away
+ *
+ * The timing wheels are not started; the tests advance them with tick().
+ */
+@DisplayName("PickerLeaseTable Tests")
+class PickerLeaseTableTest {
+
+    private static final long TICK = 10;
+    private static final long TTL = 3 * TICK;
+
+    @TempDir
+    Path tempDir;
+
+    private TimingWheel timingWheel;
+    private ArrayList<Product> testProducts;
+
+    @BeforeEach
+    void setUp() {
+        timingWheel = new TimingWheel(TICK, 8);
+        testProducts = new ArrayList<>();
+        testProducts.add(new Product("0001", "TV", "0001.jpg", 100.0, 50));
+        testProducts.get(0).setOrderedQuantity(1);
+    }
+
+    private void tick(long ticks) {
+        for (int i = 0; i < ticks; i++) {
+            timingWheel.tick();
+        }
+    }
+
+    @Test
+    @DisplayName("Should expire a lease after the TTL unless its holder renews it")
+    void testExpiry() {
+        PickerLeaseTable leaseTable = new PickerLeaseTable(timingWheel, TTL, null);
+        ArrayList<String> expired = new ArrayList<>();
+        leaseTable.setExpiryListener((orderId, holder) -> expired.add(orderId + " " + holder));
+        leaseTable.acquire(1, "picker-1");
+        leaseTable.acquire(2, "picker-2");
+
+        tick(2);
+        assertTrue(leaseTable.renew(1, "picker-1"));
+        assertFalse(leaseTable.renew(2, "picker-1"), "Only the holder can renew a lease");
+        tick(1);
+
+        assertEquals(List.of("2 picker-2"), expired);
+        assertNull(leaseTable.getHolder(2));
+        assertFalse(leaseTable.renew(2, "picker-2"), "An expired lease cannot be renewed");
+        tick(3);
+        assertEquals(List.of("2 picker-2", "1 picker-1"), expired);
+        assertEquals(2, leaseTable.getExpiredCount());
+    }
+
+    @Test
+    @DisplayName("Should save the leases and load them back with the time they have left")
+    void testPersistence() throws IOException {
+        Path leasePath = tempDir.resolve("pickerLeases.txt");
+        PickerLeaseTable leaseTable = new PickerLeaseTable(timingWheel, 60_000, leasePath);
+        leaseTable.acquire(7, "picker-1");
+        leaseTable.acquire(8, "picker-2", 0); // already overdue
+        leaseTable.acquire(9, "picker-3");
+        leaseTable.release(7, "picker-2"); // not the holder, the lease stays
+        leaseTable.release(9, "picker-3");
+
+        List<PickerLeaseTable.Lease> loaded = new PickerLeaseTable(new TimingWheel(TICK, 8), 60_000, leasePath).load();
+
+        assertEquals(2, loaded.size());
+        for (PickerLeaseTable.Lease lease : loaded) {
+            if (lease.getOrderId() == 7) {
+                assertEquals("picker-1", lease.getHolder());
+                assertTrue(lease.getRemainingMillis() > 50_000, "The lease should keep the time it had left");
+            } else {
+                assertEquals(8, lease.getOrderId());
+                assertEquals(0, lease.getRemainingMillis());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should not rewrite the lease file on every heartbeat")
+    void testRenewalsStayInMemory() throws IOException {
+        Path leasePath = tempDir.resolve("pickerLeases.txt");
+        PickerLeaseTable leaseTable = new PickerLeaseTable(timingWheel, 60_000, leasePath);
+        leaseTable.acquire(7, "picker-1");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(leaseTable.renew(7, "picker-1"));
+        }
+
+        assertTrue(leaseTable.getSaveCount() <= 2, "At most one write per TTL, got " + leaseTable.getSaveCount());
+        List<PickerLeaseTable.Lease> loaded = new PickerLeaseTable(new TimingWheel(TICK, 8), 60_000, leasePath).load();
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.get(0).getRemainingMillis() >= 59_000, "The file should not give the lease less time than it has");
+    }
+
+    @Test
+    @DisplayName("Should take an order back from a picker whose lease expired")
+    void testReclaim() throws IOException, SQLException {
+        OrderHub orderHub = new OrderHub(new InMemoryOrderStore(), new PickerLeaseTable(timingWheel, TTL, null));
+        long orderId = orderHub.newOrder(testProducts).getOrderId();
+        assertEquals(orderId, orderHub.claimNext("picker-1"));
+        assertTrue(orderHub.changeOrderStateMoveFile(orderId, OrderState.Progressing, "picker-1"));
+
+        tick(2);
+        assertTrue(orderHub.renewLease(orderId, "picker-1"), "The heartbeat should keep the order");
+        assertFalse(orderHub.renewLease(orderId, "picker-2"));
+        tick(2);
+        assertEquals("picker-1", orderHub.getLockHolder(orderId));
+
+        tick(2); // the picker is gone, no more heartbeats
+        assertNull(orderHub.getLockHolder(orderId));
+        assertFalse(orderHub.renewLease(orderId, "picker-1"));
+        assertFalse(orderHub.changeOrderStateMoveFile(orderId, OrderState.Collected, "picker-1"), "The order is no longer Progressing");
+        assertEquals(orderId, orderHub.claimNext("picker-2"), "The order should be waiting for a picker again");
+        assertTrue(orderHub.changeOrderStateMoveFile(orderId, OrderState.Progressing, "picker-2"));
+        orderHub.unlockOrder(orderId, "picker-1"); // the picker whose lease expired gives the order back
+        assertEquals("picker-2", orderHub.getLockHolder(orderId), "The lock of the new picker should stay");
+        assertTrue(orderHub.renewLease(orderId, "picker-2"), "The lease of the new picker should stay");
+        assertFalse(orderHub.changeOrderStateMoveFile(orderId, OrderState.Collected, "picker-1"),
+                "The picker whose lease expired cannot collect the order of another picker");
+        assertEquals("picker-2", orderHub.getLockHolder(orderId));
+        assertTrue(orderHub.changeOrderStateMoveFile(orderId, OrderState.Collected, "picker-2"));
+    }
+
+    @Test
+    @DisplayName("Should restore the leases after a restart, and reclaim the orders left without one at once")
+    void testRecovery() throws IOException, SQLException {
+        Path leasePath = tempDir.resolve("pickerLeases.txt");
+        InMemoryOrderStore orderStore = new InMemoryOrderStore(); // outlives the hubs, like the order files
+        OrderHub before = new OrderHub(orderStore, new PickerLeaseTable(new TimingWheel(TICK, 8), TTL, leasePath));
+        long claimed = before.newOrder(testProducts).getOrderId();
+        long unleased = before.newOrder(testProducts).getOrderId();
+        long waiting = before.newOrder(testProducts).getOrderId();
+        before.claimNext("picker-1");
+        before.changeOrderStateMoveFile(claimed, OrderState.Progressing, "picker-1");
+        orderStore.transition(unleased, OrderState.Ordered, OrderState.Progressing); // e.g. picked before leases existed
+
+        PickerLeaseTable leaseTable = new PickerLeaseTable(timingWheel, 60_000, leasePath);
+        OrderHub after = new OrderHub(orderStore, leaseTable); // the restart
+        after.initializeOrderMap();
+
+        assertEquals("picker-1", after.getLockHolder(claimed), "The pick in flight should stay with its picker");
+        assertNull(after.getLockHolder(unleased), "No picker can resume an order without a lease");
+        assertEquals(List.of(unleased, waiting), orderStore.listOrderIds(OrderState.Ordered));
+        assertEquals(unleased, after.claimNext("picker-2"), "A reclaimed order should be claimed first");
+        assertEquals(waiting, after.claimNext("picker-3"), "The order picker-1 was picking cannot be claimed");
+
+        assertNull(after.resumeClaim("picker-4"), "picker-4 holds no order");
+        assertEquals(claimed, after.resumeClaim("picker-1"), "The restarted picker-1 takes its order back");
+        assertTrue(after.changeOrderStateMoveFile(claimed, OrderState.Collected, "picker-1"));
+    }
+}
@@ -0,0 +1,87 @@
+package ci553.happyshop.orderManagement;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SnowflakeIdGenerator.
+ *
+ * These tests verify:
+ * - IDs carry the clock and the node ID, and are sorted by time across nodes
+ * - More than 4096 IDs in one millisecond stay unique and increasing
+ * - IDs stay unique and increasing when the clock moves back
+ * - Node IDs out of range are rejected
+ *
+ * Why these tests are important:
+ * - Processes sharing the orders folder rely on these IDs alone to keep their orders apart
+ */
+@DisplayName("SnowflakeIdGenerator Tests")
+class SnowflakeIdGeneratorTest {
+
+    private static final long NOW = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    @DisplayName("Should build IDs from the clock and the node ID")
+    void testLayout() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator node3 = new SnowflakeIdGenerator(3, clock::get);
+        SnowflakeIdGenerator node7 = new SnowflakeIdGenerator(7, clock::get);
+
+        long first = node7.nextId();
+        clock.addAndGet(1);
+        long second = node3.nextId();
+
+        assertTrue(first > 0);
+        assertEquals(NOW, SnowflakeIdGenerator.timestampOf(first));
+        assertEquals(7, SnowflakeIdGenerator.nodeIdOf(first));
+        assertEquals(3, SnowflakeIdGenerator.nodeIdOf(second));
+        assertTrue(second > first, "A later order should get a higher ID, whatever its node");
+    }
+
+    @Test
+    @DisplayName("Should stay unique when a millisecond runs out of sequence numbers")
+    void testSequenceOverflow() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> NOW);
+        Set<Long> ids = new HashSet<>();
+        long previous = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "IDs should increase");
+            assertTrue(ids.add(id));
+            previous = id;
+        }
+        assertTrue(SnowflakeIdGenerator.timestampOf(previous) > NOW, "The next milliseconds should have been borrowed");
+    }
+
+    @Test
+    @DisplayName("Should keep IDs increasing when the clock moves back")
+    void testClockRegression() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long beforeStep = generator.nextId();
+
+        clock.addAndGet(-5_000); // an NTP correction
+        long afterStep = generator.nextId();
+        long next = generator.nextId();
+
+        assertTrue(afterStep > beforeStep);
+        assertTrue(next > afterStep);
+        assertEquals(1, generator.getClockRegressions());
+
+        clock.set(NOW + 10);
+        assertEquals(NOW + 10, SnowflakeIdGenerator.timestampOf(generator.nextId()), "The clock should be used again once it catches up");
+    }
+
+    @Test
+    @DisplayName("Should reject node IDs that do not fit in the ID")
+    void testNodeIdRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+}
@@ -0,0 +1,148 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.testutil.MockDatabaseRW;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AsyncDatabaseRW.
+ *
+ * These tests verify:
+ * - Results and SQLExceptions of the blocking calls are delivered through the returned future
+ * - The calls run on the I/O executor and the callbacks on the UI executor
+ * - A read taking longer than the timeout fails with a TimeoutException and is interrupted
+ * - Cancelling a read interrupts it, cancelling a started write lets it finish
+ *
+ * Why these tests are important:
+ * - The customer and warehouse windows only update their views from these futures,
+ *   so a lost result or error would leave the window waiting forever
+ *
+ * The UI executor records that it was used and then runs the callback directly,
+ * so no JavaFX toolkit is needed.
+ */
+@DisplayName("AsyncDatabaseRW Tests")
+class AsyncDatabaseRWTest {
+
+    private ExecutorService ioExecutor;
+    private MockDatabaseRW mockDatabaseRW;
+    private AtomicBoolean uiExecutorUsed;
+    private AsyncDatabaseRW asyncDatabaseRW;
+
+    @BeforeEach
+    void setUp() {
+        ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        mockDatabaseRW = new MockDatabaseRW();
+        uiExecutorUsed = new AtomicBoolean();
+        asyncDatabaseRW = new AsyncDatabaseRW(mockDatabaseRW, ioExecutor, task -> {
+            uiExecutorUsed.set(true);
+            task.run();
+        }, Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should deliver the result on the UI executor")
+    void testResult() {
+        mockDatabaseRW.addProduct(new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100));
+
+        Product product = asyncDatabaseRW.searchByProductId("0001").join();
+
+        assertEquals("40 inch TV", product.getProductDescription());
+        assertTrue(uiExecutorUsed.get(), "The future should be completed on the UI executor");
+    }
+
+    @Test
+    @DisplayName("Should deliver the SQLException through the future")
+    void testError() {
+        mockDatabaseRW.setExceptionToThrow(new SQLException("Database error"));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> asyncDatabaseRW.searchProduct("TV").join());
+        assertInstanceOf(SQLException.class, AsyncDatabaseRW.causeOf(error));
+    }
+
+    @Test
+    @DisplayName("Should time out a slow read and interrupt it")
+    void testTimeout() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Object> slow = asyncDatabaseRW.submit(db -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, slow::join);
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "The slow call should be interrupted");
+    }
+
+    @Test
+    @DisplayName("Should interrupt a cancelled read but let a started write finish")
+    void testCancel() throws InterruptedException {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch readInterrupted = new CountDownLatch(1);
+        CompletableFuture<Object> read = asyncDatabaseRW.submit(db -> {
+            readStarted.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                readInterrupted.countDown();
+            }
+            return null;
+        });
+        assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+        read.cancel(true);
+        assertTrue(readInterrupted.await(5, TimeUnit.SECONDS), "A cancelled read should be interrupted");
+
+        Product product = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 100);
+        mockDatabaseRW.addProduct(product);
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch writeRelease = new CountDownLatch(1);
+        AtomicBoolean writeFinished = new AtomicBoolean();
+        CompletableFuture<Object> write = asyncDatabaseRW.submitWrite(db -> {
+            writeStarted.countDown();
+            try {
+                writeRelease.await();
+            } catch (InterruptedException e) {
+                return null; // a started write must not be interrupted, writeFinished stays false
+            }
+            ArrayList<Product> proList = new ArrayList<>();
+            proList.add(product);
+            db.restoreStock(proList);
+            writeFinished.set(true);
+            return null;
+        });
+        assertTrue(writeStarted.await(5, TimeUnit.SECONDS));
+        write.cancel(true);
+        writeRelease.countDown();
+
+        ioExecutor.shutdown();
+        assertTrue(ioExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(writeFinished.get(), "A started write should not be interrupted");
+        assertTrue(write.isCancelled());
+    }
+}
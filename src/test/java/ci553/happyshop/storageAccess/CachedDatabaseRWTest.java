@@ -0,0 +1,138 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.testutil.MockDatabaseRW;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CachedDatabaseRW and ProductCache.
+ *
+ * These tests verify:
+ * - Repeated lookups by ID are served from the cache
+ * - Unknown IDs are cached as "not found" until the product is inserted
+ * - Name searches do not cache their keywords as "not found", so they cannot evict real products
+ * - Write methods invalidate the products they touched
+ * - Callers receive copies, so changing a result does not change the cache
+ * - The least recently used entry is evicted and counted
+ * - A value loaded before an invalidation is not cached
+ *
+ * Why these tests are important:
+ * - A stale cache entry would show the wrong stock to customers and let the warehouse
+ *   edit a product that no longer exists
+ */
+@DisplayName("CachedDatabaseRW Tests")
+class CachedDatabaseRWTest {
+
+    private MockDatabaseRW mockDatabaseRW;
+    private ProductCache cache;
+    private CachedDatabaseRW cachedDatabaseRW;
+
+    @BeforeEach
+    void setUp() {
+        mockDatabaseRW = new MockDatabaseRW();
+        mockDatabaseRW.addProduct(new Product("0001", "40 inch TV", "0001.jpg", 269.00, 10));
+        mockDatabaseRW.addProduct(new Product("0002", "DAB Radio", "0002.jpg", 29.99, 5));
+        cache = new ProductCache(2);
+        cachedDatabaseRW = new CachedDatabaseRW(mockDatabaseRW, cache);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated lookups from the cache")
+    void testReadThrough() throws SQLException {
+        assertEquals(10, cachedDatabaseRW.searchByProductId("0001").getStockQuantity());
+        mockDatabaseRW.deleteProduct("0001"); // bypasses the cache on purpose
+
+        assertNotNull(cachedDatabaseRW.searchByProductId("0001"), "Second lookup should be a cache hit");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Should cache unknown IDs until the product is inserted")
+    void testNegativeCaching() throws SQLException {
+        assertNull(cachedDatabaseRW.searchByProductId("0009"));
+        assertTrue(cachedDatabaseRW.isProIdAvailable("0009"));
+        assertEquals(1, cache.getHitCount(), "isProIdAvailable should use the cached result");
+
+        cachedDatabaseRW.insertNewProduct("0009", "Kettle", 15.0, "0009.jpg", 3);
+        assertNotNull(cachedDatabaseRW.searchByProductId("0009"), "Insert should drop the cached 'not found'");
+    }
+
+    @Test
+    @DisplayName("Should not cache a name search keyword as a missing product")
+    void testNameSearchNotCached() throws SQLException {
+        cachedDatabaseRW.searchByProductId("0001");
+        cachedDatabaseRW.searchByProductId("0002");
+        cachedDatabaseRW.searchProduct("kettle");
+        cachedDatabaseRW.searchProduct("toaster");
+
+        assertEquals(0, cache.getEvictionCount(), "The keywords must not evict the cached products");
+        assertNull(cache.get("kettle"));
+        assertEquals(1, cachedDatabaseRW.searchProduct("0001").size(), "An ID keyword is still served by the cache");
+    }
+
+    @Test
+    @DisplayName("Should invalidate products touched by purchases")
+    void testPurchaseInvalidates() throws SQLException {
+        cachedDatabaseRW.searchByProductId("0002");
+        Product line = new Product("0002", "", "", 0, 0);
+        line.setOrderedQuantity(2);
+
+        cachedDatabaseRW.purchaseStocks(new ArrayList<>(List.of(line)));
+
+        assertEquals(3, cachedDatabaseRW.searchByProductId("0002").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Should invalidate even when the write fails")
+    void testFailedWriteInvalidates() throws SQLException {
+        cachedDatabaseRW.searchByProductId("0001");
+        mockDatabaseRW.setExceptionToThrow(new SQLException("boom"));
+
+        assertThrows(SQLException.class, () -> cachedDatabaseRW.deleteProduct("0001"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    @DisplayName("Should hand out copies of cached products")
+    void testCopiesReturned() throws SQLException {
+        Product first = cachedDatabaseRW.searchByProductId("0001");
+        first.setOrderedQuantity(7);
+
+        Product second = cachedDatabaseRW.searchByProductId("0001");
+        assertNotSame(first, second);
+        assertEquals(1, second.getOrderedQuantity());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used product")
+    void testEviction() throws SQLException {
+        cachedDatabaseRW.searchByProductId("0001");
+        cachedDatabaseRW.searchByProductId("0002");
+        cachedDatabaseRW.searchByProductId("0001"); // 0002 is now least recently used
+        cachedDatabaseRW.searchByProductId("0003");
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get("0001"));
+        assertNull(cache.get("0002"), "Least recently used entry should have been evicted");
+    }
+
+    @Test
+    @DisplayName("Should not cache a value loaded before an invalidation")
+    void testStalePutIgnored() {
+        long stamp = cache.getStamp();
+        Product loaded = new Product("0001", "40 inch TV", "0001.jpg", 269.00, 10);
+        cache.invalidate("0001"); // a writer finished while the reader was loading
+
+        cache.put("0001", loaded, stamp);
+        assertNull(cache.get("0001"), "Stale value must not be cached");
+    }
+}
@@ -0,0 +1,109 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.service.StockAlertService;
+import ci553.happyshop.service.StockReportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CatalogueColumns and CatalogueSnapshot.
+ *
+ * These tests verify:
+ * - rebuild() loads the catalogue of a DatabaseRW into the columns, in productID order
+ * - Product writes, deletes and stock changes (catalogue events) reach the next snapshot
+ * - The scans (low stock, price range, stock value, top-N) return the expected rows
+ *
+ * Why these tests are important:
+ * - The stock alerts and reports read the snapshot only, so a missed change means a missed alert
+ */
+@DisplayName("CatalogueColumns Tests")
+class CatalogueColumnsTest {
+
+    private CatalogueEvents catalogueEvents;
+    private InMemoryDatabaseRW memory;
+    private CatalogueColumns columns;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        catalogueEvents = new CatalogueEvents();
+        memory = new InMemoryDatabaseRW(catalogueEvents);
+        memory.insertNewProduct("0003", "Toaster", 30.00, "0003.jpg", 0);
+        memory.insertNewProduct("0001", "40 inch TV", 100.00, "0001.jpg", 50);
+        memory.insertNewProduct("0002", "DAB Radio", 49.99, "0002.jpg", 8);
+        columns = new CatalogueColumns();
+        catalogueEvents.addListener(columns);
+        columns.rebuild(memory);
+    }
+
+    @Test
+    @DisplayName("Should load the catalogue in productID order")
+    void testRebuild() {
+        CatalogueSnapshot snapshot = columns.snapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals("0001", snapshot.getProductId(0));
+        assertEquals(4999, snapshot.getPricePence(1));
+        assertEquals("Toaster", snapshot.getDescription(2));
+        assertEquals(1, snapshot.indexOf("0002"));
+        assertEquals(-1, snapshot.indexOf("0009"));
+    }
+
+    @Test
+    @DisplayName("Should apply writes, deletes and stock changes to the next snapshot only")
+    void testIncrementalChanges() throws SQLException {
+        CatalogueSnapshot before = columns.snapshot();
+        memory.insertNewProduct("0004", "Microwave", 80.00, "0004.jpg", 5);
+        memory.updateProduct("0001", "40 inch TV", 90.00, "0001.jpg", 50);
+        memory.deleteProduct("0003");
+        ArrayList<Product> trolley = new ArrayList<>();
+        Product radio = new Product("0002", "DAB Radio", "0002.jpg", 49.99, 8);
+        radio.setOrderedQuantity(3);
+        trolley.add(radio);
+        assertTrue(memory.purchaseStocks(trolley).isEmpty());
+
+        CatalogueSnapshot after = columns.snapshot();
+        assertEquals(3, before.size(), "A published snapshot never changes");
+        assertEquals(List.of("0001", "0002", "0004"),
+                List.of(after.getProductId(0), after.getProductId(1), after.getProductId(2)));
+        assertEquals(9000, after.getPricePence(0));
+        assertEquals(5, after.getStock(1));
+        assertEquals("Microwave", after.getDescription(2));
+        assertSame(after, columns.snapshot(), "No changes, no new snapshot");
+    }
+
+    @Test
+    @DisplayName("Should scan by stock, price and stock value")
+    void testScans() {
+        CatalogueSnapshot snapshot = columns.snapshot();
+        assertArrayEquals(new int[] {1, 2}, snapshot.rowsWithStockAtMost(10));
+        assertArrayEquals(new int[] {1, 2}, snapshot.rowsWithPriceBetween(3000, 4999));
+        assertEquals(5000 * 100 + 8 * 4999, snapshot.totalStockValuePence());
+        assertArrayEquals(new int[] {0, 1}, snapshot.topByStockValue(2));
+        assertArrayEquals(new int[] {0, 1, 2}, snapshot.topByStockValue(10));
+    }
+
+    @Test
+    @DisplayName("Should build stock alerts and reports from the snapshot")
+    void testServices() {
+        CatalogueSnapshot snapshot = columns.snapshot();
+        ArrayList<Product> lowStock = StockAlertService.scanForLowStockProducts(snapshot, 10);
+        assertEquals(2, lowStock.size());
+        assertEquals("DAB Radio", lowStock.get(0).getProductDescription());
+
+        String alert = StockAlertService.generateCombinedAlertMessage(snapshot, 10);
+        assertTrue(alert.contains("OUT OF STOCK (1)"));
+        assertTrue(alert.contains("0002 - DAB Radio (8 units)"));
+        assertNull(StockAlertService.generateCombinedAlertMessage(snapshot, -1));
+
+        assertEquals(2, StockReportService.countProductsInPriceRange(snapshot, 30.00, 49.99));
+        assertEquals(5399.92, StockReportService.calculateStockValue(snapshot), 0.001);
+        assertTrue(StockReportService.generateValuationReport(snapshot, 1).contains("0001 - 40 inch TV"));
+    }
+}
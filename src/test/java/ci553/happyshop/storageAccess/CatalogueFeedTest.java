@@ -0,0 +1,144 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CatalogueFeed and the ProductChangeLog triggers added by SchemaMigrator.
+ *
+ * These tests verify:
+ * - Every insert, update and delete of ProductTable is logged with a new, higher version
+ * - An update that changes nothing is not logged
+ * - A subscriber is pushed the changes after its version, once, and no more after close()
+ * - prune() only deletes the log rows every subscriber was pushed, and keeps the latest rows
+ * - A feed without a connection pool (the mapped backend) keeps the latest catalogue events in memory
+ *
+ * Why these tests are important:
+ * - Open warehouse views only refresh the products named by the feed, so a missed change
+ *   leaves stale data on screen
+ *
+ * The tests run against an in-memory Derby database, and the polls run on the writer's thread.
+ */
+@DisplayName("CatalogueFeed Tests")
+class CatalogueFeedTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:catalogueFeedTest;create=true";
+    private ConnectionPool pool;
+    private DerbyRW db;
+    private CatalogueFeed feed;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 2, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+        CatalogueEvents catalogueEvents = new CatalogueEvents();
+        feed = new CatalogueFeed(pool, Runnable::run);
+        catalogueEvents.addListener(feed);
+        db = new DerbyRW(pool, null, catalogueEvents);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+            stmt.executeUpdate("DROP TABLE StockJournalState");
+            stmt.executeUpdate("DROP TABLE ProductChangeLog");
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should log every product write with a higher version")
+    void testChangesSince() throws SQLException {
+        long start = feed.currentVersion();
+        db.insertNewProduct("0001", "40 inch TV", 100.0, "0001.jpg", 10);
+        db.updateProduct("0001", "40 inch TV", 100.0, "0001.jpg", 10); // no column changed
+        db.updateProduct("0001", "42 inch TV", 110.0, "0001.jpg", 10);
+        db.deleteProduct("0001");
+
+        List<CatalogueChange> changes = feed.changesSince(start);
+        assertEquals(List.of(CatalogueChange.Type.Inserted, CatalogueChange.Type.Updated, CatalogueChange.Type.Deleted),
+                changes.stream().map(CatalogueChange::getType).toList());
+        assertEquals("0001", changes.get(0).getProductId());
+        assertTrue(changes.get(0).getVersion() < changes.get(1).getVersion());
+        assertEquals(changes.get(2).getVersion(), feed.currentVersion());
+        assertTrue(feed.changesSince(feed.currentVersion()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should push new changes to a subscriber until it is closed")
+    void testSubscribe() throws SQLException {
+        db.insertNewProduct("0001", "40 inch TV", 100.0, "0001.jpg", 10);
+        db.insertNewProduct("0002", "DAB Radio", 29.99, "0002.jpg", 5);
+        List<CatalogueChange> pushed = new ArrayList<>();
+        CatalogueFeed.Subscription subscription = feed.subscribe(feed.currentVersion(), pushed::addAll);
+        assertTrue(pushed.isEmpty(), "Changes before fromVersion are not pushed");
+
+        ArrayList<Product> trolley = new ArrayList<>();
+        Product radio = new Product("0002", "DAB Radio", "0002.jpg", 29.99, 5);
+        radio.setOrderedQuantity(2);
+        trolley.add(radio);
+        assertTrue(db.purchaseStocks(trolley).isEmpty());
+        assertEquals(1, pushed.size());
+        assertEquals("0002", pushed.get(0).getProductId());
+        assertEquals(pushed.get(0).getVersion(), subscription.getVersion());
+
+        subscription.close();
+        db.deleteProduct("0001");
+        assertEquals(1, pushed.size(), "A closed subscription gets no more changes");
+    }
+
+    @Test
+    @DisplayName("Should prune the log rows every subscriber was pushed, keeping the latest ones")
+    void testPrune() throws SQLException {
+        long start = feed.currentVersion();
+        db.insertNewProduct("0001", "40 inch TV", 100.0, "0001.jpg", 10);
+        db.insertNewProduct("0002", "DAB Radio", 29.99, "0002.jpg", 5);
+        db.insertNewProduct("0003", "Toaster", 19.99, "0003.jpg", 1);
+        CatalogueFeed.Subscription subscription = feed.subscribe(start, changes -> { }); // pushed all three
+        assertEquals(0, feed.prune(3), "The latest rows are kept");
+
+        CatalogueFeed waitingFeed = new CatalogueFeed(pool, task -> { }); // its polls never run
+        CatalogueFeed.Subscription waiting = waitingFeed.subscribe(start + 1, changes -> { });
+        assertEquals(1, waitingFeed.prune(0), "Only the row the waiting subscriber was already pushed");
+        waiting.close();
+        assertEquals(1, feed.prune(1));
+        assertEquals(List.of("0003"), feed.changesSince(start).stream().map(CatalogueChange::getProductId).toList());
+        subscription.close();
+    }
+
+    @Test
+    @DisplayName("Should keep a bounded window of the catalogue events when there is no change log")
+    void testRecentChanges() throws SQLException {
+        CatalogueEvents catalogueEvents = new CatalogueEvents();
+        CatalogueFeed recentFeed = new CatalogueFeed(Runnable::run, 2);
+        catalogueEvents.addListener(recentFeed);
+        List<CatalogueChange> pushed = new ArrayList<>();
+        recentFeed.subscribe(recentFeed.currentVersion(), pushed::addAll);
+
+        catalogueEvents.fireProductSaved("0001", "40 inch TV", 100.0, 10);
+        catalogueEvents.fireStockChanged("0001", -2);
+        catalogueEvents.fireProductDeleted("0001");
+        assertEquals(List.of(CatalogueChange.Type.Updated, CatalogueChange.Type.Updated, CatalogueChange.Type.Deleted),
+                pushed.stream().map(CatalogueChange::getType).toList());
+        assertEquals(3, recentFeed.currentVersion());
+        assertEquals(List.of(2L, 3L), recentFeed.changesSince(0).stream().map(CatalogueChange::getVersion).toList(),
+                "Only the latest changes are kept");
+    }
+}
@@ -0,0 +1,176 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CheckoutBatcher and DerbyRW.purchaseStocksBatch().
+ *
+ * These tests verify:
+ * - A batch commits its trolleys together, but an insufficient trolley is rolled back on its own
+ * - Concurrent checkouts are grouped into fewer batches and never oversell
+ * - A failed batch is retried one trolley at a time
+ * - Concurrent batches holding the same products in opposite orders do not deadlock
+ * - Requests submitted after close() fail instead of waiting forever
+ *
+ * Why these tests are important:
+ * - Batching must not change what a customer sees: each trolley gets the result
+ *   purchaseStocks() would have given it on its own
+ *
+ * The tests run against an in-memory Derby database, so the real happyShopDB is not touched.
+ */
+@DisplayName("CheckoutBatcher Tests")
+class CheckoutBatcherTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:checkoutBatcherTest;create=true";
+    private ConnectionPool pool;
+    private DerbyRW db;
+    private CheckoutBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 4, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0001', 'TV', 100.0, '0001.jpg', 5)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0002', 'Radio', 50.0, '0002.jpg', 5)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0003', 'Toaster', 20.0, '0003.jpg', 10)");
+        }
+        db = new DerbyRW(pool);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (batcher != null) {
+            batcher.close();
+        }
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should roll back only the insufficient trolley of a batch")
+    void testBatchSemantics() throws SQLException {
+        ArrayList<Product> first = trolley("0001", 3);
+        ArrayList<Product> second = trolley("0001", 3); // only 2 left after the first trolley
+        second.addAll(trolley("0002", 1));
+        ArrayList<Product> third = trolley("0001", 2);
+
+        ArrayList<ArrayList<Product>> results = db.purchaseStocksBatch(List.of(first, second, third));
+
+        assertTrue(results.get(0).isEmpty(), "First trolley should be purchased");
+        assertEquals(1, results.get(1).size(), "Second trolley should be insufficient");
+        assertEquals("0001", results.get(1).get(0).getProductId());
+        assertTrue(results.get(2).isEmpty(), "Third trolley should be purchased");
+        assertEquals(0, db.searchByProductId("0001").getStockQuantity());
+        assertEquals(5, db.searchByProductId("0002").getStockQuantity(), "The rolled back trolley must not take stock");
+    }
+
+    @Test
+    @DisplayName("Should group concurrent checkouts without overselling")
+    void testConcurrentCheckouts() {
+        batcher = new CheckoutBatcher(db, Duration.ofMillis(50), 32);
+        List<CompletableFuture<ArrayList<Product>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(batcher.submit(trolley("0003", 1))); // 20 customers, 10 in stock
+        }
+
+        int purchased = 0;
+        for (CompletableFuture<ArrayList<Product>> future : futures) {
+            if (future.join().isEmpty()) {
+                purchased++;
+            }
+        }
+
+        assertEquals(10, purchased, "Exactly the stock should be sold");
+        assertEquals(20, batcher.getRequestCount());
+        assertTrue(batcher.getBatchCount() < 20, "Checkouts should share batches: " + batcher.getStats());
+    }
+
+    @Test
+    @DisplayName("Should retry a failed batch one trolley at a time")
+    void testFallback() throws SQLException {
+        DerbyRW failingBatches = new DerbyRW(pool) {
+            @Override
+            public ArrayList<ArrayList<Product>> purchaseStocksBatch(List<ArrayList<Product>> purchases) throws SQLException {
+                throw new SQLException("Simulated batch failure");
+            }
+        };
+        batcher = new CheckoutBatcher(failingBatches, Duration.ofMillis(50), 32);
+
+        CompletableFuture<ArrayList<Product>> first = batcher.submit(trolley("0001", 1));
+        CompletableFuture<ArrayList<Product>> second = batcher.submit(trolley("0002", 1));
+
+        assertTrue(first.join().isEmpty());
+        assertTrue(second.join().isEmpty());
+        assertEquals(1, batcher.getFallbackCount());
+        assertEquals(4, db.searchByProductId("0001").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Should lock the rows of concurrent batches in the same order")
+    void testOppositeBatchesDoNotDeadlock() throws Exception {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("UPDATE ProductTable SET inStock = 1000");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> forward = executor.submit(() -> buyRepeatedly("0001", "0002"));
+        Future<?> backward = executor.submit(() -> buyRepeatedly("0002", "0001"));
+        forward.get(); // a deadlock would surface here as a SQLException
+        backward.get();
+        executor.shutdown();
+
+        assertEquals(1000 - 2 * 50, db.searchByProductId("0001").getStockQuantity());
+        assertEquals(1000 - 2 * 50, db.searchByProductId("0002").getStockQuantity());
+    }
+
+    // buys one of each product 50 times, one trolley per product, in the given arrival order
+    private Void buyRepeatedly(String firstId, String secondId) throws SQLException {
+        for (int i = 0; i < 50; i++) {
+            ArrayList<ArrayList<Product>> results = db.purchaseStocksBatch(List.of(trolley(firstId, 1), trolley(secondId, 1)));
+            assertTrue(results.get(0).isEmpty() && results.get(1).isEmpty());
+        }
+        return null;
+    }
+
+    @Test
+    @DisplayName("Should fail requests after close")
+    void testClose() {
+        batcher = new CheckoutBatcher(db, Duration.ofMillis(2), 32);
+        batcher.close();
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> batcher.submit(trolley("0001", 1)).join());
+        assertInstanceOf(SQLException.class, error.getCause());
+    }
+
+    private static ArrayList<Product> trolley(String productId, int quantity) {
+        Product product = new Product(productId, "", "", 0, 0);
+        product.setOrderedQuantity(quantity);
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(product);
+        return trolley;
+    }
+}
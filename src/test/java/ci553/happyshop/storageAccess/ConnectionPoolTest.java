@@ -0,0 +1,138 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConnectionPool and PooledConnection.
+ *
+ * These tests verify:
+ * - Connections are reused instead of reopened
+ * - Prepared statements are cached per connection
+ * - The pool is bounded and borrow() times out when it is exhausted
+ * - Unfinished transactions are rolled back when a connection is returned
+ * - Closing a connection twice returns it to the pool only once
+ * - Borrow/return counters are maintained
+ *
+ * Why these tests are important:
+ * - Every DatabaseRW shares the same pool, so a leak or a dirty connection affects the whole system
+ *
+ * The tests run against an in-memory Derby database, so the real happyShopDB is not touched.
+ */
+@DisplayName("ConnectionPool Tests")
+class ConnectionPoolTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:connectionPoolTest;create=true";
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 2, 200);
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().createStatement().executeUpdate("CREATE TABLE PoolTable(id INT PRIMARY KEY, val INT)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().createStatement().executeUpdate("DROP TABLE PoolTable");
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should reuse the same physical connection")
+    void testConnectionReuse() throws SQLException {
+        PooledConnection first;
+        try (PooledConnection conn = pool.borrow()) {
+            first = conn;
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            assertSame(first, conn, "An idle connection should be handed out again");
+        }
+        assertEquals(1, pool.getOpenConnections(), "Only one connection should have been opened");
+    }
+
+    @Test
+    @DisplayName("Should cache prepared statements per connection")
+    void testStatementCache() throws SQLException {
+        String sql = "SELECT val FROM PoolTable WHERE id = ?";
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement first = conn.prepare(sql);
+            PreparedStatement second = conn.prepare(sql);
+            assertSame(first, second, "The same SQL should return the cached statement");
+            assertEquals(1, conn.getStatementCacheHits());
+        }
+    }
+
+    @Test
+    @DisplayName("Should time out when all connections are in use")
+    void testBoundedPool() throws SQLException {
+        try (PooledConnection c1 = pool.borrow(); PooledConnection c2 = pool.borrow()) {
+            assertEquals(2, pool.getActiveConnections());
+            assertThrows(SQLException.class, () -> pool.borrow(), "A third borrow should time out");
+            assertEquals(1, pool.getTimeoutCount());
+        }
+        assertEquals(0, pool.getActiveConnections(), "All connections should be back in the pool");
+    }
+
+    @Test
+    @DisplayName("Should roll back an unfinished transaction on return")
+    void testRollbackOnReturn() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+            PreparedStatement insert = conn.prepare("INSERT INTO PoolTable VALUES(?, ?)");
+            insert.setInt(1, 1);
+            insert.setInt(2, 10);
+            insert.executeUpdate();
+            // returned without commit
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            assertTrue(conn.getConnection().getAutoCommit(), "Auto-commit should be restored");
+            try (ResultSet rs = conn.prepare("SELECT COUNT(*) FROM PoolTable").executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1), "Uncommitted insert should have been rolled back");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should return a connection closed twice only once")
+    void testDoubleClose() throws SQLException {
+        PooledConnection conn = pool.borrow();
+        conn.close();
+        conn.close(); // e.g. an error path closing it before try-with-resources does
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections(), "The connection should be idle once, not twice");
+
+        try (PooledConnection c1 = pool.borrow(); PooledConnection c2 = pool.borrow()) {
+            assertNotSame(c1, c2, "Two borrowers should never share a connection");
+            assertThrows(SQLException.class, () -> pool.borrow(), "The pool should still be bounded");
+        }
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    @DisplayName("Should count borrows and returns")
+    void testCounters() throws SQLException {
+        long borrowsBefore = pool.getBorrowCount();
+        long returnsBefore = pool.getReturnCount();
+        for (int i = 0; i < 5; i++) {
+            try (PooledConnection conn = pool.borrow()) {
+                assertNotNull(conn.getConnection());
+            }
+        }
+        assertEquals(borrowsBefore + 5, pool.getBorrowCount());
+        assertEquals(returnsBefore + 5, pool.getReturnCount());
+        assertTrue(pool.getStats().contains("borrows="));
+    }
+}
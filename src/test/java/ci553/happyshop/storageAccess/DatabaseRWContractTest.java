@@ -0,0 +1,220 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The behaviour every DatabaseRW implementation must share, run against each of them by a subclass
+ * (DerbyRWContractTest, InMemoryDatabaseRWContractTest, WriteBehindDatabaseRWTest, MappedDatabaseRWTest).
+ *
+ * These tests verify:
+ * - Products can be inserted, found by ID or by name (ignoring case), updated and deleted
+ * - purchaseStocks() is all-or-nothing and reports every insufficient product
+ * - purchaseStocksBatch() gives each trolley the result it would get on its own, in list order
+ * - Full-catalogue methods return products in productID order
+ * - Concurrent checkouts never oversell a product
+ *
+ * Why these tests are important:
+ * - The clients only see the DatabaseRW interface, so switching the backend must not change their behaviour
+ *
+ * Each test starts with four products, inserted through the implementation itself.
+ */
+abstract class DatabaseRWContractTest {
+
+    protected DatabaseRW db;
+
+    // returns an implementation holding no products
+    protected abstract DatabaseRW createEmptyDatabaseRW() throws SQLException;
+
+    protected void cleanUp() throws SQLException {
+    }
+
+    @BeforeEach
+    void setUpCatalogue() throws SQLException {
+        db = createEmptyDatabaseRW();
+        db.insertNewProduct("0001", "40 inch TV", 269.00, "0001.jpg", 10);
+        db.insertNewProduct("0002", "DAB Radio", 29.99, "0002.jpg", 5);
+        db.insertNewProduct("0003", "Toaster", 19.99, "0003.jpg", 1);
+        db.insertNewProduct("0004", "Radio Alarm Clock", 15.00, "0004.jpg", 0);
+    }
+
+    @AfterEach
+    void tearDownCatalogue() throws SQLException {
+        cleanUp();
+    }
+
+    @Test
+    @DisplayName("Should find an inserted product by ID")
+    void testInsertAndFind() throws SQLException {
+        Product product = db.searchByProductId("0002");
+        assertEquals("DAB Radio", product.getProductDescription());
+        assertEquals(29.99, product.getUnitPrice(), 0.001);
+        assertEquals("0002.jpg", product.getProductImageName());
+        assertEquals(5, product.getStockQuantity());
+
+        assertNull(db.searchByProductId("9999"));
+        assertFalse(db.isProIdAvailable("0002"));
+        assertTrue(db.isProIdAvailable("9999"));
+        assertThrows(SQLException.class, () -> db.insertNewProduct("0001", "Duplicate", 1.0, "x.jpg", 1));
+    }
+
+    @Test
+    @DisplayName("Should search by ID, then by name ignoring case, in productID order")
+    void testSearchProduct() throws SQLException {
+        assertEquals(List.of("0003"), ids(db.searchProduct("0003")));
+        assertEquals(List.of("0002", "0004"), ids(db.searchProduct("radio")));
+        assertEquals(List.of("0002", "0004"), ids(db.searchProduct("RADIO")));
+        assertTrue(db.searchProduct("nothing").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should decrement every line when the whole trolley is in stock")
+    void testPurchaseSufficient() throws SQLException {
+        assertTrue(db.purchaseStocks(trolley(line("0001", 3), line("0003", 1))).isEmpty());
+        assertEquals(7, stockOf("0001"));
+        assertEquals(0, stockOf("0003"));
+    }
+
+    @Test
+    @DisplayName("Should report every insufficient line and decrement nothing")
+    void testPurchaseAllOrNothing() throws SQLException {
+        ArrayList<Product> insufficient = db.purchaseStocks(trolley(line("0003", 2), line("0001", 2), line("0002", 6)));
+        assertEquals(List.of("0002", "0003"), ids(insufficient));
+        assertEquals(10, stockOf("0001"));
+        assertEquals(5, stockOf("0002"));
+        assertEquals(1, stockOf("0003"));
+    }
+
+    @Test
+    @DisplayName("Should skip products that do not exist")
+    void testPurchaseSkipsUnknownProducts() throws SQLException {
+        assertTrue(db.purchaseStocks(trolley(line("9999", 1), line("0001", 1))).isEmpty());
+        assertEquals(9, stockOf("0001"));
+    }
+
+    @Test
+    @DisplayName("Should purchase a batch as if the trolleys were purchased one after another")
+    void testPurchaseBatch() throws SQLException {
+        ArrayList<ArrayList<Product>> results = db.purchaseStocksBatch(List.of(
+                trolley(line("0003", 1)), trolley(line("0003", 1), line("0001", 1)), trolley(line("0002", 2))));
+        assertTrue(results.get(0).isEmpty());
+        assertEquals(List.of("0003"), ids(results.get(1)));
+        assertTrue(results.get(2).isEmpty());
+        assertEquals(10, stockOf("0001"), "The failed trolley must not keep its other lines");
+        assertEquals(3, stockOf("0002"));
+    }
+
+    @Test
+    @DisplayName("Should update every field of an existing product")
+    void testUpdateProduct() throws SQLException {
+        db.updateProduct("0002", "Digital Radio", 34.99, "radio.jpg", 8);
+        Product product = db.searchByProductId("0002");
+        assertEquals("Digital Radio", product.getProductDescription());
+        assertEquals(34.99, product.getUnitPrice(), 0.001);
+        assertEquals("radio.jpg", product.getProductImageName());
+        assertEquals(8, product.getStockQuantity());
+
+        db.updateProduct("9999", "Missing", 1.0, "x.jpg", 1); // ignored
+        assertNull(db.searchByProductId("9999"));
+        assertThrows(SQLException.class, () -> db.updateProduct("0001", "40 inch TV", 269.00, "0001.jpg", -1));
+    }
+
+    @Test
+    @DisplayName("Should delete a product, and ignore unknown IDs")
+    void testDeleteProduct() throws SQLException {
+        db.deleteProduct("0002");
+        db.deleteProduct("9999");
+        assertNull(db.searchByProductId("0002"));
+        assertTrue(db.isProIdAvailable("0002"));
+        assertEquals(List.of("0001", "0003", "0004"), ids(db.getAllProducts()));
+    }
+
+    @Test
+    @DisplayName("Should add the ordered quantities back when restoring stock")
+    void testRestoreStock() throws SQLException {
+        db.restoreStock(trolley(line("0004", 2), line("0001", 1), line("9999", 1)));
+        assertEquals(2, stockOf("0004"));
+        assertEquals(11, stockOf("0001"));
+    }
+
+    @Test
+    @DisplayName("Should return full-catalogue results in productID order")
+    void testCatalogueScans() throws SQLException {
+        assertEquals(List.of("0001", "0002", "0003", "0004"), ids(db.getAllProducts()));
+        assertEquals(List.of("0001", "0002", "0003"), ids(db.page(null, 3)));
+        assertEquals(List.of("0004"), ids(db.page("0003", 3)));
+        assertTrue(db.page("0004", 3).isEmpty());
+
+        ArrayList<Product> visited = new ArrayList<>();
+        db.forEachProduct(visited::add);
+        assertEquals(List.of("0001", "0002", "0003", "0004"), ids(visited));
+
+        assertEquals(List.of("0004"), ids(db.searchByNamePrefix("radio", 10)));
+        assertEquals(List.of("0003", "0004"), ids(db.findProductsBelowStock(1)));
+    }
+
+    @Test
+    @DisplayName("Should never oversell when many checkouts run at once")
+    void testConcurrentPurchases() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> checkouts = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                checkouts.add(() -> {
+                    int purchased = 0;
+                    for (int attempt = 0; attempt < 5; attempt++) {
+                        if (db.purchaseStocks(trolley(line("0001", 1), line("0002", 1))).isEmpty()) {
+                            purchased++;
+                        }
+                    }
+                    return purchased;
+                });
+            }
+            int purchased = 0;
+            for (Future<Integer> result : executor.invokeAll(checkouts)) {
+                purchased += result.get();
+            }
+            assertEquals(5, purchased, "Only 5 radios are in stock");
+            assertEquals(5, stockOf("0001"));
+            assertEquals(0, stockOf("0002"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected int stockOf(String productId) throws SQLException {
+        return db.searchByProductId(productId).getStockQuantity();
+    }
+
+    protected static Product line(String productId, int quantity) {
+        Product product = new Product(productId, "", productId + ".jpg", 1.0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    protected static ArrayList<Product> trolley(Product... lines) {
+        return new ArrayList<>(List.of(lines));
+    }
+
+    protected static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,38 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.DisplayName;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs the DatabaseRW contract tests against DerbyRW, on an in-memory Derby database
+ * so the real happyShopDB is not touched.
+ */
+@DisplayName("DerbyRW Contract Tests")
+class DerbyRWContractTest extends DatabaseRWContractTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:derbyRWContractTest;create=true";
+    private ConnectionPool pool;
+
+    @Override
+    protected DatabaseRW createEmptyDatabaseRW() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 8, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+        return new DerbyRW(pool);
+    }
+
+    @Override
+    protected void cleanUp() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,144 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.testutil.MockDatabaseRW;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the paged and streaming product retrieval of DerbyRW.
+ *
+ * These tests verify:
+ * - page() returns consecutive pages in productID order until the catalogue is exhausted
+ * - Keyset pages are not shifted by a product deleted between two pages
+ * - forEachProduct() visits every product once, in productID order
+ * - The default interface methods work for implementations that only provide getAllProducts(),
+ *   and the default forEachProduct() loads the catalogue only once
+ *
+ * Why these tests are important:
+ * - Low stock scans rely on these methods to see the whole catalogue without loading it into memory
+ *
+ * The tests run against an in-memory Derby database, so the real happyShopDB is not touched.
+ */
+@DisplayName("DerbyRW Paging Tests")
+class DerbyRWPagingTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:derbyRWPagingTest;create=true";
+    private static final int PRODUCTS = 25;
+    private ConnectionPool pool;
+    private DerbyRW db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 2, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = PRODUCTS; i >= 1; i--) { // inserted in reverse, pages must still be ordered
+                insert.setString(1, String.format("%04d", i));
+                insert.setString(2, "Product " + i);
+                insert.setDouble(3, i);
+                insert.setString(4, i + ".jpg");
+                insert.setInt(5, i);
+                insert.executeUpdate();
+            }
+        }
+        db = new DerbyRW(pool);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should return consecutive pages in productID order")
+    void testPages() throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String afterId = null;
+        ArrayList<Product> page;
+        while (!(page = db.page(afterId, 10)).isEmpty()) {
+            pageSizes.add(page.size());
+            for (Product product : page) {
+                ids.add(product.getProductId());
+            }
+            afterId = page.get(page.size() - 1).getProductId();
+        }
+
+        assertEquals(List.of(10, 10, 5), pageSizes);
+        assertEquals(PRODUCTS, ids.size());
+        assertEquals("0001", ids.get(0));
+        assertEquals("0025", ids.get(PRODUCTS - 1));
+    }
+
+    @Test
+    @DisplayName("Should not shift pages when a product is deleted between pages")
+    void testKeysetStable() throws SQLException {
+        ArrayList<Product> first = db.page(null, 10);
+        db.deleteProduct("0003"); // already read
+
+        ArrayList<Product> second = db.page(first.get(9).getProductId(), 10);
+        assertEquals("0011", second.get(0).getProductId(), "Next page should start right after the last seen ID");
+    }
+
+    @Test
+    @DisplayName("Should visit every product once in productID order")
+    void testForEachProduct() throws SQLException {
+        List<String> ids = new ArrayList<>();
+        db.forEachProduct(product -> ids.add(product.getProductId()));
+
+        assertEquals(PRODUCTS, ids.size());
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(sorted, ids);
+    }
+
+    @Test
+    @DisplayName("Should page through implementations without a keyset query")
+    void testDefaultMethods() throws SQLException {
+        int[] fullLoads = {0};
+        MockDatabaseRW mock = new MockDatabaseRW() {
+            @Override
+            public ArrayList<Product> getAllProducts() throws SQLException {
+                fullLoads[0]++;
+                return super.getAllProducts();
+            }
+        };
+        for (int i = 1; i <= 7; i++) {
+            mock.addProduct(new Product(String.format("%04d", i), "Product " + i, i + ".jpg", i, i));
+        }
+
+        assertEquals(List.of("0004", "0005", "0006"), idsOf(mock.page("0003", 3)));
+        List<String> ids = new ArrayList<>();
+        fullLoads[0] = 0;
+        mock.forEachProduct(product -> ids.add(product.getProductId()));
+        assertEquals(7, ids.size());
+        assertEquals("0001", ids.get(0));
+        assertEquals(1, fullLoads[0], "forEachProduct() should load the catalogue once, not once per page");
+    }
+
+    private static List<String> idsOf(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+}
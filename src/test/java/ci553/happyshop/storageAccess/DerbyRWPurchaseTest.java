@@ -0,0 +1,126 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DerbyRW.purchaseStocks.
+ *
+ * These tests verify:
+ * - Sufficient stock is decremented for every line
+ * - If any line is insufficient, nothing is decremented and all insufficient lines are reported
+ * - Concurrent checkouts from different DerbyRW instances never oversell a product
+ *
+ * Why these tests are important:
+ * - purchaseStocks no longer relies on a JVM lock; the conditional UPDATE is the only guard against overselling
+ *
+ * The tests run against an in-memory Derby database, so the real happyShopDB is not touched.
+ */
+@DisplayName("DerbyRW Purchase Tests")
+class DerbyRWPurchaseTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:derbyRWPurchaseTest;create=true";
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 8, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(" +
+                    "productID CHAR(4) PRIMARY KEY," +
+                    "description VARCHAR(100)," +
+                    "unitPrice DOUBLE," +
+                    "image VARCHAR(100)," +
+                    "inStock INT," +
+                    "CHECK (inStock >= 0))");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00,'0001.jpg',10)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0002', 'DAB Radio', 29.99, '0002.jpg',5)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0003', 'Toaster', 19.99, '0003.jpg',1)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+        }
+        pool.close();
+    }
+
+    private static Product line(String id, int quantity) {
+        Product product = new Product(id, "", id + ".jpg", 1.0, 0);
+        product.setOrderedQuantity(quantity);
+        return product;
+    }
+
+    private static ArrayList<Product> trolley(Product... lines) {
+        return new ArrayList<>(List.of(lines));
+    }
+
+    @Test
+    @DisplayName("Should decrement stock when all lines are sufficient")
+    void testPurchaseSufficient() throws SQLException {
+        DerbyRW db = new DerbyRW(pool);
+
+        ArrayList<Product> insufficient = db.purchaseStocks(trolley(line("0002", 2), line("0001", 3)));
+
+        assertTrue(insufficient.isEmpty(), "All lines should be sufficient");
+        assertEquals(7, db.searchByProductId("0001").getStockQuantity());
+        assertEquals(3, db.searchByProductId("0002").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Should roll back and report every insufficient line")
+    void testPurchaseInsufficient() throws SQLException {
+        DerbyRW db = new DerbyRW(pool);
+
+        ArrayList<Product> insufficient = db.purchaseStocks(
+                trolley(line("0001", 1), line("0002", 6), line("0003", 2)));
+
+        assertEquals(2, insufficient.size(), "Both insufficient lines should be reported");
+        assertEquals("0002", insufficient.get(0).getProductId());
+        assertEquals("0003", insufficient.get(1).getProductId());
+        assertEquals(10, db.searchByProductId("0001").getStockQuantity(), "Sufficient line must be rolled back");
+        assertEquals(5, db.searchByProductId("0002").getStockQuantity());
+    }
+
+    @Test
+    @DisplayName("Should never oversell under concurrent checkouts")
+    void testConcurrentPurchases() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Callable<Boolean>> checkouts = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            DerbyRW db = new DerbyRW(pool); // one instance per client, as Main does
+            checkouts.add(() -> db.purchaseStocks(trolley(line("0001", 1), line("0002", 1))).isEmpty());
+        }
+
+        int succeeded = 0;
+        for (Future<Boolean> result : executor.invokeAll(checkouts)) {
+            if (result.get()) {
+                succeeded++;
+            }
+        }
+        executor.shutdown();
+
+        DerbyRW db = new DerbyRW(pool);
+        assertEquals(5, succeeded, "Only 5 checkouts fit the stock of product 0002");
+        assertEquals(0, db.searchByProductId("0002").getStockQuantity());
+        assertEquals(5, db.searchByProductId("0001").getStockQuantity());
+    }
+}
@@ -0,0 +1,39 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the OrderStore contract tests against FileOrderStore in a temporary folder,
+ * and checks that it keeps the original folder layout.
+ */
+@DisplayName("FileOrderStore Tests")
+class FileOrderStoreTest extends OrderStoreContractTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Override
+    protected OrderStore createEmptyOrderStore() {
+        return new FileOrderStore(tempDir.resolve("orders"));
+    }
+
+    @Test
+    @DisplayName("Should keep one file per order in the folder of its state")
+    void testFolderLayout() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+        assertTrue(Files.exists(tempDir.resolve("orders/ordered/12.txt")));
+
+        store.transition(12, OrderState.Ordered, OrderState.Cancelled);
+        assertFalse(Files.exists(tempDir.resolve("orders/ordered/12.txt")));
+        assertTrue(Files.exists(tempDir.resolve("orders/cancelled/12.txt")));
+    }
+}
@@ -0,0 +1,85 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the DatabaseRW contract tests against InMemoryDatabaseRW, and checks that it can be
+ * loaded from and checkpointed to an (in-memory) Derby database without losing changes.
+ */
+@DisplayName("InMemoryDatabaseRW Contract Tests")
+class InMemoryDatabaseRWContractTest extends DatabaseRWContractTest {
+
+    @Override
+    protected DatabaseRW createEmptyDatabaseRW() {
+        return new InMemoryDatabaseRW();
+    }
+
+    @Test
+    @DisplayName("Should announce stock changes only for the products a purchase or restore updated")
+    void testStockEventsSkipUnknownProducts() throws SQLException {
+        CatalogueEvents catalogueEvents = new CatalogueEvents();
+        List<String> changes = new ArrayList<>();
+        catalogueEvents.addListener(new CatalogueListener() {
+            public void productSaved(String productId, String description) {
+            }
+
+            public void productDeleted(String productId) {
+            }
+
+            public void stockChanged(String productId, int delta) {
+                changes.add(productId + ":" + delta);
+            }
+        });
+        InMemoryDatabaseRW memory = new InMemoryDatabaseRW(catalogueEvents);
+        memory.insertNewProduct("0001", "40 inch TV", 269.00, "0001.jpg", 10);
+
+        memory.purchaseStocks(trolley(line("9999", 1), line("0001", 2)));
+        memory.restoreStock(trolley(line("0001", 1), line("9999", 1)));
+        assertEquals(List.of("0001:-2", "0001:1"), changes);
+    }
+
+    @Test
+    @DisplayName("Should load from Derby and write every change back at the checkpoint")
+    void testLoadAndCheckpoint() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:inMemoryCheckpointTest;create=true", 2, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00, '0001.jpg', 10)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0005', 'Kettle', 24.99, '0005.jpg', 3)");
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+        try {
+            DerbyRW derby = new DerbyRW(pool);
+            InMemoryDatabaseRW memory = new InMemoryDatabaseRW();
+            assertEquals(2, memory.loadFrom(derby));
+            assertEquals(3, memory.searchByProductId("0005").getStockQuantity());
+
+            memory.purchaseStocks(trolley(line("0001", 4)));
+            memory.deleteProduct("0005");
+            memory.insertNewProduct("0006", "Lamp", 9.99, "0006.jpg", 7);
+            memory.checkpoint(derby);
+
+            ArrayList<Product> saved = derby.getAllProducts();
+            assertEquals(List.of("0001", "0006"), ids(saved));
+            assertEquals(6, saved.get(0).getStockQuantity());
+            assertEquals("Lamp", saved.get(1).getProductDescription());
+        } finally {
+            try (PooledConnection conn = pool.borrow();
+                 Statement stmt = conn.getConnection().createStatement()) {
+                stmt.executeUpdate("DROP TABLE ProductTable");
+            }
+            pool.close();
+        }
+    }
+}
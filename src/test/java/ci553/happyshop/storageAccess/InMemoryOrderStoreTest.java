@@ -0,0 +1,60 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the OrderStore contract tests against InMemoryOrderStore, and checks that concurrent
+ * transitions of the same order cannot both succeed.
+ */
+@DisplayName("InMemoryOrderStore Tests")
+class InMemoryOrderStoreTest extends OrderStoreContractTest {
+
+    @Override
+    protected OrderStore createEmptyOrderStore() {
+        return new InMemoryOrderStore();
+    }
+
+    @Test
+    @DisplayName("Should let only one of two concurrent transitions move an order")
+    void testConcurrentTransitions() throws Exception {
+        int orders = 1000;
+        for (int orderId = 1; orderId <= orders; orderId++) {
+            store.createOrder(orderId, String.format(ORDER_TEXT, orderId));
+        }
+        AtomicInteger moved = new AtomicInteger();
+        ExecutorService pickers = Executors.newFixedThreadPool(2);
+        try {
+            Future<?>[] done = new Future<?>[2];
+            for (int picker = 0; picker < 2; picker++) {
+                done[picker] = pickers.submit(() -> {
+                    for (int orderId = 1; orderId <= orders; orderId++) {
+                        try {
+                            if (store.transition(orderId, OrderState.Ordered, OrderState.Progressing)) {
+                                moved.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            fail(e);
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pickers.shutdown();
+        }
+        assertEquals(orders, moved.get(), "Each order should be moved exactly once");
+        assertEquals(orders, store.listOrderIds(OrderState.Progressing).size());
+    }
+}
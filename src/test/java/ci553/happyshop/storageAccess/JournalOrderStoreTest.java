@@ -0,0 +1,140 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the OrderStore contract tests against JournalOrderStore in a temporary folder, and checks that:
+ * - Reopening the journal rebuilds the same orders and states
+ * - A torn record at the end of the journal is cut off without losing the orders before it
+ * - Compaction merges the older segments without changing what is read, before and after a reopen
+ * - The folder view holds one file per order in the folder of its state
+ */
+@DisplayName("JournalOrderStore Tests")
+class JournalOrderStoreTest extends OrderStoreContractTest {
+
+    private static final long SMALL_SEGMENT_BYTES = 1024; // a few orders per segment
+
+    @TempDir
+    Path tempDir;
+
+    private JournalOrderStore journal;
+
+    @Override
+    protected OrderStore createEmptyOrderStore() throws IOException {
+        journal = new JournalOrderStore(tempDir.resolve("journal"), SMALL_SEGMENT_BYTES);
+        return journal;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    // closes the journal and opens it again from its segment files
+    private void reopen() throws IOException {
+        journal.close();
+        journal = new JournalOrderStore(tempDir.resolve("journal"), SMALL_SEGMENT_BYTES);
+        store = journal;
+    }
+
+    @Test
+    @DisplayName("Should rebuild the orders and their states when reopened")
+    void testReopen() throws IOException {
+        for (int orderId = 1; orderId <= 20; orderId++) {
+            store.createOrder(orderId, String.format(ORDER_TEXT, orderId));
+        }
+        store.transition(3, OrderState.Ordered, OrderState.Progressing);
+        store.transition(3, OrderState.Progressing, OrderState.Collected);
+        store.transition(7, OrderState.Ordered, OrderState.Cancelled);
+        String collected = store.readOrder(3, OrderState.Collected);
+        assertTrue(journal.getSegmentCount() > 1, "The small segments should have rolled over");
+
+        reopen();
+
+        assertEquals(20, journal.size());
+        assertEquals(List.of(3L), store.listOrderIds(OrderState.Collected));
+        assertEquals(List.of(7L), store.listOrderIds(OrderState.Cancelled));
+        assertEquals(collected, store.readOrder(3, OrderState.Collected), "The recorded times should be replayed");
+        assertTrue(store.transition(4, OrderState.Ordered, OrderState.Progressing), "The journal should accept new records");
+    }
+
+    @Test
+    @DisplayName("Should cut off a torn record at the end of the journal")
+    void testTornRecord() throws IOException {
+        store.createOrder(1, String.format(ORDER_TEXT, 1));
+        store.transition(1, OrderState.Ordered, OrderState.Progressing);
+        journal.close();
+        Path newest;
+        try (var files = Files.list(tempDir.resolve("journal"))) {
+            newest = files.sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5); // a crash in the middle of the transition record
+        }
+
+        journal = new JournalOrderStore(tempDir.resolve("journal"), SMALL_SEGMENT_BYTES);
+        store = journal;
+
+        assertEquals(List.of(1L), store.listOrderIds(OrderState.Ordered), "The order should be back in its last complete state");
+        assertTrue(store.transition(1, OrderState.Ordered, OrderState.Progressing));
+        reopen();
+        assertEquals(List.of(1L), store.listOrderIds(OrderState.Progressing));
+    }
+
+    @Test
+    @DisplayName("Should merge the older segments without changing the orders")
+    void testCompact() throws IOException {
+        for (int orderId = 1; orderId <= 30; orderId++) {
+            store.createOrder(orderId, String.format(ORDER_TEXT, orderId));
+            store.transition(orderId, OrderState.Ordered, OrderState.Progressing);
+        }
+        for (int orderId = 1; orderId <= 30; orderId += 2) {
+            store.transition(orderId, OrderState.Progressing, OrderState.Collected);
+        }
+        String before = store.readOrder(5, OrderState.Collected);
+        int segmentsBefore = journal.getSegmentCount();
+
+        assertTrue(journal.compact() > 0);
+        assertTrue(journal.getSegmentCount() < segmentsBefore);
+        assertEquals(0, journal.compact(), "A compact journal should be left as it is");
+        assertEquals(before, store.readOrder(5, OrderState.Collected));
+
+        store.transition(2, OrderState.Progressing, OrderState.Cancelled);
+        reopen();
+
+        assertEquals(30, journal.size());
+        assertEquals(before, store.readOrder(5, OrderState.Collected));
+        assertEquals(15, store.listOrderIds(OrderState.Collected).size());
+        assertEquals(List.of(2L), store.listOrderIds(OrderState.Cancelled));
+    }
+
+    @Test
+    @DisplayName("Should write one file per order in the folder of its state as a view")
+    void testExportFolderView() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+        store.createOrder(13, String.format(ORDER_TEXT, 13));
+        Path view = tempDir.resolve("orders");
+        journal.exportFolderView(view);
+        assertTrue(Files.exists(view.resolve("ordered/12.txt")));
+
+        store.transition(12, OrderState.Ordered, OrderState.Cancelled);
+        assertEquals(2, journal.exportFolderView(view));
+
+        assertFalse(Files.exists(view.resolve("ordered/12.txt")), "The file should follow the order to its new state");
+        assertTrue(Files.readString(view.resolve("cancelled/12.txt")).contains("State: Cancelled"));
+        assertEquals(List.of(12L), new FileOrderStore(view).listOrderIds(OrderState.Cancelled));
+    }
+}
@@ -0,0 +1,117 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the DatabaseRW contract tests against MappedDatabaseRW, and tests its file.
+ *
+ * These tests verify:
+ * - Every change, including in-place stock updates, is still there after the file is reopened
+ * - A deleted product's record is reused, and the index still finds the other products
+ * - Values wider than their record slot, and inserts into a full store, are rejected
+ * - A file that is not a product store is not opened
+ *
+ * Why these tests are important:
+ * - The file is the only copy of the catalogue, and is read back without any check other than its header
+ */
+@DisplayName("MappedDatabaseRW Tests")
+class MappedDatabaseRWTest extends DatabaseRWContractTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MappedDatabaseRW mapped;
+
+    @Override
+    protected DatabaseRW createEmptyDatabaseRW() throws SQLException {
+        mapped = open(64);
+        return mapped;
+    }
+
+    @Override
+    protected void cleanUp() throws SQLException {
+        try {
+            mapped.close();
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private MappedDatabaseRW open(int capacity) throws SQLException {
+        try {
+            return MappedDatabaseRW.open(tempDir.resolve("products.dat"), capacity, null, new CatalogueEvents());
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep every change after the file is reopened")
+    void testReopen() throws Exception {
+        assertTrue(mapped.wasCreated());
+        mapped.purchaseStocks(trolley(line("0001", 3), line("0002", 1)));
+        mapped.updateProduct("0003", "Toaster (4 slice)", 24.99, "0003b.jpg", 6);
+        mapped.deleteProduct("0004");
+        mapped.close();
+
+        mapped = open(1);
+        assertFalse(mapped.wasCreated());
+        assertEquals(64, mapped.getCapacity(), "The capacity is read from the file");
+        assertEquals(List.of("0001", "0002", "0003"), ids(mapped.getAllProducts()));
+        assertEquals(7, stockOf("0001"));
+        assertEquals(4, stockOf("0002"));
+        assertEquals("Toaster (4 slice)", mapped.searchByProductId("0003").getProductDescription());
+        assertEquals(24.99, mapped.searchByProductId("0003").getUnitPrice(), 0.001);
+        assertEquals("0003b.jpg", mapped.searchByProductId("0003").getProductImageName());
+        assertNull(mapped.searchByProductId("0004"));
+    }
+
+    @Test
+    @DisplayName("Should reuse a deleted record and still find the other products")
+    void testReuseDeletedRecord() throws Exception {
+        mapped.deleteProduct("0002");
+        mapped.insertNewProduct("0009", "Kettle", 24.99, "0009.jpg", 3);
+        mapped.insertNewProduct("0002", "DAB Radio", 29.99, "0002.jpg", 8);
+        assertEquals(List.of("0001", "0002", "0003", "0004", "0009"), ids(mapped.getAllProducts()));
+        assertEquals(8, stockOf("0002"));
+
+        mapped.close();
+        mapped = open(64);
+        assertEquals(3, stockOf("0009"));
+        assertEquals(5, mapped.getProductCount());
+    }
+
+    @Test
+    @DisplayName("Should reject values wider than their slot and inserts into a full store")
+    void testLimits() throws Exception {
+        SQLException tooLong = assertThrows(SQLException.class,
+                () -> mapped.insertNewProduct("0010", "x".repeat(101), 1.0, "0010.jpg", 1));
+        assertEquals("22001", tooLong.getSQLState());
+        assertThrows(SQLException.class, () -> mapped.insertNewProduct("00100", "Lamp", 1.0, "0010.jpg", 1));
+        assertTrue(mapped.isProIdAvailable("0010"));
+
+        for (int i = 10; i < 70; i++) {
+            mapped.insertNewProduct(String.format("%04d", i), "Product " + i, 1.0, i + ".jpg", 1);
+        }
+        assertThrows(SQLException.class, () -> mapped.insertNewProduct("0070", "One too many", 1.0, "x.jpg", 1));
+        assertEquals(64, mapped.getProductCount());
+    }
+
+    @Test
+    @DisplayName("Should not open a file that is not a product store")
+    void testNotAStore() throws IOException {
+        Path other = tempDir.resolve("other.dat");
+        Files.writeString(other, "not a product store, just some text that is long enough for a header............");
+        assertThrows(IOException.class, () -> MappedDatabaseRW.open(other, 64, null, new CatalogueEvents()));
+    }
+}
@@ -0,0 +1,88 @@
+package ci553.happyshop.storageAccess;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Compares startup time and searchByProductId() latency of DerbyRW (an on-disk Derby database)
+ * against MappedDatabaseRW (a memory-mapped file), with the same catalogue, in a temporary folder.
+ * Startup is the first lookup after creating the DatabaseRW, i.e. booting Derby or mapping the file.
+ *
+ * This is not a unit test (it is not run by Maven). Run it from the IDE, or with:
+ *     mvn test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=ci553.happyshop.storageAccess.MappedStoreBenchmark
+ */
+
+public class MappedStoreBenchmark {
+    private static final int PRODUCTS = 5_000;
+    private static final int LOOKUPS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        Path folder = Files.createTempDirectory("mappedStoreBenchmark");
+        String url = "jdbc:derby:" + folder.resolve("db");
+        ConnectionPool setupPool = new ConnectionPool(url + ";create=true", 1, 5000);
+        createCatalogue(setupPool);
+        DerbyRW setupDerby = new DerbyRW(setupPool);
+        try (MappedDatabaseRW setupMapped = MappedDatabaseRW.open(folder.resolve("products.dat"), PRODUCTS, null,
+                new CatalogueEvents())) {
+            setupMapped.loadFrom(setupDerby);
+        }
+        setupPool.close();
+        try {
+            DriverManager.getConnection(url + ";shutdown=true"); // the next pool boots the database again
+        } catch (SQLException e) {
+            // Derby reports a successful shutdown as an exception
+        }
+
+        System.out.printf("%-10s %14s %16s%n", "backend", "startup (ms)", "lookup (ns)");
+        long begin = System.nanoTime();
+        ConnectionPool pool = new ConnectionPool(url, 1, 5000);
+        DerbyRW derby = new DerbyRW(pool);
+        derby.searchByProductId("0000");
+        double derbyStartup = (System.nanoTime() - begin) / 1e6;
+        System.out.printf("%-10s %14.1f %16.0f%n", "DerbyRW", derbyStartup, lookups(derby, LOOKUPS / 20));
+        pool.close();
+
+        begin = System.nanoTime();
+        try (MappedDatabaseRW mapped = MappedDatabaseRW.open(folder.resolve("products.dat"), PRODUCTS, null,
+                new CatalogueEvents())) {
+            mapped.searchByProductId("0000");
+            double mappedStartup = (System.nanoTime() - begin) / 1e6;
+            System.out.printf("%-10s %14.1f %16.0f%n", "Mapped", mappedStartup, lookups(mapped, LOOKUPS));
+        }
+    }
+
+    // mean nanoseconds per searchByProductId(), after a warm-up of the same length
+    private static double lookups(DatabaseRW db, int count) throws SQLException {
+        for (int i = 0; i < count; i++) {
+            db.searchByProductId(String.format("%04d", i % PRODUCTS));
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            db.searchByProductId(String.format("%04d", (i * 7) % PRODUCTS));
+        }
+        return (System.nanoTime() - begin) / (double) count;
+    }
+
+    private static void createCatalogue(ConnectionPool pool) throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().createStatement().executeUpdate(
+                    "CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = 0; i < PRODUCTS; i++) {
+                insert.setString(1, String.format("%04d", i));
+                insert.setString(2, "Product " + i);
+                insert.setDouble(3, 1 + i);
+                insert.setString(4, i + ".jpg");
+                insert.setInt(5, 100);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+    }
+}
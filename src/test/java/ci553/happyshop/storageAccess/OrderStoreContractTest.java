@@ -0,0 +1,117 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.orderManagement.OrderState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The behaviour every OrderStore implementation must share, run against each of them by a subclass
+ * (FileOrderStoreTest, InMemoryOrderStoreTest, JournalOrderStoreTest).
+ *
+ * These tests verify:
+ * - A created order is listed and readable in the Ordered state only, and its ID cannot be stored twice
+ * - A transition moves the order and records the state and its time in the order text
+ * - A transition from the wrong state changes nothing
+ * - Listing and scanning return the orders of a state in ascending ID order
+ *
+ * Why these tests are important:
+ * - OrderHub and the history services only see the OrderStore interface,
+ *   so switching the store must not change what they read
+ */
+abstract class OrderStoreContractTest {
+
+    protected static final String ORDER_TEXT = "Order ID: %d \n" +
+            "State: Ordered \n" +
+            "OrderedDateTime: 2025-05-03 16:52:24 \n" +
+            "ProgressingDateTime:  \n" +
+            "CollectedDateTime: \n" +
+            "CancelledDateTime: \n" +
+            "Items:\n" +
+            " 0002    DAB Radio          ( 1) £  29.99\n" +
+            " Total                               £  29.99";
+
+    protected OrderStore store;
+
+    // returns an implementation holding no orders
+    protected abstract OrderStore createEmptyOrderStore() throws IOException;
+
+    @BeforeEach
+    void setUpStore() throws IOException {
+        store = createEmptyOrderStore();
+    }
+
+    @Test
+    @DisplayName("Should store a new order in the Ordered state")
+    void testCreateOrder() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+
+        assertEquals(List.of(12L), store.listOrderIds(OrderState.Ordered));
+        assertTrue(store.listOrderIds(OrderState.Progressing).isEmpty());
+        assertTrue(store.readOrder(12, OrderState.Ordered).startsWith("Order ID: 12"));
+        assertThrows(IOException.class, () -> store.readOrder(12, OrderState.Progressing));
+    }
+
+    @Test
+    @DisplayName("Should refuse an order ID that is already stored, in any state")
+    void testDuplicateOrder() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+        store.createOrder(13, String.format(ORDER_TEXT, 13));
+        store.transition(13, OrderState.Ordered, OrderState.Progressing);
+
+        assertThrows(IOException.class, () -> store.createOrder(12, "a different order"));
+        assertThrows(IOException.class, () -> store.createOrder(13, "a different order"));
+        assertTrue(store.readOrder(12, OrderState.Ordered).startsWith("Order ID: 12"), "The stored order should be kept");
+        assertEquals(List.of(12L), store.listOrderIds(OrderState.Ordered));
+    }
+
+    @Test
+    @DisplayName("Should move an order and record the time of its new state")
+    void testTransition() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+
+        assertTrue(store.transition(12, OrderState.Ordered, OrderState.Progressing));
+        assertTrue(store.transition(12, OrderState.Progressing, OrderState.Collected));
+
+        assertEquals(List.of(12L), store.listOrderIds(OrderState.Collected));
+        assertTrue(store.listOrderIds(OrderState.Ordered).isEmpty());
+        String text = store.readOrder(12, OrderState.Collected);
+        assertTrue(text.contains("State: Collected"), text);
+        assertTrue(text.matches("(?s).*ProgressingDateTime: \\d{4}-\\d{2}-\\d{2} .*"), text);
+        assertTrue(text.matches("(?s).*CollectedDateTime: \\d{4}-\\d{2}-\\d{2} .*"), text);
+        assertTrue(text.contains("DAB Radio"), "The items should be kept");
+    }
+
+    @Test
+    @DisplayName("Should not move an order from a state it is not in")
+    void testTransitionFromWrongState() throws IOException {
+        store.createOrder(12, String.format(ORDER_TEXT, 12));
+
+        assertFalse(store.transition(12, OrderState.Progressing, OrderState.Collected));
+        assertFalse(store.transition(99, OrderState.Ordered, OrderState.Cancelled));
+        assertEquals(List.of(12L), store.listOrderIds(OrderState.Ordered));
+    }
+
+    @Test
+    @DisplayName("Should list and scan the orders of a state in ID order")
+    void testListAndScan() throws IOException {
+        for (long orderId : new long[] {30, 4, 17, 8}) {
+            store.createOrder(orderId, String.format(ORDER_TEXT, orderId));
+        }
+        store.transition(17, OrderState.Ordered, OrderState.Cancelled);
+
+        assertEquals(List.of(4L, 8L, 30L), store.listOrderIds(OrderState.Ordered));
+        List<Long> scanned = new ArrayList<>();
+        store.forEachOrder(OrderState.Ordered, (orderId, text) -> {
+            assertTrue(text.startsWith("Order ID: " + orderId));
+            scanned.add(orderId);
+        });
+        assertEquals(List.of(4L, 8L, 30L), scanned);
+    }
+}
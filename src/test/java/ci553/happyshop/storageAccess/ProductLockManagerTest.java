@@ -0,0 +1,104 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProductLockManager.
+ *
+ * These tests verify:
+ * - Writers of the same product exclude each other
+ * - Writers of products on different stripes do not block each other
+ * - Multi-product locking in opposite orders does not deadlock
+ * - Contention is counted per product
+ *
+ * Why these tests are important:
+ * - All DatabaseRW instances share this manager, so a mistake here either lets writers
+ *   interleave or serializes the whole shop
+ */
+@DisplayName("ProductLockManager Tests")
+class ProductLockManagerTest {
+
+    @Test
+    @DisplayName("Should block a second writer of the same product")
+    void testSameProductExcludes() throws InterruptedException {
+        ProductLockManager manager = new ProductLockManager(16);
+        AtomicBoolean acquired = new AtomicBoolean(false);
+
+        Thread other;
+        try (ProductLockManager.ProductLocks locks = manager.lock("0001")) {
+            other = new Thread(() -> {
+                try (ProductLockManager.ProductLocks otherLocks = manager.lock("0001")) {
+                    acquired.set(true);
+                }
+            });
+            other.start();
+            other.join(200);
+            assertFalse(acquired.get(), "Second writer must wait while the product is locked");
+        }
+        other.join(2000);
+        assertTrue(acquired.get(), "Second writer should proceed after unlock");
+        assertEquals(1, manager.getContentionCount());
+        assertEquals("0001", manager.getHotProducts(1).get(0).getKey());
+    }
+
+    @Test
+    @DisplayName("Should not block writers of products on different stripes")
+    void testDifferentStripesRunInParallel() throws InterruptedException {
+        ProductLockManager manager = new ProductLockManager(16);
+        String other = "0002";
+        for (int i = 2; manager.stripeOf(other) == manager.stripeOf("0001"); i++) {
+            other = String.format("%04d", i);
+        }
+        String otherProduct = other;
+        CountDownLatch done = new CountDownLatch(1);
+
+        try (ProductLockManager.ProductLocks locks = manager.lock("0001")) {
+            new Thread(() -> {
+                try (ProductLockManager.ProductLocks otherLocks = manager.lock(otherProduct)) {
+                    done.countDown();
+                }
+            }).start();
+            assertTrue(done.await(2, TimeUnit.SECONDS), "Unrelated product should lock immediately");
+        }
+        assertEquals(0, manager.getContentionCount());
+    }
+
+    @Test
+    @DisplayName("Should not deadlock when products are locked in opposite orders")
+    void testLockAllOrdering() throws InterruptedException {
+        ProductLockManager manager = new ProductLockManager(16);
+        Runnable forward = () -> {
+            for (int i = 0; i < 2000; i++) {
+                try (ProductLockManager.ProductLocks locks = manager.lockAll(List.of("0001", "0005", "0009"))) {
+                    Thread.onSpinWait();
+                }
+            }
+        };
+        Runnable backward = () -> {
+            for (int i = 0; i < 2000; i++) {
+                try (ProductLockManager.ProductLocks locks = manager.lockAll(List.of("0009", "0005", "0001", "0001"))) {
+                    Thread.onSpinWait();
+                }
+            }
+        };
+        Thread t1 = new Thread(forward);
+        Thread t2 = new Thread(backward);
+        t1.start();
+        t2.start();
+        t1.join(10_000);
+        t2.join(10_000);
+        assertFalse(t1.isAlive() || t2.isAlive(), "Threads should finish without deadlock");
+
+        List<Map.Entry<String, Long>> hot = manager.getHotProducts(10);
+        assertTrue(hot.size() <= 3, "Only the locked products can be hot");
+    }
+}
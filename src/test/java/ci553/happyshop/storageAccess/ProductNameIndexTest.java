@@ -0,0 +1,138 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProductNameIndex.
+ *
+ * These tests verify:
+ * - Substring searches ignore case and return productIDs in order
+ * - Keywords shorter than a trigram still match
+ * - Inserted, updated and deleted products are reflected in the results
+ * - DerbyRW returns the same products with the index as with the LIKE query,
+ *   also for keywords containing the LIKE wildcards % and _
+ *
+ * Why these tests are important:
+ * - The index replaces the LIKE query for every name search, so its results must not differ
+ */
+@DisplayName("ProductNameIndex Tests")
+class ProductNameIndexTest {
+
+    private static ProductNameIndex indexOf(String... idAndDescription) {
+        Map<String, String> descriptions = new HashMap<>();
+        for (int i = 0; i < idAndDescription.length; i += 2) {
+            descriptions.put(idAndDescription[i], idAndDescription[i + 1]);
+        }
+        ProductNameIndex index = new ProductNameIndex();
+        index.rebuild(descriptions);
+        return index;
+    }
+
+    @Test
+    @DisplayName("Should find substrings ignoring case")
+    void testSubstringSearch() {
+        ProductNameIndex index = indexOf("0002", "DAB Radio", "0001", "Radio Alarm Clock", "0003", "Toaster");
+
+        assertEquals(List.of("0001", "0002"), index.search("RADIO"));
+        assertEquals(List.of("0001"), index.search("m cl"));
+        assertEquals(List.of(), index.search("radiox"));
+        assertEquals(List.of(), index.search("zzz"));
+    }
+
+    @Test
+    @DisplayName("Should match keywords shorter than a trigram")
+    void testShortKeyword() {
+        ProductNameIndex index = indexOf("0001", "TV", "0002", "Toaster", "0003", "Kettle");
+
+        assertEquals(List.of("0001", "0002", "0003"), index.search("t"));
+        assertEquals(List.of("0002"), index.search("o"));
+        assertEquals(List.of("0001"), index.search("tv"));
+        assertEquals(List.of("0001", "0002", "0003"), index.search(""));
+    }
+
+    @Test
+    @DisplayName("Should reflect inserts, updates and deletes")
+    void testWrites() {
+        ProductNameIndex index = indexOf("0001", "DAB Radio");
+
+        index.productSaved("0002", "Digital Radio");
+        index.productSaved("0001", "Toaster"); // renamed
+        assertEquals(List.of("0002"), index.search("radio"));
+        assertEquals(List.of("0001"), index.search("toast"));
+
+        index.productDeleted("0002");
+        assertEquals(List.of(), index.search("radio"));
+        assertEquals(1, index.getProductCount());
+    }
+
+    @Test
+    @DisplayName("Should stay correct after compaction")
+    void testCompaction() {
+        ProductNameIndex index = indexOf();
+        for (int i = 0; i < 3000; i++) {
+            index.productSaved("0001", "Radio " + i);
+        }
+        assertEquals(List.of("0001"), index.search("radio 2999"));
+        assertEquals(List.of(), index.search("radio 1500"));
+    }
+
+    @Test
+    @DisplayName("Should return the same products as the LIKE query")
+    void testSameResultsAsLike() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:productNameIndexTest;create=true", 2, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0003', 'Radio Alarm Clock', 19.99, '0003.jpg', 4)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0001', '40 inch TV', 269.00, '0001.jpg', 10)");
+            stmt.executeUpdate("INSERT INTO ProductTable VALUES('0002', 'DAB Radio', 29.99, '0002.jpg', 5)");
+            SchemaMigrator.migrate(conn.getConnection()); // the LIKE query reads descriptionLower
+        }
+        try {
+            DerbyRW likeDb = new DerbyRW(pool);
+            ProductNameIndex index = new ProductNameIndex();
+            CatalogueEvents catalogueEvents = new CatalogueEvents();
+            catalogueEvents.addListener(index);
+            DerbyRW indexedDb = new DerbyRW(pool, index, catalogueEvents);
+            index.rebuild(indexedDb.loadDescriptions());
+
+            indexedDb.insertNewProduct("0004", "Kitchen Radio", 9.99, "0004.jpg", 2);
+            indexedDb.insertNewProduct("0005", "100% Cotton Towel", 4.99, "0005.jpg", 8);
+            indexedDb.insertNewProduct("0006", "USB_C Cable!", 3.99, "0006.jpg", 6);
+            for (String keyword : List.of("radio", "Ra", "inch", "clock", "nothing", "o")) {
+                assertEquals(ids(likeDb.searchProduct(keyword)), ids(indexedDb.searchProduct(keyword)), keyword);
+            }
+            for (String keyword : List.of("%", "_", "0%", "b_c", "r_d", "100%", "%io", "!")) {
+                assertEquals(ids(likeDb.searchProduct(keyword)), ids(indexedDb.searchProduct(keyword)), keyword);
+            }
+            assertEquals(List.of("0005"), ids(likeDb.searchProduct("%")), "% should only match itself");
+            assertTrue(likeDb.searchProduct("r_d").isEmpty(), "_ should not match any character");
+        } finally {
+            try (PooledConnection conn = pool.borrow();
+                 Statement stmt = conn.getConnection().createStatement()) {
+                stmt.executeUpdate("DROP TABLE ProductTable");
+            }
+            pool.close();
+        }
+    }
+
+    private static List<String> ids(ArrayList<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,109 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares name searches with the LIKE query against searches with the ProductNameIndex
+ * on a catalogue of 100,000 products held in an in-memory Derby database.
+ *
+ * This is not a unit test (it is not run by Maven). Run it from the IDE, or with:
+ *     mvn test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=ci553.happyshop.storageAccess.ProductNameSearchBenchmark
+ *
+ * Both paths only collect the matching productIDs, so the timings compare the search itself
+ * and not the building (and printing) of Product objects.
+ */
+
+public class ProductNameSearchBenchmark {
+    private static final int PRODUCTS = 100_000;
+    private static final int ROUNDS = 20;
+    private static final String[] WORDS = {"radio", "tv", "toaster", "kettle", "lamp", "clock", "speaker",
+            "camera", "phone", "laptop", "mouse", "keyboard", "fridge", "oven", "blender", "heater"};
+    private static final String[] KEYWORDS = {"radio", "kettle lamp", "amer", "xyzzy", "blender 4", "o"};
+
+    public static void main(String[] args) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:nameSearchBenchmark;create=true", 2, 5000);
+        createCatalogue(pool);
+
+        ProductNameIndex index = new ProductNameIndex();
+        long start = System.nanoTime();
+        index.rebuild(new DerbyRW(pool).loadDescriptions());
+        System.out.printf("Index built in %.1f ms: %d products, %d trigrams%n",
+                (System.nanoTime() - start) / 1e6, index.getProductCount(), index.getTrigramCount());
+
+        System.out.printf("%-14s %10s %14s %14s %9s%n", "keyword", "matches", "LIKE (ms)", "index (ms)", "speed-up");
+        for (String keyword : KEYWORDS) {
+            int likeMatches = 0;
+            int indexMatches = 0;
+            likeSearch(pool, keyword); // warm up
+            index.search(keyword);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                likeMatches = likeSearch(pool, keyword);
+            }
+            double likeMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                indexMatches = index.search(keyword).size();
+            }
+            double indexMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+
+            if (likeMatches != indexMatches) {
+                throw new IllegalStateException("Results differ for '" + keyword + "': " + likeMatches + " vs " + indexMatches);
+            }
+            System.out.printf("%-14s %10d %14.3f %14.3f %8.0fx%n",
+                    keyword, likeMatches, likeMillis, indexMillis, likeMillis / indexMillis);
+        }
+        pool.close();
+    }
+
+    private static int likeSearch(ConnectionPool pool, String keyword) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(
+                    "SELECT productID FROM ProductTable WHERE LOWER(description) LIKE LOWER(?) ORDER BY productID");
+            stmt.setString(1, "%" + keyword.toLowerCase() + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids.size();
+    }
+
+    private static void createCatalogue(ConnectionPool pool) throws SQLException {
+        Random random = new Random(42);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID VARCHAR(6) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            conn.setAutoCommit(false);
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = 0; i < PRODUCTS; i++) {
+                String id = String.format("%06d", i);
+                String description = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + random.nextInt(1000);
+                insert.setString(1, id);
+                insert.setString(2, description);
+                insert.setDouble(3, 1 + random.nextInt(500));
+                insert.setString(4, id + ".jpg");
+                insert.setInt(5, random.nextInt(100));
+                insert.addBatch();
+                if (i % 5000 == 4999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            conn.commit();
+        }
+    }
+}
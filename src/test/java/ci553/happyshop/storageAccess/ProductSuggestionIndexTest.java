@@ -0,0 +1,91 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProductSuggestionIndex.
+ *
+ * These tests verify:
+ * - Suggestions match the start of the product ID or of any word of the description
+ * - The number of suggestions is limited and each product appears once
+ * - Inserts, edits and deletes (catalogue events) update the suggestions
+ * - Products that do not fit the memory budget are rejected and counted
+ *
+ * Why these tests are important:
+ * - The customer view calls suggest() on every keystroke, without a database round trip,
+ *   so the index is the only source of suggestions
+ */
+@DisplayName("ProductSuggestionIndex Tests")
+class ProductSuggestionIndexTest {
+
+    private ProductSuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSuggestionIndex(1024 * 1024);
+        index.rebuild(Map.of(
+                "0001", "40 inch TV",
+                "0002", "DAB Radio",
+                "0003", "Radio Alarm Clock",
+                "0004", "Toaster"));
+    }
+
+    @Test
+    @DisplayName("Should match product IDs and word starts")
+    void testPrefixMatch() {
+        assertEquals(List.of("0002 DAB Radio", "0003 Radio Alarm Clock"), index.suggest("RAD", 5));
+        assertEquals(List.of("0003 Radio Alarm Clock"), index.suggest("clo", 5));
+        assertEquals(List.of("0004 Toaster"), index.suggest("0004", 5));
+        assertEquals(List.of(), index.suggest("adio", 5), "Only word starts are matched");
+        assertEquals(List.of(), index.suggest("  ", 5));
+    }
+
+    @Test
+    @DisplayName("Should limit suggestions and not repeat a product")
+    void testLimit() {
+        assertEquals(2, index.suggest("000", 2).size());
+        index.productSaved("0005", "Radio radio radio");
+        // a whole-word match ("radio") sorts before a longer key ("radio alarm clock")
+        assertEquals(List.of("0002 DAB Radio", "0005 Radio radio radio", "0003 Radio Alarm Clock"),
+                index.suggest("radio", 5));
+    }
+
+    @Test
+    @DisplayName("Should follow inserts, edits and deletes")
+    void testCatalogueEvents() {
+        CatalogueEvents catalogueEvents = new CatalogueEvents();
+        catalogueEvents.addListener(index);
+
+        catalogueEvents.fireProductSaved("0005", "Kettle", 24.99, 3);
+        catalogueEvents.fireProductSaved("0004", "Toaster Oven", 39.99, 2);
+        catalogueEvents.fireProductDeleted("0002");
+
+        assertEquals(List.of("0005 Kettle"), index.suggest("ket", 5));
+        assertEquals(List.of("0004 Toaster Oven"), index.suggest("oven", 5));
+        assertEquals(List.of("0003 Radio Alarm Clock"), index.suggest("radio", 5));
+    }
+
+    @Test
+    @DisplayName("Should stay within the memory budget")
+    void testMemoryBudget() {
+        ProductSuggestionIndex small = new ProductSuggestionIndex(600);
+        for (int i = 0; i < 20; i++) {
+            small.productSaved(String.format("%04d", i), "Radio " + i);
+        }
+
+        assertTrue(small.getUsedBytes() <= 600, "Used bytes must not exceed the budget");
+        assertTrue(small.getRejectedCount() > 0, "Products that do not fit should be rejected");
+        assertEquals(20, small.getProductCount() + small.getRejectedCount());
+
+        long used = small.getUsedBytes();
+        small.productDeleted("0000");
+        assertTrue(small.getUsedBytes() < used, "Deleting a product should free its bytes");
+    }
+}
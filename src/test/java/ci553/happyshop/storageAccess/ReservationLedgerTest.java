@@ -0,0 +1,130 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import ci553.happyshop.utility.TimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReservationLedger and the TimingWheel expiring its holds.
+ *
+ * These tests verify:
+ * - Available stock is on-hand stock minus the live holds of all trolleys
+ * - A hold is refused when the stock free of other holds does not cover it
+ * - Holds expire after the TTL, and adding the product again renews the TTL
+ * - confirm() tops up expired holds and reports the lines that cannot be held
+ * - Converting or releasing a trolley frees its stock
+ * - The timing wheel does not fire a timeout due in a later round of the wheel
+ *
+ * Why these tests are important:
+ * - Customers rely on the available stock shown at search and on the holds placed at add-to-trolley
+ *   to know that their checkout will succeed
+ *
+ * The timing wheel is not started; the tests advance it with tick().
+ */
+@DisplayName("ReservationLedger Tests")
+class ReservationLedgerTest {
+
+    private static final long TICK = 10;
+    private TimingWheel timingWheel;
+    private ReservationLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        timingWheel = new TimingWheel(TICK, 8);
+        ledger = new ReservationLedger(timingWheel, 3 * TICK);
+    }
+
+    @Test
+    @DisplayName("Should subtract live holds from the available stock")
+    void testAvailable() {
+        assertTrue(ledger.reserve("alice", "0001", 5, 2));
+        assertTrue(ledger.reserve("bob", "0001", 5, 3));
+
+        assertEquals(0, ledger.available("0001", 5));
+        assertFalse(ledger.reserve("carol", "0001", 5, 1), "No stock is free of holds");
+        assertEquals(1, ledger.getRejectedCount());
+        assertEquals(5, ledger.available("0002", 5), "Other products are not affected");
+    }
+
+    @Test
+    @DisplayName("Should expire holds after the TTL unless renewed")
+    void testExpiry() {
+        ledger.reserve("alice", "0001", 5, 2);
+        ledger.reserve("bob", "0001", 5, 1);
+        tick(2);
+        ledger.reserve("bob", "0001", 5, 1); // renews bob's hold
+
+        tick(1);
+        assertEquals(3, ledger.available("0001", 5), "Alice's hold should have expired");
+        assertEquals(2, ledger.getHeldQuantity("bob", "0001"));
+
+        tick(3);
+        assertEquals(5, ledger.available("0001", 5));
+        assertEquals(2, ledger.getExpiredCount());
+        assertEquals(0, timingWheel.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Should top up expired holds at checkout and report lines that cannot be held")
+    void testConfirm() {
+        ledger.reserve("alice", "0001", 5, 2);
+        tick(3); // alice's hold expires
+        ledger.reserve("bob", "0001", 5, 4);
+
+        ArrayList<Product> unavailable = ledger.confirm("alice", trolley("0001", 2, 5));
+        assertEquals(1, unavailable.size());
+        assertEquals(1, unavailable.get(0).getStockQuantity(), "Only 1 unit is free of bob's hold");
+
+        ledger.releaseAll("bob");
+        assertTrue(ledger.confirm("alice", trolley("0001", 2, 5)).isEmpty());
+        assertEquals(2, ledger.getHeldQuantity("alice", "0001"));
+    }
+
+    @Test
+    @DisplayName("Should free the stock when a trolley is converted or released")
+    void testConvertAndRelease() {
+        ledger.reserve("alice", "0001", 5, 2);
+        ledger.reserve("alice", "0002", 5, 1);
+        ledger.reserve("bob", "0001", 5, 1);
+
+        ledger.release("bob", "0001");
+        ledger.convert("alice");
+
+        assertEquals(0, ledger.getHeldQuantity("0001"));
+        assertEquals(0, ledger.getHeldQuantity("0002"));
+        assertEquals(0, timingWheel.getPendingCount(), "Dropped holds should cancel their expiry");
+    }
+
+    @Test
+    @DisplayName("Should not fire a timeout due in a later round of the wheel")
+    void testWheelRounds() {
+        AtomicInteger fired = new AtomicInteger();
+        timingWheel.schedule(fired::incrementAndGet, 10 * TICK); // the wheel has 8 buckets
+
+        tick(9);
+        assertEquals(0, fired.get());
+        tick(1);
+        assertEquals(1, fired.get());
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            timingWheel.tick();
+        }
+    }
+
+    private static ArrayList<Product> trolley(String productId, int quantity, int onHand) {
+        Product product = new Product(productId, "", "", 0, onHand);
+        product.setOrderedQuantity(quantity);
+        ArrayList<Product> trolley = new ArrayList<>();
+        trolley.add(product);
+        return trolley;
+    }
+}
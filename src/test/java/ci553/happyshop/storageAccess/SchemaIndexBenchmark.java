@@ -0,0 +1,121 @@
+package ci553.happyshop.storageAccess;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Compares the prefix and low stock queries on the original ProductTable (primary key only)
+ * with the same queries after SchemaMigrator has added descriptionLower and the two indexes,
+ * on a catalogue of 100,000 products held in an in-memory Derby database.
+ *
+ * This is not a unit test (it is not run by Maven). Run it from the IDE, or with:
+ *     mvn test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=ci553.happyshop.storageAccess.SchemaIndexBenchmark
+ *
+ * Before the migration both queries read every row; afterwards they read an index range.
+ */
+
+public class SchemaIndexBenchmark {
+    private static final int PRODUCTS = 100_000;
+    private static final int ROUNDS = 20;
+    private static final int THRESHOLD = 2;
+    private static final String[] WORDS = {"radio", "tv", "toaster", "kettle", "lamp", "clock", "speaker",
+            "camera", "phone", "laptop", "mouse", "keyboard", "fridge", "oven", "blender", "heater"};
+    private static final String[] PREFIXES = {"radio", "kettle lamp", "blender 4", "xyzzy"};
+
+    public static void main(String[] args) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:derby:memory:schemaIndexBenchmark;create=true", 2, 5000);
+        createCatalogue(pool);
+
+        double[] before = new double[PREFIXES.length + 1];
+        int[] matches = new int[PREFIXES.length + 1];
+        for (int i = 0; i < PREFIXES.length; i++) {
+            matches[i] = count(pool, "SELECT productID FROM ProductTable WHERE LOWER(description) LIKE ?", PREFIXES[i] + "%");
+            before[i] = time(pool, "SELECT productID FROM ProductTable WHERE LOWER(description) LIKE ?", PREFIXES[i] + "%");
+        }
+        matches[PREFIXES.length] = count(pool, "SELECT productID FROM ProductTable WHERE inStock <= ?", THRESHOLD);
+        before[PREFIXES.length] = time(pool, "SELECT productID FROM ProductTable WHERE inStock <= ?", THRESHOLD);
+
+        long start = System.nanoTime();
+        try (PooledConnection conn = pool.borrow()) {
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+        System.out.printf("Migrated %d products in %.1f ms%n", PRODUCTS, (System.nanoTime() - start) / 1e6);
+
+        System.out.printf("%-22s %10s %14s %14s %9s%n", "query", "matches", "before (ms)", "after (ms)", "speed-up");
+        for (int i = 0; i <= PREFIXES.length; i++) {
+            String label;
+            String sql;
+            Object parameter;
+            if (i < PREFIXES.length) {
+                label = "prefix '" + PREFIXES[i] + "'";
+                sql = "SELECT productID FROM ProductTable WHERE descriptionLower LIKE ?";
+                parameter = PREFIXES[i] + "%";
+            } else {
+                label = "inStock <= " + THRESHOLD;
+                sql = "SELECT productID FROM ProductTable WHERE inStock <= ?";
+                parameter = THRESHOLD;
+            }
+            if (count(pool, sql, parameter) != matches[i]) {
+                throw new IllegalStateException("Results differ for " + label);
+            }
+            double after = time(pool, sql, parameter);
+            System.out.printf("%-22s %10d %14.3f %14.3f %8.0fx%n", label, matches[i], before[i], after, before[i] / after);
+        }
+        pool.close();
+    }
+
+    // average time of one run of the query, after a warm up run
+    private static double time(ConnectionPool pool, String sql, Object parameter) throws SQLException {
+        count(pool, sql, parameter);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            count(pool, sql, parameter);
+        }
+        return (System.nanoTime() - start) / 1e6 / ROUNDS;
+    }
+
+    private static int count(ConnectionPool pool, String sql, Object parameter) throws SQLException {
+        int rows = 0;
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
+            stmt.setObject(1, parameter);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void createCatalogue(ConnectionPool pool) throws SQLException {
+        Random random = new Random(42);
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().createStatement().executeUpdate(
+                    "CREATE TABLE ProductTable(productID VARCHAR(6) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            conn.setAutoCommit(false);
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = 0; i < PRODUCTS; i++) {
+                String id = String.format("%06d", i);
+                String description = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                        + " " + random.nextInt(1000);
+                insert.setString(1, id);
+                insert.setString(2, description);
+                insert.setDouble(3, 1 + random.nextInt(500));
+                insert.setString(4, id + ".jpg");
+                insert.setInt(5, random.nextInt(100));
+                insert.addBatch();
+                if (i % 5000 == 4999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+    }
+}
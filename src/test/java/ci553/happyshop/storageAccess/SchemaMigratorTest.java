@@ -0,0 +1,183 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SchemaMigrator and the indexed queries of DerbyRW that rely on it.
+ *
+ * These tests verify:
+ * - An existing ProductTable is upgraded in place, keeping its rows, and a second run changes nothing
+ * - descriptionLower follows description on insert and update
+ * - searchByNamePrefix() and findProductsBelowStock() return the same products as a full scan
+ * - The prefix and threshold queries are answered with an index scan, not a table scan
+ *
+ * Why these tests are important:
+ * - Existing databases are upgraded at startup, so a migration must never lose data or fail twice
+ * - The indexes are only useful if Derby actually picks them for the queries
+ *
+ * The tests run against an in-memory Derby database, so the real happyShopDB is not touched.
+ */
+@DisplayName("SchemaMigrator Tests")
+class SchemaMigratorTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:schemaMigratorTest;create=true";
+    private static final int PRODUCTS = 3000;
+    private static final String[] WORDS = {"Radio", "TV", "Clock", "Kettle", "Toaster", "Lamp"};
+    private ConnectionPool pool;
+    private DerbyRW db;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 2, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            conn.setAutoCommit(false);
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = 0; i < PRODUCTS; i++) { // the old schema, before any migration
+                insert.setString(1, String.format("%04d", i));
+                insert.setString(2, WORDS[i % WORDS.length] + " " + i);
+                insert.setDouble(3, 1 + i % 100);
+                insert.setString(4, i + ".jpg");
+                insert.setInt(5, i % 200);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        db = new DerbyRW(pool);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+            stmt.executeUpdate("DROP TABLE StockJournalState");
+            stmt.executeUpdate("DROP TABLE ProductChangeLog");
+        }
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should upgrade an existing table in place, once")
+    void testMigrateInPlace() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            assertEquals(6, SchemaMigrator.migrate(conn.getConnection()));
+            assertEquals(0, SchemaMigrator.migrate(conn.getConnection()), "Second run should change nothing");
+        }
+        assertEquals(PRODUCTS, db.getAllProducts().size());
+        assertEquals("radio 0", lowerDescriptionOf("0000"));
+
+        db.insertNewProduct("9999", "DAB Radio", 29.99, "9999.jpg", 5);
+        db.updateProduct("0001", "Digital TV", 99.0, "1.jpg", 3);
+        assertEquals("dab radio", lowerDescriptionOf("9999"));
+        assertEquals("digital tv", lowerDescriptionOf("0001"));
+    }
+
+    @Test
+    @DisplayName("Should return the same products as a full scan")
+    void testSameResultsAsScan() throws SQLException {
+        migrate();
+        ArrayList<Product> all = db.getAllProducts();
+
+        List<String> expectedPrefix = new ArrayList<>();
+        for (Product product : all) {
+            if (product.getProductDescription().toLowerCase().startsWith("radio 1")) {
+                expectedPrefix.add(product.getProductDescription().toLowerCase());
+            }
+        }
+        expectedPrefix.sort(null);
+        List<String> prefix = new ArrayList<>();
+        for (Product product : db.searchByNamePrefix("RADIO 1", PRODUCTS)) {
+            prefix.add(product.getProductDescription().toLowerCase());
+        }
+        assertEquals(expectedPrefix, prefix);
+        assertEquals(5, db.searchByNamePrefix("radio", 5).size(), "Should stop at the limit");
+        assertTrue(db.searchByNamePrefix("100%", 5).isEmpty(), "% should be matched literally");
+
+        int expectedLow = 0;
+        for (Product product : all) {
+            if (product.getStockQuantity() <= 10) {
+                expectedLow++;
+            }
+        }
+        ArrayList<Product> low = db.findProductsBelowStock(10);
+        assertEquals(expectedLow, low.size());
+        for (Product product : low) {
+            assertTrue(product.getStockQuantity() <= 10);
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer prefix and threshold queries with an index scan")
+    void testIndexesAreUsed() throws SQLException {
+        migrate();
+        String prefixPlan = planOf("SELECT productID FROM ProductTable WHERE descriptionLower LIKE 'kettle 12%'");
+        assertEquals("I:" + SchemaMigrator.DESCRIPTION_LOWER_INDEX, prefixPlan);
+
+        String stockPlan = planOf("SELECT productID FROM ProductTable WHERE inStock <= 2");
+        assertEquals("I:" + SchemaMigrator.IN_STOCK_INDEX, stockPlan);
+    }
+
+    private void migrate() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+    }
+
+    private String lowerDescriptionOf(String productId) throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT descriptionLower FROM ProductTable WHERE productID = '" + productId + "'")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+
+    // runs the query and returns what Derby scanned for it, e.g. "I:PRODUCTINSTOCKIDX" or "T:PRODUCTTABLE"
+    private String planOf(String query) throws SQLException {
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_XPLAIN_SCHEMA('PLANS')"); // plans are saved in PLANS tables
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    // the plan is saved once the result set is closed
+                }
+            }
+            stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_XPLAIN_SCHEMA('')");
+            stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(0)");
+
+            PreparedStatement scans = conn.prepare("SELECT p.SCAN_OBJECT_TYPE, p.SCAN_OBJECT_NAME " +
+                    "FROM PLANS.SYSXPLAIN_STATEMENTS s " +
+                    "JOIN PLANS.SYSXPLAIN_RESULTSETS r ON r.STMT_ID = s.STMT_ID " +
+                    "JOIN PLANS.SYSXPLAIN_SCAN_PROPS p ON p.SCAN_RS_ID = r.SCAN_RS_ID " +
+                    "WHERE CAST(s.STMT_TEXT AS VARCHAR(200)) = ?");
+            scans.setString(1, query);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = scans.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1).trim()).append(':').append(rs.getString(2)).append(' ');
+                }
+            }
+            return plan.toString().trim();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ci553.happyshop.storageAccess;
+
+import ci553.happyshop.catalogue.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares checkout latency with DerbyRW (a Derby transaction per checkout) against
+ * WriteBehindDatabaseRW (a journal fsync per checkout, shared by concurrent checkouts),
+ * with 1 and 8 concurrent customers, on an on-disk Derby database in a temporary folder,
+ * so both paths pay for real log flushes.
+ *
+ * This is not a unit test (it is not run by Maven). Run it from the IDE, or with:
+ *     mvn test-compile exec:java -Dexec.classpathScope=test
+ *         -Dexec.mainClass=ci553.happyshop.storageAccess.WriteBehindBenchmark
+ */
+
+public class WriteBehindBenchmark {
+    private static final int PRODUCTS = 200;
+    private static final int CHECKOUTS_PER_CUSTOMER = 200;
+
+    public static void main(String[] args) throws Exception {
+        Path folder = Files.createTempDirectory("writeBehindBenchmark");
+        ConnectionPool pool = new ConnectionPool("jdbc:derby:" + folder.resolve("db") + ";create=true", 8, 5000);
+        createCatalogue(pool);
+        DerbyRW derby = new DerbyRW(pool);
+        WriteBehindDatabaseRW writeBehind = WriteBehindDatabaseRW.open(
+                derby, new StockJournal(folder.resolve("stock.journal")), null);
+        writeBehind.start(Duration.ofMillis(100));
+
+        System.out.printf("%-12s %10s %14s %14s %14s%n", "backend", "customers", "mean (ms)", "p99 (ms)", "checkouts/s");
+        for (int customers : new int[]{1, 8}) {
+            run("DerbyRW", derby, customers);
+            run("WriteBehind", writeBehind, customers);
+        }
+        System.out.println(writeBehind.getStats());
+        writeBehind.close();
+        pool.close();
+    }
+
+    private static void run(String label, DatabaseRW db, int customers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(customers);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < customers; c++) {
+            int customer = c;
+            results.add(executor.submit(() -> {
+                long[] latencies = new long[CHECKOUTS_PER_CUSTOMER];
+                for (int i = 0; i < CHECKOUTS_PER_CUSTOMER; i++) {
+                    ArrayList<Product> trolley = new ArrayList<>();
+                    trolley.add(line((customer * 7 + i) % PRODUCTS));
+                    trolley.add(line((customer * 7 + i + 1) % PRODUCTS));
+                    long begin = System.nanoTime();
+                    db.purchaseStocks(trolley);
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[customers * CHECKOUTS_PER_CUSTOMER];
+        int n = 0;
+        for (Future<long[]> result : results) {
+            for (long latency : result.get()) {
+                all[n++] = latency;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort(all);
+        double mean = Arrays.stream(all).average().orElse(0) / 1e6;
+        double p99 = all[(int) (all.length * 0.99)] / 1e6;
+        System.out.printf("%-12s %10d %14.3f %14.3f %14.0f%n", label, customers, mean, p99, all.length / seconds);
+    }
+
+    private static Product line(int index) {
+        Product product = new Product(String.format("%04d", index), "", "", 1.0, 0);
+        product.setOrderedQuantity(1);
+        return product;
+    }
+
+    private static void createCatalogue(ConnectionPool pool) throws SQLException, IOException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.getConnection().createStatement().executeUpdate(
+                    "CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            PreparedStatement insert = conn.prepare("INSERT INTO ProductTable VALUES(?, ?, ?, ?, ?)");
+            for (int i = 0; i < PRODUCTS; i++) {
+                insert.setString(1, String.format("%04d", i));
+                insert.setString(2, "Product " + i);
+                insert.setDouble(3, 1 + i);
+                insert.setString(4, i + ".jpg");
+                insert.setInt(5, 1_000_000);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ci553.happyshop.storageAccess;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the DatabaseRW contract tests against WriteBehindDatabaseRW, and tests its journal and flushing.
+ *
+ * These tests verify:
+ * - Many purchases of the same product reach Derby as one UPDATE
+ * - After a crash, the journal records missing from Derby are replayed once, and only once
+ * - A torn record at the end of the journal is cut off
+ * - A warehouse edit is written after the stock changes made before it
+ *
+ * Why these tests are important:
+ * - Checkouts are acknowledged before Derby is written, so the journal is the only copy until the flush
+ *
+ * The flusher is not started; the tests call flush() themselves.
+ */
+@DisplayName("WriteBehindDatabaseRW Tests")
+class WriteBehindDatabaseRWTest extends DatabaseRWContractTest {
+
+    private static final String TEST_DB_URL = "jdbc:derby:memory:writeBehindTest;create=true";
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionPool pool;
+    private DerbyRW derby;
+    private WriteBehindDatabaseRW writeBehind;
+
+    @Override
+    protected DatabaseRW createEmptyDatabaseRW() throws SQLException {
+        pool = new ConnectionPool(TEST_DB_URL, 8, 5000);
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("CREATE TABLE ProductTable(productID CHAR(4) PRIMARY KEY, description VARCHAR(100)," +
+                    "unitPrice DOUBLE, image VARCHAR(100), inStock INT, CHECK (inStock >= 0))");
+            SchemaMigrator.migrate(conn.getConnection());
+        }
+        derby = new DerbyRW(pool);
+        writeBehind = open();
+        return writeBehind;
+    }
+
+    @Override
+    protected void cleanUp() throws SQLException {
+        try {
+            writeBehind.close();
+        } catch (IOException e) {
+            // the journal may already be closed by a crash test
+        }
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.executeUpdate("DROP TABLE ProductTable");
+            stmt.executeUpdate("DROP TABLE StockJournalState");
+        }
+        pool.close();
+    }
+
+    private WriteBehindDatabaseRW open() throws SQLException {
+        try {
+            return WriteBehindDatabaseRW.open(derby, new StockJournal(tempDir.resolve("stock.journal")), null);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Test
+    @DisplayName("Should write many purchases of a product to Derby as one UPDATE")
+    void testCoalescing() throws SQLException {
+        for (int i = 0; i < 6; i++) {
+            assertTrue(writeBehind.purchaseStocks(trolley(line("0001", 1))).isEmpty());
+        }
+        writeBehind.purchaseStocks(trolley(line("0002", 2)));
+        assertEquals(10, derby.searchByProductId("0001").getStockQuantity(), "Not written to Derby yet");
+        assertEquals(4, stockOf("0001"), "Reads see the purchases at once");
+        assertEquals(2, writeBehind.getPendingProductCount());
+
+        writeBehind.flush();
+        assertEquals(4, derby.searchByProductId("0001").getStockQuantity());
+        assertEquals(3, derby.searchByProductId("0002").getStockQuantity());
+        assertEquals(7, derby.getAppliedJournalSequence());
+        assertTrue(writeBehind.getStats().contains("flushes=1, flushedUpdates=2"), writeBehind.getStats());
+    }
+
+    @Test
+    @DisplayName("Should replay the journal after a crash, once")
+    void testRecovery() throws Exception {
+        writeBehind.purchaseStocks(trolley(line("0001", 3), line("0002", 1)));
+        writeBehind.flush();
+        writeBehind.purchaseStocks(trolley(line("0001", 2)));
+        writeBehind.restoreStock(trolley(line("0002", 1)));
+        writeBehind.getJournal().close(); // crash: the last two changes were never flushed
+
+        writeBehind = open();
+        assertEquals(5, derby.searchByProductId("0001").getStockQuantity());
+        assertEquals(5, derby.searchByProductId("0002").getStockQuantity());
+        assertEquals(5, stockOf("0001"));
+
+        writeBehind.getJournal().close(); // crash again straight after the recovery
+        writeBehind = open();
+        assertEquals(5, derby.searchByProductId("0001").getStockQuantity(), "Must not be replayed twice");
+
+        writeBehind.purchaseStocks(trolley(line("0001", 1)));
+        writeBehind.flush();
+        assertEquals(4, derby.searchByProductId("0001").getStockQuantity(), "Sequence numbers must keep growing");
+    }
+
+    @Test
+    @DisplayName("Should cut off a torn record at the end of the journal")
+    void testTornRecord() throws Exception {
+        Path file = tempDir.resolve("torn.journal");
+        try (StockJournal journal = new StockJournal(file)) {
+            journal.sync(journal.append(Map.of("0001", -1)));
+            journal.sync(journal.append(Map.of("0002", -2)));
+        }
+        long complete = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND); // a half-written record
+
+        try (StockJournal journal = new StockJournal(file)) {
+            assertEquals(2, journal.replay().size());
+            assertEquals(complete, journal.size());
+            assertEquals(3, journal.append(Map.of("0003", -3)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should flush earlier stock changes before a warehouse edit")
+    void testWarehouseEditAfterPurchases() throws SQLException {
+        writeBehind.purchaseStocks(trolley(line("0001", 2)));
+        writeBehind.updateProduct("0001", "40 inch TV", 249.00, "0001.jpg", 50);
+        writeBehind.flush();
+
+        assertEquals(50, derby.searchByProductId("0001").getStockQuantity(), "The older purchase must not be applied on top");
+        assertEquals(50, stockOf("0001"));
+    }
+}